@@ -2,6 +2,7 @@ package de.ipvs.as.mbp;
 
 import de.ipvs.as.mbp.service.cep.engine.core.CEPEngine;
 import de.ipvs.as.mbp.service.cep.engine.esper.EsperCEPEngine;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
@@ -14,10 +15,11 @@ public class CEPConfiguration {
     /**
      * Creates a bean for the CEP engine to use.
      *
+     * @param objectArrayEvents True, if the event types are supposed to be registered as object-array types
      * @return The CEP engine bean
      */
     @Bean(name = "cep_engine")
-    public CEPEngine cepEngine() {
-        return new EsperCEPEngine();
+    public CEPEngine cepEngine(@Value("${cep.engine.object_array_events:false}") boolean objectArrayEvents) {
+        return new EsperCEPEngine(objectArrayEvents);
     }
 }
@@ -4,6 +4,7 @@ import de.ipvs.as.mbp.domain.user.User;
 import de.ipvs.as.mbp.domain.access_control.jquerybuilder.JQBOutput;
 import de.ipvs.as.mbp.domain.access_control.jquerybuilder.JQBRule;
 import de.ipvs.as.mbp.service.access_control.ACAbstractConditionEvaluator;
+import de.ipvs.as.mbp.service.access_control.ACCompiledCondition;
 import org.springframework.data.annotation.Transient;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
@@ -63,6 +64,17 @@ public abstract class ACAbstractCondition extends ACAbstractEntity {
 		return findEvaluator().evaluate(this, access, request);
 	}
 	
+	/**
+	 * Compiles this condition into an immutable {@link ACCompiledCondition}, such that
+	 * it can be evaluated repeatedly without looking up the evaluator again.
+	 * 
+	 * @return the {@link ACCompiledCondition}.
+	 * @throws ACConditionEvaluatorNotAvailableException
+	 */
+	public ACCompiledCondition compile() throws ACConditionEvaluatorNotAvailableException {
+		return findEvaluator().compile(this);
+	}
+	
 	/**
 	 * Performs a lookup for the corresponding condition evaluator.
 	 * 
@@ -5,6 +5,7 @@ import java.util.Map;
 
 import de.ipvs.as.mbp.domain.user.User;
 import de.ipvs.as.mbp.domain.valueLog.ValueLog;
+import de.ipvs.as.mbp.service.access_control.ACCompiledEffect;
 
 /**
  * Abstract base class for access-control effects, that, e.g., filter or modify
@@ -62,6 +63,17 @@ public abstract class ACAbstractEffect extends ACAbstractEntity {
 
 	public abstract ValueLog apply(ValueLog valueLog);
 	
+	/**
+	 * Compiles this effect into an immutable {@link ACCompiledEffect}, such that it
+	 * can be applied repeatedly without evaluating the parameters of this effect again.
+	 * 
+	 * @return the {@link ACCompiledEffect}.
+	 * @throws IllegalArgumentException if the parameters of this effect are invalid.
+	 */
+	public ACCompiledEffect compile() {
+		return this::apply;
+	}
+	
 	// - - -
 	
 	public static ACAbstractEffect forType(String type) throws InstantiationException, IllegalAccessException {
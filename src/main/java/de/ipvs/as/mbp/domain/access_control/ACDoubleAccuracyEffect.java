@@ -1,13 +1,13 @@
 package de.ipvs.as.mbp.domain.access_control;
 
-import java.io.IOException;
-import java.text.DecimalFormat;
+import java.util.List;
+import java.util.ListIterator;
 import java.util.Map;
-import java.util.stream.Collectors;
-import java.util.stream.IntStream;
+import java.util.function.DoubleUnaryOperator;
 
 import de.ipvs.as.mbp.domain.user.User;
 import de.ipvs.as.mbp.domain.valueLog.ValueLog;
+import de.ipvs.as.mbp.service.access_control.ACCompiledEffect;
 import org.springframework.data.mongodb.core.mapping.Document;
 import org.springframework.hateoas.server.core.Relation;
 
@@ -24,6 +24,11 @@ public class ACDoubleAccuracyEffect extends ACAbstractEffect {
 	public static final String PARAM_KEY_ACCURACY = "accuracy";
 	public static final String PARAM_KEY_PRECISION = "precision";
 	
+	/**
+	 * The maximum precision (number of decimal places) that is actually applied.
+	 */
+	private static final int MAX_PRECISION = 15;
+	
 	// - - -
 	
 	/**
@@ -49,48 +54,123 @@ public class ACDoubleAccuracyEffect extends ACAbstractEffect {
 	
 	@Override
 	public ValueLog apply(ValueLog valueLog) {
-		// TODO NOT SUPPORTED AT THE MOMENT
-		//return valueLog.setValue(apply(valueLog.getValue()));
-		return valueLog.setValue(new org.bson.Document());
+		return compile().apply(valueLog);
 	}
-
-
 	
-	// - - -
-
 	/**
-	 * Applies this effect to a given input value.
+	 * Compiles this effect into a transformation that rounds all numeric values of a value log
+	 * to the accuracy and precision given by the parameters of this effect. The scale factor
+	 * of the precision is computed only once, such that no formatting is required per value.
 	 * 
-	 * @param inputValue the input {@link Double} value.
-	 * @return the rounded and formatted value.
+	 * @return the {@link ACCompiledEffect}.
+	 * @throws IllegalArgumentException if the accuracy or precision parameter is missing or invalid.
 	 */
-	private Double apply(Double inputValue) {
-		return round(Math.round(inputValue / getAccuracy()) * getAccuracy());
-	}
-	
-	/**
-	 * Rounds and formats a given double value using a given precision.
-	 * 
-	 * @param value the input {@link Double} value.
-	 * @return the rounded and formatted value.
-	 * @throws IOException 
-	 */
-	private Double round(Double value) {
-		String format = "0." + IntStream.range(0, getPrecision()).mapToObj(i -> "0").collect(Collectors.joining());
-		DecimalFormat df = new DecimalFormat(format);
-		String formattedValue = df.format(value);
-		if (formattedValue.endsWith(",")) {
-			formattedValue = formattedValue.substring(0, formattedValue.length() - 1);
+	@Override
+	public ACCompiledEffect compile() {
+		double accuracy = getAccuracy();
+		int precision = getPrecision();
+		if (!(accuracy > 0) || Double.isInfinite(accuracy)) {
+			throw new IllegalArgumentException("Accuracy must be a positive number.");
+		} else if (precision < 0) {
+			throw new IllegalArgumentException("Precision must not be negative.");
 		}
-		return Double.parseDouble(formattedValue);
+		
+		// Doubles provide about 15 significant decimal digits, hence rounding to more decimal places is omitted
+		return new CompiledAccuracyEffect(accuracy, precision > MAX_PRECISION ? 0 : Math.pow(10, precision));
 	}
 	
+	// - - -
+	
 	private double getAccuracy() {
-		return Double.parseDouble(getParameters().get(PARAM_KEY_ACCURACY));
+		try {
+			return Double.parseDouble(getParameters().get(PARAM_KEY_ACCURACY));
+		} catch (NullPointerException | NumberFormatException e) {
+			throw new IllegalArgumentException("Parameter '" + PARAM_KEY_ACCURACY + "' must be a number.");
+		}
 	}
 	
 	private int getPrecision() {
-		return Integer.parseInt(getParameters().get(PARAM_KEY_PRECISION));
+		try {
+			return Integer.parseInt(getParameters().get(PARAM_KEY_PRECISION));
+		} catch (NumberFormatException e) {
+			throw new IllegalArgumentException("Parameter '" + PARAM_KEY_PRECISION + "' must be an integer.");
+		}
+	}
+	
+	// - - -
+	
+	/**
+	 * Compiled form of this effect. All numeric values within the value of a value log (including
+	 * nested documents and arrays) are first rounded to a multiple of the accuracy and then to
+	 * the given number of decimal places (half-even, like {@link java.text.DecimalFormat}).
+	 */
+	private static final class CompiledAccuracyEffect implements ACCompiledEffect, DoubleUnaryOperator {
+		
+		/**
+		 * The accuracy, i.e., the step width values are rounded to.
+		 */
+		private final double accuracy;
+		
+		/**
+		 * The scale factor (10^precision) or 0, if no rounding to decimal places is required.
+		 */
+		private final double scale;
+		
+		private CompiledAccuracyEffect(double accuracy, double scale) {
+			this.accuracy = accuracy;
+			this.scale = scale;
+		}
+		
+		@Override
+		public ValueLog apply(ValueLog valueLog) {
+			if (valueLog.getValue() != null) {
+				transformDocument(valueLog.getValue());
+			}
+			return valueLog;
+		}
+		
+		@Override
+		public DoubleUnaryOperator getValueTransformation() {
+			return this;
+		}
+		
+		@Override
+		public double applyAsDouble(double value) {
+			// Non-finite values cannot be rounded
+			if (!Double.isFinite(value)) {
+				return value;
+			}
+			
+			double result = Math.round(value / accuracy) * accuracy;
+			if (scale > 0) {
+				double rounded = Math.rint(result * scale) / scale;
+				if (Double.isFinite(rounded)) {
+					result = rounded;
+				}
+			}
+			return result;
+		}
+		
+		private void transformDocument(Map<String, Object> document) {
+			for (Map.Entry<String, Object> entry : document.entrySet()) {
+				entry.setValue(transformValue(entry.getValue()));
+			}
+		}
+		
+		@SuppressWarnings("unchecked")
+		private Object transformValue(Object value) {
+			if (value instanceof Number) {
+				return applyAsDouble(((Number) value).doubleValue());
+			} else if (value instanceof Map) {
+				transformDocument((Map<String, Object>) value);
+			} else if (value instanceof List) {
+				for (ListIterator<Object> iterator = ((List<Object>) value).listIterator(); iterator.hasNext(); ) {
+					iterator.set(transformValue(iterator.next()));
+				}
+			}
+			return value;
+		}
+		
 	}
 
 }
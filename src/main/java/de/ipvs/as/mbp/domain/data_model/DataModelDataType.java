@@ -96,6 +96,16 @@ public enum DataModelDataType implements Comparable<DataModelDataType> {
         return type != ARRAY && type != OBJECT;
     }
 
+    /**
+     * Checks if a given data type represents numbers.
+     *
+     * @param type The type to check
+     * @return True if the type is numeric, false otherwise
+     */
+    public static boolean isNumeric(DataModelDataType type) {
+        return type == DOUBLE || type == INT || type == LONG || type == DECIMAL128;
+    }
+
     /**
      * Checks if the given string matches a value of one of the enum data type
      * values. If yes, it returns the enum type, otherwise it returns null.
@@ -79,6 +79,39 @@ public class DataModelTree implements Iterable<DataModelTreeNode> {
         return leafNodes;
     }
 
+    /**
+     * Returns all leaf nodes with numeric data types together with their paths. Paths consist of the names of the
+     * nodes from the root to the leaf, separated by dots; elements of arrays are denoted by "[*]"
+     * (e.g. "sensors[*].temperature"). Thus, paths without "[*]" can be directly used as dot-notation paths
+     * within the values of value logs.
+     *
+     * @return Map (path --> leaf node) of all numeric leaf nodes
+     */
+    public Map<String, DataModelTreeNode> getNumericLeafNodesByPath() {
+        Map<String, DataModelTreeNode> numericLeafNodes = new LinkedHashMap<>();
+        for (DataModelTreeNode leaf : this.leafNodes) {
+            // Only consider numeric leaves
+            if (!DataModelDataType.isNumeric(leaf.getType())) {
+                continue;
+            }
+
+            // Walk up to the root and build the path
+            StringBuilder path = new StringBuilder();
+            for (DataModelTreeNode node = leaf; !node.isRoot(); node = node.getParent()) {
+                if (node.getParent().getType() == DataModelDataType.ARRAY) {
+                    // Array elements have no names
+                    path.insert(0, "[*]");
+                } else {
+                    path.insert(0, (node.getParent().isRoot() ? "" : ".") + node.getName());
+                }
+            }
+            if (path.length() > 0) {
+                numericLeafNodes.put(path.toString(), leaf);
+            }
+        }
+        return numericLeafNodes;
+    }
+
     /**
      * Inits the {@link DataModelTree#leafNodes} list. Will be called
      * by {@link DataModelTree#validateAndBuildTree()}.
@@ -0,0 +1,27 @@
+package de.ipvs.as.mbp.domain.deployment;
+
+import de.ipvs.as.mbp.domain.access_control.ACAccessType;
+
+/**
+ * Enumerates the actions that can be performed on multiple components within a bulk deployment job,
+ * together with the access types that are required for performing them.
+ */
+public enum BulkDeploymentAction {
+    DEPLOY(ACAccessType.DEPLOY), UNDEPLOY(ACAccessType.UNDEPLOY), START(ACAccessType.START), STOP(ACAccessType.STOP);
+
+    //Access type that is required for performing the action
+    private final ACAccessType accessType;
+
+    BulkDeploymentAction(ACAccessType accessType) {
+        this.accessType = accessType;
+    }
+
+    /**
+     * Returns the access type that is required for performing the action on a component.
+     *
+     * @return The access type
+     */
+    public ACAccessType getAccessType() {
+        return accessType;
+    }
+}
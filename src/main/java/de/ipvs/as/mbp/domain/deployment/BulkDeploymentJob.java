@@ -0,0 +1,181 @@
+package de.ipvs.as.mbp.domain.deployment;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import de.ipvs.as.mbp.domain.component.Component;
+import io.swagger.annotations.ApiModel;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Objects of this class represent jobs that perform a deployment action on multiple components asynchronously.
+ * Each job keeps track of the progress and the result of the action for each of its components, such that
+ * the progress of the job can be retrieved while it is being executed.
+ */
+@ApiModel(description = "Model for bulk deployment jobs and their progress")
+public class BulkDeploymentJob {
+
+    /**
+     * Enumerates the possible states of the action for a single component.
+     */
+    public enum Status {
+        PENDING, IN_PROGRESS, SUCCEEDED, FAILED
+    }
+
+    //ID of the job
+    private final String id;
+
+    //ID of the user who requested the job
+    private final String ownerId;
+
+    //Action to perform
+    private final BulkDeploymentAction action;
+
+    //Time of creation and completion of the job
+    private final Instant createdAt;
+    private volatile Instant finishedAt;
+
+    //Map (component ID -> result) of the results per component
+    private final Map<String, ComponentResult> results;
+
+    /**
+     * Creates a new job for performing a given action on a given list of components.
+     *
+     * @param ownerId    The ID of the user who requested the job
+     * @param action     The action to perform
+     * @param components The components to perform the action on
+     */
+    public BulkDeploymentJob(String ownerId, BulkDeploymentAction action, List<? extends Component> components) {
+        this.id = UUID.randomUUID().toString();
+        this.ownerId = ownerId;
+        this.action = action;
+        this.createdAt = Instant.now();
+
+        //Create a pending result for each component
+        Map<String, ComponentResult> results = new LinkedHashMap<>();
+        for (Component component : components) {
+            String deviceId = (component.getDevice() == null) ? null : component.getDevice().getId();
+            results.put(component.getId(), new ComponentResult(component.getId(), component.getName(), deviceId));
+        }
+        this.results = Collections.unmodifiableMap(results);
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    @JsonIgnore
+    public String getOwnerId() {
+        return ownerId;
+    }
+
+    public BulkDeploymentAction getAction() {
+        return action;
+    }
+
+    public Instant getCreatedAt() {
+        return createdAt;
+    }
+
+    public Instant getFinishedAt() {
+        return finishedAt;
+    }
+
+    public boolean isFinished() {
+        return finishedAt != null;
+    }
+
+    public List<ComponentResult> getResults() {
+        return new ArrayList<>(results.values());
+    }
+
+    public int getTotal() {
+        return results.size();
+    }
+
+    public int getSucceeded() {
+        return countByStatus(Status.SUCCEEDED);
+    }
+
+    public int getFailed() {
+        return countByStatus(Status.FAILED);
+    }
+
+    public int getPending() {
+        return countByStatus(Status.PENDING) + countByStatus(Status.IN_PROGRESS);
+    }
+
+    /**
+     * Updates the status of the action for the component with a given ID.
+     *
+     * @param componentId The ID of the component
+     * @param status      The new status
+     * @param message     An optional message, e.g. describing the error
+     */
+    public void updateResult(String componentId, Status status, String message) {
+        ComponentResult result = results.get(componentId);
+        if (result != null) {
+            result.status = status;
+            result.message = message;
+        }
+    }
+
+    /**
+     * Marks the job as finished.
+     */
+    public void finish() {
+        this.finishedAt = Instant.now();
+    }
+
+    private int countByStatus(Status status) {
+        int count = 0;
+        for (ComponentResult result : results.values()) {
+            if (result.status == status) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Result of the action for a single component.
+     */
+    public static class ComponentResult {
+        private final String componentId;
+        private final String componentName;
+        private final String deviceId;
+        private volatile Status status = Status.PENDING;
+        private volatile String message;
+
+        private ComponentResult(String componentId, String componentName, String deviceId) {
+            this.componentId = componentId;
+            this.componentName = componentName;
+            this.deviceId = deviceId;
+        }
+
+        public String getComponentId() {
+            return componentId;
+        }
+
+        public String getComponentName() {
+            return componentName;
+        }
+
+        public String getDeviceId() {
+            return deviceId;
+        }
+
+        public Status getStatus() {
+            return status;
+        }
+
+        public String getMessage() {
+            return message;
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package de.ipvs.as.mbp.domain.deployment;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import de.ipvs.as.mbp.domain.operator.parameters.ParameterInstance;
+import io.swagger.annotations.ApiModel;
+import io.swagger.annotations.ApiModelProperty;
+
+import javax.validation.constraints.NotNull;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * DTO for requests that ask for performing a deployment action on multiple components. The components may
+ * either be given explicitly by their IDs or selected by the ID of their operator.
+ */
+@JsonIgnoreProperties(ignoreUnknown = true)
+@ApiModel(description = "Model for requests of bulk deployment jobs")
+public class BulkDeploymentRequestDTO {
+
+    @NotNull
+    @ApiModelProperty(notes = "Action to perform on the components", example = "DEPLOY", required = true)
+    private BulkDeploymentAction action;
+
+    @ApiModelProperty(notes = "IDs of the sensors to include")
+    private List<String> sensorIds = new ArrayList<>();
+
+    @ApiModelProperty(notes = "IDs of the actuators to include")
+    private List<String> actuatorIds = new ArrayList<>();
+
+    @ApiModelProperty(notes = "ID of an operator; if set, all sensors and actuators using this operator are included", example = "5c97dc2583aeb6078c5ab672")
+    private String operatorId;
+
+    @ApiModelProperty(notes = "Parameters to use when starting the components")
+    private List<ParameterInstance> parameters = new ArrayList<>();
+
+    public BulkDeploymentAction getAction() {
+        return action;
+    }
+
+    public BulkDeploymentRequestDTO setAction(BulkDeploymentAction action) {
+        this.action = action;
+        return this;
+    }
+
+    public List<String> getSensorIds() {
+        return sensorIds;
+    }
+
+    public BulkDeploymentRequestDTO setSensorIds(List<String> sensorIds) {
+        this.sensorIds = (sensorIds == null) ? new ArrayList<>() : sensorIds;
+        return this;
+    }
+
+    public List<String> getActuatorIds() {
+        return actuatorIds;
+    }
+
+    public BulkDeploymentRequestDTO setActuatorIds(List<String> actuatorIds) {
+        this.actuatorIds = (actuatorIds == null) ? new ArrayList<>() : actuatorIds;
+        return this;
+    }
+
+    public String getOperatorId() {
+        return operatorId;
+    }
+
+    public BulkDeploymentRequestDTO setOperatorId(String operatorId) {
+        this.operatorId = operatorId;
+        return this;
+    }
+
+    public List<ParameterInstance> getParameters() {
+        return parameters;
+    }
+
+    public BulkDeploymentRequestDTO setParameters(List<ParameterInstance> parameters) {
+        this.parameters = (parameters == null) ? new ArrayList<>() : parameters;
+        return this;
+    }
+}
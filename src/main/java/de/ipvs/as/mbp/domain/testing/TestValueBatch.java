@@ -0,0 +1,103 @@
+package de.ipvs.as.mbp.domain.testing;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.util.List;
+
+/**
+ * Objects of this class represent a batch of sensor values that were captured during a test run and that were
+ * moved from the capture buffer of the run to the database, such that the memory that is required for capturing
+ * the values of long-running tests remains bounded. The batches of a run are merged again when the run is finished.
+ */
+@Document
+public class TestValueBatch {
+
+    @Id
+    private String id;
+
+    //ID of the test run (i.e. of its test report) the values belong to
+    private String runId;
+
+    //ID of the sensor the values belong to
+    private String sensorId;
+
+    //Sequence number of the batch within the test run
+    private long sequence;
+
+    //Times (in seconds since epoch) and values of the captured value logs
+    private List<Long> times;
+    private List<org.bson.Document> values;
+
+    /**
+     * Creates a new, empty batch.
+     */
+    public TestValueBatch() {
+
+    }
+
+    /**
+     * Creates a new batch from given parameters.
+     *
+     * @param runId    The ID of the test run
+     * @param sensorId The ID of the sensor
+     * @param sequence The sequence number of the batch within the test run
+     * @param times    The times of the captured value logs
+     * @param values   The values of the captured value logs
+     */
+    public TestValueBatch(String runId, String sensorId, long sequence, List<Long> times, List<org.bson.Document> values) {
+        this.runId = runId;
+        this.sensorId = sensorId;
+        this.sequence = sequence;
+        this.times = times;
+        this.values = values;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public String getRunId() {
+        return runId;
+    }
+
+    public void setRunId(String runId) {
+        this.runId = runId;
+    }
+
+    public String getSensorId() {
+        return sensorId;
+    }
+
+    public void setSensorId(String sensorId) {
+        this.sensorId = sensorId;
+    }
+
+    public long getSequence() {
+        return sequence;
+    }
+
+    public void setSequence(long sequence) {
+        this.sequence = sequence;
+    }
+
+    public List<Long> getTimes() {
+        return times;
+    }
+
+    public void setTimes(List<Long> times) {
+        this.times = times;
+    }
+
+    public List<org.bson.Document> getValues() {
+        return values;
+    }
+
+    public void setValues(List<org.bson.Document> values) {
+        this.values = values;
+    }
+}
@@ -27,6 +27,9 @@ public class Testing  {
 
     private Set<String> rule;
 
+    // IDs of the test runs whose sensors caused the trigger to fire
+    private Set<String> testRunIds;
+
     private static final String COMPONENT_TYPE_NAME = "testing-tool";
 
     public Map<String, ValueLog> getValueLogEventNameMap() {
@@ -111,6 +114,24 @@ public class Testing  {
         this.output = output;
     }
 
+    /**
+     * Returns the IDs of the test runs whose sensors caused the trigger to fire.
+     *
+     * @return set of test run ids
+     */
+    public Set<String> getTestRunIds() {
+        return testRunIds;
+    }
+
+    /**
+     * Sets the IDs of the test runs whose sensors caused the trigger to fire.
+     *
+     * @param testRunIds set of test run ids
+     */
+    public void setTestRunIds(Set<String> testRunIds) {
+        this.testRunIds = testRunIds;
+    }
+
 
 
 
@@ -0,0 +1,107 @@
+package de.ipvs.as.mbp.domain.valueLog;
+
+import io.swagger.annotations.ApiModel;
+import io.swagger.annotations.ApiModelProperty;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+/**
+ * Objects of this class represent the retention policy of the value logs of a certain component. The policy
+ * specifies for how many days the raw value logs and the rollups of the value logs are supposed to be kept before
+ * they are removed by the compactor. Retention times that are not set (null) are inherited from the defaults for the
+ * type of the component; retention times of zero or less mean that the data is kept forever.
+ */
+@Document
+@ApiModel(description = "Model for retention policies of value logs")
+public class ValueLogRetentionPolicy {
+
+    @Id
+    @ApiModelProperty(notes = "ID of the pertaining component", example = "5c97dc2583aeb6078c5ab672", accessMode = ApiModelProperty.AccessMode.READ_ONLY, readOnly = true)
+    private String componentId;
+
+    @ApiModelProperty(notes = "Number of days for which raw value logs are kept (null for default, 0 for forever)", example = "30")
+    private Integer rawRetentionDays;
+
+    @ApiModelProperty(notes = "Number of days for which rollups of value logs are kept (null for default, 0 for forever)", example = "0")
+    private Integer rollupRetentionDays;
+
+    /**
+     * Creates a new, empty retention policy.
+     */
+    public ValueLogRetentionPolicy() {
+
+    }
+
+    /**
+     * Creates a new retention policy from given parameters.
+     *
+     * @param componentId         The ID of the pertaining component
+     * @param rawRetentionDays    The number of days for which raw value logs are kept
+     * @param rollupRetentionDays The number of days for which rollups of value logs are kept
+     */
+    public ValueLogRetentionPolicy(String componentId, Integer rawRetentionDays, Integer rollupRetentionDays) {
+        this.componentId = componentId;
+        this.rawRetentionDays = rawRetentionDays;
+        this.rollupRetentionDays = rollupRetentionDays;
+    }
+
+    /**
+     * Returns the ID of the pertaining component.
+     *
+     * @return The component ID
+     */
+    public String getComponentId() {
+        return componentId;
+    }
+
+    /**
+     * Sets the ID of the pertaining component.
+     *
+     * @param componentId The component ID to set
+     * @return The retention policy
+     */
+    public ValueLogRetentionPolicy setComponentId(String componentId) {
+        this.componentId = componentId;
+        return this;
+    }
+
+    /**
+     * Returns the number of days for which raw value logs are kept.
+     *
+     * @return The number of days or null, if the default applies
+     */
+    public Integer getRawRetentionDays() {
+        return rawRetentionDays;
+    }
+
+    /**
+     * Sets the number of days for which raw value logs are kept.
+     *
+     * @param rawRetentionDays The number of days to set or null, if the default applies
+     * @return The retention policy
+     */
+    public ValueLogRetentionPolicy setRawRetentionDays(Integer rawRetentionDays) {
+        this.rawRetentionDays = rawRetentionDays;
+        return this;
+    }
+
+    /**
+     * Returns the number of days for which rollups of value logs are kept.
+     *
+     * @return The number of days or null, if the default applies
+     */
+    public Integer getRollupRetentionDays() {
+        return rollupRetentionDays;
+    }
+
+    /**
+     * Sets the number of days for which rollups of value logs are kept.
+     *
+     * @param rollupRetentionDays The number of days to set or null, if the default applies
+     * @return The retention policy
+     */
+    public ValueLogRetentionPolicy setRollupRetentionDays(Integer rollupRetentionDays) {
+        this.rollupRetentionDays = rollupRetentionDays;
+        return this;
+    }
+}
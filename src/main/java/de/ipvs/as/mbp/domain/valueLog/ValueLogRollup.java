@@ -0,0 +1,143 @@
+package de.ipvs.as.mbp.domain.valueLog;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Objects of this class hold pre-aggregated statistics of the value logs of a certain component within a certain
+ * time interval, whose width is given by a {@link ValueLogRollupResolution}. The statistics are maintained per
+ * numeric field of the values, identified by the dot-separated path of the field.
+ */
+public class ValueLogRollup {
+    //ID of the pertaining component
+    private final String idref;
+
+    //Start time of the interval in epoch milliseconds
+    private final long time;
+
+    //Map (path --> statistics) of the numeric fields
+    private final Map<String, FieldStatistics> statistics = new LinkedHashMap<>();
+
+    /**
+     * Creates a new and empty rollup for a given component and a given interval start time.
+     *
+     * @param idref The ID of the pertaining component
+     * @param time  The start time of the interval in epoch milliseconds
+     */
+    public ValueLogRollup(String idref, long time) {
+        this.idref = idref;
+        this.time = time;
+    }
+
+    /**
+     * Adds a given value of the numeric field with a given path to the statistics of the rollup.
+     *
+     * @param path  The dot-separated path of the numeric field
+     * @param time  The time of the value in epoch milliseconds
+     * @param value The value to add
+     */
+    public void add(String path, long time, double value) {
+        statistics.computeIfAbsent(path, p -> new FieldStatistics()).add(time, value);
+    }
+
+    /**
+     * Returns the ID of the component to which the rollup belongs.
+     *
+     * @return The component ID
+     */
+    public String getIdref() {
+        return idref;
+    }
+
+    /**
+     * Returns the start time of the interval in epoch milliseconds.
+     *
+     * @return The start time
+     */
+    public long getTime() {
+        return time;
+    }
+
+    /**
+     * Returns the statistics of the numeric fields, given as map (path --> statistics).
+     *
+     * @return The statistics
+     */
+    public Map<String, FieldStatistics> getStatistics() {
+        return statistics;
+    }
+
+    /**
+     * Statistics of a single numeric field, from which count, sum, average, variance, minimum, maximum as well as
+     * the first and the last value can be derived and which can be merged incrementally.
+     */
+    public static class FieldStatistics {
+        private long count = 0;
+        private double sum = 0;
+        private double sumSquares = 0;
+        private double minimum = Double.POSITIVE_INFINITY;
+        private double maximum = Double.NEGATIVE_INFINITY;
+        private long firstTime = Long.MAX_VALUE;
+        private double firstValue;
+        private long lastTime = Long.MIN_VALUE;
+        private double lastValue;
+
+        /**
+         * Adds a given value to the statistics.
+         *
+         * @param time  The time of the value in epoch milliseconds
+         * @param value The value to add
+         */
+        public void add(long time, double value) {
+            count++;
+            sum += value;
+            sumSquares += value * value;
+            minimum = Math.min(minimum, value);
+            maximum = Math.max(maximum, value);
+            if (time < firstTime) {
+                firstTime = time;
+                firstValue = value;
+            }
+            if (time >= lastTime) {
+                lastTime = time;
+                lastValue = value;
+            }
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public double getSum() {
+            return sum;
+        }
+
+        public double getSumSquares() {
+            return sumSquares;
+        }
+
+        public double getMinimum() {
+            return minimum;
+        }
+
+        public double getMaximum() {
+            return maximum;
+        }
+
+        public long getFirstTime() {
+            return firstTime;
+        }
+
+        public double getFirstValue() {
+            return firstValue;
+        }
+
+        public long getLastTime() {
+            return lastTime;
+        }
+
+        public double getLastValue() {
+            return lastValue;
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package de.ipvs.as.mbp.domain.valueLog;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Enumeration of the resolutions at which rollups of value logs are maintained. Each resolution describes
+ * the width of the time intervals for which pre-aggregated statistics of the value logs are stored.
+ */
+public enum ValueLogRollupResolution {
+    MINUTE("1m", TimeUnit.MINUTES.toMillis(1)),
+    HOUR("1h", TimeUnit.HOURS.toMillis(1)),
+    DAY("1d", TimeUnit.DAYS.toMillis(1));
+
+    //Short name of the resolution
+    private final String name;
+
+    //Width of the intervals in milliseconds
+    private final long width;
+
+    /**
+     * Creates a new resolution from a given name and a given interval width.
+     *
+     * @param name  The short name of the resolution
+     * @param width The width of the intervals in milliseconds
+     */
+    ValueLogRollupResolution(String name, long width) {
+        this.name = name;
+        this.width = width;
+    }
+
+    /**
+     * Returns the short name of the resolution.
+     *
+     * @return The name
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Returns the width of the intervals of the resolution in milliseconds.
+     *
+     * @return The width
+     */
+    public long getWidth() {
+        return width;
+    }
+
+    /**
+     * Returns the start time of the interval to which a given time belongs.
+     *
+     * @param epochMillis The time in epoch milliseconds
+     * @return The start time of the interval in epoch milliseconds
+     */
+    public long getIntervalStart(long epochMillis) {
+        return epochMillis - Math.floorMod(epochMillis, width);
+    }
+}
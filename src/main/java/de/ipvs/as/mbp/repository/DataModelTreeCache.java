@@ -1,55 +1,88 @@
 package de.ipvs.as.mbp.repository;
 
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
 import de.ipvs.as.mbp.domain.component.Actuator;
 import de.ipvs.as.mbp.domain.component.Sensor;
 import de.ipvs.as.mbp.domain.data_model.DataModel;
 import de.ipvs.as.mbp.domain.data_model.DataTreeNode;
 import de.ipvs.as.mbp.domain.data_model.treelogic.DataModelTree;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
-import java.time.ZonedDateTime;
 import java.util.*;
+import java.util.concurrent.TimeUnit;
 
 /**
  * <p>Manages access to stored {@link DataModelTree}s. To avoid many read operations on the
  * {@link DataModel} repository and to reduce the need of converting the saved date model structure
  * each time to a {@link DataModelTree}, it caches recently used {@link DataModelTree}s
  * with the respective {@link de.ipvs.as.mbp.domain.component.Component#getId() component id}
- * as key.
+ * as key.</p>
+ * <p>The cache is backed by a concurrent Caffeine cache with a size bound and access-based expiry. Component ids
+ * that are unknown to the repositories (e.g. monitoring components) are cached as well, but expire earlier.
+ * Entries are invalidated via {@link #invalidate(String)} and {@link #invalidateAll()} when components, operators
+ * or data models change.</p>
  */
 @Component
 public class DataModelTreeCache {
 
     /**
-     * Specifies how old a cache date entry can be, being still part of the cache.
+     * Name under which the metrics of the cache are published.
      */
-    private static final int UNUSED_DAYS_REMOVAL_CRITERION = 1;
+    private static final String CACHE_NAME = "data_model_trees";
 
     /**
-     * Map used as the cache data structure to store data models together with their components id.
-     * The dates are part of the value to enable the removal of old cache entries by using
-     * {@link DataModelTreeCache#removeOldCacheEntries()}.
+     * Cache data structure to store data models together with their component ids.
      */
-    private final Map<String, Map.Entry<DataModelTree, Date>> cachedDataModels;
+    private final Cache<String, DataModelTree> cachedDataModels;
 
-    @Autowired
-    private SensorRepository sensorRepository;
+    private final SensorRepository sensorRepository;
 
-    @Autowired
-    private ActuatorRepository actuatorRepository;
+    private final ActuatorRepository actuatorRepository;
 
     /**
      * Data model with one "value" double data field
      */
     final DataModelTree monitoringOperatorDataModel;
 
-    private DataModelTreeCache() {
-        // Init the data models cache
-        this.cachedDataModels = new HashMap<>();
+    /**
+     * Creates the cache by passing references to the required repositories and the cache settings (auto-wired).
+     *
+     * @param sensorRepository   The {@link SensorRepository} to use
+     * @param actuatorRepository The {@link ActuatorRepository} to use
+     * @param meterRegistry      The {@link MeterRegistry} to publish the hit/miss metrics of the cache to
+     * @param maximumSize        The maximum number of cached data models
+     * @param expireAfterAccess  The time in milliseconds after which unused data models are removed from the cache
+     * @param negativeExpiry     The time in milliseconds after which cached unknown component ids are removed
+     */
+    @Autowired
+    private DataModelTreeCache(SensorRepository sensorRepository, ActuatorRepository actuatorRepository,
+                               MeterRegistry meterRegistry,
+                               @Value("${data_models.cache.maximum_size:10000}") long maximumSize,
+                               @Value("${data_models.cache.expire_after_access:86400000}") long expireAfterAccess,
+                               @Value("${data_models.cache.negative_expiry:60000}") long negativeExpiry) {
+        this.sensorRepository = sensorRepository;
+        this.actuatorRepository = actuatorRepository;
         this.monitoringOperatorDataModel = createOperatorDataModel();
+
+        // Init the data models cache
+        this.cachedDataModels = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfter(new DataModelTreeExpiry(TimeUnit.MILLISECONDS.toNanos(expireAfterAccess),
+                        TimeUnit.MILLISECONDS.toNanos(negativeExpiry)))
+                .recordStats()
+                .build();
+
+        // Publish hit/miss metrics of the cache
+        CaffeineCacheMetrics.monitor(meterRegistry, this.cachedDataModels, CACHE_NAME);
     }
 
     /**
@@ -83,47 +116,57 @@ public class DataModelTreeCache {
      * one value double field is returned which is also used by monitoring operators by default.
      */
     public DataModelTree getDataModelOfComponent(String componentId) {
-        // Is the data model is already cached?
-        if (this.cachedDataModels.containsKey(componentId)) {
-            // Yes, the data model is already present in the application logic --> just return it (and update the date before)
-            DataModelTree tree = this.cachedDataModels.get(componentId).getKey();
-            this.cachedDataModels.put(componentId, new AbstractMap.SimpleEntry<>(tree, new Date()));
-            return tree;
-        } else {
-            // No, the data model is not present in the application logic yet --> get it from the db and add it to the
-            // data model cache to avoid further db accesses
-            DataModel dataModel = getDataModelByComponentIdFromDB(componentId);
+        // Return the cached data model or load it from the db and add it to the cache to avoid further db accesses
+        return this.cachedDataModels.get(componentId, this::loadDataModelTree);
+    }
 
-            if (dataModel == null) {
-                // No data model of the component could be found, maybe it is a monitoring operator --> give the monitoring data model back
-                return this.monitoringOperatorDataModel;
-            }
+    /**
+     * Removes the cached data model of a given component id, such that it is loaded from the db again
+     * on the next access.
+     *
+     * @param componentId The id of the component
+     */
+    public void invalidate(String componentId) {
+        this.cachedDataModels.invalidate(componentId);
+    }
 
-            // Build the data model tree from the data model
-            DataModelTree tree = new DataModelTree(dataModel.getTreeNodes());
-            this.cachedDataModels.put(componentId, new AbstractMap.SimpleEntry<>(tree, new Date()));
-            return tree;
-        }
+    /**
+     * Removes all cached data models, such that they are loaded from the db again on the next access.
+     */
+    public void invalidateAll() {
+        this.cachedDataModels.invalidateAll();
     }
 
     /**
-     * Removes all cache entries of all {@link DataModelTree}s of which the last mqtt
-     * message sent is older than one day.
-     * For this, the system clock (and system time zone) is used internally.
+     * Returns a snapshot of the hit/miss statistics of the cache.
+     *
+     * @return The statistics
      */
-    public void removeOldCacheEntries() {
-        // Get the current time
-        ZonedDateTime now = ZonedDateTime.now();
-        // Get the current time minus 1 day
-        ZonedDateTime oneDayAgo = now.plusDays(-UNUSED_DAYS_REMOVAL_CRITERION);
-
-        // Go through all cache entries and check if the entry is older than one day
-        for (Map.Entry<String, Map.Entry<DataModelTree, Date>> e : this.cachedDataModels.entrySet()) {
-            if (e.getValue().getValue().toInstant().isBefore(oneDayAgo.toInstant())) {
-                // Entry is older than 1 day --> remove
-                this.cachedDataModels.remove(e.getKey());
-            }
+    public CacheStats getStatistics() {
+        return this.cachedDataModels.stats();
+    }
+
+    /**
+     * Loads the data model of a given component id from the db and builds the corresponding {@link DataModelTree}.
+     *
+     * @param componentId The id of the component.
+     * @return The data model tree or the default data model, if the component id is not known
+     */
+    private DataModelTree loadDataModelTree(String componentId) {
+        // Ids of monitoring components consist of the ids of the operator and the device --> no db access needed
+        if (componentId.contains("@")) {
+            return this.monitoringOperatorDataModel;
         }
+
+        DataModel dataModel = getDataModelByComponentIdFromDB(componentId);
+
+        if (dataModel == null) {
+            // No data model of the component could be found, maybe it is a monitoring operator --> give the monitoring data model back
+            return this.monitoringOperatorDataModel;
+        }
+
+        // Build the data model tree from the data model
+        return new DataModelTree(dataModel.getTreeNodes());
     }
 
     /**
@@ -158,5 +201,39 @@ public class DataModelTreeCache {
             return componentToReturn.getOperator().getDataModel();
         }
     }
-}
 
+    /**
+     * Expiry policy of the cache, which removes data models after a period without access and cached unknown
+     * component ids (represented by the default data model) after a fixed period since their creation.
+     */
+    private class DataModelTreeExpiry implements Expiry<String, DataModelTree> {
+        private final long expireAfterAccess;
+        private final long negativeExpiry;
+
+        /**
+         * Creates the expiry policy.
+         *
+         * @param expireAfterAccess The time in nanoseconds after which unused data models expire
+         * @param negativeExpiry    The time in nanoseconds after which cached unknown component ids expire
+         */
+        private DataModelTreeExpiry(long expireAfterAccess, long negativeExpiry) {
+            this.expireAfterAccess = expireAfterAccess;
+            this.negativeExpiry = negativeExpiry;
+        }
+
+        @Override
+        public long expireAfterCreate(String key, DataModelTree value, long currentTime) {
+            return (value == monitoringOperatorDataModel) ? negativeExpiry : expireAfterAccess;
+        }
+
+        @Override
+        public long expireAfterUpdate(String key, DataModelTree value, long currentTime, long currentDuration) {
+            return expireAfterCreate(key, value, currentTime);
+        }
+
+        @Override
+        public long expireAfterRead(String key, DataModelTree value, long currentTime, long currentDuration) {
+            return (value == monitoringOperatorDataModel) ? currentDuration : expireAfterAccess;
+        }
+    }
+}
@@ -4,6 +4,7 @@ import java.util.List;
 
 import de.ipvs.as.mbp.domain.testing.Testing;
 import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.data.mongodb.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.data.rest.core.annotation.RepositoryRestResource;
 
@@ -13,4 +14,9 @@ import org.springframework.data.rest.core.annotation.RepositoryRestResource;
 @RepositoryRestResource(collectionResourceRel = "testing", path = "testing")
 public interface TestRepository extends MongoRepository<Testing, String> {
     List<Testing> findAllByTriggerId(@Param("trigger.id") String triggerId);
+
+    List<Testing> findAllByTriggerIdAndTestRunIdsIsNull(@Param("trigger.id") String triggerId);
+
+    @Query("{ 'testRunIds' : ?0 }")
+    List<Testing> findAllByTestRunId(@Param("testRunId") String testRunId);
 }
\ No newline at end of file
@@ -0,0 +1,18 @@
+package de.ipvs.as.mbp.repository;
+
+import de.ipvs.as.mbp.domain.testing.TestValueBatch;
+import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+/**
+ * Repository for the batches of sensor values that were moved from the capture buffers of test runs to the database.
+ */
+@Repository
+public interface TestValueBatchRepository extends MongoRepository<TestValueBatch, String> {
+
+    List<TestValueBatch> findAllByRunIdOrderBySequenceAsc(String runId);
+
+    void deleteAllByRunId(String runId);
+}
@@ -1,6 +1,8 @@
 package de.ipvs.as.mbp.repository;
 
 import de.ipvs.as.mbp.domain.user_entity.UserEntity;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
 import org.springframework.data.mongodb.repository.MongoRepository;
 import org.springframework.data.mongodb.repository.Query;
 import org.springframework.data.repository.NoRepositoryBean;
@@ -22,6 +24,15 @@ public interface UserEntityRepository<T extends UserEntity> extends MongoReposit
     @Query("{ 'owner.id' : :#{#ownerId} }")
     List<T> findByOwner(@Param("ownerId") String ownerId);
 
+    @Query("{ $or : [ { 'owner' : null }, { 'owner.id' : :#{#ownerId} } ] }")
+    List<T> findByOwnerOrWithoutOwner(@Param("ownerId") String ownerId, Pageable pageable);
+
+    @Query(value = "{ $or : [ { 'owner' : null }, { 'owner.id' : :#{#ownerId} } ] }", count = true)
+    long countByOwnerOrWithoutOwner(@Param("ownerId") String ownerId);
+
+    @Query("{ $and : [ { 'owner' : { $ne : null } }, { 'owner.id' : { $ne : :#{#ownerId} } }, { 'accessControlPolicyIds.0' : { $exists : true } } ] }")
+    List<T> findWithPoliciesAndNotOwnedBy(@Param("ownerId") String ownerId, Sort sort);
+
     @Query(value = "{ 'name' : :#{#name} }", exists = true)
     boolean existsByName(@Param("name") String name);
 
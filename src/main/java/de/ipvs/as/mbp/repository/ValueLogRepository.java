@@ -1,18 +1,35 @@
 package de.ipvs.as.mbp.repository;
 
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.WriteConcern;
+import com.mongodb.bulk.BulkWriteError;
 import com.mongodb.client.AggregateIterable;
 import com.mongodb.client.MongoClient;
 import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoCursor;
 import com.mongodb.client.MongoDatabase;
+import com.mongodb.client.model.Accumulators;
 import com.mongodb.client.model.Aggregates;
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.BsonField;
+import com.mongodb.client.model.CountOptions;
+import com.mongodb.client.model.Field;
 import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.Indexes;
+import com.mongodb.client.model.Projections;
+import com.mongodb.client.model.UpdateOneModel;
 import com.mongodb.client.model.UpdateOptions;
+import com.mongodb.client.model.WriteModel;
 import de.ipvs.as.mbp.MongoConfiguration;
 import de.ipvs.as.mbp.domain.valueLog.ValueLog;
+import org.bson.BsonDocument;
+import org.bson.BsonDocumentReader;
 import org.bson.Document;
+import org.bson.codecs.DecoderContext;
 import org.bson.codecs.configuration.CodecRegistry;
 import org.bson.codecs.pojo.PojoCodecProvider;
 import org.bson.conversions.Bson;
+import org.bson.types.ObjectId;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
@@ -23,7 +40,14 @@ import org.springframework.stereotype.Component;
 import java.time.Instant;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.function.Consumer;
 
 import static org.bson.codecs.configuration.CodecRegistries.fromProviders;
@@ -43,24 +67,42 @@ public class ValueLogRepository {
     // Name of the collection to use for the value logs
     private static final String COLLECTION_NAME = "mongoValueLogs";
 
-    // Name of the idref field
+    // Names of the fields of the documents in the collection
     private static final String IDREF_FIELD_NAME = "idref";
+    private static final String FIRST_FIELD_NAME = "first";
+    private static final String LAST_FIELD_NAME = "last";
+    private static final String TIME_FIELD_NAME = "time";
+    private static final String VALUE_FIELD_NAME = "value";
+
+    // Name of the field holding the extracted numeric value in aggregation results
+    public static final String NUMERIC_VALUE_FIELD_NAME = "numericValue";
 
     // Number of value logs per document in the collection
     private static final long VALUES_PER_DOCUMENT = 80;
 
+    // Number of value logs to fetch per round-trip when iterating over cursors
+    private static final int CURSOR_BATCH_SIZE = 1000;
+
     // Value log database and collection of the MongoDB
     private final MongoDatabase valueLogDatabase;
     private final MongoCollection<ValueLog> valueLogCollection;
 
+    // Repository holding the rollups of the value logs
+    private final ValueLogRollupRepository valueLogRollupRepository;
+
     /**
      * Instantiates the repository by passing a reference to the MongoDB bean that
      * is supposed to be used (auto-wired).
      *
-     * @param mongoClient The MongoDB bean to use
+     * @param mongoClient              The MongoDB bean to use
+     * @param mongoConfiguration       The MongoDB configuration to use
+     * @param valueLogRollupRepository The repository holding the rollups of the value logs
      */
     @Autowired
-    private ValueLogRepository(MongoClient mongoClient, MongoConfiguration mongoConfiguration) {
+    private ValueLogRepository(MongoClient mongoClient, MongoConfiguration mongoConfiguration, ValueLogRollupRepository valueLogRollupRepository) {
+        // Store reference to the rollup repository
+        this.valueLogRollupRepository = valueLogRollupRepository;
+
         // Fetch coded registry for mapping value log objects from and to BSON documents
         CodecRegistry codecRegistry = fromRegistries(com.mongodb.MongoClientSettings.getDefaultCodecRegistry(), fromProviders(PojoCodecProvider.builder().automatic(true).build()));
 
@@ -70,6 +112,17 @@ public class ValueLogRepository {
         // Get value log database and collection with codec registry
         this.valueLogDatabase = mongoClient.getDatabase(databaseName).withCodecRegistry(codecRegistry);
         this.valueLogCollection = valueLogDatabase.getCollection(COLLECTION_NAME, ValueLog.class);
+
+        // Ensure that the required indices exist
+        createIndices();
+    }
+
+    /**
+     * Creates the indices that are required for efficiently querying the value logs, unless they already exist.
+     */
+    private void createIndices() {
+        // Compound index for pruning documents by idref and time range
+        this.valueLogCollection.createIndex(Indexes.ascending(IDREF_FIELD_NAME, FIRST_FIELD_NAME, LAST_FIELD_NAME));
     }
 
     /**
@@ -83,25 +136,188 @@ public class ValueLogRepository {
             throw new IllegalArgumentException("Value log must not be null.");
         }
 
-        // Get epoch seconds from value log
-        long epochSeconds = valueLog.getTime().getEpochSecond();
+        // Write value log as batch of its own, such that only the newest document of the idref is extended
+        if (!writeAll(Collections.singletonList(valueLog), true).isEmpty()) {
+            throw new IllegalStateException("Value log could not be written.");
+        }
+    }
 
-        // Filtering by idref and nvalues
-        Document filterQuery = new Document(IDREF_FIELD_NAME, valueLog.getIdref());
-        filterQuery.append("nvalues", new Document("$lt", VALUES_PER_DOCUMENT));
+    /**
+     * Writes a given collection of value log objects into the repository by using a single unordered bulk write.
+     * The value logs are grouped by their idref and each group is pushed into the buckets with as few update
+     * operations as possible, while the maximum number of value logs per bucket is still respected. In order to
+     * keep the time ranges of the buckets disjoint, only the newest bucket of each idref is extended; all other
+     * value logs are written into new buckets (see {@link #splitIntoChunks(List, long, long)}). Since the
+     * bulk write is unordered, the failure of single update operations does not affect the other ones; the value
+     * logs of the failed update operations are returned, such that only these can be written again.
+     *
+     * @param valueLogs    The value logs to write
+     * @param acknowledged True, if the write is supposed to be acknowledged by the database; false, if the write
+     *                     is supposed to be fire-and-forget
+     * @return The value logs that could not be written due to write errors; empty if all value logs were written
+     */
+    public List<ValueLog> writeAll(Collection<ValueLog> valueLogs, boolean acknowledged) {
+        // Sanity check
+        if (valueLogs == null) {
+            throw new IllegalArgumentException("Value logs must not be null.");
+        }
 
-        // Query for updating existing documents or creating new ones
-        Document updateQuery = new Document("$push", new Document("values", valueLog));
-        updateQuery.append("$min", new Document("first", epochSeconds));
-        updateQuery.append("$max", new Document("last", epochSeconds));
-        updateQuery.append("$inc", new Document("nvalues", 1));
+        // Group value logs by idref
+        Map<String, List<ValueLog>> valueLogsByIdRef = new LinkedHashMap<>();
+        for (ValueLog valueLog : valueLogs) {
+            valueLogsByIdRef.computeIfAbsent(valueLog.getIdref(), k -> new ArrayList<>()).add(valueLog);
+        }
+
+        // Check if there is anything to write
+        if (valueLogsByIdRef.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        // Retrieve the newest documents of the idrefs, as only these may be extended
+        Map<String, Document> newestBuckets = findNewestBuckets(valueLogsByIdRef.keySet());
+
+        // Create one update per chunk of value logs that fits into a single document
+        List<WriteModel<ValueLog>> writeModels = new ArrayList<>();
+        List<List<ValueLog>> chunks = new ArrayList<>();
+        for (Map.Entry<String, List<ValueLog>> entry : valueLogsByIdRef.entrySet()) {
+            // Sort the value logs by time, such that the chunks cover disjoint time ranges
+            List<ValueLog> group = entry.getValue();
+            group.sort(Comparator.comparing(ValueLog::getTime));
+
+            // Split the value logs into chunks for the newest and for new documents
+            Document newestBucket = newestBuckets.get(entry.getKey());
+            long newestFirst = (newestBucket == null) ? Long.MAX_VALUE : ((Number) newestBucket.get(FIRST_FIELD_NAME)).longValue();
+            long newestRoom = (newestBucket == null) ? 0 : VALUES_PER_DOCUMENT - ((Number) newestBucket.get("nvalues")).longValue();
+            for (BucketChunk chunk : splitIntoChunks(group, newestFirst, newestRoom)) {
+                writeModels.add(chunk.isAppendToNewest() ? createBucketUpdate(entry.getKey(), chunk.getValueLogs(), newestBucket)
+                        : createBucketUpdate(entry.getKey(), chunk.getValueLogs(), null));
+                chunks.add(chunk.getValueLogs());
+            }
+        }
+
+        try {
+            // Perform bulk write with the desired write concern
+            this.valueLogCollection.withWriteConcern(acknowledged ? WriteConcern.ACKNOWLEDGED : WriteConcern.UNACKNOWLEDGED)
+                    .bulkWrite(writeModels, new BulkWriteOptions().ordered(false));
+        } catch (MongoBulkWriteException e) {
+            // Collect the value logs of the failed updates; all other updates were applied
+            List<ValueLog> failedValueLogs = new ArrayList<>();
+            for (BulkWriteError error : e.getWriteErrors()) {
+                failedValueLogs.addAll(chunks.get(error.getIndex()));
+            }
+            return failedValueLogs;
+        }
+        return Collections.emptyList();
+    }
+
+    /**
+     * Splits a given list of value logs of the same idref, sorted ascending by time, into the chunks that are
+     * written into the documents. Only the newest document of an idref may be extended, since extending an older
+     * document would make its time range overlap with the ones of the newer documents; this would break the
+     * pruning of documents by their first and last timestamps, e.g. for paging and for the retention of value logs.
+     * Hence, the earliest value logs that do not precede the newest document are appended to it as long as it has
+     * room for them, while all other value logs are written into new documents of at most
+     * {@link #VALUES_PER_DOCUMENT} value logs each.
+     *
+     * @param valueLogs   The value logs to split, sorted ascending by time
+     * @param newestFirst The first timestamp (epoch seconds) of the newest document of the idref
+     * @param newestRoom  The number of value logs the newest document still has room for; 0 if no document exists
+     * @return The resulting chunks of value logs
+     */
+    static List<BucketChunk> splitIntoChunks(List<ValueLog> valueLogs, long newestFirst, long newestRoom) {
+        // Determine the value logs to append to the newest document
+        int appendStart = valueLogs.size();
+        int appendEnd = valueLogs.size();
+        if (newestRoom > 0) {
+            appendStart = 0;
+            while ((appendStart < valueLogs.size()) && (valueLogs.get(appendStart).getTime().getEpochSecond() < newestFirst)) {
+                appendStart++;
+            }
+            appendEnd = (int) Math.min(valueLogs.size(), appendStart + newestRoom);
+        }
+
+        // Create the chunks for the newest document and for new documents before and after it
+        List<BucketChunk> chunks = new ArrayList<>();
+        if (appendStart < appendEnd) {
+            chunks.add(new BucketChunk(valueLogs.subList(appendStart, appendEnd), true));
+        }
+        addNewBucketChunks(chunks, valueLogs.subList(0, appendStart));
+        addNewBucketChunks(chunks, valueLogs.subList(appendEnd, valueLogs.size()));
+        return chunks;
+    }
 
-        // Allow for creating new documents when VALUES_PER_DOCUMENT is reached
-        UpdateOptions updateOptions = new UpdateOptions();
-        updateOptions.upsert(true);
+    /**
+     * Splits a given list of value logs into chunks of at most {@link #VALUES_PER_DOCUMENT} value logs that are
+     * supposed to be written into new documents and adds them to a given list of chunks.
+     *
+     * @param chunks    The list to add the chunks to
+     * @param valueLogs The value logs to split
+     */
+    private static void addNewBucketChunks(List<BucketChunk> chunks, List<ValueLog> valueLogs) {
+        for (int i = 0; i < valueLogs.size(); i += VALUES_PER_DOCUMENT) {
+            chunks.add(new BucketChunk(valueLogs.subList(i, (int) Math.min(i + VALUES_PER_DOCUMENT, valueLogs.size())), false));
+        }
+    }
 
-        // Perform update
-        this.valueLogCollection.updateOne(filterQuery, updateQuery, updateOptions);
+    /**
+     * Retrieves the newest document, i.e. the document with the latest first timestamp, for each of the given
+     * idrefs. Only the fields {@code first}, {@code last} and {@code nvalues} of the documents are returned.
+     *
+     * @param idrefs The idrefs for which the newest documents are supposed to be retrieved
+     * @return Map (idref -> newest document) of the idrefs for which documents exist
+     */
+    private Map<String, Document> findNewestBuckets(Collection<String> idrefs) {
+        // Sort the documents in the order of the index, such that the newest document of each idref comes first
+        Map<String, Document> newestBuckets = new HashMap<>();
+        this.valueLogCollection.aggregate(Arrays.asList(
+                Aggregates.match(Filters.in(IDREF_FIELD_NAME, idrefs)),
+                Aggregates.sort(new Document(IDREF_FIELD_NAME, -1).append(FIRST_FIELD_NAME, -1).append(LAST_FIELD_NAME, -1)),
+                Aggregates.group("$" + IDREF_FIELD_NAME,
+                        Accumulators.first(FIRST_FIELD_NAME, "$" + FIRST_FIELD_NAME),
+                        Accumulators.first(LAST_FIELD_NAME, "$" + LAST_FIELD_NAME),
+                        Accumulators.first("nvalues", "$nvalues"))), Document.class)
+                .forEach((Consumer<Document>) document -> newestBuckets.put(document.getString("_id"), document));
+        return newestBuckets;
+    }
+
+    /**
+     * Creates an update operation that pushes a given chunk of value logs of the same idref either into the newest
+     * document of the idref or into a new document. The newest document is only extended if it is still the newest
+     * one and still has enough space for all value logs when the update is performed; otherwise, a new document
+     * is created.
+     *
+     * @param idref        The idref of the value logs
+     * @param valueLogs    The value logs to push (at most {@link #VALUES_PER_DOCUMENT})
+     * @param newestBucket The newest document of the idref to extend or null, if a new document is supposed to be created
+     * @return The resulting update operation
+     */
+    private UpdateOneModel<ValueLog> createBucketUpdate(String idref, List<ValueLog> valueLogs, Document newestBucket) {
+        // Determine the time range of the value logs
+        long firstEpochSeconds = Long.MAX_VALUE;
+        long lastEpochSeconds = Long.MIN_VALUE;
+        for (ValueLog valueLog : valueLogs) {
+            long epochSeconds = valueLog.getTime().getEpochSecond();
+            firstEpochSeconds = Math.min(firstEpochSeconds, epochSeconds);
+            lastEpochSeconds = Math.max(lastEpochSeconds, epochSeconds);
+        }
+
+        // Filtering by idref and either the newest document, if it has enough space for all value logs, or a new ID
+        Document filterQuery = new Document(IDREF_FIELD_NAME, idref);
+        if (newestBucket != null) {
+            filterQuery.append(FIRST_FIELD_NAME, new Document("$gte", newestBucket.get(FIRST_FIELD_NAME)));
+            filterQuery.append(LAST_FIELD_NAME, new Document("$gte", newestBucket.get(LAST_FIELD_NAME)));
+            filterQuery.append("nvalues", new Document("$lte", VALUES_PER_DOCUMENT - valueLogs.size()));
+        } else {
+            filterQuery.append("_id", new ObjectId());
+        }
+
+        // Query for updating existing documents or creating new ones
+        Document updateQuery = new Document("$push", new Document("values", new Document("$each", valueLogs)));
+        updateQuery.append("$min", new Document("first", firstEpochSeconds));
+        updateQuery.append("$max", new Document("last", lastEpochSeconds));
+        updateQuery.append("$inc", new Document("nvalues", valueLogs.size()));
+
+        return new UpdateOneModel<>(filterQuery, updateQuery, new UpdateOptions().upsert(true));
     }
 
     /**
@@ -231,29 +447,674 @@ public class ValueLogRepository {
     }
 
     /**
-     * Finds a value log by component id and timestamp when the ValueLog was initially created.
+     * Finds and returns a page of value logs that match a certain id reference of a component and lie within
+     * a given time range. The time range, the sort order and the pagination are all applied within the database,
+     * such that only the value logs of the requested page are loaded. Documents that lie completely outside of the
+     * time range are pruned by their first and last timestamps. The total number of matching value logs is
+     * computed from the number of values per document, such that only the documents at the edges of the time
+     * range need to be inspected value by value. For retrieving the page, the documents are sorted and limited
+     * on document level before only the required ones are unwound. Only sorting by time is supported; if no sort
+     * order is specified, the value logs are sorted ascending by time.
+     *
+     * @param idref     The idref to match
+     * @param startTime The inclusive start of the time range or null, if not bounded
+     * @param endTime   The exclusive end of the time range or null, if not bounded
+     * @param pageable  The pageable describing the desired page of value logs
+     * @return The requested page of value logs
+     */
+    public Page<ValueLog> findAllByIdRefAndTimeRange(String idref, Instant startTime, Instant endTime, Pageable pageable) {
+        // Sanity check
+        if ((idref == null) || idref.isEmpty()) {
+            throw new IllegalArgumentException("Idref must not be null or empty.");
+        }
+
+        // Create result list
+        List<ValueLog> resultList = new ArrayList<>();
+
+        // Determine the sort direction (ascending by default)
+        int sortDirection = 1;
+        for (Sort.Order order : pageable.getSort()) {
+            // Only sorting for time property is supported, thus ignore the other ones
+            if (order.getProperty().equals(TIME_FIELD_NAME)) {
+                sortDirection = order.isAscending() ? 1 : -1;
+                break;
+            }
+        }
+
+        // Filter for the documents that may contain matching value logs and expression for counting them per document
+        Bson documentFilter = createTimeRangeDocumentFilter(idref, startTime, endTime);
+        Document inRangeCount = createInRangeCountExpression(startTime, endTime);
+
+        // Count the matching value logs on document level
+        Document countResult = this.valueLogCollection.aggregate(Arrays.asList(Aggregates.match(documentFilter),
+                        Aggregates.group(null, new BsonField("count", new Document("$sum", inRangeCount)))),
+                Document.class).first();
+        long total = (countResult == null) ? 0 : ((Number) countResult.get("count")).longValue();
+
+        // Check if values need to be retrieved
+        if ((pageable.getPageSize() <= 0) || (pageable.getOffset() >= total)) {
+            return new PageImpl<>(resultList, pageable, total);
+        }
+
+        // Determine the number of documents that contain the requested page when sorted by their first timestamps
+        Document documentSort = new Document(FIRST_FIELD_NAME, sortDirection);
+        long requiredValues = pageable.getOffset() + pageable.getPageSize();
+        int documentLimit = 0;
+        long coveredValues = 0;
+        try (MongoCursor<Document> cursor = this.valueLogCollection.aggregate(Arrays.asList(Aggregates.match(documentFilter),
+                        Aggregates.sort(documentSort), Aggregates.project(new Document("_id", 0).append("n", inRangeCount))),
+                Document.class).batchSize(CURSOR_BATCH_SIZE).cursor()) {
+            while ((coveredValues < requiredValues) && cursor.hasNext()) {
+                coveredValues += ((Number) cursor.next().get("n")).longValue();
+                documentLimit++;
+            }
+        }
+
+        // Coarse-grained sorting and limit on document level, including one more document for overlapping time ranges
+        List<Bson> aggregateStages = new ArrayList<>();
+        aggregateStages.add(Aggregates.match(documentFilter));
+        aggregateStages.add(Aggregates.sort(documentSort));
+        aggregateStages.add(Aggregates.limit(documentLimit + 1));
+        aggregateStages.addAll(createValueLogStages(startTime, endTime));
+
+        // Fine-grained sorting, skip and limit on value log level
+        aggregateStages.add(Aggregates.sort(new Document(TIME_FIELD_NAME, sortDirection)));
+        if (pageable.getOffset() > 0) {
+            aggregateStages.add(Aggregates.skip((int) pageable.getOffset()));
+        }
+        aggregateStages.add(Aggregates.limit(pageable.getPageSize()));
+
+        // Perform aggregation
+        AggregateIterable<ValueLog> aggregateResult = this.valueLogCollection.aggregate(aggregateStages, ValueLog.class)
+                .allowDiskUse(true);
+
+        // Convert aggregation result to a list
+        aggregateResult.forEach((Consumer<ValueLog>) resultList::add);
+
+        // Return value logs as page
+        return new PageImpl<>(resultList, pageable, total);
+    }
+
+    /**
+     * Returns a cursor over all value logs that match a certain id reference of a component and lie within a given
+     * time range, sorted ascending by time. The value logs are fetched from the database in batches while iterating,
+     * such that arbitrarily large time ranges can be processed with constant memory. The cursor must be closed
+     * by the caller.
+     *
+     * @param idref     The idref to match
+     * @param startTime The inclusive start of the time range or null, if not bounded
+     * @param endTime   The exclusive end of the time range or null, if not bounded
+     * @return The cursor over the matching value logs
+     */
+    public MongoCursor<ValueLog> findAllByIdRefAndTimeRangeAsCursor(String idref, Instant startTime, Instant endTime) {
+        // Sanity check
+        if ((idref == null) || idref.isEmpty()) {
+            throw new IllegalArgumentException("Idref must not be null or empty.");
+        }
+
+        // Stages for retrieving all value logs within the time range, sorted by time
+        List<Bson> aggregateStages = createTimeRangeStages(idref, startTime, endTime);
+        aggregateStages.add(Aggregates.sort(new Document(TIME_FIELD_NAME, 1)));
+
+        // Perform aggregation and return cursor
+        return this.valueLogCollection.aggregate(aggregateStages, ValueLog.class)
+                .allowDiskUse(true).batchSize(CURSOR_BATCH_SIZE).cursor();
+    }
+
+    /**
+     * Aggregates the numeric values at a given path of the value logs that match a certain id reference of a
+     * component and lie within a given time range into buckets of a fixed width. The aggregation is completely
+     * performed within the database; for each non-empty bucket, a document with the fields {@code _id} (start
+     * of the bucket in epoch milliseconds), {@code count}, {@code min}, {@code max}, {@code avg}, {@code stdDev},
+     * {@code first} and {@code last} is returned. Value logs whose value at the path cannot be converted to a number are ignored.
+     *
+     * @param idref       The idref to match
+     * @param startTime   The inclusive start of the time range or null, if not bounded
+     * @param endTime     The exclusive end of the time range or null, if not bounded
+     * @param valuePath   The dot-separated path of the numeric field within the value of the value logs
+     * @param bucketWidth The width of the buckets in milliseconds
+     * @param maxBuckets  The maximum number of buckets to return
+     * @return The list of resulting buckets, sorted ascending by time
+     */
+    public List<Document> aggregateByIdRefAndTimeRange(String idref, Instant startTime, Instant endTime, String valuePath, long bucketWidth, int maxBuckets) {
+        // Sanity checks
+        if ((idref == null) || idref.isEmpty()) {
+            throw new IllegalArgumentException("Idref must not be null or empty.");
+        } else if (bucketWidth <= 0) {
+            throw new IllegalArgumentException("Bucket width must be positive.");
+        }
+
+        // Stages for retrieving the numeric values within the time range, sorted by time
+        List<Bson> aggregateStages = createNumericValueStages(idref, startTime, endTime, valuePath);
+
+        // Expression for the time of the value logs in epoch milliseconds
+        Document timeMillis = new Document("$toLong", "$" + TIME_FIELD_NAME);
+
+        // Group by the start of the bucket to which the value logs belong
+        Document bucketStart = new Document("$subtract", Arrays.asList(timeMillis, new Document("$mod", Arrays.asList(timeMillis, bucketWidth))));
+        String numericValue = "$" + NUMERIC_VALUE_FIELD_NAME;
+        aggregateStages.add(Aggregates.group(bucketStart,
+                Accumulators.sum("count", 1),
+                Accumulators.min("min", numericValue),
+                Accumulators.max("max", numericValue),
+                Accumulators.avg("avg", numericValue),
+                Accumulators.stdDevPop("stdDev", numericValue),
+                Accumulators.first("first", numericValue),
+                Accumulators.last("last", numericValue)));
+
+        // Sort the buckets by time and limit their number
+        aggregateStages.add(Aggregates.sort(new Document("_id", 1)));
+        aggregateStages.add(Aggregates.limit(maxBuckets));
+
+        // Perform aggregation
+        List<Document> resultList = new ArrayList<>();
+        this.valueLogCollection.aggregate(aggregateStages, Document.class).allowDiskUse(true).forEach((Consumer<Document>) resultList::add);
+        return resultList;
+    }
+
+    /**
+     * Returns a cursor over the numeric values at a given path of the value logs that match a certain id reference
+     * of a component and lie within a given time range, sorted ascending by time. Each returned document only
+     * consists of the fields {@code time} and {@link #NUMERIC_VALUE_FIELD_NAME}, such that only a small fraction of
+     * the value log data needs to be transferred. Value logs whose value at the path cannot be converted to a
+     * number are ignored. The cursor must be closed by the caller.
+     *
+     * @param idref     The idref to match
+     * @param startTime The inclusive start of the time range or null, if not bounded
+     * @param endTime   The exclusive end of the time range or null, if not bounded
+     * @param valuePath The dot-separated path of the numeric field within the value of the value logs
+     * @return The cursor over the numeric values
+     */
+    public MongoCursor<Document> findNumericValuesByIdRefAndTimeRangeAsCursor(String idref, Instant startTime, Instant endTime, String valuePath) {
+        // Sanity check
+        if ((idref == null) || idref.isEmpty()) {
+            throw new IllegalArgumentException("Idref must not be null or empty.");
+        }
+
+        // Perform aggregation and return cursor
+        return this.valueLogCollection.aggregate(createNumericValueStages(idref, startTime, endTime, valuePath), Document.class)
+                .allowDiskUse(true).batchSize(CURSOR_BATCH_SIZE).cursor();
+    }
+
+    /**
+     * Calculates descriptive statistics for the numeric values at a given list of paths of all value logs that
+     * match a certain id reference of a component. All statistics are calculated within the database in a single
+     * pass over the value logs, without sorting them. The resulting document contains the fields {@code count},
+     * {@code firstLog} and {@code lastLog} as well as the field {@code fields}, which holds one document per path
+     * (in the order of the given paths) with the fields {@code count}, {@code min}, {@code max}, {@code avg},
+     * {@code stdDev}, {@code minLog} and {@code maxLog}. All value logs are returned as {@link ValueLog} objects.
+     * Values that cannot be converted to a number are ignored.
+     *
+     * @param idref      The idref to match
+     * @param valuePaths The dot-separated paths of the numeric fields within the values of the value logs
+     * @return The document holding the resulting statistics or null, if no value logs exist
+     */
+    public Document aggregateStatisticsByIdRef(String idref, List<String> valuePaths) {
+        // Sanity checks
+        if ((idref == null) || idref.isEmpty()) {
+            throw new IllegalArgumentException("Idref must not be null or empty.");
+        } else if (valuePaths == null) {
+            throw new IllegalArgumentException("Value paths must not be null.");
+        }
+
+        // Stages for retrieving all value logs
+        List<Bson> aggregateStages = createTimeRangeStages(idref, null, null);
+
+        // Extract the numeric values at all paths into a sub-document
+        Document numericValues = new Document();
+        for (int i = 0; i < valuePaths.size(); i++) {
+            String valuePath = valuePaths.get(i);
+            if (!ValueLogRollupRepository.isValidPath(valuePath)) {
+                throw new IllegalArgumentException("Value path must be a valid dot-separated path.");
+            }
+            numericValues.append("p" + i, createNumericConversion(valuePath));
+        }
+        aggregateStages.add(Aggregates.addFields(new Field<>(NUMERIC_VALUE_FIELD_NAME, numericValues)));
+
+        // Accumulators for the whole value logs; documents are compared field by field, thus by time first
+        List<BsonField> accumulators = new ArrayList<>();
+        accumulators.add(Accumulators.sum("count", 1));
+        accumulators.add(Accumulators.min("firstLog", new Document("t", "$" + TIME_FIELD_NAME).append("log", "$$ROOT")));
+        accumulators.add(Accumulators.max("lastLog", new Document("t", "$" + TIME_FIELD_NAME).append("log", "$$ROOT")));
+
+        // Accumulators per path; null values are ignored by all accumulators
+        for (int i = 0; i < valuePaths.size(); i++) {
+            String numericValue = "$" + NUMERIC_VALUE_FIELD_NAME + ".p" + i;
+            Document isNull = new Document("$eq", Arrays.asList(numericValue, null));
+            Document valueWithLog = new Document("$cond", Arrays.asList(isNull, "$$REMOVE",
+                    new Document("v", numericValue).append("log", "$$ROOT")));
+            accumulators.add(Accumulators.sum("count" + i, new Document("$cond", Arrays.asList(isNull, 0, 1))));
+            accumulators.add(Accumulators.min("min" + i, numericValue));
+            accumulators.add(Accumulators.max("max" + i, numericValue));
+            accumulators.add(Accumulators.avg("avg" + i, numericValue));
+            accumulators.add(Accumulators.stdDevPop("stdDev" + i, numericValue));
+            accumulators.add(Accumulators.min("minLog" + i, valueWithLog));
+            accumulators.add(Accumulators.max("maxLog" + i, valueWithLog));
+        }
+        aggregateStages.add(Aggregates.group(null, accumulators));
+
+        // Perform aggregation
+        Document result = this.valueLogCollection.aggregate(aggregateStages, Document.class).allowDiskUse(true).first();
+        if (result == null) {
+            return null;
+        }
+
+        // Restructure the result
+        Document statistics = new Document("count", result.get("count"))
+                .append("firstLog", decodeValueLog(result.get("firstLog", Document.class).get("log", Document.class)))
+                .append("lastLog", decodeValueLog(result.get("lastLog", Document.class).get("log", Document.class)));
+        List<Document> fields = new ArrayList<>();
+        for (int i = 0; i < valuePaths.size(); i++) {
+            Document minLog = result.get("minLog" + i, Document.class);
+            Document maxLog = result.get("maxLog" + i, Document.class);
+            fields.add(new Document("count", result.get("count" + i))
+                    .append("min", result.get("min" + i))
+                    .append("max", result.get("max" + i))
+                    .append("avg", result.get("avg" + i))
+                    .append("stdDev", result.get("stdDev" + i))
+                    .append("minLog", (minLog == null) ? null : decodeValueLog(minLog.get("log", Document.class)))
+                    .append("maxLog", (maxLog == null) ? null : decodeValueLog(maxLog.get("log", Document.class))));
+        }
+        statistics.append("fields", fields);
+        return statistics;
+    }
+
+    /**
+     * Decodes a given document that was returned from an aggregation to a {@link ValueLog} object. Fields that
+     * do not belong to value logs are ignored.
+     *
+     * @param document The document to decode
+     * @return The resulting value log
+     */
+    private ValueLog decodeValueLog(Document document) {
+        // Get codec registry of the database
+        CodecRegistry codecRegistry = this.valueLogDatabase.getCodecRegistry();
+
+        // Decode document by using the codec for value logs
+        BsonDocument bsonDocument = document.toBsonDocument(Document.class, codecRegistry);
+        return codecRegistry.get(ValueLog.class).decode(new BsonDocumentReader(bsonDocument), DecoderContext.builder().build());
+    }
+
+    /**
+     * Creates the aggregation stages that select the numeric values at a given path of all value logs of a certain
+     * idref within a given time range, sorted ascending by time. Value logs whose value at the path cannot be
+     * converted to a number are filtered out.
+     *
+     * @param idref     The idref to match
+     * @param startTime The inclusive start of the time range or null, if not bounded
+     * @param endTime   The exclusive end of the time range or null, if not bounded
+     * @param valuePath The dot-separated path of the numeric field within the value of the value logs
+     * @return The list of aggregation stages
+     */
+    private List<Bson> createNumericValueStages(String idref, Instant startTime, Instant endTime, String valuePath) {
+        // Sanity check for the path, as it becomes part of an aggregation expression
+        if (!ValueLogRollupRepository.isValidPath(valuePath)) {
+            throw new IllegalArgumentException("Value path must be a valid dot-separated path.");
+        }
+
+        // Stages for retrieving all value logs within the time range
+        List<Bson> stages = createTimeRangeStages(idref, startTime, endTime);
+
+        // Extract the numeric value at the path
+        stages.add(Aggregates.project(new Document("_id", 0).append(TIME_FIELD_NAME, 1)
+                .append(NUMERIC_VALUE_FIELD_NAME, createNumericConversion(valuePath))));
+
+        // Ignore value logs without numeric value
+        stages.add(Aggregates.match(Filters.ne(NUMERIC_VALUE_FIELD_NAME, null)));
+
+        // Sort by time
+        stages.add(Aggregates.sort(new Document(TIME_FIELD_NAME, 1)));
+
+        return stages;
+    }
+
+    /**
+     * Creates an aggregation expression that converts the value at a given path within the value of a value log
+     * to a double. Consistent with {@link de.ipvs.as.mbp.util.DocumentReader#toNumericValue(Object)}, only numbers
+     * and numeric strings are converted, while all other values (e.g. booleans and dates) result in null.
+     *
+     * @param valuePath The dot-separated path of the numeric field within the value of the value logs
+     * @return The resulting aggregation expression
+     */
+    private static Document createNumericConversion(String valuePath) {
+        String input = "$" + VALUE_FIELD_NAME + "." + valuePath;
+        Document isConvertible = new Document("$in", Arrays.asList(new Document("$type", input),
+                Arrays.asList("double", "int", "long", "decimal", "string")));
+        Document conversion = new Document("$convert", new Document("input", input)
+                .append("to", "double").append("onError", null).append("onNull", null));
+        return new Document("$cond", Arrays.asList(isConvertible, conversion, null));
+    }
+
+    /**
+     * Creates the aggregation stages that select all value logs of a certain idref within a given time range.
+     * The documents are first pruned by their first and last timestamps, such that only the documents that
+     * may contain matching value logs are unwound, before the value logs are filtered exactly.
+     *
+     * @param idref     The idref to match
+     * @param startTime The inclusive start of the time range or null, if not bounded
+     * @param endTime   The exclusive end of the time range or null, if not bounded
+     * @return The list of aggregation stages
+     */
+    private List<Bson> createTimeRangeStages(String idref, Instant startTime, Instant endTime) {
+        // List of all aggregation stages to execute
+        List<Bson> stages = new ArrayList<>();
+
+        // Coarse-grained matching on document level
+        stages.add(Aggregates.match(createTimeRangeDocumentFilter(idref, startTime, endTime)));
+
+        // Unwinding and fine-grained matching on value log level
+        stages.addAll(createValueLogStages(startTime, endTime));
+
+        return stages;
+    }
+
+    /**
+     * Creates the filter that selects all documents of a certain idref that may contain value logs within a given
+     * time range, based on their first and last timestamps.
+     *
+     * @param idref     The idref to match
+     * @param startTime The inclusive start of the time range or null, if not bounded
+     * @param endTime   The exclusive end of the time range or null, if not bounded
+     * @return The resulting filter
+     */
+    private Bson createTimeRangeDocumentFilter(String idref, Instant startTime, Instant endTime) {
+        // Filters on document level
+        List<Bson> documentFilters = new ArrayList<>();
+        documentFilters.add(Filters.eq(IDREF_FIELD_NAME, idref));
+
+        // Consider start time (first and last are stored as epoch seconds)
+        if (startTime != null) {
+            documentFilters.add(Filters.gte(LAST_FIELD_NAME, startTime.getEpochSecond()));
+        }
+
+        // Consider end time
+        if (endTime != null) {
+            documentFilters.add(Filters.lte(FIRST_FIELD_NAME, endTime.getEpochSecond()));
+        }
+
+        return Filters.and(documentFilters);
+    }
+
+    /**
+     * Creates an aggregation expression that determines the number of value logs of a document that lie within a
+     * given time range. For documents that lie completely within the time range, the number of values stored in the
+     * document is used; only the value logs of the documents at the edges of the time range are inspected.
+     *
+     * @param startTime The inclusive start of the time range or null, if not bounded
+     * @param endTime   The exclusive end of the time range or null, if not bounded
+     * @return The resulting expression
+     */
+    private Document createInRangeCountExpression(Instant startTime, Instant endTime) {
+        // Conditions for documents lying completely within the time range and for single value logs
+        List<Document> documentConditions = new ArrayList<>();
+        List<Document> valueLogConditions = new ArrayList<>();
+
+        // Consider start time (all value logs of a document are at or after its first second)
+        if (startTime != null) {
+            long firstInnerSecond = Math.floorDiv(startTime.toEpochMilli() + 999, 1000);
+            documentConditions.add(new Document("$gte", Arrays.asList("$" + FIRST_FIELD_NAME, firstInnerSecond)));
+            valueLogConditions.add(new Document("$gte", Arrays.asList("$$v." + TIME_FIELD_NAME, Date.from(startTime))));
+        }
+
+        // Consider end time (all value logs of a document are before the end of its last second)
+        if (endTime != null) {
+            long endSecond = Math.floorDiv(endTime.toEpochMilli(), 1000);
+            documentConditions.add(new Document("$lt", Arrays.asList("$" + LAST_FIELD_NAME, endSecond)));
+            valueLogConditions.add(new Document("$lt", Arrays.asList("$$v." + TIME_FIELD_NAME, Date.from(endTime))));
+        }
+
+        // Without time range, all values of the documents are counted
+        if (documentConditions.isEmpty()) {
+            return new Document("$ifNull", Arrays.asList("$nvalues", 0));
+        }
+
+        // Count the matching value logs of the documents at the edges of the time range
+        Document edgeCount = new Document("$size", new Document("$filter", new Document("input", "$values")
+                .append("as", "v").append("cond", new Document("$and", valueLogConditions))));
+
+        return new Document("$cond", Arrays.asList(new Document("$and", documentConditions),
+                new Document("$ifNull", Arrays.asList("$nvalues", 0)), edgeCount));
+    }
+
+    /**
+     * Creates the aggregation stages that unwind the value logs of the selected documents and filter them
+     * exactly by a given time range.
+     *
+     * @param startTime The inclusive start of the time range or null, if not bounded
+     * @param endTime   The exclusive end of the time range or null, if not bounded
+     * @return The list of aggregation stages
+     */
+    private List<Bson> createValueLogStages(Instant startTime, Instant endTime) {
+        // Filters on value log level
+        List<Bson> valueLogFilters = new ArrayList<>();
+        if (startTime != null) {
+            valueLogFilters.add(Filters.gte(TIME_FIELD_NAME, Date.from(startTime)));
+        }
+        if (endTime != null) {
+            valueLogFilters.add(Filters.lt(TIME_FIELD_NAME, Date.from(endTime)));
+        }
+
+        // List of all aggregation stages to execute
+        List<Bson> stages = new ArrayList<>();
+
+        // Unwinding
+        stages.add(Aggregates.unwind("$values"));
+
+        // Replace root elements with value log sub-documents
+        stages.add(Aggregates.replaceRoot("$values"));
+
+        // Fine-grained matching on value log level
+        if (!valueLogFilters.isEmpty()) {
+            stages.add(Aggregates.match(Filters.and(valueLogFilters)));
+        }
+
+        return stages;
+    }
+
+    /**
+     * Finds a value log by component id and timestamp when the ValueLog was initially created. Usually, the value log
+     * is contained in the latest document of the component that starts before the timestamp, which can be found by
+     * a bounded scan of the index; only the matching value log is returned from it. Since documents may overlap if
+     * value logs arrived out of order, all documents whose first and last timestamps enclose the given timestamp are
+     * considered if the value log is not contained in this document.
      *
      * @param idRef The component id which belongs to the value log.
      * @param timestamp The timestamp when the value log was initally created by the MBP
      * @return The requested ValueLog, null if no ValueLog fits the requirements.
      */
     public ValueLog findByIdRefAndTimeStamp(String idRef, Instant timestamp) {
-        // Get all value logs of with the idRef
-        List<ValueLog> allValueLogsOfRequestedComponent = this.findAllByIdRef(idRef);
+        // Sanity checks
+        if ((idRef == null) || idRef.isEmpty()) {
+            throw new IllegalArgumentException("Idref must not be null or empty.");
+        } else if (timestamp == null) {
+            throw new IllegalArgumentException("Timestamp must not be null.");
+        }
+
+        // Only return the last timestamp and the matching value log of the documents
+        long epochSeconds = timestamp.getEpochSecond();
+        Bson valueLogFilter = Filters.eq(TIME_FIELD_NAME, Date.from(timestamp));
+        Bson projection = Projections.fields(Projections.excludeId(), Projections.include(LAST_FIELD_NAME),
+                Projections.elemMatch("values", valueLogFilter));
 
-        // Find the valueLog with the specified timestamp
-        for (ValueLog v : allValueLogsOfRequestedComponent) {
-            if (v.getTime().equals(timestamp)) {
-                return v;
+        // Find the latest document that starts before the timestamp (first and last are stored as epoch seconds)
+        MongoCollection<Document> collection = this.valueLogCollection.withDocumentClass(Document.class);
+        Document document = collection.find(Filters.and(Filters.eq(IDREF_FIELD_NAME, idRef),
+                        Filters.lte(FIRST_FIELD_NAME, epochSeconds)))
+                .sort(new Document(FIRST_FIELD_NAME, -1)).limit(1).projection(projection).first();
+        if (document == null) {
+            return null;
+        }
+
+        // Check whether the document contains the value log
+        Object last = document.get(LAST_FIELD_NAME);
+        List<Document> values = document.getList("values", Document.class);
+        if ((last instanceof Number) && (((Number) last).longValue() >= epochSeconds) && (values != null) && (!values.isEmpty())) {
+            return decodeValueLog(values.get(0));
+        }
+
+        // Fall back to all documents that enclose the timestamp, in case documents overlap
+        document = collection.find(Filters.and(Filters.eq(IDREF_FIELD_NAME, idRef),
+                Filters.lte(FIRST_FIELD_NAME, epochSeconds),
+                Filters.gte(LAST_FIELD_NAME, epochSeconds),
+                Filters.elemMatch("values", valueLogFilter))).projection(projection).first();
+        if (document == null) {
+            return null;
+        }
+        values = document.getList("values", Document.class);
+        return ((values == null) || values.isEmpty()) ? null : decodeValueLog(values.get(0));
+    }
+
+    /**
+     * Finds multiple value logs by their component ids and the timestamps when they were initially created
+     * within a single query, e.g. for retrieving the value logs of all events of a rule trigger at once. Only the
+     * documents whose first and last timestamps enclose the given timestamps of the respective component
+     * are considered.
+     *
+     * @param timestamps Map (component id -> timestamps) of the value logs to find
+     * @return The list of found value logs; value logs that could not be found are omitted
+     */
+    public List<ValueLog> findAllByIdRefAndTimeStamps(Map<String, ? extends Collection<Instant>> timestamps) {
+        // Sanity check
+        if (timestamps == null) {
+            throw new IllegalArgumentException("Timestamps must not be null.");
+        }
+
+        // Build filters on document and value log level for each component
+        List<Bson> documentFilters = new ArrayList<>();
+        List<Bson> valueLogFilters = new ArrayList<>();
+        for (Map.Entry<String, ? extends Collection<Instant>> entry : timestamps.entrySet()) {
+            if ((entry.getKey() == null) || (entry.getValue() == null) || entry.getValue().isEmpty()) {
+                continue;
             }
+
+            // Determine the time range of the timestamps and convert them to dates
+            List<Date> dates = new ArrayList<>();
+            long firstEpochSeconds = Long.MAX_VALUE;
+            long lastEpochSeconds = Long.MIN_VALUE;
+            for (Instant timestamp : entry.getValue()) {
+                dates.add(Date.from(timestamp));
+                firstEpochSeconds = Math.min(firstEpochSeconds, timestamp.getEpochSecond());
+                lastEpochSeconds = Math.max(lastEpochSeconds, timestamp.getEpochSecond());
+            }
+
+            documentFilters.add(Filters.and(Filters.eq(IDREF_FIELD_NAME, entry.getKey()),
+                    Filters.lte(FIRST_FIELD_NAME, lastEpochSeconds),
+                    Filters.gte(LAST_FIELD_NAME, firstEpochSeconds),
+                    Filters.elemMatch("values", Filters.in(TIME_FIELD_NAME, dates))));
+            valueLogFilters.add(Filters.and(Filters.eq(IDREF_FIELD_NAME, entry.getKey()), Filters.in(TIME_FIELD_NAME, dates)));
         }
 
-        // No ValueLog found which matches the requirements
-        return null;
+        // Check if there is anything to find
+        List<ValueLog> resultList = new ArrayList<>();
+        if (documentFilters.isEmpty()) {
+            return resultList;
+        }
+
+        // Match the documents, unwind them and match the value logs
+        List<Bson> stages = Arrays.asList(Aggregates.match(Filters.or(documentFilters)),
+                Aggregates.unwind("$values"),
+                Aggregates.replaceRoot("$values"),
+                Aggregates.match(Filters.or(valueLogFilters)));
+
+        // Perform aggregation and convert the result to a list
+        this.valueLogCollection.aggregate(stages, ValueLog.class).forEach((Consumer<ValueLog>) resultList::add);
+        return resultList;
+    }
+
+    /**
+     * Determines the time span that is covered by the value logs of a certain idref within a given time range.
+     * Only the first and last timestamps of the documents are considered, such that the value logs do not need to
+     * be unwound; hence, the returned span may exceed the time range by the documents at its edges.
+     *
+     * @param idref     The idref to match
+     * @param startTime The inclusive start of the time range or null, if not bounded
+     * @param endTime   The exclusive end of the time range or null, if not bounded
+     * @return Document with the fields {@code first} and {@code last} (epoch seconds) or null, if no value logs exist
+     */
+    public Document findTimeBoundsByIdRefAndTimeRange(String idref, Instant startTime, Instant endTime) {
+        // Sanity check
+        if ((idref == null) || idref.isEmpty()) {
+            throw new IllegalArgumentException("Idref must not be null or empty.");
+        }
+
+        // Determine the minimum first and the maximum last timestamp of the matching documents
+        return this.valueLogCollection.aggregate(Arrays.asList(
+                Aggregates.match(createTimeRangeDocumentFilter(idref, startTime, endTime)),
+                Aggregates.group(null, Accumulators.min(FIRST_FIELD_NAME, "$" + FIRST_FIELD_NAME),
+                        Accumulators.max(LAST_FIELD_NAME, "$" + LAST_FIELD_NAME))), Document.class).first();
     }
 
     /**
-     * Deletes all value logs that match a given idref.
+     * Checks whether value logs exist for a certain idref that were received before a given time. Only the
+     * first timestamps of the documents are considered, such that the check can be answered from the index.
+     *
+     * @param idref The idref to match
+     * @param time  The time to check against
+     * @return True, if value logs exist before the given time; false otherwise
+     */
+    public boolean existsByIdRefBefore(String idref, Instant time) {
+        // Sanity check
+        if ((idref == null) || idref.isEmpty()) {
+            throw new IllegalArgumentException("Idref must not be null or empty.");
+        }
+
+        // Look for a document that starts before the given time
+        Bson filter = Filters.and(Filters.eq(IDREF_FIELD_NAME, idref), Filters.lt(FIRST_FIELD_NAME, time.getEpochSecond()));
+        return this.valueLogCollection.countDocuments(filter, new CountOptions().limit(1)) > 0;
+    }
+
+    /**
+     * Returns the distinct idrefs of all components for which value logs are stored.
+     *
+     * @return The list of idrefs
+     */
+    public List<String> findAllIdRefs() {
+        // Retrieve the distinct idrefs from the index
+        return this.valueLogCollection.distinct(IDREF_FIELD_NAME, String.class).into(new ArrayList<>());
+    }
+
+    /**
+     * Deletes a batch of at most a given number of documents of a given idref that only contain value logs which
+     * were received before a given time. Since only whole documents are deleted, value logs of documents that
+     * span the given time are kept until the document as a whole is expired.
+     *
+     * @param idref     The idref to match
+     * @param time      The time before which the value logs are supposed to be deleted
+     * @param batchSize The maximum number of documents to delete
+     * @return The number of deleted documents
+     */
+    public long deleteBatchByIdRefBefore(String idref, Instant time, int batchSize) {
+        // Sanity checks
+        if ((idref == null) || idref.isEmpty()) {
+            throw new IllegalArgumentException("Idref must not be null or empty.");
+        } else if (time == null) {
+            throw new IllegalArgumentException("Time must not be null.");
+        } else if (batchSize <= 0) {
+            throw new IllegalArgumentException("Batch size must be positive.");
+        }
+
+        // Documents that end before the given time (the first timestamp allows to use the index)
+        Bson filter = Filters.and(Filters.eq(IDREF_FIELD_NAME, idref), Filters.lt(FIRST_FIELD_NAME, time.getEpochSecond()),
+                Filters.lt(LAST_FIELD_NAME, time.getEpochSecond()));
+
+        // Retrieve the IDs of the next batch of documents
+        List<Object> ids = new ArrayList<>();
+        for (Document document : this.valueLogCollection.find(filter, Document.class)
+                .projection(Projections.include("_id")).limit(batchSize)) {
+            ids.add(document.get("_id"));
+        }
+
+        // Check if there is anything to delete
+        if (ids.isEmpty()) {
+            return 0;
+        }
+
+        // Delete the documents, unless value logs were pushed into them in the meantime
+        return this.valueLogCollection.deleteMany(Filters.and(Filters.in("_id", ids), filter)).getDeletedCount();
+    }
+
+    /**
+     * Deletes all value logs and their rollups that match a given idref.
      *
      * @param idref The idref to match for
      */
@@ -268,5 +1129,39 @@ public class ValueLogRepository {
 
         // Perform deletion
         this.valueLogCollection.deleteMany(filter);
+
+        // Delete the rollups as well
+        this.valueLogRollupRepository.deleteByIdRef(idref);
+    }
+
+    /**
+     * Chunk of value logs of the same idref that is written into a single document.
+     */
+    static final class BucketChunk {
+        private final List<ValueLog> valueLogs;
+        private final boolean appendToNewest;
+
+        private BucketChunk(List<ValueLog> valueLogs, boolean appendToNewest) {
+            this.valueLogs = valueLogs;
+            this.appendToNewest = appendToNewest;
+        }
+
+        /**
+         * Returns the value logs of the chunk, sorted ascending by time.
+         *
+         * @return The value logs
+         */
+        List<ValueLog> getValueLogs() {
+            return valueLogs;
+        }
+
+        /**
+         * Returns whether the chunk is supposed to be appended to the newest document of the idref.
+         *
+         * @return True, if the chunk is appended to the newest document; false, if it is written into a new document
+         */
+        boolean isAppendToNewest() {
+            return appendToNewest;
+        }
     }
 }
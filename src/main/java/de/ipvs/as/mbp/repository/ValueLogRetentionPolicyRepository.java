@@ -0,0 +1,13 @@
+package de.ipvs.as.mbp.repository;
+
+import de.ipvs.as.mbp.domain.valueLog.ValueLogRetentionPolicy;
+import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.stereotype.Repository;
+
+/**
+ * Repository for saving and loading the component-specific retention policies of value logs.
+ */
+@Repository
+public interface ValueLogRetentionPolicyRepository extends MongoRepository<ValueLogRetentionPolicy, String> {
+
+}
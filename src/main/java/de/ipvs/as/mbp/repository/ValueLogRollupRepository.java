@@ -0,0 +1,376 @@
+package de.ipvs.as.mbp.repository;
+
+import com.mongodb.WriteConcern;
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoDatabase;
+import com.mongodb.client.model.Accumulators;
+import com.mongodb.client.model.Aggregates;
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.IndexOptions;
+import com.mongodb.client.model.Indexes;
+import com.mongodb.client.model.UpdateOneModel;
+import com.mongodb.client.model.UpdateOptions;
+import com.mongodb.client.model.Updates;
+import com.mongodb.client.model.WriteModel;
+import de.ipvs.as.mbp.MongoConfiguration;
+import de.ipvs.as.mbp.domain.valueLog.ValueLogRollup;
+import de.ipvs.as.mbp.domain.valueLog.ValueLogRollupResolution;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Date;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+/**
+ * Repository for persisting and querying rollups of value logs, powered by the MongoDB database. For each
+ * {@link ValueLogRollupResolution}, a separate collection holds one document per component and time interval,
+ * containing the count, sum, sum of squares, minimum, maximum, first and last value of each numeric field of the
+ * value logs within the interval. The rollups are updated incrementally, such that aggregations over long time
+ * ranges can be answered without reading the value logs themselves.<br>
+ * Since rollups are only created for value logs that are written after the rollups were introduced, the
+ * repository additionally stores per component the time since which its rollups are complete, as well as the
+ * gaps, i.e. the time ranges of value logs that could not be added to the rollups.
+ */
+@Component
+public class ValueLogRollupRepository {
+
+    // Prefix of the names of the collections to use for the rollups
+    private static final String COLLECTION_NAME_PREFIX = "mongoValueLogRollups_";
+
+    // Name of the collection to use for the coverage of the rollups
+    private static final String COVERAGE_COLLECTION_NAME = "mongoValueLogRollupCoverage";
+
+    // Names of the fields of the documents in the collections
+    private static final String IDREF_FIELD_NAME = "idref";
+    private static final String TIME_FIELD_NAME = "time";
+    private static final String STATS_FIELD_NAME = "stats";
+    private static final String SINCE_FIELD_NAME = "since";
+    private static final String GAPS_FIELD_NAME = "gaps";
+    private static final String GAP_FROM_FIELD_NAME = "from";
+    private static final String GAP_TO_FIELD_NAME = "to";
+
+    // Map (resolution --> collection) of the rollup collections
+    private final Map<ValueLogRollupResolution, MongoCollection<Document>> rollupCollections;
+
+    // Collection holding the coverage of the rollups per component
+    private final MongoCollection<Document> coverageCollection;
+
+    // IDs of the components for which the coverage is known to be stored already
+    private final Set<String> coveredComponents = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Instantiates the repository by passing a reference to the MongoDB bean that
+     * is supposed to be used (auto-wired).
+     *
+     * @param mongoClient        The MongoDB bean to use
+     * @param mongoConfiguration The MongoDB configuration to use
+     */
+    @Autowired
+    private ValueLogRollupRepository(MongoClient mongoClient, MongoConfiguration mongoConfiguration) {
+        // Get database from configuration
+        MongoDatabase database = mongoClient.getDatabase(mongoConfiguration.getMongoDatabase());
+
+        // Get one collection per resolution and ensure that the required indices exist
+        this.rollupCollections = new EnumMap<>(ValueLogRollupResolution.class);
+        for (ValueLogRollupResolution resolution : ValueLogRollupResolution.values()) {
+            MongoCollection<Document> collection = database.getCollection(COLLECTION_NAME_PREFIX + resolution.getName());
+            collection.createIndex(Indexes.ascending(IDREF_FIELD_NAME, TIME_FIELD_NAME), new IndexOptions().unique(true));
+            this.rollupCollections.put(resolution, collection);
+        }
+
+        // Get coverage collection
+        this.coverageCollection = database.getCollection(COVERAGE_COLLECTION_NAME);
+    }
+
+    /**
+     * Adds the statistics of a given collection of rollups to the stored rollups of a given resolution by using
+     * a single unordered bulk write. Rollups that do not exist yet are created.
+     *
+     * @param resolution   The resolution of the rollups
+     * @param rollups      The rollups to add
+     * @param acknowledged True, if the write is supposed to be acknowledged by the database; false, if the write
+     *                     is supposed to be fire-and-forget
+     */
+    public void incrementAll(ValueLogRollupResolution resolution, Collection<ValueLogRollup> rollups, boolean acknowledged) {
+        // Sanity checks
+        if (resolution == null) {
+            throw new IllegalArgumentException("Resolution must not be null.");
+        } else if (rollups == null) {
+            throw new IllegalArgumentException("Rollups must not be null.");
+        }
+
+        // Create one update per rollup
+        List<WriteModel<Document>> writeModels = new ArrayList<>();
+        for (ValueLogRollup rollup : rollups) {
+            // Skip empty rollups
+            if (rollup.getStatistics().isEmpty()) {
+                continue;
+            }
+
+            // Filtering by idref and interval start time
+            Bson filter = Filters.and(Filters.eq(IDREF_FIELD_NAME, rollup.getIdref()),
+                    Filters.eq(TIME_FIELD_NAME, new Date(rollup.getTime())));
+
+            // Increment the statistics of all fields
+            List<Bson> updates = new ArrayList<>();
+            for (Map.Entry<String, ValueLogRollup.FieldStatistics> entry : rollup.getStatistics().entrySet()) {
+                String prefix = STATS_FIELD_NAME + "." + entry.getKey() + ".";
+                ValueLogRollup.FieldStatistics statistics = entry.getValue();
+                updates.add(Updates.inc(prefix + "count", statistics.getCount()));
+                updates.add(Updates.inc(prefix + "sum", statistics.getSum()));
+                updates.add(Updates.inc(prefix + "sumSq", statistics.getSumSquares()));
+                updates.add(Updates.min(prefix + "min", statistics.getMinimum()));
+                updates.add(Updates.max(prefix + "max", statistics.getMaximum()));
+
+                // First and last values are compared by their time first, since documents are compared field by field
+                updates.add(Updates.min(prefix + "first", new Document("t", new Date(statistics.getFirstTime()))
+                        .append("v", statistics.getFirstValue())));
+                updates.add(Updates.max(prefix + "last", new Document("t", new Date(statistics.getLastTime()))
+                        .append("v", statistics.getLastValue())));
+            }
+
+            writeModels.add(new UpdateOneModel<>(filter, Updates.combine(updates), new UpdateOptions().upsert(true)));
+        }
+
+        // Check if there is anything to write
+        if (writeModels.isEmpty()) {
+            return;
+        }
+
+        // Perform bulk write with the desired write concern
+        rollupCollections.get(resolution).withWriteConcern(acknowledged ? WriteConcern.ACKNOWLEDGED : WriteConcern.UNACKNOWLEDGED)
+                .bulkWrite(writeModels, new BulkWriteOptions().ordered(false));
+    }
+
+    /**
+     * Aggregates the stored rollups of a given resolution for the numeric field at a given path of a certain
+     * component within a given time range into buckets of a fixed width, which must be a multiple of the width of
+     * the resolution. For each non-empty bucket, a document with the fields {@code _id} (start of the bucket in
+     * epoch milliseconds), {@code count}, {@code sum}, {@code sumSq}, {@code min}, {@code max}, {@code first} and
+     * {@code last} is returned. The fields {@code first} and {@code last} are documents holding the time
+     * ({@code t}) and the value ({@code v}) of the first and last value within the bucket; they are null or only
+     * consider parts of the bucket if it contains rollups that were written before first and last values were
+     * recorded.
+     *
+     * @param resolution  The resolution of the rollups to use
+     * @param idref       The idref to match
+     * @param startTime   The inclusive start of the time range or null, if not bounded
+     * @param endTime     The exclusive end of the time range or null, if not bounded
+     * @param valuePath   The dot-separated path of the numeric field within the values of the value logs
+     * @param bucketWidth The width of the buckets in milliseconds
+     * @param maxBuckets  The maximum number of buckets to return
+     * @return The list of resulting buckets, sorted ascending by time
+     */
+    public List<Document> aggregateByIdRefAndTimeRange(ValueLogRollupResolution resolution, String idref, Instant startTime,
+                                                       Instant endTime, String valuePath, long bucketWidth, int maxBuckets) {
+        // Sanity checks
+        if (resolution == null) {
+            throw new IllegalArgumentException("Resolution must not be null.");
+        } else if ((idref == null) || idref.isEmpty()) {
+            throw new IllegalArgumentException("Idref must not be null or empty.");
+        } else if ((bucketWidth <= 0) || ((bucketWidth % resolution.getWidth()) != 0)) {
+            throw new IllegalArgumentException("Bucket width must be a multiple of the resolution.");
+        } else if (!isValidPath(valuePath)) {
+            throw new IllegalArgumentException("Value path must be a valid dot-separated path.");
+        }
+
+        // Prefix of the statistics of the field
+        String prefix = "$" + STATS_FIELD_NAME + "." + valuePath + ".";
+
+        // Filter by idref, time range and existence of the field
+        List<Bson> filters = new ArrayList<>();
+        filters.add(Filters.eq(IDREF_FIELD_NAME, idref));
+        filters.add(Filters.exists(STATS_FIELD_NAME + "." + valuePath + ".count"));
+        if (startTime != null) {
+            filters.add(Filters.gte(TIME_FIELD_NAME, Date.from(startTime)));
+        }
+        if (endTime != null) {
+            filters.add(Filters.lt(TIME_FIELD_NAME, Date.from(endTime)));
+        }
+
+        // List of all aggregation stages to execute
+        List<Bson> aggregateStages = new ArrayList<>();
+        aggregateStages.add(Aggregates.match(Filters.and(filters)));
+
+        // Group by the start of the bucket to which the rollups belong
+        Document timeMillis = new Document("$toLong", "$" + TIME_FIELD_NAME);
+        Document bucketStart = new Document("$subtract", Arrays.asList(timeMillis, new Document("$mod", Arrays.asList(timeMillis, bucketWidth))));
+        aggregateStages.add(Aggregates.group(bucketStart,
+                Accumulators.sum("count", prefix + "count"),
+                Accumulators.sum("sum", prefix + "sum"),
+                Accumulators.sum("sumSq", prefix + "sumSq"),
+                Accumulators.min("min", prefix + "min"),
+                Accumulators.max("max", prefix + "max"),
+                Accumulators.min("first", prefix + "first"),
+                Accumulators.max("last", prefix + "last")));
+
+        // Sort the buckets by time and limit their number
+        aggregateStages.add(Aggregates.sort(new Document("_id", 1)));
+        aggregateStages.add(Aggregates.limit(maxBuckets));
+
+        // Perform aggregation
+        List<Document> resultList = new ArrayList<>();
+        rollupCollections.get(resolution).aggregate(aggregateStages).allowDiskUse(true).forEach((Consumer<Document>) resultList::add);
+        return resultList;
+    }
+
+    /**
+     * Returns the time since which the rollups of a certain component are complete.
+     *
+     * @param idref The idref of the component
+     * @return The time since which the rollups are complete or null, if no rollups exist for the component
+     */
+    public Instant findCoverageStartByIdRef(String idref) {
+        // Retrieve coverage document
+        Document coverage = coverageCollection.find(Filters.eq("_id", idref)).first();
+        if (coverage == null) {
+            return null;
+        }
+        return coverage.getDate(SINCE_FIELD_NAME).toInstant();
+    }
+
+    /**
+     * Records a gap in the rollups of a certain component, i.e. a time range of value logs that could not be
+     * added to the rollups. Gaps are only recorded for components whose coverage is already stored; otherwise,
+     * the coverage will start after the gap anyway.
+     *
+     * @param idref The idref of the component
+     * @param from  The inclusive start of the gap
+     * @param to    The inclusive end of the gap
+     */
+    public void insertGap(String idref, Instant from, Instant to) {
+        coverageCollection.updateOne(Filters.eq("_id", idref), Updates.push(GAPS_FIELD_NAME,
+                new Document(GAP_FROM_FIELD_NAME, Date.from(from)).append(GAP_TO_FIELD_NAME, Date.from(to))));
+    }
+
+    /**
+     * Checks whether a gap is recorded for the rollups of a certain component that overlaps with a given
+     * time range.
+     *
+     * @param idref     The idref of the component
+     * @param startTime The inclusive start of the time range or null, if not bounded
+     * @param endTime   The exclusive end of the time range or null, if not bounded
+     * @return True, if an overlapping gap exists; false otherwise
+     */
+    public boolean existsGapByIdRefWithin(String idref, Instant startTime, Instant endTime) {
+        // Conditions for gaps overlapping with the time range
+        List<Bson> gapFilters = new ArrayList<>();
+        gapFilters.add(Filters.exists(GAP_FROM_FIELD_NAME));
+        if (endTime != null) {
+            gapFilters.add(Filters.lt(GAP_FROM_FIELD_NAME, Date.from(endTime)));
+        }
+        if (startTime != null) {
+            gapFilters.add(Filters.gte(GAP_TO_FIELD_NAME, Date.from(startTime)));
+        }
+
+        return coverageCollection.countDocuments(Filters.and(Filters.eq("_id", idref),
+                Filters.elemMatch(GAPS_FIELD_NAME, Filters.and(gapFilters)))) > 0;
+    }
+
+    /**
+     * Stores the time since which the rollups of a certain component are complete, unless such a time is already
+     * stored for the component.
+     *
+     * @param idref The idref of the component
+     * @param since The time since which the rollups are complete
+     */
+    public void insertCoverageStartIfAbsent(String idref, Instant since) {
+        // Check if the coverage is already known to be stored
+        if (coveredComponents.contains(idref)) {
+            return;
+        }
+
+        // Insert the coverage document if it does not exist yet
+        coverageCollection.updateOne(Filters.eq("_id", idref), Updates.setOnInsert(SINCE_FIELD_NAME, Date.from(since)),
+                new UpdateOptions().upsert(true));
+        coveredComponents.add(idref);
+    }
+
+    /**
+     * Returns whether the time since which the rollups of a certain component are complete is known to be
+     * stored already.
+     *
+     * @param idref The idref of the component
+     * @return True, if the coverage is known to be stored; false otherwise
+     */
+    public boolean isCoverageKnown(String idref) {
+        return coveredComponents.contains(idref);
+    }
+
+    /**
+     * Deletes all rollups of a given idref whose intervals end before a given time. The coverage of the
+     * idref is moved forward accordingly, such that the remaining rollups are not considered to be complete
+     * for the deleted time range.
+     *
+     * @param idref The idref to match for
+     * @param time  The time before which the rollups are supposed to be deleted
+     * @return The number of deleted rollups
+     */
+    public long deleteByIdRefBefore(String idref, Instant time) {
+        // Sanity checks
+        if ((idref == null) || idref.isEmpty()) {
+            throw new IllegalArgumentException("Idref must not be null or empty.");
+        } else if (time == null) {
+            throw new IllegalArgumentException("Time must not be null.");
+        }
+
+        // Move the coverage forward first, so that the rollups to delete are not used anymore, and drop older gaps
+        coverageCollection.updateOne(Filters.eq("_id", idref), Updates.combine(Updates.max(SINCE_FIELD_NAME, Date.from(time)),
+                Updates.pullByFilter(new Document(GAPS_FIELD_NAME, new Document(GAP_TO_FIELD_NAME, new Document("$lt", Date.from(time)))))));
+
+        // Delete the rollups of all resolutions whose intervals end before the given time
+        long deleted = 0;
+        for (Map.Entry<ValueLogRollupResolution, MongoCollection<Document>> entry : rollupCollections.entrySet()) {
+            Date intervalStart = new Date(time.toEpochMilli() - entry.getKey().getWidth());
+            deleted += entry.getValue().deleteMany(Filters.and(Filters.eq(IDREF_FIELD_NAME, idref),
+                    Filters.lte(TIME_FIELD_NAME, intervalStart))).getDeletedCount();
+        }
+        return deleted;
+    }
+
+    /**
+     * Deletes all rollups and the coverage of a given idref.
+     *
+     * @param idref The idref to match for
+     */
+    public void deleteByIdRef(String idref) {
+        // Sanity check
+        if ((idref == null) || idref.isEmpty()) {
+            throw new IllegalArgumentException("Idref must not be null or empty.");
+        }
+
+        // Forget the coverage first, so that it is stored again for new value logs
+        coveredComponents.remove(idref);
+        coverageCollection.deleteOne(Filters.eq("_id", idref));
+
+        // Delete the rollups of all resolutions
+        for (MongoCollection<Document> collection : rollupCollections.values()) {
+            collection.deleteMany(Filters.eq(IDREF_FIELD_NAME, idref));
+        }
+    }
+
+    /**
+     * Checks whether a given path is a valid dot-separated path of field names that can be used within
+     * update operations and aggregation expressions.
+     *
+     * @param path The path to check
+     * @return True, if the path is valid; false otherwise
+     */
+    public static boolean isValidPath(String path) {
+        return (path != null) && (!path.isEmpty()) && (!path.contains("$")) && (!path.startsWith("."))
+                && (!path.endsWith(".")) && (!path.contains(".."));
+    }
+}
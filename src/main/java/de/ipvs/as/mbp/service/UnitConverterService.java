@@ -1,10 +1,12 @@
 package de.ipvs.as.mbp.service;
 
 import de.ipvs.as.mbp.domain.valueLog.ValueLog;
+import de.ipvs.as.mbp.util.DocumentReader;
 import org.bson.Document;
 import org.springframework.stereotype.Component;
 
 import javax.measure.converter.UnitConverter;
+import java.util.List;
 
 /**
  * TODO Must be updated if it should be used with complex iot data
@@ -17,6 +19,9 @@ public class UnitConverterService {
     //Number of decimal places to spare from rounding
     private static final int ROUNDING_DECIMAL_PLACES = 4;
 
+    //Path segment that denotes all elements of an array
+    private static final String ARRAY_SEGMENT = "[*]";
+
     /**
      * Converts the value of a value log into a different unit by using a given unit converter.
      * Rounding to a certain number of decimal places (as specified in ROUNDING_DECIMAL_PLACES)
@@ -30,6 +35,44 @@ public class UnitConverterService {
         //Get value of current log
         double value = Double.valueOf(valueLog.getValue().getDouble("value"));
 
+        //Convert value
+        double convertedValue = convertValue(value, converter);
+
+        //Write value to log
+        valueLog.setValue(new Document("value", convertedValue));
+    }
+
+    /**
+     * Converts the numeric values at a given path within the value of a value log into a different unit by using
+     * a given unit converter. The path consists of dot-separated object keys, while array elements are denoted
+     * by "[*]" (e.g. "sensors[*].temperature"). Numeric strings are converted as well, all other values and
+     * fields of the value remain untouched. Rounding is applied as for {@link #convertValue(double, UnitConverter)}.
+     *
+     * @param valueLog  The value log whose values are supposed to be converted
+     * @param path      The path of the values to convert
+     * @param converter The unit converter which converts the values into the desired target unit
+     */
+    public void convertValueLogValue(ValueLog valueLog, String path, UnitConverter converter) {
+        //Sanity check
+        if ((valueLog == null) || (valueLog.getValue() == null) || (path == null) || path.isEmpty()) {
+            return;
+        }
+
+        //Split the path into its segments and convert the values along it
+        String[] segments = path.replace(ARRAY_SEGMENT, "." + ARRAY_SEGMENT).split("\\.");
+        convertValuesAtPath(valueLog.getValue(), segments, 0, converter);
+    }
+
+    /**
+     * Converts a single numeric value into a different unit by using a given unit converter.
+     * Rounding to a certain number of decimal places (as specified in ROUNDING_DECIMAL_PLACES)
+     * is applied to the resulting value.
+     *
+     * @param value     The value to convert
+     * @param converter The unit converter which converts the value into the desired target unit
+     * @return The converted value
+     */
+    public double convertValue(double value, UnitConverter converter) {
         //Convert value
         double convertedValue = converter.convert(value);
 
@@ -37,9 +80,44 @@ public class UnitConverterService {
         double roundingConst = Math.pow(10, ROUNDING_DECIMAL_PLACES);
 
         //Apply rounding
-        convertedValue = Math.round(convertedValue * roundingConst) / roundingConst;
+        return Math.round(convertedValue * roundingConst) / roundingConst;
+    }
 
-        //Write value to log
-        valueLog.setValue(new Document("value", convertedValue));
+    /**
+     * Recursively converts the numeric values that are reached from a given object by following the remaining
+     * segments of a path, starting at a given index.
+     *
+     * @param current   The current object
+     * @param segments  The segments of the path
+     * @param index     The index of the next segment to follow
+     * @param converter The unit converter to use
+     * @return The converted value if the end of the path has been reached, otherwise the current object
+     */
+    @SuppressWarnings("unchecked")
+    private Object convertValuesAtPath(Object current, String[] segments, int index, UnitConverter converter) {
+        //Skip empty segments, as they result from arrays at the beginning of the path or within arrays
+        while ((index < segments.length) && segments[index].isEmpty()) {
+            index++;
+        }
+
+        //Convert the value at the end of the path if it is numeric
+        if (index >= segments.length) {
+            Double value = DocumentReader.toNumericValue(current);
+            return (value == null) ? current : convertValue(value, converter);
+        }
+
+        //Follow the next segment
+        if (ARRAY_SEGMENT.equals(segments[index])) {
+            if (current instanceof List) {
+                List<Object> list = (List<Object>) current;
+                for (int i = 0; i < list.size(); i++) {
+                    list.set(i, convertValuesAtPath(list.get(i), segments, index + 1, converter));
+                }
+            }
+        } else if ((current instanceof Document) && ((Document) current).containsKey(segments[index])) {
+            Document document = (Document) current;
+            document.put(segments[index], convertValuesAtPath(document.get(segments[index]), segments, index + 1, converter));
+        }
+        return current;
     }
 }
@@ -3,6 +3,7 @@ package de.ipvs.as.mbp.service.access_control;
 import de.ipvs.as.mbp.domain.access_control.ACAbstractCondition;
 import de.ipvs.as.mbp.domain.access_control.ACAccess;
 import de.ipvs.as.mbp.domain.access_control.ACAccessRequest;
+import de.ipvs.as.mbp.domain.access_control.ACConditionEvaluatorNotAvailableException;
 
 /**
  * Abstract base class for all {@link ACAbstractCondition} evaluator implementations.
@@ -21,4 +22,17 @@ public abstract class ACAbstractConditionEvaluator<T extends ACAbstractCondition
 	 */
 	public abstract boolean evaluate(T condition, ACAccess access, ACAccessRequest request);
 	
+	/**
+	 * Compiles a condition into an immutable {@link ACCompiledCondition}. Evaluators should
+	 * override this method in order to resolve as much as possible at compile time; by default,
+	 * the compiled condition simply delegates to {@link #evaluate(ACAbstractCondition, ACAccess, ACAccessRequest)}.
+	 * 
+	 * @param condition the condition.
+	 * @return the compiled condition.
+	 * @throws ACConditionEvaluatorNotAvailableException if the evaluator of a nested condition is not available.
+	 */
+	public ACCompiledCondition compile(T condition) throws ACConditionEvaluatorNotAvailableException {
+		return (access, request) -> evaluate(condition, access, request);
+	}
+	
 }
@@ -1,12 +1,19 @@
 package de.ipvs.as.mbp.service.access_control;
 
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.Field;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 import org.apache.commons.lang3.reflect.FieldUtils;
 import de.ipvs.as.mbp.domain.access_control.ACAccess;
 import de.ipvs.as.mbp.domain.access_control.ACAccessRequest;
+import de.ipvs.as.mbp.domain.access_control.ACAttribute;
 import de.ipvs.as.mbp.domain.access_control.ACAttributeNotAvailableException;
 import de.ipvs.as.mbp.domain.access_control.ACAttributeValue;
 import de.ipvs.as.mbp.domain.access_control.ACConditionSimpleAttributeArgument;
@@ -15,11 +22,23 @@ import de.ipvs.as.mbp.domain.access_control.IACEntity;
 
 /**
  * Service that provides additional attributes used for evaluating access requests.
+ * The fields of entity classes that are annotated with {@link ACAttributeValue} are
+ * resolved only once per class and accessed via {@link MethodHandle method handles}.
  * 
  * @author Jakob Benz
  */
 public class ACAttributeProvider {
 	
+	/**
+	 * Map (field name -> getter) of the attribute value fields per entity class.
+	 */
+	private static final ClassValue<Map<String, MethodHandle>> ATTRIBUTE_ACCESSORS = new ClassValue<Map<String, MethodHandle>>() {
+		@Override
+		protected Map<String, MethodHandle> computeValue(Class<?> entityClass) {
+			return resolveAttributeAccessors(entityClass);
+		}
+	};
+	
 	@SuppressWarnings("unchecked")
 	public <T extends Comparable<T>> Optional<T> getValueForAttributeArgument(ACConditionSimpleAttributeArgument<T> attributeArgument, ACAccess access, ACAccessRequest request) throws ACAttributeNotAvailableException {
 		// Retrieve entity associated with the attribute argument
@@ -27,32 +46,33 @@ public class ACAttributeProvider {
 		
 		// 1) Check whether the corresponding attribute value can be found in the list of attributes from the access request (only if attribute of requesting entity)
 		Optional<T> valueFromRequest = Optional.empty();
-		if (attributeArgument.getKey().getEntityType() == ACEntityType.REQUESTING_ENTITY
-				&& request.getContext().stream().anyMatch(a -> a.getKey().equals(attributeArgument.getKey()))) {
-			valueFromRequest =  Optional.of((T) request.getContext().stream().filter(a -> a.getKey().getId().equals(attributeArgument.getKey().getId())).findFirst().get().getValue());
+		if (attributeArgument.getKey().getEntityType() == ACEntityType.REQUESTING_ENTITY && request.getContext() != null) {
+			for (ACAttribute attribute : request.getContext()) {
+				if (attribute.getKey() == attributeArgument.getKey()) {
+					valueFromRequest = Optional.of((T) attribute.getValue());
+					break;
+				}
+			}
 		}
 		
 		
 		// 2) Check attribute value from records
+		// NOTE: Currently only one-step value lookup paths are supported (more is not needed at the moment)
 		String valuePath = attributeArgument.getKey().getValueLookupPath();
-		String[] valuePathSteps = valuePath.split("\\.");
+		int separatorIndex = valuePath.indexOf('.');
+		String fieldName = separatorIndex < 0 ? valuePath : valuePath.substring(0, separatorIndex);
 		Optional<T> valueFromRecords = Optional.empty();
 		try {
-			// Get all attribute value candidate fields
-			List<Field> fieldsWithAttributeAnnotation = FieldUtils.getFieldsListWithAnnotation(associatedEntity.getClass(), ACAttributeValue.class);
-			for (Field field : fieldsWithAttributeAnnotation) {
-				// NOTE: Currently only one-step value lookup paths are supported (more is not needed at the moment)
-				
-				// Match the field name against the first value path step
-				if (field.getName().equals(valuePathSteps[0])) {					
-					// Lookup the field via the lookup path
-					Field currentField = field;
-					// Make (private) field accessible (only) via reflection
-					currentField.setAccessible(true);
-					valueFromRecords = Optional.of((T) currentField.get(associatedEntity));
+			// Lookup the getter of the attribute value field that matches the first value path step
+			MethodHandle accessor = ATTRIBUTE_ACCESSORS.get(associatedEntity.getClass()).get(fieldName);
+			if (accessor != null) {
+				Object value = invokeAccessor(accessor, associatedEntity);
+				if (value == null) {
+					return Optional.empty();
 				}
+				valueFromRecords = Optional.of((T) value);
 			}
-		} catch (Exception e) {
+		} catch (RuntimeException | ReflectiveOperationException e) {
 			return Optional.empty();
 		}
 		
@@ -69,5 +89,49 @@ public class ACAttributeProvider {
 			return Optional.empty();
 		}
 	}
+	
+	/**
+	 * Reads the value of an attribute value field of an entity via its getter.
+	 * 
+	 * @param accessor the getter of the field.
+	 * @param entity the entity to read the value from.
+	 * @return the value of the field.
+	 * @throws ReflectiveOperationException if the getter fails with a checked exception.
+	 */
+	private static Object invokeAccessor(MethodHandle accessor, Object entity) throws ReflectiveOperationException {
+		try {
+			return (Object) accessor.invokeExact(entity);
+		} catch (RuntimeException | Error e) {
+			throw e;
+		} catch (Throwable e) {
+			throw new ReflectiveOperationException("Failed to read attribute value.", e);
+		}
+	}
+	
+	/**
+	 * Resolves the getters of all fields of an entity class that are annotated with {@link ACAttributeValue}.
+	 * 
+	 * @param entityClass the entity class.
+	 * @return the unmodifiable map (field name -> getter) of the attribute value fields.
+	 */
+	private static Map<String, MethodHandle> resolveAttributeAccessors(Class<?> entityClass) {
+		Map<String, MethodHandle> accessors = new HashMap<>();
+		MethodHandles.Lookup lookup = MethodHandles.lookup();
+		
+		// Get all attribute value candidate fields
+		List<Field> fieldsWithAttributeAnnotation = FieldUtils.getFieldsListWithAnnotation(entityClass, ACAttributeValue.class);
+		for (Field field : fieldsWithAttributeAnnotation) {
+			try {
+				// Make (private) field accessible (only) via reflection and create a generic getter
+				field.setAccessible(true);
+				MethodHandle getter = lookup.unreflectGetter(field).asType(MethodType.methodType(Object.class, Object.class));
+				accessors.put(field.getName(), getter);
+			} catch (Exception e) {
+				// Field is not accessible and thus not available as attribute
+			}
+		}
+		
+		return Collections.unmodifiableMap(accessors);
+	}
 
 }
@@ -0,0 +1,25 @@
+package de.ipvs.as.mbp.service.access_control;
+
+import de.ipvs.as.mbp.domain.access_control.ACAbstractCondition;
+import de.ipvs.as.mbp.domain.access_control.ACAccess;
+import de.ipvs.as.mbp.domain.access_control.ACAccessRequest;
+
+/**
+ * Immutable, compiled form of an {@link ACAbstractCondition}. Compiled conditions are
+ * created once by the corresponding {@link ACAbstractConditionEvaluator} and can then
+ * be evaluated repeatedly without looking up evaluators, loading nested conditions
+ * or parsing expressions.
+ */
+@FunctionalInterface
+public interface ACCompiledCondition {
+	
+	/**
+	 * Evaluates this compiled condition for a specific access request.
+	 * 
+	 * @param access the {@link ACAccess}.
+	 * @param request the {@link ACAccessRequest}.
+	 * @return the result of the condition evaluation.
+	 */
+	boolean evaluate(ACAccess access, ACAccessRequest request);
+	
+}
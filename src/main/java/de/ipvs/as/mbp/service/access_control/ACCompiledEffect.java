@@ -0,0 +1,48 @@
+package de.ipvs.as.mbp.service.access_control;
+
+import java.util.function.DoubleUnaryOperator;
+
+import de.ipvs.as.mbp.domain.access_control.ACAbstractEffect;
+import de.ipvs.as.mbp.domain.valueLog.ValueLog;
+
+/**
+ * Immutable, compiled form of an {@link ACAbstractEffect}. Compiled effects are created
+ * once from the parameters of the effect and can then be applied repeatedly to pages or
+ * streams of value logs without parsing parameters or allocating helper objects per value.
+ */
+@FunctionalInterface
+public interface ACCompiledEffect {
+	
+	/**
+	 * Applies this compiled effect to a given value log. The value log is modified in place.
+	 * 
+	 * @param valueLog the {@link ValueLog} to apply the effect to.
+	 * @return the modified value log.
+	 */
+	ValueLog apply(ValueLog valueLog);
+	
+	/**
+	 * Applies this compiled effect to all given value logs. The value logs are modified in place.
+	 * 
+	 * @param valueLogs the value logs to apply the effect to.
+	 */
+	default void applyAll(Iterable<ValueLog> valueLogs) {
+		for (ValueLog valueLog : valueLogs) {
+			apply(valueLog);
+		}
+	}
+	
+	/**
+	 * Returns the transformation that this effect applies to each single numeric value of a value log,
+	 * if the effect can be expressed as such. In this case, the effect can be applied to numeric values
+	 * that were extracted from the value logs (e.g. within the database) without retrieving the complete
+	 * value logs.
+	 * 
+	 * @return the transformation of numeric values or {@code null}, if the effect can only be applied
+	 *         to complete value logs.
+	 */
+	default DoubleUnaryOperator getValueTransformation() {
+		return null;
+	}
+	
+}
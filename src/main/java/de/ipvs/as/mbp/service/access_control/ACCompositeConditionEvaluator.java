@@ -1,45 +1,106 @@
 package de.ipvs.as.mbp.service.access_control;
 
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 
+import de.ipvs.as.mbp.domain.access_control.ACAbstractCondition;
 import de.ipvs.as.mbp.domain.access_control.ACAccess;
 import de.ipvs.as.mbp.domain.access_control.ACAccessRequest;
 import de.ipvs.as.mbp.domain.access_control.ACCompositeCondition;
+import de.ipvs.as.mbp.domain.access_control.ACConditionEvaluatorNotAvailableException;
+import de.ipvs.as.mbp.domain.access_control.ACLogicalOperator;
 import org.springframework.expression.Expression;
 import org.springframework.expression.ExpressionParser;
 import org.springframework.expression.spel.standard.SpelExpressionParser;
 import org.springframework.expression.spel.support.StandardEvaluationContext;
 
 /**
- * Evaluator for {@link ACCompositeCondition conditions} which uses the Spring Expression Language
+ * Evaluator for {@link ACCompositeCondition conditions}. The nested conditions are compiled once
+ * and combined natively for the logical operators AND and OR. For all other logical operators,
+ * the Spring Expression Language
  * <a href="https://docs.spring.io/spring/docs/current/spring-framework-reference/core.html#expressions">(SpEL)</a>
- * to evaluate the logical condition expressions.
+ * is used to evaluate the logical condition expressions, which are parsed only once at compile time.
  * 
  * @author Jakob Benz
  */
 public class ACCompositeConditionEvaluator extends ACAbstractConditionEvaluator<ACCompositeCondition> {
 	
+	private static final Logger LOGGER = Logger.getLogger(ACCompositeConditionEvaluator.class.getName());
+	
 	public ACCompositeConditionEvaluator() {}
 
 	@Override
 	public boolean evaluate(ACCompositeCondition condition, ACAccess access, ACAccessRequest request) {
-		// Create a list with callbacks (as String) that evaluate the conditions, respectively
-		List<String> argumentExpressions = IntStream.range(0, condition.getConditions().size()).mapToObj(i -> "get(" + i + ").evaluate(#access, #request)").collect(Collectors.toList());
+		try {
+			return compile(condition).evaluate(access, request);
+		} catch (ACConditionEvaluatorNotAvailableException e) {
+			LOGGER.log(Level.WARNING, "Failed to compile composite condition " + condition.getId() + ".", e);
+			return false;
+		}
+	}
+	
+	@Override
+	public ACCompiledCondition compile(ACCompositeCondition condition) throws ACConditionEvaluatorNotAvailableException {
+		// Compile the nested conditions
+		List<ACAbstractCondition> conditions = condition.getConditions();
+		ACCompiledCondition[] compiledConditions = new ACCompiledCondition[conditions.size()];
+		for (int i = 0; i < compiledConditions.length; i++) {
+			compiledConditions[i] = conditions.get(i).compile();
+		}
 		
-		// Create the expression string using the conditions's logical operator
-		String expressionString = condition.getOperator().createExpressionString(argumentExpressions);
+		// Combine the compiled conditions using the condition's logical operator
+		switch (condition.getOperator()) {
+			case AND:
+				return (access, request) -> {
+					for (ACCompiledCondition compiledCondition : compiledConditions) {
+						if (!compiledCondition.evaluate(access, request)) {
+							return false;
+						}
+					}
+					return true;
+				};
+			case OR:
+				return (access, request) -> {
+					for (ACCompiledCondition compiledCondition : compiledConditions) {
+						if (compiledCondition.evaluate(access, request)) {
+							return true;
+						}
+					}
+					return false;
+				};
+			default:
+				return compileExpression(condition.getOperator(), compiledConditions);
+		}
+	}
+	
+	/**
+	 * Combines compiled conditions by parsing the SpEL expression of a logical operator once.
+	 * 
+	 * @param operator the {@link ACLogicalOperator}.
+	 * @param compiledConditions the compiled conditions to combine.
+	 * @return the combined {@link ACCompiledCondition}.
+	 */
+	private ACCompiledCondition compileExpression(ACLogicalOperator operator, ACCompiledCondition[] compiledConditions) {
+		// Create a list with callbacks (as String) that evaluate the conditions, respectively
+		List<String> argumentExpressions = IntStream.range(0, compiledConditions.length).mapToObj(i -> "get(" + i + ").evaluate(#access, #request)").collect(Collectors.toList());
 		
-		// Setup the evaluation context and the expression parser
-		StandardEvaluationContext context = new StandardEvaluationContext(condition.getConditions());
-		context.setVariable("access", access);
-		context.setVariable("request", request);
+		// Create and parse the expression string using the conditions's logical operator
 		ExpressionParser parser = new SpelExpressionParser();
+		Expression expression = parser.parseExpression(operator.createExpressionString(argumentExpressions));
+		List<ACCompiledCondition> conditions = Collections.unmodifiableList(Arrays.asList(compiledConditions));
 		
-		// Parse & evaluate the expression and return the result
-		Expression expression = parser.parseExpression(expressionString);
-		return expression.getValue(context, Boolean.class);
+		return (access, request) -> {
+			// Setup the evaluation context and evaluate the expression
+			StandardEvaluationContext context = new StandardEvaluationContext(conditions);
+			context.setVariable("access", access);
+			context.setVariable("request", request);
+			return expression.getValue(context, Boolean.class);
+		};
 	}
 	
 }
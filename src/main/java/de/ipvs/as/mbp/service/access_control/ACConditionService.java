@@ -31,6 +31,9 @@ public class ACConditionService {
 	@Autowired
 	private ACConditionRepository conditionRepository;
 	
+	@Autowired
+	private ACPolicyCache policyCache;
+	
 	// - - -
 	
 	public List<ACAbstractCondition> getAll(Pageable pageable) {
@@ -82,7 +85,9 @@ public class ACConditionService {
 			throw new MBPException(HttpStatus.INTERNAL_SERVER_ERROR, "Policy condition could not be parsed!");
 		}
 		
-		return conditionRepository.save(condition);
+		condition = conditionRepository.save(condition);
+		policyCache.invalidateCondition(condition.getId());
+		return condition;
 	}
 	
 	public void delete(String id, String ownerId) throws EntityNotFoundException, MissingOwnerPrivilegesException, EntityStillInUseException {
@@ -96,6 +101,7 @@ public class ACConditionService {
 		
     	// Actually delete condition in the database
     	conditionRepository.deleteById(id);
+    	policyCache.invalidateCondition(id);
 	}
 
 }
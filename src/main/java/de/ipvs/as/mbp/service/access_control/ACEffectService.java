@@ -31,6 +31,9 @@ public class ACEffectService {
 	@Autowired
 	private ACEffectRepository effectRepository;
 	
+	@Autowired
+	private ACPolicyCache policyCache;
+	
 	// - - -
 	
 	public List<ACAbstractEffect> getAll(Pageable pageable) {
@@ -45,6 +48,21 @@ public class ACEffectService {
 		return effectRepository.findById(id).orElseThrow(() -> new EntityNotFoundException("Policy effect", id));
 	}
 	
+	/**
+	 * Retrieves the compiled form of the effect with the given id from the {@link ACPolicyCache},
+	 * such that it can be applied without loading and compiling the effect for each request.
+	 * 
+	 * @param id the id of the effect.
+	 * @return the {@link ACCompiledEffect} or {@code null}, if the id is {@code null}.
+	 * @throws EntityNotFoundException if no effect with the given id exists.
+	 */
+	public ACCompiledEffect getCompiledForId(String id) throws EntityNotFoundException {
+		if (id == null) {
+			return null;
+		}
+		return policyCache.getCompiledEffect(id).orElseThrow(() -> new EntityNotFoundException("Policy effect", id));
+	}
+	
 	public ACAbstractEffect getForIdAndOwner(String id, String ownerId) throws EntityNotFoundException, MissingOwnerPrivilegesException {
 		ACAbstractEffect effect = getForId(id);
 		
@@ -75,7 +93,16 @@ public class ACEffectService {
 			throw new MBPException(HttpStatus.INTERNAL_SERVER_ERROR, "Effect could not be created!");
 		}
 		
-		return effectRepository.save(effect);
+		// Check whether the effect can be compiled with the given parameters
+		try {
+			effect.compile();
+		} catch (IllegalArgumentException e) {
+			throw new MBPException(HttpStatus.BAD_REQUEST, e.getMessage());
+		}
+		
+		effect = effectRepository.save(effect);
+		policyCache.invalidateEffect(effect.getId());
+		return effect;
 	}
 	
 	public void delete(String id, String ownerId) throws EntityNotFoundException, MissingOwnerPrivilegesException, EntityStillInUseException {
@@ -89,6 +116,7 @@ public class ACEffectService {
 		
     	// Actually delete effect in the database
 		effectRepository.deleteById(id);
+		policyCache.invalidateEffect(id);
 	}
 
 }
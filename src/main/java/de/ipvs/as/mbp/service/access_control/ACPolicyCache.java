@@ -0,0 +1,276 @@
+package de.ipvs.as.mbp.service.access_control;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import de.ipvs.as.mbp.domain.access_control.ACAbstractCondition;
+import de.ipvs.as.mbp.domain.access_control.ACAbstractEffect;
+import de.ipvs.as.mbp.domain.access_control.ACConditionEvaluatorNotAvailableException;
+import de.ipvs.as.mbp.domain.access_control.ACPolicy;
+import de.ipvs.as.mbp.repository.ACConditionRepository;
+import de.ipvs.as.mbp.repository.ACEffectRepository;
+import de.ipvs.as.mbp.repository.ACPolicyRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Cache for {@link ACPolicy policies}, their {@link ACCompiledCondition compiled conditions}
+ * and their {@link ACCompiledEffect compiled effects}, such that access requests can be evaluated
+ * and effects can be applied without querying the database and without instantiating condition
+ * evaluators or parsing effect parameters. Policies and conditions that are not cached yet
+ * are loaded from the database with a single query each. Entries are invalidated when policies, conditions
+ * or effects are created or deleted; in addition, they expire after a configurable time in order to
+ * pick up changes that were made to the database directly.
+ * <p>
+ * Note that the cached policies are shared and must not be modified.
+ */
+@Component
+public class ACPolicyCache {
+	
+	private static final Logger LOGGER = Logger.getLogger(ACPolicyCache.class.getName());
+	
+	/**
+	 * Names under which the metrics of the caches are published.
+	 */
+	private static final String POLICY_CACHE_NAME = "ac_policies";
+	private static final String CONDITION_CACHE_NAME = "ac_conditions";
+	private static final String EFFECT_CACHE_NAME = "ac_effects";
+	
+	/**
+	 * Compiled condition that is used for conditions that do not exist or cannot be compiled.
+	 */
+	public static final ACCompiledCondition DENY = (access, request) -> false;
+	
+	/**
+	 * Compiled effect that is used for effects that cannot be compiled and that withholds the values of all value logs.
+	 */
+	public static final ACCompiledEffect WITHHOLD = valueLog -> valueLog.setValue(new org.bson.Document());
+	
+	/**
+	 * Cache (policy id -> policy) of the policies, including non-existing ones.
+	 */
+	private final Cache<String, Optional<ACPolicy>> policies;
+	
+	/**
+	 * Cache (condition id -> compiled condition) of the compiled conditions.
+	 */
+	private final Cache<String, ACCompiledCondition> conditions;
+	
+	/**
+	 * Cache (effect id -> compiled effect) of the compiled effects, including non-existing ones.
+	 */
+	private final Cache<String, Optional<ACCompiledEffect>> effects;
+	
+	private final ACPolicyRepository policyRepository;
+	
+	private final ACConditionRepository conditionRepository;
+	
+	private final ACEffectRepository effectRepository;
+	
+	// - - -
+	
+	/**
+	 * Creates the cache by passing references to the required repositories and the cache settings (auto-wired).
+	 * 
+	 * @param policyRepository the {@link ACPolicyRepository} to load the policies from.
+	 * @param conditionRepository the {@link ACConditionRepository} to load the conditions from.
+	 * @param effectRepository the {@link ACEffectRepository} to load the effects from.
+	 * @param meterRegistry the {@link MeterRegistry} to publish the hit/miss metrics of the caches to.
+	 * @param maximumSize the maximum number of cached policies, conditions and effects, respectively.
+	 * @param expireAfterWrite the time in milliseconds after which cached entries are reloaded.
+	 */
+	@Autowired
+	public ACPolicyCache(ACPolicyRepository policyRepository, ACConditionRepository conditionRepository,
+						 ACEffectRepository effectRepository, MeterRegistry meterRegistry,
+						 @Value("${access_control.cache.maximum_size:10000}") long maximumSize,
+						 @Value("${access_control.cache.expire_after_write:600000}") long expireAfterWrite) {
+		this.policyRepository = policyRepository;
+		this.conditionRepository = conditionRepository;
+		this.effectRepository = effectRepository;
+		
+		this.policies = Caffeine.newBuilder()
+				.maximumSize(maximumSize)
+				.expireAfterWrite(expireAfterWrite, TimeUnit.MILLISECONDS)
+				.recordStats()
+				.build();
+		this.conditions = Caffeine.newBuilder()
+				.maximumSize(maximumSize)
+				.expireAfterWrite(expireAfterWrite, TimeUnit.MILLISECONDS)
+				.recordStats()
+				.build();
+		this.effects = Caffeine.newBuilder()
+				.maximumSize(maximumSize)
+				.expireAfterWrite(expireAfterWrite, TimeUnit.MILLISECONDS)
+				.recordStats()
+				.build();
+		
+		// Publish hit/miss metrics of the caches
+		CaffeineCacheMetrics.monitor(meterRegistry, this.policies, POLICY_CACHE_NAME);
+		CaffeineCacheMetrics.monitor(meterRegistry, this.conditions, CONDITION_CACHE_NAME);
+		CaffeineCacheMetrics.monitor(meterRegistry, this.effects, EFFECT_CACHE_NAME);
+	}
+	
+	// - - -
+	
+	/**
+	 * Retrieves the policies with the given ids. Policies that do not exist are skipped.
+	 * 
+	 * @param policyIds the ids of the policies.
+	 * @return the list of {@link ACPolicy policies} in the order of the given ids.
+	 */
+	public List<ACPolicy> getPolicies(Collection<String> policyIds) {
+		if (policyIds == null || policyIds.isEmpty()) {
+			return new ArrayList<>();
+		}
+		
+		// Retrieve cached policies and load the missing ones with a single query
+		Set<String> uniqueIds = new LinkedHashSet<>(policyIds);
+		uniqueIds.remove(null);
+		Map<String, Optional<ACPolicy>> cachedPolicies = policies.getAll(uniqueIds, this::loadPolicies);
+		
+		List<ACPolicy> result = new ArrayList<>(uniqueIds.size());
+		for (String policyId : uniqueIds) {
+			Optional<ACPolicy> policy = cachedPolicies.get(policyId);
+			if (policy != null && policy.isPresent()) {
+				result.add(policy.get());
+			}
+		}
+		return result;
+	}
+	
+	/**
+	 * Retrieves the compiled condition with the given id. Conditions that do not exist
+	 * or cannot be compiled result in a compiled condition that always evaluates to {@code false}.
+	 * 
+	 * @param conditionId the id of the condition.
+	 * @return the {@link ACCompiledCondition}.
+	 */
+	public ACCompiledCondition getCompiledCondition(String conditionId) {
+		if (conditionId == null) {
+			return DENY;
+		}
+		return conditions.get(conditionId, this::loadCondition);
+	}
+	
+	/**
+	 * Retrieves the compiled conditions with the given ids. Conditions that are not cached yet
+	 * are loaded from the database with a single query.
+	 * 
+	 * @param conditionIds the ids of the conditions.
+	 * @return the map (condition id -> compiled condition) of the {@link ACCompiledCondition compiled conditions}.
+	 */
+	public Map<String, ACCompiledCondition> getCompiledConditions(Collection<String> conditionIds) {
+		Set<String> uniqueIds = new LinkedHashSet<>(conditionIds);
+		uniqueIds.remove(null);
+		return conditions.getAll(uniqueIds, this::loadConditions);
+	}
+	
+	/**
+	 * Retrieves the compiled effect with the given id. Effects that exist but cannot be compiled
+	 * result in a compiled effect that withholds the values of all value logs.
+	 * 
+	 * @param effectId the id of the effect.
+	 * @return the {@link ACCompiledEffect} or an empty optional, if the effect does not exist.
+	 */
+	public Optional<ACCompiledEffect> getCompiledEffect(String effectId) {
+		if (effectId == null) {
+			return Optional.empty();
+		}
+		return effects.get(effectId, this::loadEffect);
+	}
+	
+	/**
+	 * Removes the policy with the given id from the cache.
+	 * 
+	 * @param policyId the id of the policy.
+	 */
+	public void invalidatePolicy(String policyId) {
+		policies.invalidate(policyId);
+	}
+	
+	/**
+	 * Removes the compiled condition with the given id from the cache.
+	 * 
+	 * @param conditionId the id of the condition.
+	 */
+	public void invalidateCondition(String conditionId) {
+		conditions.invalidate(conditionId);
+	}
+	
+	/**
+	 * Removes the compiled effect with the given id from the cache.
+	 * 
+	 * @param effectId the id of the effect.
+	 */
+	public void invalidateEffect(String effectId) {
+		effects.invalidate(effectId);
+	}
+	
+	/**
+	 * Removes all policies, compiled conditions and compiled effects from the cache.
+	 */
+	public void invalidateAll() {
+		policies.invalidateAll();
+		conditions.invalidateAll();
+		effects.invalidateAll();
+	}
+	
+	// - - -
+	
+	private Map<String, Optional<ACPolicy>> loadPolicies(Iterable<? extends String> policyIds) {
+		Map<String, Optional<ACPolicy>> loadedPolicies = new HashMap<>();
+		policyIds.forEach(id -> loadedPolicies.put(id, Optional.empty()));
+		policyRepository.findAllById(new ArrayList<>(loadedPolicies.keySet()))
+				.forEach(p -> loadedPolicies.put(p.getId(), Optional.of(p)));
+		return loadedPolicies;
+	}
+	
+	private ACCompiledCondition loadCondition(String conditionId) {
+		return conditionRepository.findById(conditionId).map(this::compile).orElse(DENY);
+	}
+	
+	private Map<String, ACCompiledCondition> loadConditions(Iterable<? extends String> conditionIds) {
+		Map<String, ACCompiledCondition> loadedConditions = new HashMap<>();
+		conditionIds.forEach(id -> loadedConditions.put(id, DENY));
+		conditionRepository.findAllById(new ArrayList<>(loadedConditions.keySet()))
+				.forEach(c -> loadedConditions.put(c.getId(), compile(c)));
+		return loadedConditions;
+	}
+	
+	private Optional<ACCompiledEffect> loadEffect(String effectId) {
+		return effectRepository.findById(effectId).map(this::compileEffect);
+	}
+	
+	private ACCompiledCondition compile(ACAbstractCondition condition) {
+		try {
+			return condition.compile();
+		} catch (ACConditionEvaluatorNotAvailableException e) {
+			LOGGER.log(Level.WARNING, "Failed to compile condition " + condition.getId() + ", denying access.", e);
+			return DENY;
+		}
+	}
+	
+	private ACCompiledEffect compileEffect(ACAbstractEffect effect) {
+		try {
+			return effect.compile();
+		} catch (IllegalArgumentException e) {
+			LOGGER.log(Level.WARNING, "Failed to compile effect " + effect.getId() + ", withholding values.", e);
+			return WITHHOLD;
+		}
+	}
+	
+}
@@ -1,17 +1,15 @@
 
 package de.ipvs.as.mbp.service.access_control;
 
-import de.ipvs.as.mbp.error.EntityNotFoundException;
-import de.ipvs.as.mbp.domain.access_control.ACAbstractCondition;
 import de.ipvs.as.mbp.domain.access_control.ACAccess;
 import de.ipvs.as.mbp.domain.access_control.ACAccessRequest;
-import de.ipvs.as.mbp.domain.access_control.ACConditionEvaluatorNotAvailableException;
 import de.ipvs.as.mbp.domain.access_control.ACPolicy;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
 /**
- * Service for evaluating instances of {@link ACPolicy}.
+ * Service for evaluating instances of {@link ACPolicy}. The conditions of the policies
+ * are evaluated in their compiled form, as provided by the {@link ACPolicyCache}.
  * 
  * @author Jakob Benz
  */
@@ -19,7 +17,7 @@ import org.springframework.stereotype.Service;
 public class ACPolicyEvaluationService {
 	
 	@Autowired
-	private ACConditionService conditionService;
+	private ACPolicyCache policyCache;
 	
 	/**
 	 * Evaluates a given policy based on an access request.
@@ -31,18 +29,8 @@ public class ACPolicyEvaluationService {
 	 * @return {@code true} if and only if the {@link IACCondition} of the policy holds; {@code false} otherwise.
 	 */
 	public boolean evaluate(ACPolicy policy, ACAccess access, ACAccessRequest request) {
-		ACAbstractCondition condition;
-		try {
-			condition = conditionService.getForId(policy.getConditionId());
-		} catch (EntityNotFoundException e1) {
-			return false;
-		}
-		try {
-			return condition.evaluate(access, request);
-		} catch (ACConditionEvaluatorNotAvailableException e) {
-			e.printStackTrace();
-			return false;
-		}
+		// Non-existing or non-compilable conditions never hold
+		return policyCache.getCompiledCondition(policy.getConditionId()).evaluate(access, request);
 	}
 
 }
@@ -41,6 +41,9 @@ public class ACPolicyService {
 	@Autowired
 	private ACEffectRepository effectRepository;
 	
+	@Autowired
+	private ACPolicyCache policyCache;
+	
 	// - - -
 	
 	public List<ACPolicy> getAll(Pageable pageable) {
@@ -92,8 +95,9 @@ public class ACPolicyService {
 		
 		// Create policy
 		List<ACAccessType> accessTypes = requestDto.getAccessTypes().stream().map(ACAccessType::valueOf).collect(Collectors.toList());
-    	ACPolicy policy = new ACPolicy(requestDto.getName(), requestDto.getDescription(), accessTypes, requestDto.getConditionId(), requestDto.getEffectId(), ownerId);
-    	return policyRepository.save(policy);
+    	ACPolicy policy = policyRepository.save(new ACPolicy(requestDto.getName(), requestDto.getDescription(), accessTypes, requestDto.getConditionId(), requestDto.getEffectId(), ownerId));
+    	policyCache.invalidatePolicy(policy.getId());
+    	return policy;
 	}
 	
 	public void delete(String id, String ownerId) throws EntityNotFoundException, MissingOwnerPrivilegesException {
@@ -102,6 +106,7 @@ public class ACPolicyService {
 		
     	// Actually delete policy in the database
     	policyRepository.deleteById(id);
+    	policyCache.invalidatePolicy(id);
 	}
 	
 	public List<ACPolicyResponseDTO> policiesToResponseDto(List<ACPolicy> policies, String userId) throws EntityNotFoundException, MissingOwnerPrivilegesException {
@@ -4,6 +4,7 @@ import java.util.Optional;
 
 import de.ipvs.as.mbp.domain.access_control.ACAccess;
 import de.ipvs.as.mbp.domain.access_control.ACAccessRequest;
+import de.ipvs.as.mbp.domain.access_control.ACArgumentFunction;
 import de.ipvs.as.mbp.domain.access_control.ACAttributeNotAvailableException;
 import de.ipvs.as.mbp.domain.access_control.ACConditionSimpleAttributeArgument;
 import de.ipvs.as.mbp.domain.access_control.ACConditionSimpleValueArgument;
@@ -22,31 +23,60 @@ public class ACSimpleConditionEvaluator<T extends Comparable<T>> extends ACAbstr
 	
  	@Override
 	public boolean evaluate(ACSimpleCondition<T> condition, ACAccess access, ACAccessRequest request) {
-		Optional<T> leftValue = getValueForArgument(condition.getLeft(), access, request);
-		Optional<T> rightValue = getValueForArgument(condition.getRight(), access, request);
-		
-		// Non-present (null) values are currently not supported
-		if (!leftValue.isPresent()  || !rightValue.isPresent()) {
-			return false;
-		}
+		return compile(condition).evaluate(access, request);
+	}
+	
+	@Override
+	public ACCompiledCondition compile(ACSimpleCondition<T> condition) {
+		// Resolve the function and the arguments once
+		ACArgumentFunction function = condition.getFunction();
+		ArgumentResolver<T> leftResolver = compileArgument(condition.getLeft());
+		ArgumentResolver<T> rightResolver = compileArgument(condition.getRight());
 		
-		// Compare arguments using the specified function and return result
-		return condition.getFunction().apply(leftValue.get(), rightValue.get());
+		return (access, request) -> {
+			Optional<T> leftValue = leftResolver.resolve(access, request);
+			Optional<T> rightValue = rightResolver.resolve(access, request);
+			
+			// Non-present (null) values are currently not supported
+			if (!leftValue.isPresent()  || !rightValue.isPresent()) {
+				return false;
+			}
+			
+			// Compare arguments using the specified function and return result
+			return function.apply(leftValue.get(), rightValue.get());
+		};
 	}
 	
 	@SuppressWarnings("unchecked")
-	private Optional<T> getValueForArgument(IACConditionArgument argument, ACAccess access, ACAccessRequest request) {
+	private ArgumentResolver<T> compileArgument(IACConditionArgument argument) {
 		if (argument instanceof ACConditionSimpleAttributeArgument<?>) {
-			try {
-				return attributeProvider.getValueForAttributeArgument((ACConditionSimpleAttributeArgument<T>) argument, access, request);
-			} catch (ACAttributeNotAvailableException e) {
-				return Optional.empty();
-			}
+			ACConditionSimpleAttributeArgument<T> attributeArgument = (ACConditionSimpleAttributeArgument<T>) argument;
+			return (access, request) -> {
+				try {
+					return attributeProvider.getValueForAttributeArgument(attributeArgument, access, request);
+				} catch (ACAttributeNotAvailableException e) {
+					return Optional.empty();
+				}
+			};
 		} else if (argument instanceof ACConditionSimpleValueArgument<?>) {
-			return Optional.of((T) ((ACConditionSimpleValueArgument<T>) argument).getValue());
+			// Fixed values are resolved at compile time
+			Optional<T> value = Optional.ofNullable((T) ((ACConditionSimpleValueArgument<T>) argument).getValue());
+			return (access, request) -> value;
 		} else {
-			return Optional.empty();
+			return (access, request) -> Optional.empty();
 		}
 	}
 	
+	/**
+	 * Resolves the value of a compiled condition argument for an access request.
+	 * 
+	 * @param <T> the data type of the argument.
+	 */
+	@FunctionalInterface
+	private interface ArgumentResolver<T> {
+		
+		Optional<T> resolve(ACAccess access, ACAccessRequest request);
+		
+	}
+	
 }
@@ -1,6 +1,6 @@
 package de.ipvs.as.mbp.service.cep.engine.core.events;
 
-import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Set;
 
@@ -12,7 +12,7 @@ import java.util.Set;
 public class CEPEventType {
     //Name of the event type and its instances
     private String name;
-    //Map (field name --> data type) of fields that are part of instances of this event type
+    //Map (field name --> data type) of fields that are part of instances of this event type, in order of addition
     private final Map<String, CEPPrimitiveDataTypes> fields;
 
     /**
@@ -24,8 +24,8 @@ public class CEPEventType {
         //Set name
         setName(name);
 
-        //Set empty map of fields
-        this.fields = new HashMap<>();
+        //Set empty map of fields that preserves the order of the fields
+        this.fields = new LinkedHashMap<>();
     }
 
     /**
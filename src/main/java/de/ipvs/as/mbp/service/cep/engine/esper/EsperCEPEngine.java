@@ -9,10 +9,15 @@ import de.ipvs.as.mbp.service.cep.engine.core.exceptions.EventNotRegisteredExcep
 import de.ipvs.as.mbp.service.cep.engine.core.queries.CEPQueryValidation;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * This component implements the interface of CEP engines by making use of the
  * CEP engine Esper (http://esper.espertech.com). It provides basic functionality for working with this engine.
+ * The registered event types are indexed by their names, such that the matching event type of an event can be
+ * determined in constant time. Optionally, the event types may be registered as object-array types, such that
+ * the events are passed to Esper as positional arrays and the fields are accessed by index during the evaluation
+ * of the queries instead of being looked up by their names.
  */
 public class EsperCEPEngine implements CEPEngine {
     //Internal fields
@@ -20,13 +25,29 @@ public class EsperCEPEngine implements CEPEngine {
     private final EPAdministrator cepAdmin;
     private final EPRuntime cepRuntime;
 
-    //Stores the event types that have been registered at the engine
-    private final Set<CEPEventType> registeredEventTypes;
+    //Map (event type name -> field layout) of the event types that have been registered at the engine
+    private final Map<String, EventTypeLayout> registeredEventTypes;
+
+    //True, if event types are registered as object-array types; false, if they are registered as map types
+    private final boolean objectArrayEvents;
 
     /**
-     * Creates the component by initializing Esper and the corresponding internal fields.
+     * Creates the component by initializing Esper and the corresponding internal fields. The event types
+     * are registered as map types.
      */
     public EsperCEPEngine() {
+        this(false);
+    }
+
+    /**
+     * Creates the component by initializing Esper and the corresponding internal fields.
+     *
+     * @param objectArrayEvents True, if event types are supposed to be registered as object-array types;
+     *                          false, if they are supposed to be registered as map types
+     */
+    public EsperCEPEngine(boolean objectArrayEvents) {
+        this.objectArrayEvents = objectArrayEvents;
+
         //Get and initialize CEP service
         cepService = EPServiceProviderManager.getDefaultProvider();
         cepService.initialize();
@@ -35,8 +56,8 @@ public class EsperCEPEngine implements CEPEngine {
         cepAdmin = cepService.getEPAdministrator();
         cepRuntime = cepService.getEPRuntime();
 
-        //Create empty set of registered event types
-        registeredEventTypes = new HashSet<>();
+        //Create empty index of registered event types
+        registeredEventTypes = new ConcurrentHashMap<>();
     }
 
     /**
@@ -103,50 +124,50 @@ public class EsperCEPEngine implements CEPEngine {
         //Sanity checks
         if (eventType == null) {
             throw new IllegalArgumentException("Event type object must not be null.");
-        } else if (registeredEventTypes.contains(eventType)) {
-            throw new IllegalArgumentException("This event type has already been registered.");
         }
 
-        /*
-        Build up a query string containing the event name and its typed fields for registering
-        the event type at the Esper engine.
-         */
-
-        //Get fields of event object
-        Map<String, CEPPrimitiveDataTypes> eventFields = eventType.getFields();
+        //Validate the fields and determine their layout
+        EventTypeLayout layout = new EventTypeLayout(eventType);
 
-        //Build query
-        StringBuilder queryBuilder = new StringBuilder("Create schema");
-        queryBuilder.append(" ");
-        queryBuilder.append(eventType.getName());
-        queryBuilder.append("(");
+        //Prevent concurrent registrations of event types with the same name
+        synchronized (registeredEventTypes) {
+            if (registeredEventTypes.containsKey(eventType.getName())) {
+                throw new IllegalArgumentException("This event type has already been registered.");
+            }
 
-        //Iterate over all event fields
-        Iterator<String> fieldNameIterator = eventFields.keySet().iterator();
-        while (fieldNameIterator.hasNext()) {
-            //Get current field name and type
-            String fieldName = fieldNameIterator.next();
-            CEPPrimitiveDataTypes fieldType = eventFields.get(fieldName);
+            /*
+            Build up a query string containing the event name and its typed fields for registering
+            the event type at the Esper engine.
+             */
 
-            //Append field name and its type to the query
-            queryBuilder.append("`" + fieldName + "`");
+            //Build query
+            StringBuilder queryBuilder = new StringBuilder(objectArrayEvents ? "Create objectarray schema" : "Create schema");
             queryBuilder.append(" ");
-            queryBuilder.append(fieldType.getName());
-
-            //Only add a comma if there are further fields to process
-            if (fieldNameIterator.hasNext()) {
-                queryBuilder.append(", ");
+            queryBuilder.append(eventType.getName());
+            queryBuilder.append("(");
+
+            //Iterate over all event fields in the order of the layout
+            for (int i = 0; i < layout.fieldNames.length; i++) {
+                //Only add a comma if there are previous fields
+                if (i > 0) {
+                    queryBuilder.append(", ");
+                }
+
+                //Append field name and its type to the query
+                queryBuilder.append("`").append(layout.fieldNames[i]).append("`");
+                queryBuilder.append(" ");
+                queryBuilder.append(layout.fieldTypes[i].getName());
             }
-        }
 
-        //Close query
-        queryBuilder.append(")");
+            //Close query
+            queryBuilder.append(")");
 
-        //Create statement for query
-        cepAdmin.createEPL(queryBuilder.toString());
+            //Create statement for query
+            cepAdmin.createEPL(queryBuilder.toString());
 
-        //Add event type to set of registered types
-        registeredEventTypes.add(eventType);
+            //Add event type to the index of registered types
+            registeredEventTypes.put(eventType.getName(), layout);
+        }
     }
 
     /**
@@ -156,23 +177,26 @@ public class EsperCEPEngine implements CEPEngine {
      * @param event The event to publish
      */
     public void sendEvent(CEPEvent event) throws EventNotRegisteredException {
-        //Iterate over all registered event types and Try to find matching event type
-        CEPEventType matchingEventType = null;
-        for (CEPEventType eventType : registeredEventTypes) {
-            //Check if current event type matches the given event
-            if (eventType.isValidInstance(event)) {
-                matchingEventType = eventType;
-                break;
-            }
+        //Sanity check
+        if (event == null) {
+            throw new IllegalArgumentException("Event object must not be null.");
         }
 
+        //Look up the matching event type by its name
+        String eventTypeName = event.getEventTypeName();
+        EventTypeLayout layout = registeredEventTypes.get(eventTypeName);
+
         //Check if event type could be found
-        if (matchingEventType == null) {
-            throw new EventNotRegisteredException("No event type has been registered for event \"" + event.getEventTypeName() + "\".");
+        if (layout == null) {
+            throw new EventNotRegisteredException("No event type has been registered for event \"" + eventTypeName + "\".");
         }
 
-        //Send valid event to Esper
-        cepRuntime.sendEvent(event.getFieldValues(), event.getEventTypeName());
+        //Send valid event to Esper, either as map or as positional array
+        if (objectArrayEvents) {
+            cepRuntime.sendEvent(layout.toFieldArray(event.getFieldValues()), eventTypeName);
+        } else {
+            cepRuntime.sendEvent(event.getFieldValues(), eventTypeName);
+        }
     }
 
     /**
@@ -218,4 +242,55 @@ public class EsperCEPEngine implements CEPEngine {
         //Convert array to list
         return Arrays.asList(names);
     }
+
+    /**
+     * Validated and immutable layout of the fields of a registered event type, defining the position of each
+     * field within events that are sent as positional arrays.
+     */
+    private static final class EventTypeLayout {
+        //Names and data types of the fields, ordered by their positions
+        private final String[] fieldNames;
+        private final CEPPrimitiveDataTypes[] fieldTypes;
+
+        /**
+         * Creates the layout of a given event type and validates its fields.
+         *
+         * @param eventType The event type to create the layout for
+         */
+        private EventTypeLayout(CEPEventType eventType) {
+            //Get fields of event type
+            Map<String, CEPPrimitiveDataTypes> eventFields = eventType.getFields();
+
+            this.fieldNames = new String[eventFields.size()];
+            this.fieldTypes = new CEPPrimitiveDataTypes[eventFields.size()];
+
+            //Validate the fields and assign them to positions
+            int position = 0;
+            for (Map.Entry<String, CEPPrimitiveDataTypes> field : eventFields.entrySet()) {
+                if ((field.getKey() == null) || field.getKey().isEmpty() || (field.getKey().indexOf('`') >= 0)) {
+                    throw new IllegalArgumentException("Field names must not be null, empty or contain backticks.");
+                } else if (field.getValue() == null) {
+                    throw new IllegalArgumentException("Data type of field \"" + field.getKey() + "\" must not be null.");
+                }
+                fieldNames[position] = field.getKey();
+                fieldTypes[position] = field.getValue();
+                position++;
+            }
+        }
+
+        /**
+         * Converts a given map (field name --> field value) of field values to a positional array
+         * that complies with this layout. Fields that are not part of the layout are ignored.
+         *
+         * @param fieldValues The map of field values to convert
+         * @return The resulting array of field values
+         */
+        private Object[] toFieldArray(Map<String, Object> fieldValues) {
+            Object[] fieldArray = new Object[fieldNames.length];
+            for (int i = 0; i < fieldNames.length; i++) {
+                fieldArray[i] = fieldValues.get(fieldNames[i]);
+            }
+            return fieldArray;
+        }
+    }
 }
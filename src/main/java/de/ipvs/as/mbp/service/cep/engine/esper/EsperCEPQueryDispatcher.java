@@ -1,8 +1,11 @@
 package de.ipvs.as.mbp.service.cep.engine.esper;
 
+import com.espertech.esper.client.EventBean;
+import com.espertech.esper.event.map.MapEventBean;
 import de.ipvs.as.mbp.service.cep.engine.core.output.CEPOutput;
 import de.ipvs.as.mbp.service.cep.engine.core.queries.CEPQuerySubscriber;
 
+import java.util.LinkedHashMap;
 import java.util.Map;
 
 /**
@@ -24,11 +27,21 @@ public class EsperCEPQueryDispatcher {
     }
 
     /**
-     * Called in case the dedicated CEP query matches the event stream.
+     * Called in case the dedicated CEP query matches the event stream. Events that are contained in the result
+     * (e.g. the tagged events of patterns) are replaced by maps of their properties, independent of whether
+     * the event types were registered as map or object-array types.
      *
      * @param resultMap The result of the CEP query
      */
     public void update(Map<Object, Object> resultMap) {
+        //Replace events of object-array types by their properties maps
+        for (Map.Entry<Object, Object> entry : resultMap.entrySet()) {
+            Object value = entry.getValue();
+            if ((value instanceof EventBean) && !(value instanceof MapEventBean)) {
+                entry.setValue(toPropertiesMap((EventBean) value));
+            }
+        }
+
         //Create object from result
         CEPOutput result = new CEPOutput(resultMap);
 
@@ -37,6 +50,20 @@ public class EsperCEPQueryDispatcher {
         subscriberThread.start();
     }
 
+    /**
+     * Converts a given event to a map (property name --> property value) of its properties.
+     *
+     * @param event The event to convert
+     * @return The resulting properties map
+     */
+    private static Map<String, Object> toPropertiesMap(EventBean event) {
+        Map<String, Object> propertiesMap = new LinkedHashMap<>();
+        for (String propertyName : event.getEventType().getPropertyNames()) {
+            propertiesMap.put(propertyName, event.get(propertyName));
+        }
+        return propertiesMap;
+    }
+
     /**
      * Returns the subscriber that is supposed to be notified by the dispatcher in case of a callback.
      *
@@ -41,7 +41,7 @@ public class CEPTriggerService implements ValueLogObserver {
     @Autowired
     private CEPValueLogParser cepValueLogParser;
 
-    // To store incoming ValueLogs temporarily for the case that the ValueLog was not already saved in the MongoDB
+    // To retain incoming ValueLogs, such that the ValueLogs that caused a trigger to fire can be retrieved without the MongoDB
     private final CEPValueLogCache cepValueLogCache;
 
     //The CEP engine instance to use
@@ -81,6 +81,9 @@ public class CEPTriggerService implements ValueLogObserver {
         //Create query
         CEPQuery query = engine.createQuery(name, ruleTrigger.getQuery());
 
+        //Retain value logs in the cache for at least the time windows of the query
+        cepValueLogCache.registerQuery(name, ruleTrigger.getQuery());
+
         //Set query subscriber
         query.setSubscriber(output -> {
             //Execute rule trigger callback method
@@ -113,6 +116,7 @@ public class CEPTriggerService implements ValueLogObserver {
         //Unregister query
         query.disable();
         query.unregister();
+        cepValueLogCache.unregisterQuery(name);
     }
 
     /**
@@ -1,24 +1,89 @@
 package de.ipvs.as.mbp.service.cep.trigger;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
 import de.ipvs.as.mbp.domain.valueLog.ValueLog;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
 import java.time.Instant;
-import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 /**
- * Caches ValueLogs as long as they were not yet written to the database but are needed for the Complex
- * Event Processing. As soon as the ValueLog was written to the database the respective cache entry gets
- * deleted.
+ * Caches the ValueLogs that were sent to the Complex Event Processing, such that the ValueLogs that caused a
+ * trigger to fire can be retrieved without querying the database. The ValueLogs are retained for a time that
+ * is matched to the longest time window of the currently registered trigger queries, but at least for a minimum
+ * and at most for a maximum retention time. In addition, the total number of cached ValueLogs is bounded.
  */
 @Component
 public class CEPValueLogCache {
 
-    private final Map<String, Map<Long, ValueLog>> cache;
+    //Pattern for time windows of Esper views (e.g. "win:time(10 sec)" or "#time(10 sec)")
+    private static final Pattern PATTERN_VIEW_WINDOW = Pattern.compile(
+            "(?:win:|#)(?:time|time_batch|time_accum|time_order|firsttime|ext_timed|ext_timed_batch)\\s*\\(([^()]*)\\)",
+            Pattern.CASE_INSENSITIVE);
 
-    public CEPValueLogCache() {
-        cache = new HashMap<>();
+    //Pattern for time windows of Esper pattern guards and observers (e.g. "timer:within(10)")
+    private static final Pattern PATTERN_TIMER_WINDOW = Pattern.compile("timer:(?:within|interval)\\s*\\(([^()]*)\\)",
+            Pattern.CASE_INSENSITIVE);
+
+    //Pattern for the components of Esper time periods (e.g. "1 min 30 sec")
+    private static final Pattern PATTERN_TIME_PERIOD = Pattern.compile(
+            "(\\d+(?:\\.\\d+)?)\\s*(years?|months?|weeks?|days?|hours?|minutes?|min|seconds?|sec|milliseconds?|msec)?",
+            Pattern.CASE_INSENSITIVE);
+
+    //Name of the cache for publishing metrics
+    private static final String CACHE_NAME = "cep_value_logs";
+
+    //Cache (component ID + timestamp -> value log) of the value logs
+    private final Cache<String, ValueLog> cache;
+
+    //Map (query name -> longest time window in milliseconds) of the registered trigger queries
+    private final Map<String, Long> queryWindows = new ConcurrentHashMap<>();
+
+    //Bounds of the retention time in milliseconds
+    private final long minRetention;
+    private final long maxRetention;
+
+    /**
+     * Creates the cache by passing the cache settings (auto-wired).
+     *
+     * @param meterRegistry The {@link MeterRegistry} to publish the hit/miss metrics of the cache to
+     * @param maximumSize   The maximum number of cached ValueLogs
+     * @param minRetention  The minimum time in milliseconds for which ValueLogs are retained
+     * @param maxRetention  The maximum time in milliseconds for which ValueLogs are retained
+     */
+    @Autowired
+    public CEPValueLogCache(MeterRegistry meterRegistry,
+                            @Value("${cep.value_log_cache.maximum_size:100000}") long maximumSize,
+                            @Value("${cep.value_log_cache.min_retention:60000}") long minRetention,
+                            @Value("${cep.value_log_cache.max_retention:3600000}") long maxRetention) {
+        //Sanity checks
+        if ((maximumSize <= 0) || (minRetention <= 0)) {
+            throw new IllegalArgumentException("Maximum size and minimum retention time must be positive.");
+        } else if (maxRetention < minRetention) {
+            throw new IllegalArgumentException("Maximum retention time must not be smaller than the minimum retention time.");
+        }
+
+        this.minRetention = minRetention;
+        this.maxRetention = maxRetention;
+
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(minRetention, TimeUnit.MILLISECONDS)
+                .recordStats()
+                .build();
+
+        // Publish hit/miss metrics of the cache
+        CaffeineCacheMetrics.monitor(meterRegistry, this.cache, CACHE_NAME);
     }
 
     /**
@@ -27,18 +92,7 @@ public class CEPValueLogCache {
      * @param v The valuelog to add to the cache.
      */
     public void addValueLog(ValueLog v) {
-        Map<Long, ValueLog> timeStampValueLogMap;
-
-        // Check if Map for component already exists
-        if (cache.containsKey(v.getIdref())) {
-            timeStampValueLogMap = cache.get(v.getIdref());
-            timeStampValueLogMap.put(v.getTime().toEpochMilli(), v);
-        } else {
-            timeStampValueLogMap = new HashMap<>();
-            timeStampValueLogMap.put(v.getTime().toEpochMilli(), v);
-            this.cache.put(v.getIdref(), timeStampValueLogMap);
-        }
-
+        cache.put(getKey(v.getIdref(), v.getTime()), v);
     }
 
     /**
@@ -48,14 +102,7 @@ public class CEPValueLogCache {
      * @param v The ValueLog instance to remove.
      */
     public void removeValueLog(ValueLog v) {
-        if (this.cache.containsKey(v.getIdref()) && this.cache.get(v.getIdref()).containsKey(v.getTime().toEpochMilli())) {
-            this.cache.remove(v.getIdref()).get(v.getTime().toEpochMilli());
-        }
-
-        if (this.cache.containsKey(v.getIdref()) && this.cache.get(v.getIdref()).size() < 1) {
-            this.cache.remove(v.getIdref());
-        }
-
+        cache.invalidate(getKey(v.getIdref(), v.getTime()));
     }
 
     /**
@@ -66,13 +113,130 @@ public class CEPValueLogCache {
      * @return The ValueLog matching the passed arguments.
      */
     public ValueLog getValueLog(String idRef, Instant timeStamp) {
-        long time = timeStamp.toEpochMilli();
-        if (this.cache.containsKey(idRef)) {
-            return this.cache.get(idRef).get(time);
-        } else {
-            return null;
+        return cache.getIfPresent(getKey(idRef, timeStamp));
+    }
+
+    /**
+     * Registers the query of a trigger at the cache, such that the retention time of the cache is extended to
+     * the longest time window of the query, if necessary.
+     *
+     * @param queryName The name of the query
+     * @param query     The query string
+     */
+    public void registerQuery(String queryName, String query) {
+        queryWindows.put(queryName, getLongestWindow(query));
+        updateRetention();
+    }
+
+    /**
+     * Unregisters the query of a trigger from the cache, such that the retention time of the cache
+     * can be reduced again.
+     *
+     * @param queryName The name of the query
+     */
+    public void unregisterQuery(String queryName) {
+        queryWindows.remove(queryName);
+        updateRetention();
+    }
+
+    /**
+     * Returns the time in milliseconds for which ValueLogs are currently retained.
+     *
+     * @return The retention time
+     */
+    public long getRetention() {
+        return cache.policy().expireAfterWrite().map(e -> e.getExpiresAfter(TimeUnit.MILLISECONDS)).orElse(minRetention);
+    }
+
+    /**
+     * Returns the statistics of the cache, including the hit rate.
+     *
+     * @return The statistics
+     */
+    public CacheStats getStats() {
+        return cache.stats();
+    }
+
+    /**
+     * Updates the retention time of the cache to the longest time window of all registered queries
+     * plus the minimum retention time, bounded by the maximum retention time.
+     */
+    private synchronized void updateRetention() {
+        long longestWindow = queryWindows.values().stream().mapToLong(Long::longValue).max().orElse(0);
+        long retention = Math.min(maxRetention, longestWindow + minRetention);
+        cache.policy().expireAfterWrite().ifPresent(e -> e.setExpiresAfter(retention, TimeUnit.MILLISECONDS));
+    }
+
+    /**
+     * Determines the longest time window in milliseconds that is used within a given query.
+     *
+     * @param query The query string
+     * @return The longest time window or 0, if the query does not use time windows
+     */
+    static long getLongestWindow(String query) {
+        long longestWindow = 0;
+        if (query == null) {
+            return longestWindow;
+        }
+
+        //Check view windows; the time period is always the last parameter
+        Matcher matcher = PATTERN_VIEW_WINDOW.matcher(query);
+        while (matcher.find()) {
+            String[] parameters = matcher.group(1).split(",");
+            longestWindow = Math.max(longestWindow, parseTimePeriod(parameters[parameters.length - 1]));
+        }
+
+        //Check pattern guards and observers
+        matcher = PATTERN_TIMER_WINDOW.matcher(query);
+        while (matcher.find()) {
+            longestWindow = Math.max(longestWindow, parseTimePeriod(matcher.group(1)));
         }
+
+        return longestWindow;
     }
 
+    /**
+     * Parses a given Esper time period (e.g. "10", "10 sec" or "1 min 30 sec") and returns its length in
+     * milliseconds. Numbers without unit are interpreted as seconds.
+     *
+     * @param timePeriod The time period to parse
+     * @return The length of the time period in milliseconds or 0, if it could not be parsed
+     */
+    private static long parseTimePeriod(String timePeriod) {
+        double milliseconds = 0;
+        Matcher matcher = PATTERN_TIME_PERIOD.matcher(timePeriod.trim());
+        while (matcher.find()) {
+            double number = Double.parseDouble(matcher.group(1));
+            String unit = (matcher.group(2) == null) ? "sec" : matcher.group(2).toLowerCase();
+            if (unit.startsWith("year")) {
+                milliseconds += number * 365 * 24 * 3600 * 1000;
+            } else if (unit.startsWith("month")) {
+                milliseconds += number * 30 * 24 * 3600 * 1000;
+            } else if (unit.startsWith("week")) {
+                milliseconds += number * 7 * 24 * 3600 * 1000;
+            } else if (unit.startsWith("day")) {
+                milliseconds += number * 24 * 3600 * 1000;
+            } else if (unit.startsWith("hour")) {
+                milliseconds += number * 3600 * 1000;
+            } else if (unit.startsWith("min")) {
+                milliseconds += number * 60 * 1000;
+            } else if (unit.startsWith("msec") || unit.startsWith("milli")) {
+                milliseconds += number;
+            } else {
+                milliseconds += number * 1000;
+            }
+        }
+        return (long) milliseconds;
+    }
 
+    /**
+     * Returns the cache key of a ValueLog with a given component ID and timestamp.
+     *
+     * @param idRef     The component ID
+     * @param timeStamp The timestamp
+     * @return The cache key
+     */
+    private String getKey(String idRef, Instant timeStamp) {
+        return idRef + "@" + timeStamp.toEpochMilli();
+    }
 }
@@ -2,22 +2,44 @@ package de.ipvs.as.mbp.service.cep.trigger;
 
 import com.jayway.jsonpath.JsonPath;
 import de.ipvs.as.mbp.domain.data_model.DataModelDataType;
+import de.ipvs.as.mbp.service.receiver.ValueLogReceiveVerifier;
+import org.bson.types.Binary;
+import org.bson.types.Decimal128;
+
+import java.math.BigDecimal;
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 /**
- * Stores parse instructions for one {@link de.ipvs.as.mbp.domain.valueLog.ValueLog} field.
+ * Stores parse instructions for one {@link de.ipvs.as.mbp.domain.valueLog.ValueLog} field. The JsonPath of the
+ * field is compiled into a sequence of path segments (field names and array indices), such that the value of
+ * the field can be accessed directly within the BSON document of the value log.
  */
 public class CEPValueLogParseInstruction {
 
+    //Pattern for the segments of normalized JsonPaths (e.g. "['field']", "['it's']" or "[0]"); field names are not escaped
+    private static final Pattern PATTERN_PATH_SEGMENT = Pattern.compile("\\['((?:[^']|'(?!\\]))*)'\\]|\\[(\\d+)\\]");
+
     private String fieldName;
 
     private JsonPath fieldPath;
 
     private DataModelDataType type;
 
+    //Segments (String for field names, Integer for array indices) of the path or null, if not compilable
+    private List<Object> pathSegments;
+
     public CEPValueLogParseInstruction(String fieldName, JsonPath fieldPath, DataModelDataType type) {
         this.fieldName = fieldName.replaceAll("`", "");
         this.fieldPath = fieldPath;
         this.type = type;
+        this.pathSegments = compilePath(fieldPath);
     }
 
     public String getFieldName() {
@@ -34,6 +56,7 @@ public class CEPValueLogParseInstruction {
 
     public void setFieldPath(JsonPath fieldPath) {
         this.fieldPath = fieldPath;
+        this.pathSegments = compilePath(fieldPath);
     }
 
     public DataModelDataType getType() {
@@ -43,4 +66,109 @@ public class CEPValueLogParseInstruction {
     public void setType(DataModelDataType type) {
         this.type = type;
     }
+
+    /**
+     * Returns the segments of the path of the field, consisting of field names (String) and array indices
+     * (Integer), or null, if the path could not be compiled to segments (e.g. because it contains wildcards).
+     *
+     * @return The unmodifiable list of path segments or null
+     */
+    public List<Object> getPathSegments() {
+        return pathSegments;
+    }
+
+    /**
+     * Converts a raw value, as contained in the BSON document of a value log, to the type that is expected
+     * by the CEP engine for the field of this instruction.
+     *
+     * @param rawValue The raw value to convert
+     * @return The converted value or null, if the value could not be converted
+     */
+    public Object convertValue(Object rawValue) {
+        if (rawValue == null) {
+            return null;
+        }
+
+        switch (type) {
+            case DOUBLE:
+                return (rawValue instanceof Number) ? ((Number) rawValue).doubleValue() : rawValue;
+            case INT:
+                return (rawValue instanceof Number) ? ((Number) rawValue).intValue() : rawValue;
+            case LONG:
+                if (rawValue instanceof Number) {
+                    return ((Number) rawValue).longValue();
+                }
+                return Long.parseLong(rawValue.toString());
+            case DECIMAL128:
+                if (rawValue instanceof Decimal128) {
+                    return ((Decimal128) rawValue).bigDecimalValue();
+                } else if (rawValue instanceof BigDecimal) {
+                    return rawValue;
+                }
+                return new BigDecimal(rawValue.toString());
+            case DATE:
+                if (rawValue instanceof Date) {
+                    return ((Date) rawValue).getTime();
+                } else if (rawValue instanceof Number) {
+                    return ValueLogReceiveVerifier.parseDateLong(((Number) rawValue).longValue()).getTime();
+                } else if (rawValue instanceof String) {
+                    try {
+                        return ValueLogReceiveVerifier.parseDateString((String) rawValue).getTime();
+                    } catch (ParseException e) {
+                        throw new IllegalArgumentException("Error by converting date for CEP.");
+                    }
+                }
+                return null;
+            case BINARY:
+                // For CEP no binary type exists --> handle it as base64 encoded string
+                if (rawValue instanceof Binary) {
+                    return Base64.getEncoder().encodeToString(((Binary) rawValue).getData());
+                } else if (rawValue instanceof byte[]) {
+                    return Base64.getEncoder().encodeToString((byte[]) rawValue);
+                }
+                return rawValue.toString();
+            case STRING:
+            case BOOLEAN:
+                return rawValue;
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * Compiles a given normalized JsonPath (e.g. "$['field'][0]['subfield']") into a list of path segments.
+     *
+     * @param jsonPath The JsonPath to compile
+     * @return The unmodifiable list of path segments or null, if the path cannot be compiled
+     */
+    private static List<Object> compilePath(JsonPath jsonPath) {
+        if (jsonPath == null) {
+            return null;
+        }
+
+        //Path must start with the root element
+        String path = jsonPath.getPath();
+        if (!path.startsWith("$")) {
+            return null;
+        }
+
+        //Parse segments one after another
+        List<Object> segments = new ArrayList<>();
+        Matcher matcher = PATTERN_PATH_SEGMENT.matcher(path);
+        int position = 1;
+        while (position < path.length()) {
+            if (!matcher.find(position) || (matcher.start() != position)) {
+                //Unsupported segment (e.g. wildcard or filter)
+                return null;
+            }
+            if (matcher.group(1) != null) {
+                segments.add(matcher.group(1));
+            } else {
+                segments.add(Integer.parseInt(matcher.group(2)));
+            }
+            position = matcher.end();
+        }
+
+        return Collections.unmodifiableList(segments);
+    }
 }
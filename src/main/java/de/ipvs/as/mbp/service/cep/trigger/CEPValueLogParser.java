@@ -1,7 +1,6 @@
 package de.ipvs.as.mbp.service.cep.trigger;
 
-import com.jayway.jsonpath.ReadContext;
-import de.ipvs.as.mbp.service.receiver.ValueLogReceiveVerifier;
+import de.ipvs.as.mbp.domain.data_model.treelogic.DataModelTree;
 import org.bson.Document;
 import org.springframework.stereotype.Service;
 import de.ipvs.as.mbp.domain.valueLog.ValueLog;
@@ -10,9 +9,8 @@ import de.ipvs.as.mbp.domain.data_model.DataModelDataType;
 import com.jayway.jsonpath.JsonPath;
 import de.ipvs.as.mbp.service.cep.engine.core.events.CEPEventType;
 
-import java.math.BigDecimal;
-import java.text.ParseException;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * <p>Service which provides methods to parse a {@link ValueLog} to a Map with the
@@ -23,17 +21,21 @@ import java.util.*;
  * {@link CEPEventType}. The instructions are containing a pre-compiled
  * {@link JsonPath} and a {@link DataModelDataType} for each expected ValueLog value field.
  * These instructions get added by the {@link CEPTriggerService}.</p>
+ *
+ * <p>The instructions of each event type are compiled into a tree of path segments that mirrors the structure
+ * of the {@link DataModelTree} of the component, such that the values of all fields can be extracted within a
+ * single traversal of the BSON document of the value log, without serializing it to JSON.</p>
  */
 @Service
 public class CEPValueLogParser {
 
     /**
-     * All known parse instructions.
+     * All known parse instructions, compiled per event type.
      */
-    private final HashMap<String, Set<CEPValueLogParseInstruction>> cachedParseInstructions;
+    private final Map<String, CompiledInstructions> cachedParseInstructions;
 
     public CEPValueLogParser() {
-        cachedParseInstructions = new HashMap<>();
+        cachedParseInstructions = new ConcurrentHashMap<>();
 
         // Add standard parse instructions for monitoring values
         CEPValueLogParseInstruction monitoringParseInstructions = new CEPValueLogParseInstruction(
@@ -41,15 +43,15 @@ public class CEPValueLogParser {
                 JsonPath.compile("$['value']"),
                 DataModelDataType.DOUBLE
         );
-        HashSet<CEPValueLogParseInstruction> monitoringInstructionSet = new HashSet();
+        HashSet<CEPValueLogParseInstruction> monitoringInstructionSet = new HashSet<>();
         monitoringInstructionSet.add(monitoringParseInstructions);
-        cachedParseInstructions.put("MONITORING", monitoringInstructionSet);
+        cachedParseInstructions.put("MONITORING", new CompiledInstructions(monitoringInstructionSet));
     }
 
     /**
      * Parses a {@link ValueLog} to a key-value map (value field name according to event type --> value).
      * The keys correspond to the available fields of a given {@link CEPEventType} which name is passed
-     * to this method as parameter.
+     * to this method as parameter. Fields that are not contained in the value log are omitted.
      *
      * @param valueLog      The ValueLog to parse.
      * @param eventTypeName The name of the CEPEventType that belongs to the ValueLog (via component reference).
@@ -68,63 +70,18 @@ public class CEPValueLogParser {
             eventTypeName = "MONITORING";
         }
 
-        Map<String, Object> returnMap = new HashMap<>();
+        // Get the compiled parse instructions
+        CompiledInstructions parseInstructions = this.cachedParseInstructions.get(eventTypeName);
 
         // Check if the eventType is known by the parser. If not throw an exception.
-        if (!(this.cachedParseInstructions.containsKey(eventTypeName))) {
+        if (parseInstructions == null) {
             throw new IllegalArgumentException("The CEPValueLogParser does not have instructions for the CEPEventType" +
                     "named " + eventTypeName + ".");
         }
 
-        // Get the parse instructions
-        Set<CEPValueLogParseInstruction> parseInstructions = this.cachedParseInstructions.get(eventTypeName);
-
-        // Get the value document
-        Document values = valueLog.getValue();
-        String jsonValue = values.toJson();
-
-        // Parse the json path for the JsonPath library once
-        ReadContext ctx = JsonPath.parse(jsonValue);
-
-        // Apply the parse instructions
-        for (CEPValueLogParseInstruction instruction : parseInstructions) {
-            if (instruction.getType() == DataModelDataType.DOUBLE || instruction.getType() == DataModelDataType.INT ||
-                    instruction.getType() == DataModelDataType.STRING
-            || instruction.getType() == DataModelDataType.BOOLEAN) {
-                returnMap.put(instruction.getFieldName(), ctx.read(instruction.getFieldPath()));
-            } else {
-                LinkedHashMap<String, Object> extractedObj = ctx.read(instruction.getFieldPath());
-                switch (instruction.getType()) {
-                    case LONG:
-                        returnMap.put(instruction.getFieldName(),Long.parseLong((String) extractedObj.get("$numberLong")));
-                        break;
-                    case DECIMAL128:
-                        returnMap.put(instruction.getFieldName(), new BigDecimal((String) extractedObj.get("$numberDecimal")));
-                        break;
-                    case DATE:
-                        Date parsedDate = null;
-                        if (extractedObj.get("$date") instanceof Long) {
-                            parsedDate = ValueLogReceiveVerifier.parseDateLong((Long) extractedObj.get("$date"));
-                        } else if (extractedObj.get(extractedObj.keySet().toArray()[0]) instanceof String) {
-                            try {
-                                parsedDate = ValueLogReceiveVerifier.parseDateString((String) extractedObj.get("$date"));
-                            } catch (ParseException e) {
-                                throw new IllegalArgumentException("Error by converting date for CEP.");
-                            }
-                        }
-                        returnMap.put(instruction.getFieldName(), parsedDate.getTime());
-                        break;
-                    case BINARY:
-                        // For CEP no binary type exists --> handle it as string TODO binary exists in esper maybe add it later
-                        String getBinaryString = (String) extractedObj.get("$binary");
-                        returnMap.put(instruction.getFieldName(), getBinaryString);
-                        break;
-                    default:
-                        continue;
-                }
-            }
-        }
-
+        // Apply the parse instructions to the value document
+        Map<String, Object> returnMap = new HashMap<>();
+        parseInstructions.apply(valueLog.getValue(), returnMap);
         return returnMap;
     }
 
@@ -136,7 +93,7 @@ public class CEPValueLogParser {
      * @param parseInstructions A set of single {@link CEPValueLogParseInstruction}s.
      */
     public void addInstructionsForEventType(String eventTypeName, Set<CEPValueLogParseInstruction> parseInstructions) {
-        this.cachedParseInstructions.put(eventTypeName, parseInstructions);
+        this.cachedParseInstructions.put(eventTypeName, new CompiledInstructions(parseInstructions));
     }
 
     /**
@@ -148,5 +105,108 @@ public class CEPValueLogParser {
         this.cachedParseInstructions.remove(eventTypeName);
     }
 
+    /**
+     * Parse instructions of an event type, compiled into a tree of path segments. Each node of the tree
+     * corresponds to a field name or an array index within the value document and holds the instructions
+     * for the fields that are located at this node.
+     */
+    private static class CompiledInstructions {
+        // Children (field name or array index -> node) of this node
+        private final Map<Object, CompiledInstructions> children = new HashMap<>();
 
+        // Instructions for the fields located at this node
+        private final List<CEPValueLogParseInstruction> instructions = new ArrayList<>();
+
+        // Instructions whose paths could not be compiled and that are evaluated via JsonPath instead
+        private final List<CEPValueLogParseInstruction> fallbackInstructions = new ArrayList<>();
+
+        /**
+         * Creates an empty node.
+         */
+        private CompiledInstructions() {
+
+        }
+
+        /**
+         * Compiles a given set of parse instructions into a tree.
+         *
+         * @param parseInstructions The parse instructions to compile
+         */
+        private CompiledInstructions(Set<CEPValueLogParseInstruction> parseInstructions) {
+            for (CEPValueLogParseInstruction instruction : parseInstructions) {
+                // Check if the path of the instruction was compilable
+                List<Object> segments = instruction.getPathSegments();
+                if (segments == null) {
+                    fallbackInstructions.add(instruction);
+                    continue;
+                }
+
+                // Add instruction to the node of its path
+                CompiledInstructions node = this;
+                for (Object segment : segments) {
+                    node = node.children.computeIfAbsent(segment, k -> new CompiledInstructions());
+                }
+                node.instructions.add(instruction);
+            }
+        }
+
+        /**
+         * Extracts the values of all fields from a given value document and adds them to a given map.
+         *
+         * @param value     The value document
+         * @param resultMap The map (field name -> value) to add the values to
+         */
+        private void apply(Document value, Map<String, Object> resultMap) {
+            extract(value, resultMap);
+
+            // Evaluate the remaining instructions via JsonPath on the document (without serialization)
+            for (CEPValueLogParseInstruction instruction : fallbackInstructions) {
+                try {
+                    Object rawValue = instruction.getFieldPath().read(value);
+                    Object fieldValue = instruction.convertValue(rawValue);
+                    if (fieldValue != null) {
+                        resultMap.put(instruction.getFieldName(), fieldValue);
+                    }
+                } catch (RuntimeException ignored) {
+                    // Field is not available
+                }
+            }
+        }
+
+        /**
+         * Extracts the values of the fields of this node and its descendants from a given element.
+         *
+         * @param element   The element that corresponds to this node
+         * @param resultMap The map (field name -> value) to add the values to
+         */
+        private void extract(Object element, Map<String, Object> resultMap) {
+            // Convert the element for all fields of this node
+            for (CEPValueLogParseInstruction instruction : instructions) {
+                try {
+                    Object fieldValue = instruction.convertValue(element);
+                    if (fieldValue != null) {
+                        resultMap.put(instruction.getFieldName(), fieldValue);
+                    }
+                } catch (RuntimeException ignored) {
+                    // Value cannot be converted to the type of the field, so leave the field out
+                }
+            }
+
+            // Descend into the children
+            for (Map.Entry<Object, CompiledInstructions> child : children.entrySet()) {
+                Object childElement = null;
+                if ((child.getKey() instanceof String) && (element instanceof Map)) {
+                    childElement = ((Map<?, ?>) element).get(child.getKey());
+                } else if ((child.getKey() instanceof Integer) && (element instanceof List)) {
+                    List<?> list = (List<?>) element;
+                    int index = (Integer) child.getKey();
+                    childElement = (index < list.size()) ? list.get(index) : null;
+                }
+
+                if (childElement != null) {
+                    child.getValue().extract(childElement, resultMap);
+                }
+            }
+        }
+    }
 }
@@ -0,0 +1,248 @@
+package de.ipvs.as.mbp.service.deployment;
+
+import de.ipvs.as.mbp.domain.component.Component;
+import de.ipvs.as.mbp.domain.deployment.BulkDeploymentAction;
+import de.ipvs.as.mbp.domain.deployment.BulkDeploymentJob;
+import de.ipvs.as.mbp.domain.operator.parameters.ParameterInstance;
+import de.ipvs.as.mbp.web.rest.helper.DeploymentWrapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.EnableScheduling;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Service that performs deployment actions (deploy, undeploy, start, stop) on multiple components asynchronously
+ * as bulk deployment jobs. The components of a job are grouped by their devices; the devices are processed in
+ * parallel by a bounded pool of worker threads, while the components of the same device are processed one after
+ * another in the requested order. When deploying, the operator files of all components of a device are transferred
+ * within a single archive stream. The progress and results of the jobs can be retrieved while they are running.
+ */
+@Service
+@EnableScheduling
+public class BulkDeploymentService {
+
+    //Deployer dispatcher for retrieving the suitable deployer
+    private final DeployerDispatcher deployerDispatcher;
+
+    //Wrapper for performing deployment actions on single components
+    private final DeploymentWrapper deploymentWrapper;
+
+    //Service for updating the cached states of components
+    private final StateMonitoringService stateMonitoringService;
+
+    //Pool of worker threads for processing the devices
+    private final ExecutorService workerPool;
+
+    //Map (job ID -> job) of all known jobs
+    private final Map<String, BulkDeploymentJob> jobs = new ConcurrentHashMap<>();
+
+    //Time in milliseconds for which finished jobs are retained
+    private final long jobRetention;
+
+    /**
+     * Creates the service by passing references to the required components and the settings (auto-wired).
+     *
+     * @param deployerDispatcher     The {@link DeployerDispatcher} to use
+     * @param deploymentWrapper      The {@link DeploymentWrapper} to use
+     * @param stateMonitoringService The {@link StateMonitoringService} to use
+     * @param poolSize               The maximum number of devices that may be processed concurrently
+     * @param jobRetention           The time in milliseconds for which finished jobs are retained
+     */
+    @Autowired
+    public BulkDeploymentService(DeployerDispatcher deployerDispatcher, DeploymentWrapper deploymentWrapper,
+                                 StateMonitoringService stateMonitoringService,
+                                 @Value("${deployment.bulk.pool_size:16}") int poolSize,
+                                 @Value("${deployment.bulk.job_retention:3600000}") long jobRetention) {
+        //Sanity check
+        if (poolSize <= 0) {
+            throw new IllegalArgumentException("Pool size must be positive.");
+        }
+
+        this.deployerDispatcher = deployerDispatcher;
+        this.deploymentWrapper = deploymentWrapper;
+        this.stateMonitoringService = stateMonitoringService;
+        this.jobRetention = jobRetention;
+
+        //Create bounded pool of daemon worker threads
+        AtomicInteger threadCounter = new AtomicInteger(0);
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(poolSize, poolSize, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), runnable -> {
+            Thread thread = new Thread(runnable, "bulk-deployment-" + threadCounter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.allowCoreThreadTimeOut(true);
+        this.workerPool = executor;
+    }
+
+    /**
+     * Creates and starts a new job that performs a given action on a given list of components asynchronously.
+     *
+     * @param ownerId    The ID of the user who requests the job
+     * @param action     The action to perform
+     * @param components The components to perform the action on
+     * @param parameters The parameters to use when starting the components
+     * @return The created job
+     */
+    public BulkDeploymentJob submit(String ownerId, BulkDeploymentAction action, List<? extends Component> components, List<ParameterInstance> parameters) {
+        //Sanity checks
+        if (action == null) {
+            throw new IllegalArgumentException("Action must not be null.");
+        } else if (components == null) {
+            throw new IllegalArgumentException("Components must not be null.");
+        }
+
+        //Create and register job
+        BulkDeploymentJob job = new BulkDeploymentJob(ownerId, action, components);
+        jobs.put(job.getId(), job);
+
+        //Group components by their devices, preserving the order
+        Map<String, List<Component>> componentsByDevice = new LinkedHashMap<>();
+        for (Component component : components) {
+            String deviceId = (component.getDevice() == null) ? "" : component.getDevice().getId();
+            componentsByDevice.computeIfAbsent(deviceId, k -> new ArrayList<>()).add(component);
+        }
+
+        //Check if there is anything to do
+        if (componentsByDevice.isEmpty()) {
+            job.finish();
+            return job;
+        }
+
+        //Submit one task per device and finish the job after the last one
+        AtomicInteger remainingDevices = new AtomicInteger(componentsByDevice.size());
+        List<ParameterInstance> startParameters = (parameters == null) ? Collections.emptyList() : parameters;
+        for (List<Component> deviceComponents : componentsByDevice.values()) {
+            workerPool.execute(() -> {
+                try {
+                    processDevice(job, action, deviceComponents, startParameters);
+                } catch (Exception e) {
+                    //Mark all components without result as failed
+                    deviceComponents.forEach(c -> failIfUnfinished(job, c, e));
+                } finally {
+                    if (remainingDevices.decrementAndGet() == 0) {
+                        job.finish();
+                    }
+                }
+            });
+        }
+
+        return job;
+    }
+
+    /**
+     * Returns the job with a given ID.
+     *
+     * @param jobId The ID of the job
+     * @return The job or null, if no job with this ID exists
+     */
+    public BulkDeploymentJob getJob(String jobId) {
+        return (jobId == null) ? null : jobs.get(jobId);
+    }
+
+    /**
+     * Runs periodically and removes finished jobs that exceeded the retention time.
+     */
+    @Scheduled(fixedDelayString = "${deployment.bulk.job_retention:3600000}")
+    public void removeOldJobs() {
+        Instant threshold = Instant.now().minusMillis(jobRetention);
+        jobs.values().removeIf(job -> job.isFinished() && job.getFinishedAt().isBefore(threshold));
+    }
+
+    /**
+     * Shuts down the pool of worker threads.
+     */
+    @PreDestroy
+    public void shutdown() {
+        workerPool.shutdownNow();
+    }
+
+    /**
+     * Performs the action of a job on the components of a single device, one after another.
+     *
+     * @param job        The job
+     * @param action     The action to perform
+     * @param components The components of the device
+     * @param parameters The parameters to use when starting the components
+     */
+    private void processDevice(BulkDeploymentJob job, BulkDeploymentAction action, List<Component> components, List<ParameterInstance> parameters) {
+        //Deploy all components of the device at once
+        if (action == BulkDeploymentAction.DEPLOY) {
+            components.forEach(c -> job.updateResult(c.getId(), BulkDeploymentJob.Status.IN_PROGRESS, null));
+            deployerDispatcher.getDeployer().deployComponents(components, (component, e) -> {
+                updateResult(job, component, e);
+                stateMonitoringService.refreshComponentState(component);
+            });
+            return;
+        }
+
+        //Perform the action for each component
+        for (Component component : components) {
+            job.updateResult(component.getId(), BulkDeploymentJob.Status.IN_PROGRESS, null);
+            try {
+                switch (action) {
+                    case UNDEPLOY:
+                        deploymentWrapper.undeployComponent(component);
+                        break;
+                    case START:
+                        deploymentWrapper.startComponent(component, parameters);
+                        break;
+                    case STOP:
+                        deploymentWrapper.stopComponent(component);
+                        break;
+                    default:
+                        throw new IllegalArgumentException("Unsupported action: " + action);
+                }
+                updateResult(job, component, null);
+            } catch (RuntimeException e) {
+                updateResult(job, component, e);
+            }
+        }
+    }
+
+    /**
+     * Updates the result of a component within a job, depending on whether an exception occurred.
+     *
+     * @param job       The job
+     * @param component The component
+     * @param exception The exception that occurred or null, if the action succeeded
+     */
+    private void updateResult(BulkDeploymentJob job, Component component, Exception exception) {
+        if (exception == null) {
+            job.updateResult(component.getId(), BulkDeploymentJob.Status.SUCCEEDED, null);
+        } else {
+            job.updateResult(component.getId(), BulkDeploymentJob.Status.FAILED, exception.getMessage());
+        }
+    }
+
+    /**
+     * Marks the result of a component within a job as failed, unless it is already finished.
+     *
+     * @param job       The job
+     * @param component The component
+     * @param exception The exception that occurred
+     */
+    private void failIfUnfinished(BulkDeploymentJob job, Component component, Exception exception) {
+        for (BulkDeploymentJob.ComponentResult result : job.getResults()) {
+            if (result.getComponentId().equals(component.getId())
+                    && ((result.getStatus() == BulkDeploymentJob.Status.PENDING) || (result.getStatus() == BulkDeploymentJob.Status.IN_PROGRESS))) {
+                updateResult(job, component, exception);
+            }
+        }
+    }
+}
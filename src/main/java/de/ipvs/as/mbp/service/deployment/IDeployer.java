@@ -5,6 +5,7 @@ import de.ipvs.as.mbp.domain.device.Device;
 import de.ipvs.as.mbp.domain.operator.parameters.ParameterInstance;
 
 import java.util.List;
+import java.util.function.BiConsumer;
 
 /**
  * Basic interface for deployers that are able to deploy MBP components onto their corresponding devices.
@@ -49,6 +50,25 @@ public interface IDeployer {
      */
     void deployComponent(Component component);
 
+    /**
+     * Deploys multiple components onto their corresponding remote devices. The given result handler is called
+     * for each component after its deployment, receiving null on success or the exception that occurred
+     * on failure. Components of the same device are deployed in the given order.
+     *
+     * @param components    The components to deploy
+     * @param resultHandler The result handler to call for each component
+     */
+    default void deployComponents(List<? extends Component> components, BiConsumer<Component, RuntimeException> resultHandler) {
+        for (Component component : components) {
+            try {
+                deployComponent(component);
+                resultHandler.accept(component, null);
+            } catch (RuntimeException e) {
+                resultHandler.accept(component, e);
+            }
+        }
+    }
+
     /**
      * Undeploys a component from its corresponding remote device.
      *
@@ -0,0 +1,626 @@
+package de.ipvs.as.mbp.service.deployment;
+
+import de.ipvs.as.mbp.domain.component.Component;
+import de.ipvs.as.mbp.domain.device.Device;
+import de.ipvs.as.mbp.domain.user_entity.UserEntity;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.mapping.event.AbstractMongoEventListener;
+import org.springframework.data.mongodb.core.mapping.event.AfterDeleteEvent;
+import org.springframework.data.mongodb.core.mapping.event.AfterSaveEvent;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.EnableScheduling;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * Service that monitors the availability states of devices and the deployment states of components in the
+ * background. The states are determined concurrently by a bounded pool of worker threads, using the deployer that
+ * is currently suitable, and cached together with the time of their determination. Cached states are served as long
+ * as they are younger than the configured time-to-live, such that REST requests for the states of many entities do
+ * not need to wait for the probing of each entity. Concurrent requests for the same entity share a single probe,
+ * whereas refreshes after the entity was modified always start a new probe that supersedes the pending ones.<br>
+ * All devices and components whose states were requested recently are re-probed periodically, so that their cached
+ * states remain fresh. Clients may subscribe to server-sent events in order to get notified about state changes.
+ */
+@Service
+@EnableScheduling
+public class StateMonitoringService extends AbstractMongoEventListener<UserEntity> {
+
+    //Names of the server-sent events
+    public static final String EVENT_DEVICE_STATE = "device_state";
+    public static final String EVENT_COMPONENT_STATE = "component_state";
+
+    //Time after which the emitters time out
+    private static final Long EMITTER_TIMEOUT = 30 * 60 * 1000L;
+
+    //Pool of worker threads for probing the states
+    private final ExecutorService probePool;
+
+    //Caches of the states of devices and components
+    private final StateCache<Device, DeviceState> deviceStates;
+    private final StateCache<Component, ComponentState> componentStates;
+
+    //Subscribed emitters for server-sent events
+    private final List<Subscription> subscriptions = new CopyOnWriteArrayList<>();
+
+    //Counter for generating event IDs
+    private final AtomicLong eventIdCounter = new AtomicLong(0);
+
+    //Time-to-live of cached states in milliseconds
+    private final long timeToLive;
+
+    //Maximum time in milliseconds to wait for the probing of states during a request
+    private final long requestTimeout;
+
+    //Time in milliseconds after which entities are no longer monitored when their states are not requested
+    private final long trackingDuration;
+
+    /**
+     * Creates the service by passing a reference to the deployer dispatcher and the monitoring settings (auto-wired).
+     *
+     * @param deployerDispatcher The {@link DeployerDispatcher} to use
+     * @param poolSize           The maximum number of states that may be probed concurrently
+     * @param timeToLive         The time-to-live of cached states in milliseconds
+     * @param requestTimeout     The maximum time in milliseconds to wait for the probing of states during a request
+     * @param trackingDuration   The time in milliseconds after which entities are no longer monitored when
+     *                           their states are not requested
+     */
+    @Autowired
+    public StateMonitoringService(DeployerDispatcher deployerDispatcher,
+                                  @Value("${deployment.state.pool_size:16}") int poolSize,
+                                  @Value("${deployment.state.ttl:60000}") long timeToLive,
+                                  @Value("${deployment.state.request_timeout:20000}") long requestTimeout,
+                                  @Value("${deployment.state.tracking_duration:600000}") long trackingDuration) {
+        //Sanity checks
+        if (poolSize <= 0) {
+            throw new IllegalArgumentException("Pool size must be positive.");
+        } else if (timeToLive < 0) {
+            throw new IllegalArgumentException("Time-to-live must not be negative.");
+        }
+
+        this.timeToLive = timeToLive;
+        this.requestTimeout = requestTimeout;
+        this.trackingDuration = trackingDuration;
+
+        //Create bounded pool of daemon worker threads
+        AtomicInteger threadCounter = new AtomicInteger(0);
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(poolSize, poolSize, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), runnable -> {
+            Thread thread = new Thread(runnable, "state-probe-" + threadCounter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.allowCoreThreadTimeOut(true);
+        this.probePool = executor;
+
+        //Create the state caches
+        this.deviceStates = new StateCache<>(EVENT_DEVICE_STATE, DeviceState.UNKNOWN,
+                device -> deployerDispatcher.getDeployer().retrieveDeviceState(device));
+        this.componentStates = new StateCache<>(EVENT_COMPONENT_STATE, ComponentState.UNKNOWN,
+                component -> deployerDispatcher.getDeployer(component).retrieveComponentState(component));
+    }
+
+    /**
+     * Returns the availability states of a given list of devices. Cached states are used if they did not expire yet
+     * and no refresh is enforced; all other states are probed concurrently.
+     *
+     * @param devices The devices to retrieve the states for
+     * @param refresh True, if the states are supposed to be probed regardless of the cache; false otherwise
+     * @return A map (device ID --> device state) of the states
+     */
+    public Map<String, DeviceState> getDeviceStates(Collection<Device> devices, boolean refresh) {
+        return deviceStates.getStates(devices, refresh);
+    }
+
+    /**
+     * Returns the availability state of a given device. A cached state is used if it did not expire yet and no
+     * refresh is enforced; otherwise, the state is probed.
+     *
+     * @param device  The device to retrieve the state for
+     * @param refresh True, if the state is supposed to be probed regardless of the cache; false otherwise
+     * @return The state of the device
+     */
+    public DeviceState getDeviceState(Device device, boolean refresh) {
+        //Sanity check
+        if (device == null) {
+            throw new IllegalArgumentException("Device must not be null.");
+        }
+
+        return deviceStates.getStates(Collections.singletonList(device), refresh).get(device.getId());
+    }
+
+    /**
+     * Returns the deployment states of a given list of components. Cached states are used if they did not expire
+     * yet and no refresh is enforced; all other states are probed concurrently.
+     *
+     * @param components The components to retrieve the states for
+     * @param refresh    True, if the states are supposed to be probed regardless of the cache; false otherwise
+     * @return A map (component ID --> component state) of the states
+     */
+    public Map<String, ComponentState> getComponentStates(Collection<? extends Component> components, boolean refresh) {
+        return componentStates.getStates(components, refresh);
+    }
+
+    /**
+     * Returns the deployment state of a given component. A cached state is used if it did not expire yet and no
+     * refresh is enforced; otherwise, the state is probed.
+     *
+     * @param component The component to retrieve the state for
+     * @param refresh   True, if the state is supposed to be probed regardless of the cache; false otherwise
+     * @return The state of the component
+     */
+    public ComponentState getComponentState(Component component, boolean refresh) {
+        //Sanity check
+        if (component == null) {
+            throw new IllegalArgumentException("Component must not be null.");
+        }
+
+        return componentStates.getStates(Collections.singletonList(component), refresh).get(component.getId());
+    }
+
+    /**
+     * Triggers the asynchronous re-probing of the deployment state of a given component, e.g. after it was
+     * deployed, started, stopped or undeployed. Subscribers get notified if the state changed. Since probes that
+     * are already pending may have been started before the state changed, a new probe is always started and
+     * supersedes the pending ones.
+     *
+     * @param component The component whose state changed
+     */
+    public void refreshComponentState(Component component) {
+        //Sanity check
+        if (component == null) {
+            throw new IllegalArgumentException("Component must not be null.");
+        }
+
+        componentStates.refresh(component);
+    }
+
+    /**
+     * Creates a new emitter for server-sent events, subscribes it to the state changes of the devices and components
+     * with given IDs and returns it. The states of these entities are monitored for as long as the emitter
+     * is subscribed.
+     *
+     * @param devices    The devices to subscribe to
+     * @param components The components to subscribe to
+     * @return The SSE emitter that is supposed to be returned to the client
+     */
+    public SseEmitter subscribe(Collection<Device> devices, Collection<? extends Component> components) {
+        //Sanity checks
+        if ((devices == null) || (components == null)) {
+            throw new IllegalArgumentException("Devices and components must not be null.");
+        }
+
+        //Collect the IDs of the entities and track them
+        Set<String> entityIds = new HashSet<>();
+        devices.forEach(d -> entityIds.add(d.getId()));
+        components.forEach(c -> entityIds.add(c.getId()));
+        deviceStates.track(devices);
+        componentStates.track(components);
+
+        //Create new emitter with timeout
+        SseEmitter emitter = new SseEmitter(EMITTER_TIMEOUT);
+        Subscription subscription = new Subscription(emitter, entityIds);
+
+        //Unsubscribe on timeout or completion
+        Runnable unsubscribe = () -> subscriptions.remove(subscription);
+        emitter.onCompletion(unsubscribe);
+        emitter.onTimeout(unsubscribe);
+
+        //Register subscription
+        subscriptions.add(subscription);
+        return emitter;
+    }
+
+    /**
+     * Runs periodically and re-probes the states of all devices and components that are monitored, such that their
+     * cached states remain fresh. Entities whose states were not requested for a while are no longer monitored.
+     */
+    @Scheduled(initialDelayString = "${deployment.state.poll_interval:30000}", fixedDelayString = "${deployment.state.poll_interval:30000}")
+    public void pollStates() {
+        try {
+            deviceStates.poll();
+            componentStates.poll();
+        } catch (Exception e) {
+            System.err.println("Failed to poll device and component states: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Called after an entity was saved to the database. Cached states of the entity are marked as expired, since
+     * the entity might have been modified in a way that affects its state.
+     *
+     * @param event The event of the saved entity
+     */
+    @Override
+    public void onAfterSave(AfterSaveEvent<UserEntity> event) {
+        UserEntity entity = event.getSource();
+        if (entity instanceof Device) {
+            deviceStates.expire((Device) entity);
+        } else if (entity instanceof Component) {
+            componentStates.expire((Component) entity);
+        }
+    }
+
+    /**
+     * Called after one or multiple entities were deleted from the database. Cached states of the
+     * deleted entities are discarded.
+     *
+     * @param event The event of the deleted entities
+     */
+    @Override
+    public void onAfterDelete(AfterDeleteEvent<UserEntity> event) {
+        //Retrieve the ID of the deleted entity from the query
+        Object id = event.getSource().get("_id");
+
+        //Entities of bulk deletions are dropped once they are no longer requested
+        if ((id == null) || (id instanceof Document)) {
+            return;
+        }
+        evict(id.toString());
+    }
+
+    /**
+     * Shuts down the pool of worker threads.
+     */
+    @PreDestroy
+    public void shutdown() {
+        probePool.shutdownNow();
+    }
+
+    /**
+     * Discards all cached states of the entity with a given ID, including the states of the monitoring
+     * components that refer to it.
+     *
+     * @param entityId The ID of the entity
+     */
+    private void evict(String entityId) {
+        deviceStates.evict(entityId);
+        componentStates.evict(entityId);
+        componentStates.evictIf(id -> id.startsWith(entityId + "@") || id.endsWith("@" + entityId));
+    }
+
+    /**
+     * Publishes a state change of an entity to all subscribers that subscribed to the entity.
+     *
+     * @param eventName The name of the event
+     * @param entityId  The ID of the entity
+     * @param state     The new state of the entity
+     * @param timestamp The time at which the state was determined
+     */
+    private void publishStateChange(String eventName, String entityId, Enum<?> state, long timestamp) {
+        //Check if somebody subscribed at all
+        if (subscriptions.isEmpty()) {
+            return;
+        }
+
+        //Create event data
+        Map<String, Object> data = new HashMap<>();
+        data.put("id", entityId);
+        data.put("state", state.name());
+        data.put("timestamp", timestamp);
+
+        //Iterate over all subscriptions and publish the event to the matching ones
+        for (Subscription subscription : subscriptions) {
+            if (!subscription.entityIds.contains(entityId)) {
+                continue;
+            }
+            try {
+                subscription.emitter.send(SseEmitter.event()
+                        .id(Long.toString(eventIdCounter.getAndIncrement()))
+                        .name(eventName)
+                        .data(data, MediaType.APPLICATION_JSON));
+            } catch (Exception e) {
+                //Complete emitter, leading to unsubscription
+                subscription.emitter.completeWithError(e);
+            }
+        }
+    }
+
+    /**
+     * Returns whether an entity with a given ID is currently subscribed by at least one subscriber.
+     *
+     * @param entityId The ID of the entity
+     * @return True, if the entity is subscribed; false otherwise
+     */
+    private boolean isSubscribed(String entityId) {
+        for (Subscription subscription : subscriptions) {
+            if (subscription.entityIds.contains(entityId)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Subscription of an SSE emitter to the states of a set of entities.
+     */
+    private static class Subscription {
+        private final SseEmitter emitter;
+        private final Set<String> entityIds;
+
+        private Subscription(SseEmitter emitter, Set<String> entityIds) {
+            this.emitter = emitter;
+            this.entityIds = entityIds;
+        }
+    }
+
+    /**
+     * Cached state of an entity, together with the time of its determination and the time at which it was
+     * requested last.
+     *
+     * @param <E> The type of the entity
+     * @param <S> The type of the state
+     */
+    private static class StateEntry<E extends UserEntity, S extends Enum<S>> {
+        private volatile E entity;
+        private volatile S state;
+        private volatile long timestamp;
+        private volatile long lastRequested;
+        private volatile CompletableFuture<S> pendingProbe;
+
+        //Generation of the most recent probe; results of older probes are discarded (guarded by the entry)
+        private long probeGeneration = 0;
+
+        private StateEntry(E entity) {
+            this.entity = entity;
+            this.lastRequested = System.currentTimeMillis();
+        }
+    }
+
+    /**
+     * Cache for the states of entities of a certain type, which probes the states concurrently on demand.
+     *
+     * @param <E> The type of the entities
+     * @param <S> The type of the states
+     */
+    private class StateCache<E extends UserEntity, S extends Enum<S>> {
+        //Map (entity ID --> entry) of the cached states
+        private final Map<String, StateEntry<E, S>> entries = new ConcurrentHashMap<>();
+
+        //Name of the events that are published on state changes
+        private final String eventName;
+
+        //State to use in case the probing fails
+        private final S unknownState;
+
+        //Function for probing the state of an entity
+        private final Function<E, S> prober;
+
+        private StateCache(String eventName, S unknownState, Function<E, S> prober) {
+            this.eventName = eventName;
+            this.unknownState = unknownState;
+            this.prober = prober;
+        }
+
+        /**
+         * Returns the states of a given collection of entities, while probing the states that are not
+         * available or expired concurrently and waiting for them up to the request timeout.
+         *
+         * @param entities The entities
+         * @param refresh  True, if all states are supposed to be probed; false otherwise
+         * @return A map (entity ID --> state) of the states
+         */
+        private Map<String, S> getStates(Collection<? extends E> entities, boolean refresh) {
+            //Sanity check
+            if (entities == null) {
+                throw new IllegalArgumentException("Entities must not be null.");
+            }
+
+            long now = System.currentTimeMillis();
+            Map<String, S> result = new HashMap<>();
+            Map<String, CompletableFuture<S>> probes = new HashMap<>();
+
+            //Iterate over all entities and use cached states or start probes
+            for (E entity : entities) {
+                StateEntry<E, S> entry = track(entity, now);
+                if ((!refresh) && (entry.state != null) && (now - entry.timestamp <= timeToLive)) {
+                    result.put(entity.getId(), entry.state);
+                } else {
+                    probes.put(entity.getId(), probe(entry, false));
+                }
+            }
+
+            //Check if probes need to be awaited
+            if (probes.isEmpty()) {
+                return result;
+            }
+
+            //Wait for all probes, but not longer than the request timeout
+            try {
+                CompletableFuture.allOf(probes.values().toArray(new CompletableFuture<?>[0]))
+                        .get(requestTimeout, TimeUnit.MILLISECONDS);
+            } catch (TimeoutException ignored) {
+                //Use the states that are available so far
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (Exception ignored) {
+                //Failed probes yield the unknown state
+            }
+
+            //Collect the probed states, falling back to the last known ones
+            for (Map.Entry<String, CompletableFuture<S>> probe : probes.entrySet()) {
+                S state = probe.getValue().getNow(null);
+                if (state == null) {
+                    StateEntry<E, S> entry = entries.get(probe.getKey());
+                    state = ((entry == null) || (entry.state == null)) ? unknownState : entry.state;
+                }
+                result.put(probe.getKey(), state);
+            }
+            return result;
+        }
+
+        /**
+         * Registers given entities for monitoring, without probing them.
+         *
+         * @param entities The entities to monitor
+         */
+        private void track(Collection<? extends E> entities) {
+            long now = System.currentTimeMillis();
+            entities.forEach(e -> track(e, now));
+        }
+
+        /**
+         * Returns the entry of a given entity and marks it as requested, while creating it if necessary.
+         *
+         * @param entity The entity
+         * @param now    The current time
+         * @return The entry of the entity
+         */
+        private StateEntry<E, S> track(E entity, long now) {
+            StateEntry<E, S> entry = entries.computeIfAbsent(entity.getId(), id -> new StateEntry<>(entity));
+            entry.entity = entity;
+            entry.lastRequested = now;
+            return entry;
+        }
+
+        /**
+         * Starts the probing of the state of a given entity asynchronously after it was modified. Pending probes
+         * are superseded by the new probe, such that their results are discarded.
+         *
+         * @param entity The entity
+         * @return The future of the probed state
+         */
+        private CompletableFuture<S> refresh(E entity) {
+            return probe(track(entity, System.currentTimeMillis()), true);
+        }
+
+        /**
+         * Starts the probing of the state of the entity of a given entry asynchronously, unless a probe
+         * is already pending and no new probe is enforced.
+         *
+         * @param entry The entry
+         * @param force True, if a new probe is supposed to supersede pending ones; false otherwise
+         * @return The future of the probed state
+         */
+        private CompletableFuture<S> probe(StateEntry<E, S> entry, boolean force) {
+            synchronized (entry) {
+                //Share pending probes
+                if ((!force) && (entry.pendingProbe != null) && (!entry.pendingProbe.isDone())) {
+                    return entry.pendingProbe;
+                }
+
+                //Start new probe that supersedes all previous ones
+                long generation = ++entry.probeGeneration;
+                CompletableFuture<S> future = CompletableFuture.supplyAsync(() -> {
+                    E entity = entry.entity;
+                    S state;
+                    try {
+                        state = prober.apply(entity);
+                    } catch (Exception e) {
+                        state = unknownState;
+                    }
+                    if (state == null) {
+                        state = unknownState;
+                    }
+                    update(entity.getId(), entry, generation, state);
+                    return state;
+                }, probePool);
+                entry.pendingProbe = future;
+                return future;
+            }
+        }
+
+        /**
+         * Updates the state of a given entry with the result of a probe and publishes an event if the state
+         * changed. Results of probes that were superseded by a newer probe are ignored.
+         *
+         * @param entityId   The ID of the entity
+         * @param entry      The entry
+         * @param generation The generation of the probe
+         * @param state      The new state
+         */
+        private void update(String entityId, StateEntry<E, S> entry, long generation, S state) {
+            S previousState;
+            long timestamp;
+            synchronized (entry) {
+                //Check whether the probe was superseded
+                if (generation != entry.probeGeneration) {
+                    return;
+                }
+                previousState = entry.state;
+                timestamp = System.currentTimeMillis();
+                entry.timestamp = timestamp;
+                entry.state = state;
+            }
+
+            //Notify subscribers if the state changed
+            if (state != previousState) {
+                publishStateChange(eventName, entityId, state, timestamp);
+            }
+        }
+
+        /**
+         * Re-probes all monitored entities and drops entities that were not requested for a while and are
+         * not subscribed.
+         */
+        private void poll() {
+            long now = System.currentTimeMillis();
+            List<String> outdated = new ArrayList<>();
+            for (Map.Entry<String, StateEntry<E, S>> entry : entries.entrySet()) {
+                if ((now - entry.getValue().lastRequested > trackingDuration) && (!isSubscribed(entry.getKey()))) {
+                    outdated.add(entry.getKey());
+                } else {
+                    probe(entry.getValue(), false);
+                }
+            }
+            outdated.forEach(entries::remove);
+        }
+
+        /**
+         * Replaces the monitored instance of a given entity, if it is monitored, and marks its cached state
+         * as expired.
+         *
+         * @param entity The entity
+         */
+        private void expire(E entity) {
+            StateEntry<E, S> entry = entries.get(entity.getId());
+            if (entry != null) {
+                entry.entity = entity;
+                entry.timestamp = 0;
+            }
+        }
+
+        /**
+         * Discards the cached state of the entity with a given ID.
+         *
+         * @param entityId The ID of the entity
+         */
+        private void evict(String entityId) {
+            entries.remove(entityId);
+        }
+
+        /**
+         * Discards the cached states of all entities whose IDs match a given condition.
+         *
+         * @param condition The condition
+         */
+        private void evictIf(Predicate<String> condition) {
+            entries.keySet().removeIf(condition);
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package de.ipvs.as.mbp.service.deployment.ssh;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import de.ipvs.as.mbp.domain.operator.Code;
+import de.ipvs.as.mbp.util.CryptoUtils;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.apache.commons.codec.binary.Base64;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+/**
+ * Content-addressed cache of pre-compressed archive entries for the files of operators. Each operator file is
+ * identified by the hash of its content and its file mode and stored as compressed archive entry within a staging
+ * directory of the archive, such that it can be reused for all deployments of this file, regardless of the operator
+ * or component it belongs to. The total size of the cached entries is bounded.
+ */
+@org.springframework.stereotype.Component
+public class OperatorArtifactCache {
+
+    //Name of the staging directory within the archives
+    public static final String ARTIFACTS_DIR = ".mbp_artifacts";
+
+    //Name of the cache for publishing metrics
+    private static final String CACHE_NAME = "operator_artifacts";
+
+    //Cache (artifact key -> compressed archive entry) of the artifacts
+    private final Cache<String, byte[]> artifacts;
+
+    /**
+     * Creates the cache by passing the cache settings (auto-wired).
+     *
+     * @param meterRegistry The {@link MeterRegistry} to publish the hit/miss metrics of the cache to
+     * @param maximumBytes  The maximum total size of the cached entries in bytes
+     */
+    @Autowired
+    private OperatorArtifactCache(MeterRegistry meterRegistry,
+                                  @Value("${deployment.artifact_cache.maximum_bytes:67108864}") long maximumBytes) {
+        this.artifacts = Caffeine.newBuilder()
+                .maximumWeight(maximumBytes)
+                .weigher((String key, byte[] entry) -> entry.length)
+                .recordStats()
+                .build();
+
+        // Publish hit/miss metrics of the cache
+        CaffeineCacheMetrics.monitor(meterRegistry, this.artifacts, CACHE_NAME);
+    }
+
+    /**
+     * Returns the content hash of a given operator file. The hash is always computed from the actual content,
+     * since the stored hash of the file is not guaranteed to be up to date.
+     *
+     * @param file The file
+     * @return The MD5 hash of the content of the file
+     */
+    public static String getContentHash(Code file) {
+        return CryptoUtils.md5(getContent(file));
+    }
+
+    /**
+     * Returns the decoded content of a given operator file.
+     *
+     * @param file The file
+     * @return The content of the file
+     */
+    public static byte[] getContent(Code file) {
+        //Decode base64 encoded files
+        if (file.isBase64Encoded()) {
+            return Base64.decodeBase64(file.getContent());
+        }
+        return (file.getContent() == null) ? new byte[0] : file.getContent().getBytes();
+    }
+
+    /**
+     * Returns the path of the artifact of a given operator file within the archive.
+     *
+     * @param file The file
+     * @param mode The file mode of the file
+     * @return The path of the artifact
+     */
+    public String getArtifactPath(Code file, int mode) {
+        return ARTIFACTS_DIR + "/" + getArtifactKey(file, mode);
+    }
+
+    /**
+     * Returns the compressed archive entry of the artifact of a given operator file, which is created
+     * and cached if it is not available yet.
+     *
+     * @param file The file
+     * @param mode The file mode of the file
+     * @return The compressed archive entry
+     */
+    public byte[] getCompressedEntry(Code file, int mode) {
+        String key = getArtifactKey(file, mode);
+        return artifacts.get(key, k -> {
+            try {
+                return TarArchiveBuilder.createCompressedEntry(ARTIFACTS_DIR + "/" + k, getContent(file), mode);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+    /**
+     * Returns the key of the artifact of a given operator file, consisting of its content hash and file mode.
+     *
+     * @param file The file
+     * @param mode The file mode
+     * @return The key
+     */
+    private String getArtifactKey(Code file, int mode) {
+        return getContentHash(file) + "_" + Integer.toOctalString(mode);
+    }
+}
@@ -15,16 +15,27 @@ import de.ipvs.as.mbp.service.deployment.ComponentState;
 import de.ipvs.as.mbp.service.deployment.DeviceState;
 import de.ipvs.as.mbp.service.deployment.IDeployer;
 import de.ipvs.as.mbp.service.settings.SettingsService;
+import de.ipvs.as.mbp.util.CryptoUtils;
 import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpStatus;
 
 import java.io.IOException;
 import java.io.OutputStream;
 import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BiConsumer;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -45,6 +56,11 @@ public class SSHDeployer implements IDeployer {
     private static final String RUN_SCRIPT_NAME = "running.sh";
     private static final String STOP_SCRIPT_NAME = "stop.sh";
     private static final String MBP_CLIENT_PROPERTIES_FILE_NAME = "mbp.properties";
+    private static final String INSTALL_MARKER_FILE_NAME = ".mbp_installed";
+
+    // Modes of transferred files
+    private static final int DEFAULT_FILE_MODE = 0644;
+    private static final int EXECUTABLE_FILE_MODE = 0755;
 
     // Timeout for availability checks (ms)
     private static final int AVAILABILITY_CHECK_TIMEOUT = 5000;
@@ -55,10 +71,16 @@ public class SSHDeployer implements IDeployer {
     @Autowired
     private SSHSessionPool sshSessionPool;
     @Autowired
+    private OperatorArtifactCache operatorArtifactCache;
+    @Autowired
     private NetworkService networkService;
     @Autowired
     private SettingsService settingsService;
 
+    // Whether only files that differ from the files on the device are transferred
+    @Value("${deployment.ssh.incremental:true}")
+    private boolean incrementalDeployment;
+
     /**
      * Retrieves the current deployment state of a given component.
      *
@@ -122,23 +144,17 @@ public class SSHDeployer implements IDeployer {
             // No abort, because pings could be just disabled in the network --> check SSH
         }
 
-        // Check if it is possible to establish a SSH connection
-        SSHSession sshSession;
-        try {
-            // Get new SSH session from pool
-            sshSession = sshSessionPool.getNewSSHSession(device);
+        // Check if it is possible to establish a SSH connection and to execute a basic command
+        boolean commandExecutable;
+        try (SSHSession sshSession = sshSessionPool.getSSHSession(device)) {
+            commandExecutable = sshSession.isCommandExecutable();
         } catch (IOException e) {
-            sshSession = null;
+            // Device is either online with no SSH or offline
+            commandExecutable = false;
         }
 
-        // Check for valid SSH session object
-        if (sshSession == null) {
-            // Invalid, device is either online with no SSH or offline
-            return pingable ? DeviceState.ONLINE : DeviceState.OFFLINE;
-        }
-
-        // Check if it is possible to execute a basic command
-        if (sshSession.isCommandExecutable()) {
+        // Check result
+        if (commandExecutable) {
             return DeviceState.SSH_AVAILABLE;
         } else {
             // No commands can be executed via SSH, device is either online with no SSH or
@@ -177,9 +193,8 @@ public class SSHDeployer implements IDeployer {
         // Get dedicated device of the component
         Device device = component.getDevice();
 
-        try {
-            // Get SSH session from pool
-            SSHSession sshSession = sshSessionPool.getSSHSession(component);
+        // Borrow SSH session from pool and return it afterwards
+        try (SSHSession sshSession = sshSessionPool.getSSHSession(component)) {
 
             // Create JSON string from parameters
             JSONArray parameterArray = convertParametersToJSON(operator, parameterInstanceList);
@@ -215,9 +230,8 @@ public class SSHDeployer implements IDeployer {
         // Get dedicated device of the component
         Device device = component.getDevice();
 
-        try {
-            // Get SSH session from pool
-            SSHSession sshSession = sshSessionPool.getSSHSession(component);
+        // Borrow SSH session from pool and return it afterwards
+        try (SSHSession sshSession = sshSessionPool.getSSHSession(component)) {
 
             // Execute start script with parameters
             sshSession.executeShellScript(deploymentPath + "/" + STOP_SCRIPT_NAME);
@@ -239,94 +253,266 @@ public class SSHDeployer implements IDeployer {
             throw new IllegalArgumentException("Component must not be null.");
         }
 
-        LOGGER.log(Level.INFO, "Deploy request for component: " + "{0} (Type: {1})",
-                new Object[]{component.getId(), component.getComponentTypeName()});
+        // Deploy component and remember the error, if any
+        AtomicReference<RuntimeException> error = new AtomicReference<>();
+        deployComponents(Collections.singletonList(component), (c, e) -> error.set(e));
 
-        // Retrieve adapter
-        Operator operator = component.getOperator();
+        // Re-throw error
+        if (error.get() != null) {
+            throw error.get();
+        }
+    }
 
-        // Sanity check
-        if (operator == null) {
-            throw new IllegalArgumentException("Operator must not be null.");
+    /**
+     * Deploys multiple components onto their corresponding remote devices. For each device, the operator files of
+     * all of its components are transferred within a single archive stream and verified by a single hash
+     * check, before the components are installed one after another in the given order.
+     *
+     * @param components    The components to deploy
+     * @param resultHandler Handler that is called for each component after its deployment, receiving
+     *                      null on success or the exception that occurred on failure
+     */
+    @Override
+    public void deployComponents(List<? extends Component> components, BiConsumer<Component, RuntimeException> resultHandler) {
+        // Sanity checks
+        if (components == null) {
+            throw new IllegalArgumentException("Components must not be null.");
+        } else if (resultHandler == null) {
+            throw new IllegalArgumentException("Result handler must not be null.");
         }
 
-        // Get dedicated device of the component
-        Device device = component.getDevice();
+        // Group components by their devices, preserving the order
+        Map<String, List<Component>> componentsByDevice = new LinkedHashMap<>();
+        for (Component component : components) {
+            // Sanity checks
+            if (component == null) {
+                throw new IllegalArgumentException("Component must not be null.");
+            } else if (component.getOperator() == null) {
+                resultHandler.accept(component, new IllegalArgumentException("Operator must not be null."));
+                continue;
+            } else if (component.getDevice() == null) {
+                resultHandler.accept(component, new IllegalArgumentException("Device must not be null."));
+                continue;
+            }
+
+            componentsByDevice.computeIfAbsent(component.getDevice().getId(), k -> new ArrayList<>()).add(component);
+        }
+
+        // Deploy the components per device
+        for (List<Component> deviceComponents : componentsByDevice.values()) {
+            deployComponentsToDevice(deviceComponents, resultHandler);
+        }
+    }
 
+    /**
+     * Deploys multiple components that belong to the same device onto this device. Components whose files
+     * are already present on the device and were installed successfully before are not installed again.
+     *
+     * @param components    The components to deploy
+     * @param resultHandler Handler that is called for each component after its deployment
+     */
+    private void deployComponentsToDevice(List<Component> components, BiConsumer<Component, RuntimeException> resultHandler) {
+        for (Component component : components) {
+            LOGGER.log(Level.INFO, "Deploy request for component: " + "{0} (Type: {1})",
+                    new Object[]{component.getId(), component.getComponentTypeName()});
+        }
+
+        // Resolve the IP address of the broker
+        String brokerIP;
         try {
-            // Get SSH session from pool
-            SSHSession sshSession = sshSessionPool.getSSHSession(component);
+            brokerIP = resolveBrokerIPAddress();
+        } catch (IOException e) {
+            LOGGER.log(Level.SEVERE, "Broker IP address could not be resolved", e);
+            DeploymentException exception = new DeploymentException("Deployment failed because the IP address of the broker could not be resolved: " + e.getMessage());
+            components.forEach(c -> resultHandler.accept(c, exception));
+            return;
+        } catch (RuntimeException e) {
+            components.forEach(c -> resultHandler.accept(c, e));
+            return;
+        }
 
-            // Resolve deployment path
-            String deploymentPath = getDeploymentPath(component);
+        // Borrow SSH session from pool and return it afterwards
+        try (SSHSession sshSession = sshSessionPool.getSSHSession(components.get(0))) {
+            // Transfer the files of all components and determine the components that need to be installed
+            Map<String, String> installFingerprints;
+            try {
+                installFingerprints = transferComponentFiles(sshSession, components, brokerIP);
+            } catch (IOException e) {
+                components.forEach(c -> resultHandler.accept(c, new DeploymentException("Deployment failed due to a SSH error.")));
+                return;
+            } catch (RuntimeException e) {
+                components.forEach(c -> resultHandler.accept(c, e));
+                return;
+            }
 
-            // Create deployment directory
-            LOGGER.log(Level.INFO, "Deploying to directory {1} ...", new Object[]{deploymentPath});
-            sshSession.createDir(deploymentPath);
-            LOGGER.log(Level.INFO, "Created directory successfully");
-
-            LOGGER.log(Level.INFO, "Copying adapter files to target device....");
-
-            // Iterate over all adapter files and copy them
-            for (Code file : operator.getRoutines()) {
-                // Check whether content is encoded as base64
-                if (file.isBase64Encoded()) {
-                    // Create file from base64
-                    sshSession.createFileFromBase64(deploymentPath, file.getName(), file.getContent());
-                } else {
-                    // No base64 string, just copy file
-                    sshSession.createFile(deploymentPath, file.getName(), file.getContent());
+            // Install the components one after another
+            for (Component component : components) {
+                // Skip components that are already installed with the same files
+                if (!installFingerprints.containsKey(component.getId())) {
+                    LOGGER.log(Level.INFO, "Component {0} is already deployed and unchanged", component.getId());
+                    resultHandler.accept(component, null);
+                    continue;
                 }
 
-                // Generate hash of the newly created file
-                String fileHash = sshSession.generateHashOfFile(deploymentPath + "/" + file.getName());
-
-                // Compare generated hash to the given one
-                String givenHash = file.getHash();
-                if ((fileHash != null) && (givenHash != null) && (!givenHash.isEmpty()) && (!fileHash.equals(givenHash))) {
-                    throw new MBPException(HttpStatus.INTERNAL_SERVER_ERROR, "Hash of copied file " + file.getName() + " does not match.");
+                try {
+                    // Execute install script
+                    String deploymentPath = getDeploymentPath(component);
+                    sshSession.executeShellScript(deploymentPath + "/" + INSTALL_SCRIPT_NAME, component.getTopicName(), brokerIP, deploymentPath);
+
+                    // Remember the installed files on the device
+                    if (incrementalDeployment) {
+                        sshSession.createFile(deploymentPath, INSTALL_MARKER_FILE_NAME, installFingerprints.get(component.getId()));
+                    }
+                    LOGGER.log(Level.INFO, "Deployment of component {0} was successful", component.getId());
+                    resultHandler.accept(component, null);
+                } catch (IOException e) {
+                    resultHandler.accept(component, new DeploymentException("Deployment failed due to a SSH error."));
+                } catch (RuntimeException e) {
+                    resultHandler.accept(component, e);
                 }
             }
-            LOGGER.log(Level.INFO, "Copying adapter files was successful");
+        } catch (IOException e) {
+            components.forEach(c -> resultHandler.accept(c, new DeploymentException("Deployment failed due to a SSH error.")));
+        }
+    }
 
-            // Resolve own IP address that might be used as broker IP address
-            String brokerIP = networkService.getOwnIPAddress();
+    /**
+     * Transfers the operator files and the .properties files of multiple components of the same device within a
+     * single archive stream to the device and verifies the hashes of the transferred files afterwards. In
+     * incremental mode, the hashes of the files that are already present on the device are retrieved first, such
+     * that only files that differ need to be transferred. Operator files are taken from the
+     * {@link OperatorArtifactCache} and copied to the deployment directories on the device.
+     *
+     * @param sshSession The SSH session to use
+     * @param components The components whose files are supposed to be transferred
+     * @param brokerIP   The IP address of the broker
+     * @return A map (component ID -> fingerprint of the files) of all components that need to be installed
+     * @throws IOException In case of an I/O issue
+     */
+    private Map<String, String> transferComponentFiles(SSHSession sshSession, List<Component> components, String brokerIP) throws IOException {
+        // Map (relative path -> expected hash) of all files of the components
+        Map<String, String> expectedHashes = new LinkedHashMap<>();
+
+        // Map (component ID -> fingerprint of the files) of all components
+        Map<String, String> fingerprints = new LinkedHashMap<>();
+
+        // Map (component ID -> content of the .properties file) of all components
+        Map<String, String> mbpProperties = new HashMap<>();
+
+        // Determine the expected files of each component
+        for (Component component : components) {
+            String componentDir = DEPLOY_DIR_PREFIX + component.getId();
+            StringBuilder fingerprint = new StringBuilder();
+
+            // Operator files
+            for (Code file : component.getOperator().getRoutines()) {
+                String fileHash = OperatorArtifactCache.getContentHash(file);
+                expectedHashes.put(componentDir + "/" + file.getName(), fileHash);
+                fingerprint.append(file.getName()).append(':').append(fileHash).append(';');
+            }
+
+            // .properties file
+            String properties = createMBPProperties(component, brokerIP);
+            String propertiesHash = CryptoUtils.md5(properties);
+            mbpProperties.put(component.getId(), properties);
+            expectedHashes.put(componentDir + "/" + MBP_CLIENT_PROPERTIES_FILE_NAME, propertiesHash);
+            fingerprint.append(MBP_CLIENT_PROPERTIES_FILE_NAME).append(':').append(propertiesHash);
+
+            // Marker of the previous installation
+            String fingerprintHash = CryptoUtils.md5(fingerprint.toString());
+            fingerprints.put(component.getId(), fingerprintHash);
+            expectedHashes.put(componentDir + "/" + INSTALL_MARKER_FILE_NAME, CryptoUtils.md5(fingerprintHash));
+        }
+
+        // Retrieve the hashes of the files that are already present on the device
+        Map<String, String> remoteHashes = incrementalDeployment ?
+                sshSession.generateHashesOfFiles(DEPLOY_DIR, new ArrayList<>(expectedHashes.keySet())) : new HashMap<>();
+
+        // Build archive containing the files that differ and determine the components to install
+        TarArchiveBuilder archive = new TarArchiveBuilder();
+        Set<String> addedArtifacts = new HashSet<>();
+        Map<String, String> fileCopies = new LinkedHashMap<>();
+        List<String> transferredFiles = new ArrayList<>();
+        Map<String, String> installFingerprints = new LinkedHashMap<>();
+        for (Component component : components) {
+            String componentDir = DEPLOY_DIR_PREFIX + component.getId();
+            boolean changed = false;
+
+            // Add differing operator files, with scripts being executable
+            for (Code file : component.getOperator().getRoutines()) {
+                String filePath = componentDir + "/" + file.getName();
+                if (expectedHashes.get(filePath).equals(remoteHashes.get(filePath))) {
+                    continue;
+                }
+                int mode = file.getName().endsWith(".sh") ? EXECUTABLE_FILE_MODE : DEFAULT_FILE_MODE;
+                String artifactPath = operatorArtifactCache.getArtifactPath(file, mode);
+                if (addedArtifacts.add(artifactPath)) {
+                    archive.addCompressedEntry(operatorArtifactCache.getCompressedEntry(file, mode));
+                }
+                fileCopies.put(filePath, artifactPath);
+                transferredFiles.add(filePath);
+                changed = true;
+            }
 
-            // Determine from settings if a remote broker should be used
-            Settings settings = settingsService.getSettings();
-            if (settings.getBrokerLocation().equals(BrokerLocation.REMOTE)) {
-                // Retrieve IP address of external broker from settings
-                brokerIP = settings.getBrokerIPAddress();
+            // Add differing .properties file
+            String propertiesPath = componentDir + "/" + MBP_CLIENT_PROPERTIES_FILE_NAME;
+            if (!expectedHashes.get(propertiesPath).equals(remoteHashes.get(propertiesPath))) {
+                archive.addFile(propertiesPath, mbpProperties.get(component.getId()).getBytes(), DEFAULT_FILE_MODE);
+                transferredFiles.add(propertiesPath);
+                changed = true;
             }
 
-            // Sanity check
-            if (brokerIP == null) {
-                throw new MBPException(HttpStatus.INTERNAL_SERVER_ERROR, "Unable to resolve IP address of the broker.");
+            // Check whether the component was installed with the same files before
+            String markerPath = componentDir + "/" + INSTALL_MARKER_FILE_NAME;
+            if (changed || (!expectedHashes.get(markerPath).equals(remoteHashes.get(markerPath)))) {
+                installFingerprints.put(component.getId(), fingerprints.get(component.getId()));
             }
+        }
 
-            // Get topic name for the component
-            String topicName = component.getTopicName();
+        // Check if files need to be transferred at all
+        if (archive.isEmpty()) {
+            LOGGER.log(Level.INFO, "All files of {0} component(s) are already present on the target device", components.size());
+            return installFingerprints;
+        }
 
-            // Create .properties file on device
-            String mbpProperties = createMBPProperties(component, brokerIP);
-            sshSession.createFile(deploymentPath, MBP_CLIENT_PROPERTIES_FILE_NAME, mbpProperties);
-            LOGGER.log(Level.INFO, "Creation of .properties file was successful");
+        // Transfer and extract archive
+        LOGGER.log(Level.INFO, "Copying {0} file(s) to target device....", transferredFiles.size());
+        sshSession.extractArchiveFromBase64(DEPLOY_DIR, archive.toBase64(), fileCopies, OperatorArtifactCache.ARTIFACTS_DIR);
 
-            // Execute install script
-            sshSession.changeFilePermissions(deploymentPath + "/" + INSTALL_SCRIPT_NAME, "+x");
-            sshSession.executeShellScript(deploymentPath + "/" + INSTALL_SCRIPT_NAME, topicName, brokerIP, deploymentPath);
+        // Generate hashes of all transferred files and compare them to the expected ones
+        Map<String, String> fileHashes = sshSession.generateHashesOfFiles(DEPLOY_DIR, transferredFiles);
+        for (String filePath : transferredFiles) {
+            if (!expectedHashes.get(filePath).equals(fileHashes.get(filePath))) {
+                throw new MBPException(HttpStatus.INTERNAL_SERVER_ERROR, "Hash of copied file " + filePath + " does not match.");
+            }
+        }
+        LOGGER.log(Level.INFO, "Copying files was successful");
 
-            LOGGER.log(Level.INFO, "Installation was successful");
+        return installFingerprints;
+    }
 
-            // Set permissions of other shell scripts
-            sshSession.changeFilePermissions(deploymentPath + "/" + START_SCRIPT_NAME, "u+rwx");
-            sshSession.changeFilePermissions(deploymentPath + "/" + RUN_SCRIPT_NAME, "+x");
-            sshSession.changeFilePermissions(deploymentPath + "/" + STOP_SCRIPT_NAME, "+x");
-        } catch (IOException e) {
-            throw new DeploymentException("Deployment failed due to a SSH error.");
+    /**
+     * Resolves the IP address of the broker that is supposed to be used by deployed components.
+     *
+     * @return The IP address of the broker
+     * @throws IOException In case the own IP address could not be resolved
+     */
+    private String resolveBrokerIPAddress() throws IOException {
+        // Resolve own IP address that might be used as broker IP address
+        String brokerIP = networkService.getOwnIPAddress();
+
+        // Determine from settings if a remote broker should be used
+        Settings settings = settingsService.getSettings();
+        if (settings.getBrokerLocation().equals(BrokerLocation.REMOTE)) {
+            // Retrieve IP address of external broker from settings
+            brokerIP = settings.getBrokerIPAddress();
         }
 
-        LOGGER.log(Level.INFO, "Deployment was successful");
+        // Sanity check
+        if (brokerIP == null) {
+            throw new MBPException(HttpStatus.INTERNAL_SERVER_ERROR, "Unable to resolve IP address of the broker.");
+        }
+        return brokerIP;
     }
 
     /**
@@ -346,9 +532,8 @@ public class SSHDeployer implements IDeployer {
         // Get dedicated device of the component
         Device device = component.getDevice();
 
-        try {
-            // Get SSH session from pool
-            SSHSession sshSession = sshSessionPool.getSSHSession(component);
+        // Borrow SSH session from pool and return it afterwards
+        try (SSHSession sshSession = sshSessionPool.getSSHSession(component)) {
 
             // Resolve deployment path
             String deploymentPath = getDeploymentPath(component);
@@ -408,9 +593,8 @@ public class SSHDeployer implements IDeployer {
         // Get dedicated device of the component
         Device device = component.getDevice();
 
-        try {
-            // Get SSH session from pool
-            SSHSession sshSession = sshSessionPool.getSSHSession(component);
+        // Borrow SSH session from pool and return it afterwards
+        try (SSHSession sshSession = sshSessionPool.getSSHSession(component)) {
 
             // Reset output stream of session
             sshSession.resetStdOutStream();
@@ -444,9 +628,8 @@ public class SSHDeployer implements IDeployer {
             throw new IllegalArgumentException("Component must not be null.");
         }
 
-        try {
-            // Get SSH session from pool
-            SSHSession sshSession = sshSessionPool.getSSHSession(component);
+        // Borrow SSH session from pool and return it afterwards
+        try (SSHSession sshSession = sshSessionPool.getSSHSession(component)) {
 
             // Resolve deployment path
             String deploymentPath = getDeploymentPath(component);
@@ -4,6 +4,9 @@ import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
 import com.jcabi.ssh.Shell;
 import com.jcabi.ssh.Ssh;
@@ -11,9 +14,10 @@ import com.jcabi.ssh.SshByPassword;
 
 /**
  * Objects of this class wrap SSH connection parameters and represent SSH sessions that can be used in order
- * to execute predefined shell commands on the remote device.
+ * to execute predefined shell commands on the remote device. Sessions that are borrowed from the
+ * {@link SSHSessionPool} are returned to the pool when they are closed.
  */
-public class SSHSession {
+public class SSHSession implements AutoCloseable {
     //Default SSH port to use
     public static final int DEFAULT_PORT = 22;
 
@@ -28,6 +32,9 @@ public class SSHSession {
     private static final String SHELL_EXECUTE_SHELL_SCRIPT = "bash %s%s";
     private static final String SHELL_TEST_DIR_EXISTS = "[ -d \"%s\" ] && echo true || echo false";
     private static final String SHELL_GENERATE_HASH = "md5sum %s | grep '^[^[:space:]]*' -o";
+    private static final String SHELL_EXTRACT_ARCHIVE_BASE64 = "bash -c \"mkdir -p %1$s && cd %1$s && base64 -d | tar -xzf -%2$s; rm -rf %3$s\"";
+    private static final String SHELL_COPY_FILE = " && mkdir -p %1$s && cp -p %2$s %3$s";
+    private static final String SHELL_GENERATE_HASHES = "bash -c \"cd %s && md5sum %s 2>/dev/null || true\"";
 
     private static final String SHELL_PREFIX_SUDO_PASSWORD = "sudo -S ";
 
@@ -42,10 +49,20 @@ public class SSHSession {
     private boolean passwordRequired = false;
 
     //Internal objects to maintain and use the ssh connection
-    private Shell shell;
+    private volatile Shell shell;
     private ByteArrayOutputStream stdOutStream;
     private ByteArrayOutputStream stdErrStream;
 
+    //Remembers whether the execution of a command failed due to an I/O issue
+    private volatile boolean failed = false;
+
+    //Time at which the session was used last
+    private volatile long lastUsed = System.currentTimeMillis();
+
+    //Pool from which the session is currently borrowed, if any
+    private SSHSessionPool pool;
+    private SSHSessionPool.HostPool hostPool;
+
     /**
      * Creates a new SSH session object on the default port that wraps the corresponding connection parameters.
      *
@@ -258,6 +275,88 @@ public class SSHSession {
         return stdOutStream.toString().trim().toLowerCase();
     }
 
+    /**
+     * Extracts a base64 encoded, gzip-compressed tar archive into a directory on the remote device. The directory
+     * is created if it does not exist yet. Afterwards, files that were extracted into a staging directory are
+     * copied to their target paths and the staging directory is removed.
+     *
+     * @param dirPath    The path to the directory into which the archive is supposed to be extracted
+     * @param archive    The archive as base64 encoded string
+     * @param fileCopies Map (relative target path -> relative source path) of the files to copy after extraction
+     * @param stagingDir The relative path of the staging directory to remove after extraction
+     * @throws IOException In case of an I/O issue
+     */
+    public synchronized void extractArchiveFromBase64(String dirPath, String archive, Map<String, String> fileCopies, String stagingDir) throws IOException {
+        checkConnectionState();
+
+        //Build copy commands for the staged files
+        StringBuilder copyCommands = new StringBuilder();
+        for (Map.Entry<String, String> fileCopy : fileCopies.entrySet()) {
+            String targetPath = fileCopy.getKey();
+            String targetDir = targetPath.contains("/") ? targetPath.substring(0, targetPath.lastIndexOf('/')) : ".";
+            copyCommands.append(String.format(SHELL_COPY_FILE, quotePath(targetDir), quotePath(fileCopy.getValue()), quotePath(targetPath)));
+        }
+
+        //Build corresponding command
+        String command = String.format(SHELL_EXTRACT_ARCHIVE_BASE64, dirPath, copyCommands, quotePath(stagingDir));
+
+        //Execute command
+        executeShellCommand(command, archive);
+    }
+
+    /**
+     * Returns the MD5 hashes of multiple files on the remote device within a single command execution.
+     *
+     * @param dirPath   The path to the directory the file paths are relative to
+     * @param filePaths The relative paths of the files to hash
+     * @return A map (relative file path -> MD5 hash) of the hashes
+     * @throws IOException In case of an I/O issue
+     */
+    public synchronized Map<String, String> generateHashesOfFiles(String dirPath, List<String> filePaths) throws IOException {
+        checkConnectionState();
+
+        //Nothing to do for empty lists
+        Map<String, String> hashes = new HashMap<>();
+        if (filePaths.isEmpty()) {
+            return hashes;
+        }
+
+        //Build list of quoted file paths
+        StringBuilder filePathsString = new StringBuilder();
+        for (String filePath : filePaths) {
+            filePathsString.append(" ").append(quotePath(filePath));
+        }
+
+        //Build corresponding command
+        String command = String.format(SHELL_GENERATE_HASHES, dirPath, filePathsString.toString().trim());
+
+        //Reset output stream of session
+        resetStdOutStream();
+
+        //Execute command
+        executeShellCommand(command);
+
+        //Parse the resulting lines of the form "<hash>  <path>"
+        for (String line : stdOutStream.toString().split("\n")) {
+            String[] parts = line.trim().split("\\s+", 2);
+            if (parts.length == 2) {
+                hashes.put(parts[1].replaceFirst("^\\*", ""), parts[0].toLowerCase());
+            }
+        }
+        return hashes;
+    }
+
+    /**
+     * Quotes a relative path for usage within commands, after removing all characters that might
+     * break the quoting.
+     *
+     * @param path The path to quote
+     * @return The quoted path
+     */
+    private String quotePath(String path) {
+        return "'" + path.replaceAll("[\"'`$\\\\]", "") + "'";
+    }
+
     /**
      * Rests the stdout stream of this SSH session.
      */
@@ -340,7 +439,13 @@ public class SSHSession {
         ByteArrayInputStream inputStream = new ByteArrayInputStream(inputStreamString.getBytes());
 
         //Execute shell command remotely
-        return shell.exec(command, inputStream, stdOutStream, stdErrStream);
+        try {
+            return shell.exec(command, inputStream, stdOutStream, stdErrStream);
+        } catch (IOException e) {
+            //Remember failure, so that the session is not reused
+            failed = true;
+            throw e;
+        }
     }
 
     /**
@@ -376,6 +481,67 @@ public class SSHSession {
         }
     }
 
+    /**
+     * Returns the session to the {@link SSHSessionPool} from which it was borrowed. Calling this method
+     * for sessions that are not borrowed has no effect.
+     */
+    @Override
+    public void close() {
+        SSHSessionPool borrowedFrom;
+        SSHSessionPool.HostPool borrowedFromHost;
+
+        //Unmark session as borrowed
+        synchronized (this) {
+            if (pool == null) {
+                return;
+            }
+            borrowedFrom = pool;
+            borrowedFromHost = hostPool;
+            pool = null;
+            hostPool = null;
+            lastUsed = System.currentTimeMillis();
+        }
+
+        //Return session to the pool
+        borrowedFrom.release(this, borrowedFromHost);
+    }
+
+    /**
+     * Marks the session as borrowed from a given pool.
+     *
+     * @param pool     The pool from which the session is borrowed
+     * @param hostPool The pool of the host from which the session is borrowed
+     */
+    synchronized void setBorrowed(SSHSessionPool pool, SSHSessionPool.HostPool hostPool) {
+        this.pool = pool;
+        this.hostPool = hostPool;
+    }
+
+    /**
+     * Disconnects the session, such that it cannot be used anymore.
+     */
+    void disconnect() {
+        shell = null;
+    }
+
+    /**
+     * Returns whether the execution of a command within this session failed due to an I/O issue.
+     *
+     * @return True, if a command failed; false otherwise
+     */
+    boolean hasFailed() {
+        return failed;
+    }
+
+    /**
+     * Returns the time at which the session was returned to its pool last.
+     *
+     * @return The time in milliseconds since epoch
+     */
+    long getLastUsed() {
+        return lastUsed;
+    }
+
     /**
      * Returns whether the SSH session is currently active.
      *
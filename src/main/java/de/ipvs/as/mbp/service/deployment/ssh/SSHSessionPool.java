@@ -2,36 +2,112 @@ package de.ipvs.as.mbp.service.deployment.ssh;
 import de.ipvs.as.mbp.domain.component.Component;
 import de.ipvs.as.mbp.domain.device.Device;
 import de.ipvs.as.mbp.domain.key_pair.KeyPair;
-import de.ipvs.as.mbp.service.deployment.ssh.SSHSession;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.EnableScheduling;
+import org.springframework.scheduling.annotation.Scheduled;
 
 import java.io.IOException;
-import java.util.HashMap;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.Deque;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
- * Provides a managed pool of SSH session for devices. The sessions may be requested and used by other components
- * on demand.
+ * Provides a managed, thread-safe pool of SSH sessions for devices. The sessions are pooled per remote host,
+ * identified by its address, port, username and credentials, such that all components of a device share the
+ * same sessions. Sessions are borrowed exclusively by the requesting components and must be returned to the pool
+ * after usage by closing them, preferably in a try-with-resources statement. Up to a configurable number of
+ * sessions may be borrowed concurrently per host, allowing concurrent deployments to the same device without
+ * overloading it. Sessions that were idle for a while are checked for validity before they are handed out again
+ * and evicted from the pool when they exceed the idle timeout.
  */
 @org.springframework.stereotype.Component
+@EnableScheduling
 public class SSHSessionPool {
 
-    //Map (device id -> SSH session) of sessions
-    private final Map<String, SSHSession> sessionsMap;
+    //Map (host key -> host pool) of the sessions per remote host
+    private final Map<String, HostPool> hostPools;
+
+    //Maximum number of sessions that may be borrowed concurrently per host
+    private final int maxSessionsPerHost;
+
+    //Maximum time in milliseconds to wait for a session to become available
+    private final long borrowTimeout;
+
+    //Time in milliseconds after which idle sessions are evicted from the pool
+    private final long idleTimeout;
+
+    //Time in milliseconds after which idle sessions are checked for validity before they are handed out again
+    private final long keepAliveInterval;
+
+    //Number of currently borrowed sessions
+    private final AtomicInteger activeSessions = new AtomicInteger(0);
+
+    //Metrics of the pool
+    private final Timer waitTimer;
+    private final Counter createdCounter;
+    private final Counter evictedCounter;
 
     /**
      * Initializes the session pool.
+     *
+     * @param meterRegistry      The {@link MeterRegistry} to publish the metrics of the pool to
+     * @param maxSessionsPerHost The maximum number of sessions that may be borrowed concurrently per host
+     * @param borrowTimeout      The maximum time in milliseconds to wait for a session to become available
+     * @param idleTimeout        The time in milliseconds after which idle sessions are evicted
+     * @param keepAliveInterval  The time in milliseconds after which idle sessions are checked for validity
      */
-    private SSHSessionPool() {
-        //Initialize map of sessions
-        sessionsMap = new HashMap<>();
+    @Autowired
+    private SSHSessionPool(MeterRegistry meterRegistry,
+                           @Value("${deployment.ssh.pool.max_sessions_per_host:4}") int maxSessionsPerHost,
+                           @Value("${deployment.ssh.pool.borrow_timeout:60000}") long borrowTimeout,
+                           @Value("${deployment.ssh.pool.idle_timeout:300000}") long idleTimeout,
+                           @Value("${deployment.ssh.pool.keep_alive_interval:30000}") long keepAliveInterval) {
+        //Sanity check
+        if (maxSessionsPerHost <= 0) {
+            throw new IllegalArgumentException("Maximum number of sessions per host must be positive.");
+        }
+
+        this.maxSessionsPerHost = maxSessionsPerHost;
+        this.borrowTimeout = borrowTimeout;
+        this.idleTimeout = idleTimeout;
+        this.keepAliveInterval = keepAliveInterval;
+
+        //Initialize map of host pools
+        hostPools = new ConcurrentHashMap<>();
+
+        //Register metrics
+        Gauge.builder("ssh.pool.sessions.active", activeSessions, AtomicInteger::get)
+                .description("Number of SSH sessions that are currently borrowed").register(meterRegistry);
+        Gauge.builder("ssh.pool.sessions.idle", this, SSHSessionPool::getIdleSessionsCount)
+                .description("Number of idle SSH sessions in the pool").register(meterRegistry);
+        this.waitTimer = Timer.builder("ssh.pool.wait")
+                .description("Time spent waiting for an SSH session").register(meterRegistry);
+        this.createdCounter = Counter.builder("ssh.pool.sessions.created")
+                .description("Number of established SSH sessions").register(meterRegistry);
+        this.evictedCounter = Counter.builder("ssh.pool.sessions.evicted")
+                .description("Number of SSH sessions that were discarded").register(meterRegistry);
     }
 
     /**
-     * Returns an active SSH session for a certain component. If no session for this component exists,
-     * a new session is created and returned.
+     * Borrows an active SSH session for the device of a certain component from the pool. If no idle session is
+     * available for the device, a new session is created. The session must be returned to the pool by closing it.
      *
-     * @param component The device to return a SSH session for
-     * @return The active SSH session for the device
+     * @param component The component to return a SSH session for
+     * @return The active SSH session for the device of the component
      * @throws IOException In case of an I/O issue
      */
     public SSHSession getSSHSession(Component component) throws IOException {
@@ -40,36 +116,12 @@ public class SSHSessionPool {
             throw new IllegalArgumentException("Component and its device must not be null.");
         }
 
-        //Get component id
-        String componentId = component.getId();
-
-        //Check if a session is already registered
-        if (sessionsMap.containsKey(component.getId())) {
-            //Get registered session
-            SSHSession session = sessionsMap.get(componentId);
-
-            //Check if session is active
-            if (session.isActive()) {
-                return session;
-            }
-
-            //Unregister old session from map
-            sessionsMap.remove(componentId);
-        }
-
-        //A new SSH session needs to be created
-        SSHSession session = establishSSHSession(component.getDevice());
-
-        //Register session in sessions map
-        sessionsMap.put(componentId, session);
-
-        //Return new session
-        return session;
+        return getSSHSession(component.getDevice());
     }
 
     /**
-     * Returns an active SSH session for a certain device. If no session for this device exists,
-     * a new session is created and returned.
+     * Borrows an active SSH session for a certain device from the pool. If no idle session is available for
+     * the device, a new session is created. The session must be returned to the pool by closing it.
      *
      * @param device The device to return a SSH session for
      * @return The active SSH session for the device
@@ -81,51 +133,195 @@ public class SSHSessionPool {
             throw new IllegalArgumentException("Device must not be null.");
         }
 
-        //Get device id
-        String deviceId = device.getId();
+        //Get pool of the remote host and register as its user, retrying if the pool was evicted in the meantime
+        String hostKey = getHostKey(device);
+        HostPool hostPool;
+        while (!(hostPool = hostPools.computeIfAbsent(hostKey, k -> new HostPool(k, maxSessionsPerHost))).addUser()) {
+            hostPools.remove(hostKey, hostPool);
+        }
+
+        //Wait until a session may be borrowed for the host
+        long waitStart = System.nanoTime();
+        try {
+            if (!hostPool.permits.tryAcquire(borrowTimeout, TimeUnit.MILLISECONDS)) {
+                hostPool.removeUser();
+                throw new IOException("Timed out while waiting for a SSH session to " + device.getIpAddress() + ".");
+            }
+        } catch (InterruptedException e) {
+            hostPool.removeUser();
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for a SSH session to " + device.getIpAddress() + ".");
+        } finally {
+            waitTimer.record(System.nanoTime() - waitStart, TimeUnit.NANOSECONDS);
+        }
 
-        //Check if a session is already registered
-        if (sessionsMap.containsKey(deviceId)) {
-            //Get registered session
-            SSHSession session = sessionsMap.get(deviceId);
+        try {
+            //Take the most recently used idle session that is still usable
+            SSHSession session;
+            while ((session = hostPool.idleSessions.pollFirst()) != null) {
+                if (isUsable(session)) {
+                    break;
+                }
+                discard(session);
+            }
 
-            //Check if session is active
-            if (session.isActive()) {
-                return session;
+            //Establish a new session if no idle session is available
+            if (session == null) {
+                session = establishSSHSession(device);
+                createdCounter.increment();
             }
 
-            //Unregister old session from map
-            sessionsMap.remove(deviceId);
+            //Mark session as borrowed
+            session.setBorrowed(this, hostPool);
+            activeSessions.incrementAndGet();
+            return session;
+        } catch (IOException | RuntimeException e) {
+            //Give up the permit again
+            hostPool.permits.release();
+            hostPool.removeUser();
+            throw e;
         }
+    }
 
-        //A new SSH session needs to be created
-        SSHSession session = establishSSHSession(device);
+    /**
+     * Returns a borrowed SSH session to the pool of its host. Sessions that encountered I/O issues are discarded.
+     *
+     * @param session  The session to return
+     * @param hostPool The pool of the host from which the session was borrowed
+     */
+    void release(SSHSession session, HostPool hostPool) {
+        activeSessions.decrementAndGet();
 
-        //Register session in sessions map
-        sessionsMap.put(deviceId, session);
+        //Check whether the session may be used again and its host pool is still registered
+        if (session.isActive() && (!session.hasFailed()) && (hostPools.get(hostPool.hostKey) == hostPool)) {
+            //Clear output of the previous borrower and add session to the idle sessions
+            session.resetStdOutStream();
+            session.resetStdErrStream();
+            hostPool.idleSessions.offerFirst(session);
+        } else {
+            discard(session);
+        }
 
-        //Return new session
-        return session;
+        //Allow the next borrower to proceed
+        hostPool.permits.release();
+        hostPool.removeUser();
     }
 
     /**
-     * Unregisters an existing SSH session of a certain device from the SSH session pool, creates
-     * a new session for the device registers it at the session pool and returns it.
+     * Runs periodically and evicts all sessions from the pool that exceeded the idle timeout. Pools of hosts
+     * without any sessions are removed.
+     */
+    @Scheduled(initialDelayString = "${deployment.ssh.pool.eviction_interval:60000}", fixedDelayString = "${deployment.ssh.pool.eviction_interval:60000}")
+    public void evictIdleSessions() {
+        long now = System.currentTimeMillis();
+
+        //Iterate over all host pools
+        for (Map.Entry<String, HostPool> entry : hostPools.entrySet()) {
+            HostPool hostPool = entry.getValue();
+
+            //Evict sessions that exceeded the idle timeout
+            for (SSHSession session : hostPool.idleSessions) {
+                if ((now - session.getLastUsed() > idleTimeout) && hostPool.idleSessions.remove(session)) {
+                    discard(session);
+                }
+            }
+
+            //Remove pools of hosts without any sessions and users
+            if (hostPool.retireIfUnused()) {
+                hostPools.remove(entry.getKey(), hostPool);
+            }
+        }
+    }
+
+    /**
+     * Returns the total number of idle sessions in the pool.
      *
-     * @param device The device for which a new SSH session is supposed to be returned
-     * @return The new SSH session for the device
+     * @return The number of idle sessions
      */
-    public SSHSession getNewSSHSession(Device device) throws IOException {
-        //Sanity check
-        if (device == null) {
-            throw new IllegalArgumentException("Device must not be null.");
+    public int getIdleSessionsCount() {
+        return hostPools.values().stream().mapToInt(p -> p.idleSessions.size()).sum();
+    }
+
+    /**
+     * Returns the number of sessions that are currently borrowed.
+     *
+     * @return The number of active sessions
+     */
+    public int getActiveSessionsCount() {
+        return activeSessions.get();
+    }
+
+    /**
+     * Checks whether an idle session may be handed out again. Sessions that were idle for longer than the
+     * keep-alive interval are checked for validity by executing a basic command.
+     *
+     * @param session The session to check
+     * @return True, if the session is usable; false otherwise
+     */
+    private boolean isUsable(SSHSession session) {
+        //Check for inactive or failed sessions
+        if ((!session.isActive()) || session.hasFailed()) {
+            return false;
+        }
+
+        //Check idle time of the session
+        long idleTime = System.currentTimeMillis() - session.getLastUsed();
+        if (idleTime > idleTimeout) {
+            return false;
+        } else if (idleTime <= keepAliveInterval) {
+            return true;
         }
 
-        //Unregister session from map if it is already existing
-        sessionsMap.remove(device.getId());
+        //Check whether the session is still valid
+        return session.isCommandExecutable();
+    }
+
+    /**
+     * Discards a session that is no longer supposed to be used.
+     *
+     * @param session The session to discard
+     */
+    private void discard(SSHSession session) {
+        session.disconnect();
+        evictedCounter.increment();
+    }
+
+    /**
+     * Returns the key identifying the remote host of a given device, consisting of the address, port, username
+     * and a SHA-256 digest of the credentials of the device.
+     *
+     * @param device The device
+     * @return The resulting key
+     */
+    private String getHostKey(Device device) {
+        //Retrieve private RSA key if existing
+        KeyPair keyPair = device.getKeyPair();
+        String privateKey = (keyPair == null) ? null : keyPair.getPrivateKey();
+
+        return device.getUsername() + "@" + device.getIpAddress() + ":" + device.getPort() + "#"
+                + getCredentialsDigest(privateKey, device.getPassword());
+    }
 
-        //Create a new SSH session
-        return getSSHSession(device);
+    /**
+     * Calculates the SHA-256 digest of the given credentials, which may be null.
+     *
+     * @param privateKey The private RSA key
+     * @param password   The password
+     * @return The Base64-encoded digest
+     */
+    private static String getCredentialsDigest(String privateKey, String password) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            for (String credential : new String[]{privateKey, password}) {
+                //Prefix each credential by its length in order to keep the encoding unambiguous
+                byte[] bytes = (credential == null) ? new byte[0] : credential.getBytes(StandardCharsets.UTF_8);
+                digest.update(ByteBuffer.allocate(Integer.BYTES).putInt((credential == null) ? -1 : bytes.length).array());
+                digest.update(bytes);
+            }
+            return Base64.getEncoder().encodeToString(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not supported.", e);
+        }
     }
 
     /*
@@ -169,4 +365,61 @@ public class SSHSessionPool {
 
         return sshSession;
     }
+
+    /**
+     * Pool of the sessions of a certain remote host.
+     */
+    static class HostPool {
+        //Key identifying the host
+        private final String hostKey;
+
+        //Permits for borrowing sessions of the host
+        private final Semaphore permits;
+
+        //Idle sessions, ordered from most to least recently used
+        private final Deque<SSHSession> idleSessions = new ConcurrentLinkedDeque<>();
+
+        //Number of borrowers that are waiting for or holding sessions of the host
+        private int users = 0;
+
+        //Whether the pool was evicted and must not be used anymore
+        private boolean retired = false;
+
+        private HostPool(String hostKey, int maxSessions) {
+            this.hostKey = hostKey;
+            this.permits = new Semaphore(maxSessions, true);
+        }
+
+        /**
+         * Registers a new user of the pool, unless the pool was already retired.
+         *
+         * @return True, if the user was registered; false if the pool was retired
+         */
+        private synchronized boolean addUser() {
+            if (retired) {
+                return false;
+            }
+            users++;
+            return true;
+        }
+
+        /**
+         * Unregisters a user of the pool.
+         */
+        private synchronized void removeUser() {
+            users--;
+        }
+
+        /**
+         * Retires the pool if it has neither users nor idle sessions. Retired pools are never used again.
+         *
+         * @return True, if the pool was retired; false otherwise
+         */
+        private synchronized boolean retireIfUnused() {
+            if ((users == 0) && idleSessions.isEmpty()) {
+                retired = true;
+            }
+            return retired;
+        }
+    }
 }
@@ -0,0 +1,215 @@
+package de.ipvs.as.mbp.service.deployment.ssh;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Builds gzip-compressed tar archives (ustar format) of regular files in memory, such that multiple files can be
+ * transferred to a remote device within a single stream and extracted there by using the standard tar command.
+ * Each file entry is compressed as a separate gzip member; since concatenated gzip members form a valid gzip
+ * stream, pre-compressed entries can be cached and reused across multiple archives.
+ */
+class TarArchiveBuilder {
+    //Size of the blocks within tar archives
+    private static final int BLOCK_SIZE = 512;
+
+    //Maximum lengths of the name fields within the tar headers
+    private static final int MAX_NAME_LENGTH = 100;
+    private static final int MAX_PREFIX_LENGTH = 155;
+
+    //Stream holding the compressed archive
+    private final ByteArrayOutputStream archiveStream;
+
+    //Number of entries within the archive
+    private int entriesCount = 0;
+
+    //Remembers whether the archive was finished
+    private boolean finished = false;
+
+    /**
+     * Creates a new, empty archive.
+     */
+    TarArchiveBuilder() {
+        this.archiveStream = new ByteArrayOutputStream();
+    }
+
+    /**
+     * Adds a regular file with a given path and content to the archive.
+     *
+     * @param path    The relative path of the file within the archive, using slashes as separators
+     * @param content The content of the file
+     * @param mode    The permissions of the file (e.g. 0644)
+     * @return The archive builder
+     * @throws IOException In case of an I/O issue
+     */
+    TarArchiveBuilder addFile(String path, byte[] content, int mode) throws IOException {
+        return addCompressedEntry(createCompressedEntry(path, content, mode));
+    }
+
+    /**
+     * Adds a pre-compressed entry, as created by {@link #createCompressedEntry(String, byte[], int)}, to the archive.
+     *
+     * @param compressedEntry The compressed entry to add
+     * @return The archive builder
+     * @throws IOException In case of an I/O issue
+     */
+    TarArchiveBuilder addCompressedEntry(byte[] compressedEntry) throws IOException {
+        //Sanity checks
+        if (finished) {
+            throw new IllegalStateException("The archive was already finished.");
+        } else if (compressedEntry == null) {
+            throw new IllegalArgumentException("Compressed entry must not be null.");
+        }
+
+        archiveStream.write(compressedEntry);
+        entriesCount++;
+        return this;
+    }
+
+    /**
+     * Returns whether the archive does not contain any entries.
+     *
+     * @return True, if the archive is empty; false otherwise
+     */
+    boolean isEmpty() {
+        return entriesCount == 0;
+    }
+
+    /**
+     * Finishes the archive and returns it as base64 encoded string.
+     *
+     * @return The base64 encoded archive
+     * @throws IOException In case of an I/O issue
+     */
+    String toBase64() throws IOException {
+        //Write two empty blocks as end-of-archive marker
+        if (!finished) {
+            archiveStream.write(compress(new byte[2 * BLOCK_SIZE]));
+            finished = true;
+        }
+
+        //Encode with line breaks as expected by the base64 command
+        return Base64.getMimeEncoder(76, new byte[]{'\n'}).encodeToString(archiveStream.toByteArray());
+    }
+
+    /**
+     * Creates a compressed archive entry for a regular file with a given path and content, which may be added
+     * to one or multiple archives.
+     *
+     * @param path    The relative path of the file within the archive, using slashes as separators
+     * @param content The content of the file
+     * @param mode    The permissions of the file (e.g. 0644)
+     * @return The compressed entry
+     * @throws IOException In case of an I/O issue
+     */
+    static byte[] createCompressedEntry(String path, byte[] content, int mode) throws IOException {
+        //Sanity checks
+        if ((path == null) || path.isEmpty()) {
+            throw new IllegalArgumentException("Path must not be null or empty.");
+        } else if (content == null) {
+            throw new IllegalArgumentException("Content must not be null.");
+        }
+
+        //Write header and content, padded to full blocks
+        ByteArrayOutputStream entryStream = new ByteArrayOutputStream(BLOCK_SIZE + content.length + BLOCK_SIZE);
+        entryStream.write(createHeader(path, content.length, mode));
+        entryStream.write(content);
+        int padding = (BLOCK_SIZE - (content.length % BLOCK_SIZE)) % BLOCK_SIZE;
+        entryStream.write(new byte[padding]);
+
+        return compress(entryStream.toByteArray());
+    }
+
+    /**
+     * Compresses given data as a single gzip member.
+     *
+     * @param data The data to compress
+     * @return The compressed data
+     * @throws IOException In case of an I/O issue
+     */
+    private static byte[] compress(byte[] data) throws IOException {
+        ByteArrayOutputStream compressedStream = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzipStream = new GZIPOutputStream(compressedStream)) {
+            gzipStream.write(data);
+        }
+        return compressedStream.toByteArray();
+    }
+
+    /**
+     * Creates the ustar header of a regular file.
+     *
+     * @param path The path of the file
+     * @param size The size of the file in bytes
+     * @param mode The permissions of the file
+     * @return The header block
+     */
+    private static byte[] createHeader(String path, long size, int mode) {
+        byte[] header = new byte[BLOCK_SIZE];
+
+        //Split long paths into prefix and name
+        byte[] pathBytes = path.getBytes(StandardCharsets.UTF_8);
+        byte[] prefix = new byte[0];
+        byte[] name = pathBytes;
+        if (pathBytes.length > MAX_NAME_LENGTH) {
+            int separator = path.lastIndexOf('/', path.length() - 2);
+            if (separator <= 0) {
+                throw new IllegalArgumentException("Path is too long for the archive: " + path);
+            }
+            prefix = path.substring(0, separator).getBytes(StandardCharsets.UTF_8);
+            name = path.substring(separator + 1).getBytes(StandardCharsets.UTF_8);
+            if ((prefix.length > MAX_PREFIX_LENGTH) || (name.length > MAX_NAME_LENGTH)) {
+                throw new IllegalArgumentException("Path is too long for the archive: " + path);
+            }
+        }
+
+        //Fill in the fields of the header
+        System.arraycopy(name, 0, header, 0, name.length);
+        writeOctal(header, 100, 8, mode);
+        writeOctal(header, 108, 8, 0);
+        writeOctal(header, 116, 8, 0);
+        writeOctal(header, 124, 12, size);
+        writeOctal(header, 136, 12, System.currentTimeMillis() / 1000);
+        header[156] = '0';
+        System.arraycopy("ustar\u000000".getBytes(StandardCharsets.US_ASCII), 0, header, 257, 8);
+        System.arraycopy(prefix, 0, header, 345, prefix.length);
+
+        //Calculate checksum with the checksum field being filled with spaces
+        for (int i = 148; i < 156; i++) {
+            header[i] = ' ';
+        }
+        long checksum = 0;
+        for (byte b : header) {
+            checksum += b & 0xFF;
+        }
+        writeOctal(header, 148, 7, checksum);
+        header[155] = ' ';
+
+        return header;
+    }
+
+    /**
+     * Writes a number as zero-padded, null-terminated octal string into a field of a header.
+     *
+     * @param header The header
+     * @param offset The offset of the field
+     * @param length The length of the field, including the terminating null
+     * @param value  The number to write
+     */
+    private static void writeOctal(byte[] header, int offset, int length, long value) {
+        String octal = Long.toOctalString(value);
+        if (octal.length() > length - 1) {
+            throw new IllegalArgumentException("Value is too large for the archive header.");
+        }
+        StringBuilder padded = new StringBuilder();
+        for (int i = octal.length(); i < length - 1; i++) {
+            padded.append('0');
+        }
+        padded.append(octal);
+        byte[] bytes = padded.toString().getBytes(StandardCharsets.US_ASCII);
+        System.arraycopy(bytes, 0, header, offset, bytes.length);
+        header[offset + length - 1] = 0;
+    }
+}
@@ -10,6 +10,7 @@ import de.ipvs.as.mbp.service.receiver.ValueLogReceiver;
 import de.ipvs.as.mbp.service.receiver.ValueLogObserver;
 import de.ipvs.as.mbp.service.env_model.events.EnvironmentModelEventService;
 import de.ipvs.as.mbp.service.env_model.events.types.ComponentValueEvent;
+import de.ipvs.as.mbp.service.receiver.pipeline.BackpressurePolicy;
 import org.springframework.beans.factory.annotation.Autowired;
 
 import java.util.Map;
@@ -100,4 +101,16 @@ public class EnvironmentModelValueReceiver implements ValueLogObserver {
         //Publish event to all subscribers of the model
         eventService.publishEvent(model.getId(), event);
     }
+
+    /**
+     * Returns the {@link BackpressurePolicy} to apply in case this observer cannot keep up with the incoming
+     * value logs. Since only the most recent values are of interest for the environment model, outdated
+     * value logs may be dropped.
+     *
+     * @return The backpressure policy
+     */
+    @Override
+    public BackpressurePolicy getBackpressurePolicy() {
+        return BackpressurePolicy.DROP_OLDEST;
+    }
 }
@@ -0,0 +1,81 @@
+package de.ipvs.as.mbp.service.event_handler;
+
+import de.ipvs.as.mbp.domain.component.Component;
+import de.ipvs.as.mbp.domain.data_model.DataModel;
+import de.ipvs.as.mbp.domain.operator.Operator;
+import de.ipvs.as.mbp.domain.user_entity.UserEntity;
+import de.ipvs.as.mbp.repository.DataModelTreeCache;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.mongodb.core.mapping.event.AbstractMongoEventListener;
+import org.springframework.data.mongodb.core.mapping.event.AfterDeleteEvent;
+import org.springframework.data.mongodb.core.mapping.event.AfterSaveEvent;
+import org.springframework.stereotype.Service;
+
+/**
+ * Event handler for components, operators and data models that invalidates the affected entries of the
+ * {@link DataModelTreeCache} when such entities are created, updated or deleted. The handler is driven by the
+ * MongoDB lifecycle events of the entities, such that it also covers changes that are not performed via the
+ * {@link de.ipvs.as.mbp.service.user.UserEntityService} (e.g. operators and data models that are saved directly
+ * by their repositories).
+ */
+@Service
+public class DataModelTreeCacheEventHandler extends AbstractMongoEventListener<UserEntity> {
+
+    private final DataModelTreeCache dataModelTreeCache;
+
+    /**
+     * Creates the event handler by passing a reference to the cache to invalidate (auto-wired).
+     *
+     * @param dataModelTreeCache The {@link DataModelTreeCache} to use
+     */
+    @Autowired
+    public DataModelTreeCacheEventHandler(DataModelTreeCache dataModelTreeCache) {
+        this.dataModelTreeCache = dataModelTreeCache;
+    }
+
+    /**
+     * Called after an entity was saved to the database, i.e. created or updated.
+     *
+     * @param event The event of the saved entity
+     */
+    @Override
+    public void onAfterSave(AfterSaveEvent<UserEntity> event) {
+        //Get saved entity
+        UserEntity entity = event.getSource();
+
+        //Check type of the entity
+        if (entity instanceof Component) {
+            //Only the data model of the component is affected
+            dataModelTreeCache.invalidate(entity.getId());
+        } else if ((entity instanceof Operator) || (entity instanceof DataModel)) {
+            //Operators and data models may be used by arbitrary components
+            dataModelTreeCache.invalidateAll();
+        }
+    }
+
+    /**
+     * Called after one or multiple entities were deleted from the database.
+     *
+     * @param event The event of the deleted entities
+     */
+    @Override
+    public void onAfterDelete(AfterDeleteEvent<UserEntity> event) {
+        //Check type of the deleted entities
+        Class<UserEntity> type = event.getType();
+        if ((type != null) && Component.class.isAssignableFrom(type)) {
+            //Retrieve the ID of the deleted component from the query
+            Object id = event.getSource().get("_id");
+            if ((id != null) && !(id instanceof Document)) {
+                dataModelTreeCache.invalidate(id.toString());
+                return;
+            }
+        } else if ((type != null) && !Operator.class.isAssignableFrom(type) && !DataModel.class.isAssignableFrom(type)) {
+            //Other entities do not affect data models
+            return;
+        }
+
+        //Deleted entities cannot be identified or may be used by arbitrary components
+        dataModelTreeCache.invalidateAll();
+    }
+}
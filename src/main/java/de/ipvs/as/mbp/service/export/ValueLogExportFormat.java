@@ -0,0 +1,41 @@
+package de.ipvs.as.mbp.service.export;
+
+/**
+ * Enumeration of the formats that are available for exporting value logs.
+ */
+public enum ValueLogExportFormat {
+    NDJSON("application/x-ndjson", "ndjson"), CSV("text/csv", "csv");
+
+    //Media type and file extension of the format
+    private final String mediaType;
+    private final String fileExtension;
+
+    /**
+     * Creates a new export format as part of the enumeration.
+     *
+     * @param mediaType     The media type of the format
+     * @param fileExtension The file extension of the format
+     */
+    ValueLogExportFormat(String mediaType, String fileExtension) {
+        this.mediaType = mediaType;
+        this.fileExtension = fileExtension;
+    }
+
+    /**
+     * Returns the media type of the format.
+     *
+     * @return The media type
+     */
+    public String getMediaType() {
+        return mediaType;
+    }
+
+    /**
+     * Returns the file extension of the format.
+     *
+     * @return The file extension
+     */
+    public String getFileExtension() {
+        return fileExtension;
+    }
+}
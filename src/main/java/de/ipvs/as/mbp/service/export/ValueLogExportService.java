@@ -0,0 +1,145 @@
+package de.ipvs.as.mbp.service.export;
+
+import com.mongodb.client.MongoCursor;
+import de.ipvs.as.mbp.domain.valueLog.ValueLog;
+import de.ipvs.as.mbp.repository.ValueLogRepository;
+import de.ipvs.as.mbp.service.UnitConverterService;
+import de.ipvs.as.mbp.service.access_control.ACCompiledEffect;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import javax.measure.converter.UnitConverter;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+
+/**
+ * Service that provides means for exporting the value logs of a component in different formats. The value logs
+ * are read from the database via a cursor and written directly to the output stream one after another, such that
+ * arbitrarily large histories can be exported with constant memory.
+ */
+@Service
+public class ValueLogExportService {
+    //Header line of CSV exports
+    private static final String CSV_HEADER = "time,idref,component,value";
+
+    @Autowired
+    private ValueLogRepository valueLogRepository;
+
+    @Autowired
+    private UnitConverterService unitConverterService;
+
+    /**
+     * Creates a {@link StreamingResponseBody} that exports the value logs of a component, given by its ID, within
+     * a given time range in a given format. Optionally, the values can be converted by a given unit converter and
+     * a given access control effect can be applied to each value log.
+     *
+     * @param componentId The ID of the component whose value logs are supposed to be exported
+     * @param format      The format to use
+     * @param startTime   The inclusive start of the time range or null, if not bounded
+     * @param endTime     The exclusive end of the time range or null, if not bounded
+     * @param converter   The unit converter to apply to the values or null, if no conversion is required
+     * @param effect      The effect to apply to the value logs or null, if no effect is supposed to be applied
+     * @return The resulting streaming response body
+     */
+    public StreamingResponseBody exportValueLogs(String componentId, ValueLogExportFormat format, Instant startTime,
+                                                 Instant endTime, UnitConverter converter, ACCompiledEffect effect) {
+        //Sanity checks
+        if ((componentId == null) || componentId.isEmpty()) {
+            throw new IllegalArgumentException("Component ID must not be null or empty.");
+        } else if (format == null) {
+            throw new IllegalArgumentException("Export format must not be null.");
+        }
+
+        return outputStream -> {
+            //Create buffered writer for the output stream
+            Writer writer = new BufferedWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8));
+
+            //Write header if necessary
+            if (format == ValueLogExportFormat.CSV) {
+                writer.write(CSV_HEADER);
+                writer.write('\n');
+            }
+
+            //Iterate over all value logs of the component
+            try (MongoCursor<ValueLog> cursor = valueLogRepository.findAllByIdRefAndTimeRangeAsCursor(componentId, startTime, endTime)) {
+                while (cursor.hasNext()) {
+                    ValueLog valueLog = cursor.next();
+
+                    //Convert value log to target unit if required
+                    if (converter != null) {
+                        unitConverterService.convertValueLogValue(valueLog, converter);
+                    }
+
+                    //Apply effect if required
+                    if (effect != null) {
+                        effect.apply(valueLog);
+                    }
+
+                    //Write the value log
+                    writeValueLog(writer, valueLog, format);
+                }
+            }
+
+            //Write remaining data
+            writer.flush();
+        };
+    }
+
+    /**
+     * Writes a given value log to a given writer by using a given format.
+     *
+     * @param writer   The writer to write to
+     * @param valueLog The value log to write
+     * @param format   The format to use
+     * @throws IOException In case the value log could not be written
+     */
+    private void writeValueLog(Writer writer, ValueLog valueLog, ValueLogExportFormat format) throws IOException {
+        //Check format
+        switch (format) {
+            case NDJSON:
+                //Create one JSON object per value log and line
+                Document line = new Document("time", valueLog.getTime().toString())
+                        .append("idref", valueLog.getIdref())
+                        .append("component", valueLog.getComponent())
+                        .append("value", valueLog.getValue());
+                writer.write(line.toJson());
+                break;
+            case CSV:
+                //Create one record per value log and line
+                writer.write(valueLog.getTime().toString());
+                writer.write(',');
+                writer.write(escapeCSV(valueLog.getIdref()));
+                writer.write(',');
+                writer.write(escapeCSV(valueLog.getComponent()));
+                writer.write(',');
+                writer.write(escapeCSV((valueLog.getValue() == null) ? "" : valueLog.getValue().toJson()));
+                break;
+        }
+        writer.write('\n');
+    }
+
+    /**
+     * Escapes a given string so that it can be used as field of a CSV record.
+     *
+     * @param field The field to escape
+     * @return The escaped field
+     */
+    private String escapeCSV(String field) {
+        //Null check
+        if (field == null) {
+            return "";
+        }
+
+        //Quote the field if it contains special characters
+        if ((field.indexOf(',') >= 0) || (field.indexOf('"') >= 0) || (field.indexOf('\n') >= 0) || (field.indexOf('\r') >= 0)) {
+            return "\"" + field.replace("\"", "\"\"") + "\"";
+        }
+        return field;
+    }
+}
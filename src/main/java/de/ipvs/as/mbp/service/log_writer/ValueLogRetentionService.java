@@ -0,0 +1,245 @@
+package de.ipvs.as.mbp.service.log_writer;
+
+import de.ipvs.as.mbp.domain.valueLog.ValueLogRetentionPolicy;
+import de.ipvs.as.mbp.repository.ActuatorRepository;
+import de.ipvs.as.mbp.repository.SensorRepository;
+import de.ipvs.as.mbp.repository.ValueLogRepository;
+import de.ipvs.as.mbp.repository.ValueLogRetentionPolicyRepository;
+import de.ipvs.as.mbp.repository.ValueLogRollupRepository;
+import de.ipvs.as.mbp.repository.discovery.DynamicDeploymentRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.EnableScheduling;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Service that enforces the retention policies of value logs. For each component, the effective retention policy
+ * is derived from the component-specific {@link ValueLogRetentionPolicy}, if available, and the defaults for the
+ * type of the component, as given in the application properties. A scheduled compactor periodically removes
+ * the raw value logs and the rollups that exceed their retention times. Raw value logs are removed as whole
+ * documents in bounded batches, such that the compaction does not put excessive load on the database.
+ */
+@Service
+@EnableScheduling
+public class ValueLogRetentionService {
+
+    //Type names of the components as used within the application properties
+    public static final String TYPE_ACTUATOR = "actuator";
+    public static final String TYPE_SENSOR = "sensor";
+    public static final String TYPE_MONITORING = "monitoring";
+    public static final String TYPE_DYNAMIC_DEPLOYMENT = "dynamic_deployment";
+
+    //Repositories holding the value logs and their rollups
+    private final ValueLogRepository valueLogRepository;
+    private final ValueLogRollupRepository valueLogRollupRepository;
+
+    //Repository holding the component-specific retention policies
+    private final ValueLogRetentionPolicyRepository valueLogRetentionPolicyRepository;
+
+    //Repositories for determining the types of the components
+    private final SensorRepository sensorRepository;
+    private final ActuatorRepository actuatorRepository;
+    private final DynamicDeploymentRepository dynamicDeploymentRepository;
+
+    //Map (component type --> days) of the default retention times of raw value logs
+    private final Map<String, Integer> defaultRawRetentionDays;
+
+    //Default retention time of rollups in days
+    private final int defaultRollupRetentionDays;
+
+    //Default retention time of raw value logs in days for components of unknown type
+    private final int fallbackRawRetentionDays;
+
+    //Maximum number of documents to delete per batch
+    private final int batchSize;
+
+    //Whether the compactor is enabled
+    private final boolean enabled;
+
+    /**
+     * Creates the service by passing references to the required repositories and the retention settings (auto-wired).
+     *
+     * @param valueLogRepository                The {@link ValueLogRepository} to use
+     * @param valueLogRollupRepository          The {@link ValueLogRollupRepository} to use
+     * @param valueLogRetentionPolicyRepository The {@link ValueLogRetentionPolicyRepository} to use
+     * @param sensorRepository                  The {@link SensorRepository} to use
+     * @param actuatorRepository                The {@link ActuatorRepository} to use
+     * @param dynamicDeploymentRepository       The {@link DynamicDeploymentRepository} to use
+     * @param enabled                           True, if the compactor is supposed to be enabled; false otherwise
+     * @param batchSize                         The maximum number of documents to delete per batch
+     * @param fallbackRawRetentionDays          The default retention time of raw value logs in days
+     * @param actuatorRawRetentionDays          The default retention time of raw value logs of actuators in days
+     * @param sensorRawRetentionDays            The default retention time of raw value logs of sensors in days
+     * @param monitoringRawRetentionDays        The default retention time of raw value logs of monitoring components in days
+     * @param dynamicDeploymentRawRetentionDays The default retention time of raw value logs of dynamic deployments in days
+     * @param defaultRollupRetentionDays        The default retention time of rollups in days
+     */
+    @Autowired
+    public ValueLogRetentionService(ValueLogRepository valueLogRepository, ValueLogRollupRepository valueLogRollupRepository,
+                                    ValueLogRetentionPolicyRepository valueLogRetentionPolicyRepository,
+                                    SensorRepository sensorRepository, ActuatorRepository actuatorRepository,
+                                    DynamicDeploymentRepository dynamicDeploymentRepository,
+                                    @Value("${value_logs.retention.enabled:true}") boolean enabled,
+                                    @Value("${value_logs.retention.batch_size:500}") int batchSize,
+                                    @Value("${value_logs.retention.raw_days:0}") int fallbackRawRetentionDays,
+                                    @Value("${value_logs.retention.raw_days.actuator:${value_logs.retention.raw_days:0}}") int actuatorRawRetentionDays,
+                                    @Value("${value_logs.retention.raw_days.sensor:${value_logs.retention.raw_days:0}}") int sensorRawRetentionDays,
+                                    @Value("${value_logs.retention.raw_days.monitoring:${value_logs.retention.raw_days:0}}") int monitoringRawRetentionDays,
+                                    @Value("${value_logs.retention.raw_days.dynamic_deployment:${value_logs.retention.raw_days:0}}") int dynamicDeploymentRawRetentionDays,
+                                    @Value("${value_logs.retention.rollup_days:0}") int defaultRollupRetentionDays) {
+        //Sanity check
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("Batch size must be positive.");
+        }
+
+        this.valueLogRepository = valueLogRepository;
+        this.valueLogRollupRepository = valueLogRollupRepository;
+        this.valueLogRetentionPolicyRepository = valueLogRetentionPolicyRepository;
+        this.sensorRepository = sensorRepository;
+        this.actuatorRepository = actuatorRepository;
+        this.dynamicDeploymentRepository = dynamicDeploymentRepository;
+        this.enabled = enabled;
+        this.batchSize = batchSize;
+        this.fallbackRawRetentionDays = fallbackRawRetentionDays;
+        this.defaultRollupRetentionDays = defaultRollupRetentionDays;
+
+        //Remember the default retention times per component type
+        this.defaultRawRetentionDays = new HashMap<>();
+        this.defaultRawRetentionDays.put(TYPE_ACTUATOR, actuatorRawRetentionDays);
+        this.defaultRawRetentionDays.put(TYPE_SENSOR, sensorRawRetentionDays);
+        this.defaultRawRetentionDays.put(TYPE_MONITORING, monitoringRawRetentionDays);
+        this.defaultRawRetentionDays.put(TYPE_DYNAMIC_DEPLOYMENT, dynamicDeploymentRawRetentionDays);
+    }
+
+    /**
+     * Returns the effective retention policy of a given component, i.e. the component-specific policy in which all
+     * unset retention times are replaced by the defaults for the type of the component.
+     *
+     * @param componentId   The ID of the component
+     * @param componentType The type name of the component (e.g. "sensor") or null, if unknown
+     * @return The effective retention policy
+     */
+    public ValueLogRetentionPolicy getEffectivePolicy(String componentId, String componentType) {
+        //Sanity check
+        if ((componentId == null) || componentId.isEmpty()) {
+            throw new IllegalArgumentException("Component ID must not be null or empty.");
+        }
+
+        //Retrieve the component-specific policy, if available
+        ValueLogRetentionPolicy policy = valueLogRetentionPolicyRepository.findById(componentId)
+                .orElse(new ValueLogRetentionPolicy(componentId, null, null));
+
+        //Fill in the defaults
+        if (policy.getRawRetentionDays() == null) {
+            policy.setRawRetentionDays(defaultRawRetentionDays.getOrDefault(componentType, fallbackRawRetentionDays));
+        }
+        if (policy.getRollupRetentionDays() == null) {
+            policy.setRollupRetentionDays(defaultRollupRetentionDays);
+        }
+        return policy;
+    }
+
+    /**
+     * Stores a given component-specific retention policy, replacing the previous policy of the component.
+     *
+     * @param policy The policy to store
+     * @return The stored policy
+     */
+    public ValueLogRetentionPolicy savePolicy(ValueLogRetentionPolicy policy) {
+        //Sanity checks
+        if (policy == null) {
+            throw new IllegalArgumentException("Retention policy must not be null.");
+        } else if ((policy.getComponentId() == null) || policy.getComponentId().isEmpty()) {
+            throw new IllegalArgumentException("Component ID must not be null or empty.");
+        }
+
+        return valueLogRetentionPolicyRepository.save(policy);
+    }
+
+    /**
+     * Deletes the component-specific retention policy of a given component, such that the defaults apply again.
+     *
+     * @param componentId The ID of the component
+     */
+    public void deletePolicy(String componentId) {
+        //Sanity check
+        if ((componentId == null) || componentId.isEmpty()) {
+            throw new IllegalArgumentException("Component ID must not be null or empty.");
+        }
+
+        valueLogRetentionPolicyRepository.deleteById(componentId);
+    }
+
+    /**
+     * Runs periodically and removes the raw value logs and rollups of all components that exceed the retention
+     * times of the effective retention policies of the components.
+     */
+    @Scheduled(initialDelayString = "${value_logs.retention.initial_delay:300000}", fixedDelayString = "${value_logs.retention.interval:3600000}")
+    public void compactValueLogs() {
+        //Check if the compactor is enabled
+        if (!enabled) {
+            return;
+        }
+
+        //Iterate over all components for which value logs are stored
+        for (String idref : valueLogRepository.findAllIdRefs()) {
+            try {
+                compactValueLogs(idref);
+            } catch (Exception e) {
+                System.err.println("Failed to compact value logs of component " + idref + ": " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Removes the raw value logs and rollups of a given component that exceed the retention times of its
+     * effective retention policy.
+     *
+     * @param idref The idref of the component
+     */
+    private void compactValueLogs(String idref) {
+        //Determine the effective policy of the component
+        ValueLogRetentionPolicy policy = getEffectivePolicy(idref, getComponentType(idref));
+        Instant now = Instant.now();
+
+        //Remove raw value logs in batches
+        if (policy.getRawRetentionDays() > 0) {
+            Instant cutoff = now.minus(policy.getRawRetentionDays(), ChronoUnit.DAYS);
+            long deleted;
+            do {
+                deleted = valueLogRepository.deleteBatchByIdRefBefore(idref, cutoff, batchSize);
+            } while (deleted >= batchSize);
+        }
+
+        //Remove rollups
+        if (policy.getRollupRetentionDays() > 0) {
+            valueLogRollupRepository.deleteByIdRefBefore(idref, now.minus(policy.getRollupRetentionDays(), ChronoUnit.DAYS));
+        }
+    }
+
+    /**
+     * Determines the type name of the component with a given idref.
+     *
+     * @param idref The idref of the component
+     * @return The type name of the component or null, if the component is unknown
+     */
+    private String getComponentType(String idref) {
+        //Monitoring components are identified by the IDs of the monitoring operator and the device
+        if (idref.contains("@")) {
+            return TYPE_MONITORING;
+        } else if (sensorRepository.existsById(idref)) {
+            return TYPE_SENSOR;
+        } else if (actuatorRepository.existsById(idref)) {
+            return TYPE_ACTUATOR;
+        } else if (dynamicDeploymentRepository.existsById(idref)) {
+            return TYPE_DYNAMIC_DEPLOYMENT;
+        }
+        return null;
+    }
+}
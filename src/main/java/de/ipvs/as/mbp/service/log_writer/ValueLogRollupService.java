@@ -0,0 +1,330 @@
+package de.ipvs.as.mbp.service.log_writer;
+
+import de.ipvs.as.mbp.domain.data_model.treelogic.DataModelTree;
+import de.ipvs.as.mbp.domain.valueLog.ValueLog;
+import de.ipvs.as.mbp.domain.valueLog.ValueLogRollup;
+import de.ipvs.as.mbp.domain.valueLog.ValueLogRollupResolution;
+import de.ipvs.as.mbp.repository.DataModelTreeCache;
+import de.ipvs.as.mbp.repository.ValueLogRepository;
+import de.ipvs.as.mbp.repository.ValueLogRollupRepository;
+import de.ipvs.as.mbp.util.DocumentReader;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Service that maintains the rollups of value logs at the resolutions given by {@link ValueLogRollupResolution}.
+ * Whenever value logs are written by the {@link ValueLogWriter}, their numeric fields, as described by the leaves
+ * of the data models of the pertaining components, are added to the rollups. Furthermore, the service determines
+ * whether and at which resolution the rollups can be used for answering an aggregation query.<br>
+ * If the rollups cannot be updated for a group of value logs, the time range of these value logs is recorded as a
+ * gap, such that queries overlapping with it fall back to the value logs themselves. Failures of unacknowledged
+ * writes cannot be detected and hence do not result in gaps.
+ */
+@Service
+public class ValueLogRollupService {
+
+    //Repository holding the rollups
+    private final ValueLogRollupRepository valueLogRollupRepository;
+
+    //Repository holding the value logs
+    private final ValueLogRepository valueLogRepository;
+
+    //Cache for retrieving the data models of the components
+    private final DataModelTreeCache dataModelTreeCache;
+
+    //Whether rollups are maintained and used
+    private final boolean rollupsEnabled;
+
+    //Gaps in the rollups that could not be recorded in the repository yet (guarded by itself)
+    private final List<RollupGap> pendingGaps = new LinkedList<>();
+
+    /**
+     * Creates the service by passing references to the required repositories and caches (auto-wired).
+     *
+     * @param valueLogRollupRepository The {@link ValueLogRollupRepository} to use
+     * @param valueLogRepository       The {@link ValueLogRepository} to use
+     * @param dataModelTreeCache       The {@link DataModelTreeCache} to use
+     * @param rollupsEnabled           True, if rollups are supposed to be maintained and used; false otherwise
+     */
+    @Autowired
+    public ValueLogRollupService(ValueLogRollupRepository valueLogRollupRepository, ValueLogRepository valueLogRepository,
+                                 DataModelTreeCache dataModelTreeCache,
+                                 @Value("${value_logs.rollups.enabled:true}") boolean rollupsEnabled) {
+        this.valueLogRollupRepository = valueLogRollupRepository;
+        this.valueLogRepository = valueLogRepository;
+        this.dataModelTreeCache = dataModelTreeCache;
+        this.rollupsEnabled = rollupsEnabled;
+    }
+
+    /**
+     * Adds a given collection of value logs, which have already been written to the {@link ValueLogRepository},
+     * to the rollups of all resolutions.
+     *
+     * @param valueLogs    The value logs to add
+     * @param acknowledged True, if the writes are supposed to be acknowledged by the database; false otherwise
+     */
+    public void addValueLogs(Collection<ValueLog> valueLogs, boolean acknowledged) {
+        //Sanity check
+        if (valueLogs == null) {
+            throw new IllegalArgumentException("Value logs must not be null.");
+        }
+
+        //Check if rollups are enabled
+        if (!rollupsEnabled) {
+            return;
+        }
+
+        //Retry recording the gaps that could not be recorded before
+        recordPendingGaps();
+
+        //Group value logs by idref
+        Map<String, List<ValueLog>> valueLogsByIdRef = new LinkedHashMap<>();
+        for (ValueLog valueLog : valueLogs) {
+            valueLogsByIdRef.computeIfAbsent(valueLog.getIdref(), k -> new ArrayList<>()).add(valueLog);
+        }
+
+        try {
+            updateRollups(valueLogsByIdRef, acknowledged);
+        } catch (RuntimeException e) {
+            //Rollups may be updated partially, so mark the time ranges of all value logs as incomplete
+            for (Map.Entry<String, List<ValueLog>> entry : valueLogsByIdRef.entrySet()) {
+                recordGap(entry.getKey(), entry.getValue());
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Updates the rollups of all resolutions for given value logs, grouped by the idrefs of their components.
+     *
+     * @param valueLogsByIdRef Map (idref --> value logs) of the value logs to add
+     * @param acknowledged     True, if the writes are supposed to be acknowledged by the database; false otherwise
+     */
+    private void updateRollups(Map<String, List<ValueLog>> valueLogsByIdRef, boolean acknowledged) {
+        //Map (resolution --> rollups) of all rollups to update
+        Map<ValueLogRollupResolution, List<ValueLogRollup>> rollups = new EnumMap<>(ValueLogRollupResolution.class);
+
+        //Iterate over all groups of value logs
+        for (Map.Entry<String, List<ValueLog>> entry : valueLogsByIdRef.entrySet()) {
+            String idref = entry.getKey();
+            List<ValueLog> group = entry.getValue();
+
+            //Determine the numeric fields from the data model of the component
+            List<String> paths = getNumericLeafPaths(dataModelTreeCache.getDataModelOfComponent(idref));
+            if (paths.isEmpty()) {
+                continue;
+            }
+
+            //Make sure that the coverage of the rollups is known for the component
+            ensureCoverage(idref, group);
+
+            //Create the rollups for all resolutions
+            for (ValueLogRollupResolution resolution : ValueLogRollupResolution.values()) {
+                Map<Long, ValueLogRollup> groupRollups = new LinkedHashMap<>();
+                for (ValueLog valueLog : group) {
+                    //Get rollup of the interval to which the value log belongs
+                    long time = valueLog.getTime().toEpochMilli();
+                    long intervalStart = resolution.getIntervalStart(time);
+                    ValueLogRollup rollup = groupRollups.computeIfAbsent(intervalStart, t -> new ValueLogRollup(idref, t));
+
+                    //Add all numeric values of the value log
+                    for (String path : paths) {
+                        Double value = DocumentReader.getNumericValueByPath(valueLog.getValue(), path);
+                        if (value != null) {
+                            rollup.add(path, time, value);
+                        }
+                    }
+                }
+                rollups.computeIfAbsent(resolution, r -> new ArrayList<>()).addAll(groupRollups.values());
+            }
+        }
+
+        //Write the rollups of all resolutions
+        for (Map.Entry<ValueLogRollupResolution, List<ValueLogRollup>> entry : rollups.entrySet()) {
+            valueLogRollupRepository.incrementAll(entry.getKey(), entry.getValue(), acknowledged);
+        }
+    }
+
+    /**
+     * Determines the coarsest {@link ValueLogRollupResolution} whose rollups can be used for aggregating the value
+     * logs of a certain component within a given time range into buckets of a given width. This requires that the
+     * bucket width is a multiple of the resolution, that the boundaries of the time range are aligned to the
+     * resolution, that the field is a numeric leaf of the data model of the component, for which rollups are
+     * maintained, and that the rollups of the component are complete for the whole time range.
+     *
+     * @param idref       The idref of the component
+     * @param path        The dot-separated path of the field to aggregate
+     * @param startTime   The inclusive start of the time range or null, if not bounded
+     * @param endTime     The exclusive end of the time range or null, if not bounded
+     * @param bucketWidth The width of the buckets in milliseconds
+     * @return The resolution of the rollups to use or null, if the rollups cannot be used
+     */
+    public ValueLogRollupResolution selectResolution(String idref, String path, Instant startTime, Instant endTime, long bucketWidth) {
+        //Check if rollups are enabled
+        if (!rollupsEnabled) {
+            return null;
+        }
+
+        //Check whether rollups are maintained for the field
+        if (!getNumericLeafPaths(dataModelTreeCache.getDataModelOfComponent(idref)).contains(path)) {
+            return null;
+        }
+
+        //Retrieve the time since which the rollups of the component are complete
+        Instant coverageStart = valueLogRollupRepository.findCoverageStartByIdRef(idref);
+        if (coverageStart == null) {
+            return null;
+        }
+
+        //Rollups must not contain gaps within the time range
+        if (hasPendingGap(idref, startTime, endTime)
+                || valueLogRollupRepository.existsGapByIdRefWithin(idref, startTime, endTime)) {
+            return null;
+        }
+
+        //Check all resolutions, starting with the coarsest one
+        ValueLogRollupResolution[] resolutions = ValueLogRollupResolution.values();
+        for (int i = resolutions.length - 1; i >= 0; i--) {
+            ValueLogRollupResolution resolution = resolutions[i];
+            long width = resolution.getWidth();
+
+            //Bucket width and boundaries of the time range must be aligned to the resolution
+            if (((bucketWidth % width) != 0) || ((startTime != null) && ((startTime.toEpochMilli() % width) != 0))
+                    || ((endTime != null) && ((endTime.toEpochMilli() % width) != 0))) {
+                continue;
+            }
+
+            //The first interval to consider must not contain value logs from before the coverage start
+            if (coverageStart.equals(Instant.EPOCH) || ((startTime != null)
+                    && (startTime.toEpochMilli() >= resolution.getIntervalStart(coverageStart.toEpochMilli() + width - 1)))) {
+                return resolution;
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Makes sure that the time since which the rollups of a certain component are complete is stored. If no value
+     * logs were written for the component before the given group of value logs, the rollups are complete from the
+     * very beginning. Otherwise, they are only complete from the oldest value log of the group on.
+     *
+     * @param idref The idref of the component
+     * @param group The group of value logs of the component that is about to be added to the rollups
+     */
+    private void ensureCoverage(String idref, List<ValueLog> group) {
+        //Check if the coverage is already known
+        if (valueLogRollupRepository.isCoverageKnown(idref)) {
+            return;
+        }
+
+        //Determine the oldest value log of the group
+        Instant oldest = group.stream().map(ValueLog::getTime).min(Instant::compareTo).orElse(Instant.EPOCH);
+
+        //Check whether value logs were written before the group
+        Instant since = valueLogRepository.existsByIdRefBefore(idref, oldest) ? oldest : Instant.EPOCH;
+        valueLogRollupRepository.insertCoverageStartIfAbsent(idref, since);
+    }
+
+    /**
+     * Records the time range of a group of value logs of a certain component, which could not be added to the
+     * rollups, as gap. If the gap cannot be stored in the repository, it is kept in memory and retried later.
+     *
+     * @param idref The idref of the component
+     * @param group The group of value logs of the component
+     */
+    private void recordGap(String idref, List<ValueLog> group) {
+        Instant from = group.stream().map(ValueLog::getTime).min(Instant::compareTo).orElse(null);
+        Instant to = group.stream().map(ValueLog::getTime).max(Instant::compareTo).orElse(null);
+        if (from == null) {
+            return;
+        }
+
+        RollupGap gap = new RollupGap(idref, from, to);
+        try {
+            valueLogRollupRepository.insertGap(idref, from, to);
+        } catch (RuntimeException e) {
+            System.err.println("Failed to record rollup gap of " + idref + ": " + e.getMessage());
+            synchronized (pendingGaps) {
+                pendingGaps.add(gap);
+            }
+        }
+    }
+
+    /**
+     * Retries to store the gaps that could not be stored in the repository before.
+     */
+    private void recordPendingGaps() {
+        synchronized (pendingGaps) {
+            Iterator<RollupGap> iterator = pendingGaps.iterator();
+            while (iterator.hasNext()) {
+                RollupGap gap = iterator.next();
+                try {
+                    valueLogRollupRepository.insertGap(gap.idref, gap.from, gap.to);
+                    iterator.remove();
+                } catch (RuntimeException e) {
+                    //Database is probably still unavailable, so keep the remaining gaps
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Checks whether a gap that could not be stored in the repository yet overlaps with a given time range
+     * of a certain component.
+     *
+     * @param idref     The idref of the component
+     * @param startTime The inclusive start of the time range or null, if not bounded
+     * @param endTime   The exclusive end of the time range or null, if not bounded
+     * @return True, if an overlapping gap exists; false otherwise
+     */
+    private boolean hasPendingGap(String idref, Instant startTime, Instant endTime) {
+        synchronized (pendingGaps) {
+            return pendingGaps.stream().anyMatch(gap -> gap.idref.equals(idref)
+                    && ((endTime == null) || gap.from.isBefore(endTime))
+                    && ((startTime == null) || !gap.to.isBefore(startTime)));
+        }
+    }
+
+    /**
+     * Returns the dot-separated paths of all numeric leaves of a given {@link DataModelTree}. Leaves that are
+     * located within arrays are not considered.
+     *
+     * @param dataModelTree The data model tree to use
+     * @return The list of paths
+     */
+    private List<String> getNumericLeafPaths(DataModelTree dataModelTree) {
+        return dataModelTree.getNumericLeafNodesByPath().keySet().stream()
+                .filter(ValueLogRollupRepository::isValidPath)
+                .filter(path -> !path.contains("[*]"))
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Inclusive time range of value logs of a component that could not be added to the rollups.
+     */
+    private static class RollupGap {
+        private final String idref;
+        private final Instant from;
+        private final Instant to;
+
+        private RollupGap(String idref, Instant from, Instant to) {
+            this.idref = idref;
+            this.from = from;
+            this.to = to;
+        }
+    }
+}
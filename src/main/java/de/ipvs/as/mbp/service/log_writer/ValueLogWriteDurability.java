@@ -0,0 +1,19 @@
+package de.ipvs.as.mbp.service.log_writer;
+
+/**
+ * Enumeration of the durability levels that may be used by the {@link ValueLogWriter} when writing batches
+ * of value logs into the database.
+ */
+public enum ValueLogWriteDurability {
+    /**
+     * Each batch is written with an acknowledged write concern. Value logs are kept in memory until the database
+     * has acknowledged the write and batches that failed to be written are retried with the next flush.
+     */
+    ACKNOWLEDGED,
+
+    /**
+     * Each batch is written fire-and-forget with an unacknowledged write concern. Offers the highest throughput,
+     * but value logs may get lost silently if the database rejects the write.
+     */
+    WRITE_BEHIND
+}
@@ -2,39 +2,137 @@ package de.ipvs.as.mbp.service.log_writer;
 
 import de.ipvs.as.mbp.domain.valueLog.ValueLog;
 import de.ipvs.as.mbp.repository.ValueLogRepository;
-import de.ipvs.as.mbp.service.cep.trigger.CEPValueLogCache;
 import de.ipvs.as.mbp.service.receiver.ValueLogObserver;
 import de.ipvs.as.mbp.service.receiver.ValueLogReceiver;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import javax.annotation.PreDestroy;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
 /**
  * Service that registers itself as observer at the ValueLogReceiver and writes all arrived value logs
- * into the InfluxDB time series database.
+ * into the value log repository. If batching is enabled, the value logs are collected and written as
+ * batches by a background thread, either as soon as a certain number of value logs is pending or after a certain
+ * time interval. Value logs whose writes failed are written again with the next batch; after a failed batch, further
+ * batches are only attempted after an increasing backoff. The number of pending value logs is bounded, such that
+ * the oldest pending value logs are dropped if the database is unavailable for a longer time.
  */
 @Service
 public class ValueLogWriter implements ValueLogObserver {
+    private static final Logger LOGGER = Logger.getLogger(ValueLogWriter.class.getName());
+
+    //Maximum number of attempts for writing a value log that is rejected by the database
+    private static final int MAX_WRITE_ATTEMPTS = 3;
+
+    //Maximum time in milliseconds to wait before writing the next batch after a failed batch
+    private static final long MAX_BACKOFF = 30 * 1000;
 
     //Repository component to use for storing value logs (autowired)
     private final ValueLogRepository valueLogRepository;
 
-    //Cache for value logs
-    private CEPValueLogCache cepValueLogCache;
+    //Service for maintaining the rollups of the value logs
+    private final ValueLogRollupService valueLogRollupService;
+
+    //The receiver at which this writer is registered
+    private final ValueLogReceiver valueLogReceiver;
+
+    //Batching configuration
+    private final boolean batchingEnabled;
+    private final int batchSize;
+    private final ValueLogWriteDurability durability;
+    private final int maxPending;
+    private final long flushInterval;
+
+    //Value logs that are pending for being written (guarded by itself)
+    private final Deque<ValueLog> pendingValueLogs;
+
+    //Map (value log --> number of failed attempts) of the pending value logs that were rejected by the database
+    private final Map<ValueLog, Integer> failedAttempts = new IdentityHashMap<>();
+
+    //Counter for the value logs that were dropped without being written
+    private final Counter droppedCounter;
+
+    //Lock for serializing the flushes
+    private final Object flushLock = new Object();
+
+    //Thread pool for periodic flushes and flushes of complete batches
+    private final ScheduledExecutorService flushScheduler;
+
+    //Indicates whether a flush of a complete batch was requested, but has not started yet
+    private final AtomicBoolean flushRequested = new AtomicBoolean(false);
+
+    //Number of consecutive failed flushes and time in milliseconds before which no flush is attempted (flush thread only)
+    private int failedFlushes = 0;
+    private long backoffEnd = 0;
 
     /**
      * Creates and starts the service by passing references to a {@link ValueLogReceiver} service, the
      * {@link ValueLogRepository} that is supposed to be used for storing the received value logs in and
-     * a {@link CEPValueLogCache} for caching the received value logs (auto-wired).
+     * a {@link ValueLogRollupService} for maintaining the rollups of the written value logs (auto-wired).
      *
-     * @param valueLogReceiver   The instance of the {@link ValueLogReceiver} service to use
-     * @param valueLogRepository The  {@link ValueLogRepository} to use
-     * @param cepValueLogCache   The {@link CEPValueLogCache} to use
+     * @param valueLogReceiver      The instance of the {@link ValueLogReceiver} service to use
+     * @param valueLogRepository    The  {@link ValueLogRepository} to use
+     * @param valueLogRollupService The {@link ValueLogRollupService} to use
+     * @param meterRegistry         The {@link MeterRegistry} to publish the metrics of the writer to
+     * @param batchingEnabled       True, if value logs are supposed to be written in batches; false otherwise
+     * @param batchSize             The number of pending value logs at which a batch is written
+     * @param flushInterval         The interval in milliseconds at which pending value logs are written
+     * @param durability            The durability to use for writing batches
+     * @param maxPending            The maximum number of pending value logs
      */
     @Autowired
-    public ValueLogWriter(ValueLogReceiver valueLogReceiver, ValueLogRepository valueLogRepository, CEPValueLogCache cepValueLogCache) {
+    public ValueLogWriter(ValueLogReceiver valueLogReceiver, ValueLogRepository valueLogRepository,
+                          ValueLogRollupService valueLogRollupService, MeterRegistry meterRegistry,
+                          @Value("${value_logs.writer.batching:true}") boolean batchingEnabled,
+                          @Value("${value_logs.writer.batch_size:500}") int batchSize,
+                          @Value("${value_logs.writer.flush_interval:250}") long flushInterval,
+                          @Value("${value_logs.writer.durability:ACKNOWLEDGED}") ValueLogWriteDurability durability,
+                          @Value("${value_logs.writer.max_pending:100000}") int maxPending) {
         //Store references
+        this.valueLogReceiver = valueLogReceiver;
         this.valueLogRepository = valueLogRepository;
-        this.cepValueLogCache = cepValueLogCache;
+        this.valueLogRollupService = valueLogRollupService;
+
+        //Store batching configuration
+        this.batchingEnabled = batchingEnabled;
+        this.batchSize = Math.max(1, batchSize);
+        this.durability = durability;
+        this.maxPending = Math.max(this.batchSize, maxPending);
+        this.flushInterval = flushInterval;
+        this.pendingValueLogs = new ArrayDeque<>();
+
+        //Register metrics
+        this.droppedCounter = Counter.builder("value_logs.writer.dropped")
+                .description("Number of value logs that were dropped without being written").register(meterRegistry);
+        Gauge.builder("value_logs.writer.pending", this, ValueLogWriter::getPendingCount)
+                .description("Number of value logs that are pending for being written").register(meterRegistry);
+
+        //Schedule periodic flushes if batching is enabled
+        if (batchingEnabled) {
+            this.flushScheduler = Executors.newSingleThreadScheduledExecutor();
+            this.flushScheduler.scheduleWithFixedDelay(this::flushSafely, flushInterval, flushInterval, TimeUnit.MILLISECONDS);
+        } else {
+            this.flushScheduler = null;
+        }
 
         //Register as observer at the ValueLogReceiver
         valueLogReceiver.registerObserver(this);
@@ -53,9 +151,225 @@ public class ValueLogWriter implements ValueLogObserver {
             throw new IllegalArgumentException("Value log must not be null.");
         }
 
-        //Write value log into repository
-        valueLogRepository.write(valueLog);
-        // Remove the value log from the CEPValueLogCache as it should be now written to the database
-        cepValueLogCache.removeValueLog(valueLog);
+        //Check if batching is enabled
+        if (!batchingEnabled) {
+            //Write value log into repository
+            valueLogRepository.write(valueLog);
+            //Add value log to the rollups
+            updateRollups(Collections.singletonList(valueLog), true);
+            return;
+        }
+
+        //Add value log to the pending value logs
+        int pendingCount;
+        synchronized (pendingValueLogs) {
+            pendingValueLogs.addLast(valueLog);
+            dropExcessValueLogs();
+            pendingCount = pendingValueLogs.size();
+        }
+
+        //Let the flush thread write the batch if it is complete, without blocking the caller
+        if ((pendingCount >= batchSize) && flushRequested.compareAndSet(false, true)) {
+            try {
+                flushScheduler.execute(() -> {
+                    flushRequested.set(false);
+                    flushSafely();
+                });
+            } catch (RejectedExecutionException e) {
+                //Writer is shut down, the pending value logs are written by the final flush
+                flushRequested.set(false);
+            }
+        }
+    }
+
+    /**
+     * Writes all pending value logs into the repository as one batch. If the database rejects the writes of some
+     * of the value logs, only these value logs are pending again, unless they already failed
+     * {@link #MAX_WRITE_ATTEMPTS} times. If the batch cannot be written at all, all of its value logs are
+     * pending again.
+     */
+    public void flush() {
+        synchronized (flushLock) {
+            //Take over the pending value logs
+            List<ValueLog> batch;
+            synchronized (pendingValueLogs) {
+                if (pendingValueLogs.isEmpty()) {
+                    return;
+                }
+                batch = new ArrayList<>(pendingValueLogs);
+                pendingValueLogs.clear();
+            }
+
+            boolean acknowledged = durability == ValueLogWriteDurability.ACKNOWLEDGED;
+            List<ValueLog> failedValueLogs;
+            try {
+                //Write batch into repository
+                failedValueLogs = valueLogRepository.writeAll(batch, acknowledged);
+            } catch (Exception e) {
+                //Only acknowledged writes are retried
+                if (acknowledged) {
+                    requeue(batch);
+                } else {
+                    synchronized (pendingValueLogs) {
+                        forgetFailedAttempts(batch);
+                    }
+                    droppedCounter.increment(batch.size());
+                }
+                throw e;
+            }
+
+            //Check whether all value logs were written
+            List<ValueLog> writtenValueLogs = batch;
+            if (!failedValueLogs.isEmpty()) {
+                Set<ValueLog> failedSet = Collections.newSetFromMap(new IdentityHashMap<>());
+                failedSet.addAll(failedValueLogs);
+                writtenValueLogs = new ArrayList<>(batch.size() - failedSet.size());
+                for (ValueLog valueLog : batch) {
+                    if (!failedSet.contains(valueLog)) {
+                        writtenValueLogs.add(valueLog);
+                    }
+                }
+                LOGGER.log(Level.WARNING, "Writing {0} value logs failed, retrying with the next batch", failedSet.size());
+            }
+
+            synchronized (pendingValueLogs) {
+                //Make the failed value logs pending again
+                forgetFailedAttempts(writtenValueLogs);
+                retryFailedValueLogs(failedValueLogs);
+            }
+
+            //Add the written value logs to the rollups
+            updateRollups(writtenValueLogs, acknowledged);
+        }
+    }
+
+    /**
+     * Returns the number of value logs that are currently pending for being written.
+     *
+     * @return The number of pending value logs
+     */
+    public int getPendingCount() {
+        synchronized (pendingValueLogs) {
+            return pendingValueLogs.size();
+        }
+    }
+
+    /**
+     * Writes all pending value logs on shutdown. For this, the writer unregisters itself from the
+     * {@link ValueLogReceiver} first, so that all value logs that are still waiting for delivery are included.
+     */
+    @PreDestroy
+    public void shutdown() {
+        //Unregister from the receiver and wait for the remaining value logs
+        valueLogReceiver.unregisterObserver(this);
+
+        //Check if batching is enabled
+        if (!batchingEnabled) {
+            return;
+        }
+
+        //Stop periodic flushes and write the remaining value logs
+        flushScheduler.shutdown();
+        flush();
+    }
+
+    /**
+     * Puts a given batch of value logs, which could not be written at all, in front of the pending value logs,
+     * such that their order is preserved.
+     *
+     * @param batch The value logs to put back
+     */
+    private void requeue(List<ValueLog> batch) {
+        synchronized (pendingValueLogs) {
+            for (int i = batch.size() - 1; i >= 0; i--) {
+                pendingValueLogs.addFirst(batch.get(i));
+            }
+            dropExcessValueLogs();
+        }
+    }
+
+    /**
+     * Puts a given list of value logs, whose writes were rejected by the database, in front of the pending value
+     * logs. Value logs that already failed {@link #MAX_WRITE_ATTEMPTS} times are dropped. Must be called while
+     * holding the lock of the pending value logs.
+     *
+     * @param failedValueLogs The value logs to retry
+     */
+    private void retryFailedValueLogs(List<ValueLog> failedValueLogs) {
+        for (int i = failedValueLogs.size() - 1; i >= 0; i--) {
+            ValueLog valueLog = failedValueLogs.get(i);
+            int attempts = failedAttempts.merge(valueLog, 1, Integer::sum);
+            if (attempts >= MAX_WRITE_ATTEMPTS) {
+                failedAttempts.remove(valueLog);
+                droppedCounter.increment();
+            } else {
+                pendingValueLogs.addFirst(valueLog);
+            }
+        }
+        dropExcessValueLogs();
+    }
+
+    /**
+     * Drops the oldest pending value logs as long as the maximum number of pending value logs is exceeded. Must be
+     * called while holding the lock of the pending value logs.
+     */
+    private void dropExcessValueLogs() {
+        while (pendingValueLogs.size() > maxPending) {
+            failedAttempts.remove(pendingValueLogs.pollFirst());
+            droppedCounter.increment();
+        }
+    }
+
+    /**
+     * Removes the recorded failed attempts of a given collection of value logs. Must be called while holding the
+     * lock of the pending value logs.
+     *
+     * @param valueLogs The value logs
+     */
+    private void forgetFailedAttempts(List<ValueLog> valueLogs) {
+        if (!failedAttempts.isEmpty()) {
+            valueLogs.forEach(failedAttempts::remove);
+        }
+    }
+
+    /**
+     * Adds a given list of value logs that have been written to the repository to the rollups. Errors are only
+     * reported, since the value logs themselves are already persisted and must not be written again; the
+     * affected time ranges are marked as gaps of the rollups by the {@link ValueLogRollupService}.
+     *
+     * @param valueLogs    The value logs to add
+     * @param acknowledged True, if the writes are supposed to be acknowledged by the database; false otherwise
+     */
+    private void updateRollups(List<ValueLog> valueLogs, boolean acknowledged) {
+        try {
+            valueLogRollupService.addValueLogs(valueLogs, acknowledged);
+        } catch (Exception e) {
+            LOGGER.log(Level.WARNING, "Updating value log rollups failed", e);
+        }
+    }
+
+    /**
+     * Writes all pending value logs into the repository as one batch and catches occurring errors, such that
+     * the periodic flushes are not cancelled. After a failed flush, further flushes are skipped for a backoff
+     * time that starts at the flush interval and doubles with each consecutive failure up to {@link #MAX_BACKOFF}.
+     * Only called by the flush thread.
+     */
+    private void flushSafely() {
+        //Skip the flush while backing off from failed flushes
+        if (System.currentTimeMillis() < backoffEnd) {
+            return;
+        }
+
+        try {
+            flush();
+            failedFlushes = 0;
+            backoffEnd = 0;
+        } catch (Exception e) {
+            //Back off before the next attempt
+            long backoff = Math.min(flushInterval << Math.min(failedFlushes, 16), MAX_BACKOFF);
+            failedFlushes++;
+            backoffEnd = System.currentTimeMillis() + backoff;
+            LOGGER.log(Level.WARNING, "Writing value logs failed, retrying in " + backoff + " ms", e);
+        }
     }
-}
\ No newline at end of file
+}
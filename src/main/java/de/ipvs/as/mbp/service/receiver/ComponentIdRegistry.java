@@ -0,0 +1,295 @@
+package de.ipvs.as.mbp.service.receiver;
+
+import de.ipvs.as.mbp.domain.component.Actuator;
+import de.ipvs.as.mbp.domain.component.Sensor;
+import de.ipvs.as.mbp.domain.device.Device;
+import de.ipvs.as.mbp.domain.discovery.deployment.DynamicDeployment;
+import de.ipvs.as.mbp.domain.entity_type.DeviceType;
+import de.ipvs.as.mbp.domain.monitoring.MonitoringComponent;
+import de.ipvs.as.mbp.domain.monitoring.MonitoringOperator;
+import de.ipvs.as.mbp.domain.user_entity.UserEntity;
+import de.ipvs.as.mbp.repository.MonitoringOperatorRepository;
+import de.ipvs.as.mbp.service.discovery.deployment.DynamicDeployableComponent;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.mapping.event.AbstractMongoEventListener;
+import org.springframework.data.mongodb.core.mapping.event.AfterDeleteEvent;
+import org.springframework.data.mongodb.core.mapping.event.AfterSaveEvent;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.scheduling.annotation.EnableScheduling;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * In-memory registry of the IDs of all components that may publish value logs, grouped by the component type
+ * names that are used within the topics of the value log messages. This allows the {@link ValueLogReceiver} to
+ * check the validity of the component IDs of incoming messages without accessing the database.<br>
+ * The registry is loaded from the database at startup and maintained by the MongoDB lifecycle events of the
+ * pertaining entities, such that it also reflects entities that are created or deleted without the
+ * {@link de.ipvs.as.mbp.service.user.UserEntityService}. In addition, it is periodically reloaded as a safety net
+ * for changes that bypass the lifecycle events (e.g. bulk deletions).
+ */
+@Component
+@EnableScheduling
+public class ComponentIdRegistry extends AbstractMongoEventListener<UserEntity> {
+
+    //Indices of the component types within the type names array
+    private static final int TYPE_ACTUATOR = 0;
+    private static final int TYPE_SENSOR = 1;
+    private static final int TYPE_DYNAMIC_DEPLOYMENT = 2;
+    private static final int TYPE_MONITORING = 3;
+
+    //Names of the component types as used within the topics of value log messages
+    private final String[] typeNames;
+
+    //Template and repository for loading the registry
+    private final MongoTemplate mongoTemplate;
+    private final MonitoringOperatorRepository monitoringOperatorRepository;
+
+    //Sets of the IDs of all valid components per type
+    private volatile Set<String> actuatorIds = ConcurrentHashMap.newKeySet();
+    private volatile Set<String> sensorIds = ConcurrentHashMap.newKeySet();
+    private volatile Set<String> dynamicDeploymentIds = ConcurrentHashMap.newKeySet();
+    private volatile Set<String> monitoringComponentIds = Collections.emptySet();
+
+    //Map (device ID --> device type name) of all devices
+    private final Map<String, String> deviceTypesByDeviceId = new ConcurrentHashMap<>();
+
+    //Map (monitoring operator ID --> device type names) of all monitoring operators and their compatible device types
+    private final Map<String, Set<String>> deviceTypesByMonitoringOperatorId = new ConcurrentHashMap<>();
+
+    /**
+     * Creates the registry by passing references to the required template and repository (auto-wired).
+     *
+     * @param mongoTemplate                The {@link MongoTemplate} to use for loading the IDs of the components
+     * @param monitoringOperatorRepository The {@link MonitoringOperatorRepository} to use
+     */
+    @Autowired
+    public ComponentIdRegistry(MongoTemplate mongoTemplate, MonitoringOperatorRepository monitoringOperatorRepository) {
+        this.mongoTemplate = mongoTemplate;
+        this.monitoringOperatorRepository = monitoringOperatorRepository;
+
+        //Determine the type names once
+        this.typeNames = new String[4];
+        this.typeNames[TYPE_ACTUATOR] = new Actuator().getComponentTypeName();
+        this.typeNames[TYPE_SENSOR] = new Sensor().getComponentTypeName();
+        this.typeNames[TYPE_DYNAMIC_DEPLOYMENT] = new DynamicDeployableComponent().getComponentTypeName();
+        this.typeNames[TYPE_MONITORING] = new MonitoringComponent().getComponentTypeName();
+    }
+
+    /**
+     * Checks and returns whether a component with a given ID exists for a given component type name, as used
+     * within the topics of value log messages. For monitoring components, this additionally requires the
+     * monitoring operator to be compatible with the device.
+     *
+     * @param componentType The type name of the component
+     * @param componentId   The ID of the component
+     * @return True, if the component ID is valid for the component type; false otherwise
+     */
+    public boolean isValid(String componentType, String componentId) {
+        //Sanity check
+        if ((componentType == null) || (componentId == null)) {
+            return false;
+        }
+
+        //Look for the component type and check the IDs of this type
+        for (int i = 0; i < typeNames.length; i++) {
+            if (typeNames[i].equalsIgnoreCase(componentType)) {
+                return getIds(i).contains(componentId);
+            }
+        }
+
+        //Given component type is unknown
+        return false;
+    }
+
+    /**
+     * Loads the registry from the database on startup.
+     */
+    @PostConstruct
+    public void initialize() {
+        reload();
+    }
+
+    /**
+     * Runs periodically and reloads the registry from the database.
+     */
+    @Scheduled(initialDelayString = "${value_logs.ingestion.registry_reload_interval:600000}",
+            fixedDelayString = "${value_logs.ingestion.registry_reload_interval:600000}")
+    public void scheduledReload() {
+        try {
+            reload();
+        } catch (Exception e) {
+            System.err.println("Failed to reload the component ID registry: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Reloads all component IDs from the database. Lifecycle events that occur during the reload are applied
+     * only after the reloaded IDs were published, since the event handlers synchronize on the registry as well.
+     * Hence, entities that are saved or deleted while the reload is in progress are not lost.
+     */
+    public synchronized void reload() {
+        //Load the IDs of the components
+        this.actuatorIds = loadIds(Actuator.class);
+        this.sensorIds = loadIds(Sensor.class);
+        this.dynamicDeploymentIds = loadIds(DynamicDeployment.class);
+
+        //Load the types of the devices
+        Query deviceQuery = new Query();
+        deviceQuery.fields().include("_id").include("componentType");
+        Map<String, String> deviceTypes = new ConcurrentHashMap<>();
+        for (Document document : mongoTemplate.find(deviceQuery, Document.class, mongoTemplate.getCollectionName(Device.class))) {
+            String deviceType = document.getString("componentType");
+            deviceTypes.put(document.get("_id").toString(), (deviceType == null) ? "" : deviceType);
+        }
+        this.deviceTypesByDeviceId.keySet().retainAll(deviceTypes.keySet());
+        this.deviceTypesByDeviceId.putAll(deviceTypes);
+
+        //Load the monitoring operators and their compatible device types
+        Map<String, Set<String>> operatorDeviceTypes = new ConcurrentHashMap<>();
+        for (MonitoringOperator monitoringOperator : monitoringOperatorRepository.findAll()) {
+            operatorDeviceTypes.put(monitoringOperator.getId(), getDeviceTypeNames(monitoringOperator));
+        }
+        this.deviceTypesByMonitoringOperatorId.keySet().retainAll(operatorDeviceTypes.keySet());
+        this.deviceTypesByMonitoringOperatorId.putAll(operatorDeviceTypes);
+
+        //Derive the IDs of the monitoring components
+        updateMonitoringComponentIds();
+    }
+
+    /**
+     * Called after an entity was saved to the database.
+     *
+     * @param event The event of the saved entity
+     */
+    @Override
+    public synchronized void onAfterSave(AfterSaveEvent<UserEntity> event) {
+        //Get saved entity
+        UserEntity entity = event.getSource();
+
+        //Check type of the entity and add it to the registry
+        if (entity instanceof Actuator) {
+            actuatorIds.add(entity.getId());
+        } else if (entity instanceof Sensor) {
+            sensorIds.add(entity.getId());
+        } else if (entity instanceof DynamicDeployment) {
+            dynamicDeploymentIds.add(entity.getId());
+        } else if (entity instanceof Device) {
+            String deviceType = ((Device) entity).getComponentType();
+            deviceTypesByDeviceId.put(entity.getId(), (deviceType == null) ? "" : deviceType);
+            updateMonitoringComponentIds();
+        } else if (entity instanceof MonitoringOperator) {
+            deviceTypesByMonitoringOperatorId.put(entity.getId(), getDeviceTypeNames((MonitoringOperator) entity));
+            updateMonitoringComponentIds();
+        }
+    }
+
+    /**
+     * Called after one or multiple entities were deleted from the database.
+     *
+     * @param event The event of the deleted entities
+     */
+    @Override
+    public synchronized void onAfterDelete(AfterDeleteEvent<UserEntity> event) {
+        //Retrieve the ID of the deleted entity from the query
+        Object id = event.getSource().get("_id");
+
+        //Reload the registry if the deleted entities cannot be identified (e.g. bulk deletions)
+        if ((id == null) || (id instanceof Document)) {
+            scheduledReload();
+            return;
+        }
+
+        //Remove the entity from the registry (IDs are unique across all collections)
+        String entityId = id.toString();
+        actuatorIds.remove(entityId);
+        sensorIds.remove(entityId);
+        dynamicDeploymentIds.remove(entityId);
+        if ((deviceTypesByDeviceId.remove(entityId) != null) || (deviceTypesByMonitoringOperatorId.remove(entityId) != null)) {
+            updateMonitoringComponentIds();
+        }
+    }
+
+    /**
+     * Derives the IDs of all valid monitoring components from the devices and the monitoring operators
+     * that are compatible with them.
+     */
+    private synchronized void updateMonitoringComponentIds() {
+        //Combine each monitoring operator with all compatible devices
+        Set<String> ids = new HashSet<>();
+        for (Map.Entry<String, Set<String>> operator : deviceTypesByMonitoringOperatorId.entrySet()) {
+            for (Map.Entry<String, String> device : deviceTypesByDeviceId.entrySet()) {
+                if (operator.getValue().contains(device.getValue())) {
+                    ids.add(operator.getKey() + "@" + device.getKey());
+                }
+            }
+        }
+
+        //Replace the set of IDs
+        this.monitoringComponentIds = Collections.unmodifiableSet(ids);
+    }
+
+    /**
+     * Returns the set of valid IDs for the component type at a given index.
+     *
+     * @param typeIndex The index of the component type
+     * @return The set of IDs
+     */
+    private Set<String> getIds(int typeIndex) {
+        switch (typeIndex) {
+            case TYPE_ACTUATOR:
+                return actuatorIds;
+            case TYPE_SENSOR:
+                return sensorIds;
+            case TYPE_DYNAMIC_DEPLOYMENT:
+                return dynamicDeploymentIds;
+            default:
+                return monitoringComponentIds;
+        }
+    }
+
+    /**
+     * Loads the IDs of all entities of a given class from the database.
+     *
+     * @param entityClass The class of the entities
+     * @return The set of IDs
+     */
+    private Set<String> loadIds(Class<?> entityClass) {
+        //Only retrieve the IDs
+        Query query = new Query();
+        query.fields().include("_id");
+
+        //Collect the IDs
+        Set<String> ids = ConcurrentHashMap.newKeySet();
+        for (Document document : mongoTemplate.find(query, Document.class, mongoTemplate.getCollectionName(entityClass))) {
+            ids.add(document.get("_id").toString());
+        }
+        return ids;
+    }
+
+    /**
+     * Returns the names of the device types a given monitoring operator is compatible with.
+     *
+     * @param monitoringOperator The monitoring operator
+     * @return The set of device type names
+     */
+    private Set<String> getDeviceTypeNames(MonitoringOperator monitoringOperator) {
+        //Collect the names of the device types
+        Set<String> names = new HashSet<>();
+        if (monitoringOperator.getDeviceTypes() != null) {
+            for (DeviceType deviceType : monitoringOperator.getDeviceTypes()) {
+                names.add(deviceType.getName());
+            }
+        }
+        return names;
+    }
+}
@@ -1,6 +1,7 @@
 package de.ipvs.as.mbp.service.receiver;
 
 import de.ipvs.as.mbp.domain.valueLog.ValueLog;
+import de.ipvs.as.mbp.service.receiver.pipeline.BackpressurePolicy;
 
 /**
  * Interface for components that observe the {@link ValueLogReceiver} and want to get notified in case
@@ -14,4 +15,15 @@ public interface ValueLogObserver {
      * @param valueLog The resulting value log of the arrived message
      */
     void onValueReceived(ValueLog valueLog);
+
+    /**
+     * Returns the {@link BackpressurePolicy} that is supposed to be applied in case this observer cannot keep up
+     * with the incoming value logs. If null is returned, the default policy of the {@link ValueLogReceiver}
+     * is used.
+     *
+     * @return The backpressure policy or null, if the default policy is supposed to be used
+     */
+    default BackpressurePolicy getBackpressurePolicy() {
+        return null;
+    }
 }
\ No newline at end of file
@@ -9,11 +9,13 @@ import de.ipvs.as.mbp.domain.monitoring.MonitoringComponent;
 import de.ipvs.as.mbp.domain.monitoring.MonitoringOperator;
 import de.ipvs.as.mbp.domain.valueLog.ValueLog;
 import de.ipvs.as.mbp.repository.*;
-import de.ipvs.as.mbp.repository.discovery.DynamicDeploymentRepository;
 import de.ipvs.as.mbp.service.discovery.deployment.DynamicDeployableComponent;
 import de.ipvs.as.mbp.service.messaging.PubSubService;
+import de.ipvs.as.mbp.service.receiver.pipeline.BackpressurePolicy;
+import de.ipvs.as.mbp.service.receiver.pipeline.ValueLogIngestionPipeline;
 import org.json.JSONObject;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.scheduling.annotation.EnableScheduling;
 import org.springframework.stereotype.Service;
 
@@ -40,10 +42,6 @@ import de.ipvs.as.mbp.domain.monitoring.MonitoringOperator;
 import de.ipvs.as.mbp.domain.valueLog.ValueLog;
 import de.ipvs.as.mbp.repository.DataModelTreeCache;
 import org.bson.Document;
-import de.ipvs.as.mbp.repository.ActuatorRepository;
-import de.ipvs.as.mbp.repository.DeviceRepository;
-import de.ipvs.as.mbp.repository.MonitoringOperatorRepository;
-import de.ipvs.as.mbp.repository.SensorRepository;
 import org.eclipse.paho.client.mqttv3.IMqttDeliveryToken;
 import org.eclipse.paho.client.mqttv3.MqttCallback;
 import org.eclipse.paho.client.mqttv3.MqttException;
@@ -51,11 +49,15 @@ import org.eclipse.paho.client.mqttv3.MqttMessage;
 import org.json.JSONException;
 import org.json.JSONObject;
 
+import javax.annotation.PreDestroy;
+
 /**
  * Background service that receives incoming value log messages from the publish-subscribe-based messaging service.
  * In order to be treated and processed as value logs, the topics of the incoming messages must comply to certain
  * topics filters. This service implements the observer pattern which allows {@link ValueLogObserver}s to register
  * themselves to the ValueLogReceiver and get notified in case a new value log from a device arrives at the MBP.
+ * The incoming messages are processed asynchronously by a {@link ValueLogIngestionPipeline}, such that the
+ * messaging client is not blocked by the observers.
  */
 @Service
 @EnableScheduling
@@ -71,15 +73,11 @@ public class ValueLogReceiver {
     //Pattern for retrieving component types from message topics
     private static final Pattern COMPONENT_TYPES_PATTERN = Pattern.compile("^([a-zA-Z0-9_-]+)/.+");
 
-    //Set ob observers which want to be notified about incoming value logs
-    private final Set<ValueLogObserver> observerSet;
+    //Pipeline for parsing incoming messages and delivering them to the observers
+    private final ValueLogIngestionPipeline ingestionPipeline;
 
-    //References to repositories to check the validity of incoming value logs
-    private final ActuatorRepository actuatorRepository;
-    private final SensorRepository sensorRepository;
-    private final DeviceRepository deviceRepository;
-    private final MonitoringOperatorRepository monitoringOperatorRepository;
-    private final DynamicDeploymentRepository dynamicDeploymentRepository;
+    //Registry of valid component IDs to check the validity of incoming value logs
+    private final ComponentIdRegistry componentIdRegistry;
 
     // Cache of data model trees to provide fast supply
     private DataModelTreeCache dataModelTreeCache;
@@ -88,32 +86,40 @@ public class ValueLogReceiver {
      * Initializes the value log receiver service.
      *
      * @param pubSubService                The messaging service for receiving the value logs
-     * @param actuatorRepository           Repository in which the {@link Actuator}s are stored
-     * @param sensorRepository             Repository in which the {@link Sensor}s are stored
-     * @param deviceRepository             Repository in which the {@link Device}s are stored
-     * @param monitoringOperatorRepository Repository in which the {@link MonitoringOperator}s are stored
-     * @param dynamicDeploymentRepository  Repository in which the {@link DynamicDeployment}s are stored
+     * @param componentIdRegistry          Registry of the IDs of all valid components
      * @param dataModelTreeCache           Cache of data model trees
+     * @param bufferCapacity               Capacity of the buffer for incoming messages
+     * @param parseWorkers                 Number of workers for parsing and validating incoming messages
+     * @param deliveryQueueCapacity        Capacity of the delivery queue of each observer
+     * @param backpressurePolicy           Default backpressure policy for the delivery queues of the observers
+     * @param spillCapacity                Capacity of the overflow buffer of each observer using the spill policy
      */
     @Autowired
-    public ValueLogReceiver(PubSubService pubSubService, ActuatorRepository actuatorRepository,
-                            SensorRepository sensorRepository, DeviceRepository deviceRepository,
-                            MonitoringOperatorRepository monitoringOperatorRepository,
-                            DynamicDeploymentRepository dynamicDeploymentRepository,
-                            DataModelTreeCache dataModelTreeCache) {
+    public ValueLogReceiver(PubSubService pubSubService, ComponentIdRegistry componentIdRegistry,
+                            DataModelTreeCache dataModelTreeCache,
+                            @Value("${value_logs.ingestion.buffer_capacity:8192}") int bufferCapacity,
+                            @Value("${value_logs.ingestion.parse_workers:4}") int parseWorkers,
+                            @Value("${value_logs.ingestion.delivery_queue_capacity:4096}") int deliveryQueueCapacity,
+                            @Value("${value_logs.ingestion.backpressure:BLOCK}") BackpressurePolicy backpressurePolicy,
+                            @Value("${value_logs.ingestion.spill_capacity:65536}") int spillCapacity) {
         //Store component references
-        this.actuatorRepository = actuatorRepository;
-        this.sensorRepository = sensorRepository;
-        this.deviceRepository = deviceRepository;
-        this.monitoringOperatorRepository = monitoringOperatorRepository;
-        this.dynamicDeploymentRepository = dynamicDeploymentRepository;
+        this.componentIdRegistry = componentIdRegistry;
         this.dataModelTreeCache = dataModelTreeCache;
 
-        //Initialize the set of observers
-        observerSet = new HashSet<>();
+        //Create the ingestion pipeline
+        this.ingestionPipeline = new ValueLogIngestionPipeline(this::processValueLogMessage, bufferCapacity,
+                parseWorkers, deliveryQueueCapacity, backpressurePolicy, spillCapacity);
 
-        //Subscribe to all topics that are relevant for receiving the value logs
-        pubSubService.subscribeJSON(SUBSCRIBE_TOPIC_FILTERS, (m, t, tf) -> processValueLogMessage(m, t));
+        //Subscribe to all topics that are relevant for receiving the value logs and pass the messages to the pipeline
+        pubSubService.subscribe(SUBSCRIBE_TOPIC_FILTERS, (m, t, tf) -> ingestionPipeline.submit(t, m));
+    }
+
+    /**
+     * Stops the ingestion pipeline on shutdown after the pending value logs have been delivered.
+     */
+    @PreDestroy
+    public void shutdown() {
+        ingestionPipeline.shutdown();
     }
 
 
@@ -128,8 +134,8 @@ public class ValueLogReceiver {
             throw new IllegalArgumentException("Observer must not be null.");
         }
 
-        //Add observer to set
-        observerSet.add(observer);
+        //Add observer to the pipeline
+        ingestionPipeline.addObserver(observer);
     }
 
     /**
@@ -144,15 +150,24 @@ public class ValueLogReceiver {
             throw new IllegalArgumentException("Observer must not be null.");
         }
 
-        //Remove observer from set
-        observerSet.remove(observer);
+        //Remove observer from the pipeline
+        ingestionPipeline.removeObserver(observer);
     }
 
     /**
      * Unregisters all observers.
      */
     public void clearObservers() {
-        observerSet.clear();
+        ingestionPipeline.clearObservers();
+    }
+
+    /**
+     * Returns the ingestion pipeline that is used for processing the incoming value log messages.
+     *
+     * @return The ingestion pipeline
+     */
+    public ValueLogIngestionPipeline getIngestionPipeline() {
+        return ingestionPipeline;
     }
 
     /**
@@ -171,39 +186,39 @@ public class ValueLogReceiver {
     }
 
     /**
-     * Processes a recently received value log message by transforming it into a value log object and
-     * notifying all registered observers about its arrival.
+     * Processes a recently received value log message by transforming it into a value log object. Called by the
+     * parse workers of the ingestion pipeline, which then notify all registered observers about its arrival.
      *
-     * @param message The arrived message
-     * @param topic   The topic under which the message arrived
+     * @param topic          The topic under which the message arrived
+     * @param messagePayload The arrived message
+     * @param time           The time at which the message arrived
+     * @return The resulting value log or null, if the message is invalid
      */
-    private void processValueLogMessage(JSONObject message, String topic) {
-        //Sanity check
-        if ((message == null) || message.equals(JSONObject.NULL)) {
-            return;
-        }
-
+    private ValueLog processValueLogMessage(String topic, String messagePayload, Instant time) {
         //Catch errors during message processing to avoid crashes of the receiver
         try {
-            //Record current time
-            Instant time = ZonedDateTime.now().toInstant();
+            //Extract component type from topic under which the message was published
+            String componentType = extractComponentType(topic);
 
-            //Create new empty value log
-            ValueLog valueLog = new ValueLog();
+            //Messages under topics without component type are never valid
+            if (componentType == null) {
+                return null;
+            }
+
+            //Transform message to JSON
+            JSONObject message = new JSONObject(messagePayload);
 
             //Retrieve component ID from message
             String componentID = message.getString(JSON_COMPONENT_ID);
 
-            //Extract component type from topic under which the message was published
-            String componentType = extractComponentType(topic);
-
-            //Check component ID for validity
+            //Check component ID for validity before creating the value log
             if (!isComponentIDValid(componentID, componentType, topic)) {
                 System.out.println("Value with invalid component ID \"" + componentID + "\" received");
-                return;
+                return null;
             }
 
-            //Set value log fields
+            //Create new value log and set its fields
+            ValueLog valueLog = new ValueLog();
             valueLog.setTopic(topic);
             valueLog.setMessage(message.toString());
             valueLog.setTime(time);
@@ -227,10 +242,10 @@ public class ValueLogReceiver {
                 valueLog.setValue(valueDoubleDoc);
             }
 
-            //Notify all observers
-            notifyValueLogObservers(valueLog);
+            return valueLog;
         } catch (Exception e) {
             System.err.println("Value log processing failed: " + e.getMessage());
+            return null;
         }
     }
 
@@ -246,13 +261,13 @@ public class ValueLogReceiver {
             throw new IllegalArgumentException("Value log must not be null,");
         }
 
-        //Notify all observers about the value log
-        observerSet.forEach(o -> o.onValueReceived(valueLog));
+        //Pass the value log to the delivery queues of all observers
+        ingestionPipeline.deliver(valueLog);
     }
 
     /**
      * Checks and returns whether a given component ID is valid for a given component type and topic string
-     * by checking if a component with such an ID exists in one of the component repositories.
+     * by checking if a component with such an ID is known to the {@link ComponentIdRegistry}.
      *
      * @param componentID   The component ID to check
      * @param componentType The type of the component to check
@@ -265,37 +280,8 @@ public class ValueLogReceiver {
             return false;
         }
 
-        //Check component type
-        if (componentType.equalsIgnoreCase(new Actuator().getComponentTypeName())) {
-            //Component is actuator, check if component exists
-            return actuatorRepository.existsById(componentID);
-        } else if (componentType.equalsIgnoreCase(new Sensor().getComponentTypeName())) {
-            //Component is sensor, check if component exists
-            return sensorRepository.existsById(componentID);
-        } else if (componentType.equalsIgnoreCase(new MonitoringComponent().getComponentTypeName())) {
-            //Component is monitoring component, create monitoring component object
-            MonitoringComponent monitoringComponent = new MonitoringComponent(componentID);
-
-            //Retrieve monitoring operator and device
-            Optional<MonitoringOperator> monitoringOperator = monitoringOperatorRepository.findById(monitoringComponent.getMonitoringOperatorID());
-            Optional<Device> device = deviceRepository.findById(monitoringComponent.getDeviceID());
-
-            //Check if monitoring operator and device exist
-            if (!monitoringOperator.isPresent()) {
-                return false;
-            } else if (!device.isPresent()) {
-                return false;
-            }
-
-            //Check compatibility between monitoring operator and device
-            return monitoringOperator.get().isCompatibleWith(device.get().getComponentType());
-        } else if (componentType.equalsIgnoreCase(new DynamicDeployableComponent().getComponentTypeName())) {
-            //Component is dynamic deployment, check if it exists
-            return dynamicDeploymentRepository.existsById(componentID);
-        }
-
-        //Given component type is unknown
-        return false;
+        //Look up the component ID in the registry
+        return componentIdRegistry.isValid(componentType, componentID);
     }
 
     /**
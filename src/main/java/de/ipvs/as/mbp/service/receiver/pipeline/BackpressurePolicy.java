@@ -0,0 +1,29 @@
+package de.ipvs.as.mbp.service.receiver.pipeline;
+
+import de.ipvs.as.mbp.service.receiver.ValueLogObserver;
+
+/**
+ * Enumeration of the policies that may be applied by a {@link ValueLogDeliveryQueue} when the bounded queue
+ * of its {@link ValueLogObserver} is full and a new value log is supposed to be delivered.
+ */
+public enum BackpressurePolicy {
+    /**
+     * The producing stage waits until the observer has caught up and free space becomes available. This
+     * propagates the backpressure up to the messaging broker, but never loses any value logs.
+     */
+    BLOCK,
+
+    /**
+     * The oldest value log that is still waiting in the queue is discarded in favour of the new one. Suited
+     * for observers that are only interested in recent values, e.g. for live visualizations.
+     */
+    DROP_OLDEST,
+
+    /**
+     * The new value log is moved to an overflow buffer that is drained into the bounded queue as soon as the
+     * observer catches up again. Does not block the producing stage and does not lose value logs during load
+     * peaks, at the cost of additional memory; only if the overflow buffer is full as well, the new value log
+     * is discarded.
+     */
+    SPILL
+}
@@ -0,0 +1,281 @@
+package de.ipvs.as.mbp.service.receiver.pipeline;
+
+import de.ipvs.as.mbp.domain.valueLog.ValueLog;
+import de.ipvs.as.mbp.service.receiver.ValueLogObserver;
+
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Bounded delivery queue for a single {@link ValueLogObserver}. Value logs are enqueued by the stages of the
+ * {@link ValueLogIngestionPipeline} and delivered to the observer by a dedicated delivery thread in exactly the
+ * order in which they were enqueued. This way, slow observers do not delay other observers, while the ordering
+ * of value logs is preserved for each observer. In case the queue is full, the configured
+ * {@link BackpressurePolicy} is applied.
+ */
+public class ValueLogDeliveryQueue {
+    private static final Logger LOGGER = Logger.getLogger(ValueLogDeliveryQueue.class.getName());
+
+    //Timeout in milliseconds for polling the queue, so that the delivery thread can check for termination
+    private static final long POLL_TIMEOUT = 500;
+
+    //Timeout in milliseconds to wait for the delivery of the remaining value logs on shutdown
+    private static final long SHUTDOWN_TIMEOUT = 10 * 1000;
+
+    //The observer to deliver the value logs to
+    private final ValueLogObserver observer;
+
+    //The backpressure policy to apply in case the queue is full
+    private final BackpressurePolicy backpressurePolicy;
+
+    //Bounded queue holding the value logs that are pending for delivery
+    private final BlockingQueue<ValueLog> queue;
+
+    //Bounded overflow buffer for the spill policy (guarded by itself)
+    private final Queue<ValueLog> spillBuffer;
+
+    //The maximum number of value logs that may be held in the overflow buffer
+    private final int spillCapacity;
+
+    //Thread that delivers the value logs to the observer
+    private final Thread deliveryThread;
+
+    //Statistics
+    private final AtomicLong deliveredCount = new AtomicLong(0);
+    private final AtomicLong droppedCount = new AtomicLong(0);
+    private final AtomicLong failedCount = new AtomicLong(0);
+    private final AtomicLong spillOverflowCount = new AtomicLong(0);
+
+    //Indicates whether the queue still accepts value logs
+    private volatile boolean running = true;
+
+    /**
+     * Creates and starts a new delivery queue for a given {@link ValueLogObserver}, using a given capacity,
+     * a given {@link BackpressurePolicy} and a given capacity of the overflow buffer for the spill policy.
+     *
+     * @param observer           The observer to deliver the value logs to
+     * @param capacity           The maximum number of value logs that may be pending in the queue
+     * @param backpressurePolicy The backpressure policy to apply when the queue is full
+     * @param spillCapacity      The maximum number of value logs that may be held in the overflow buffer
+     */
+    public ValueLogDeliveryQueue(ValueLogObserver observer, int capacity, BackpressurePolicy backpressurePolicy,
+                                 int spillCapacity) {
+        //Sanity checks
+        if (observer == null) {
+            throw new IllegalArgumentException("Observer must not be null.");
+        } else if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive.");
+        } else if (spillCapacity < 0) {
+            throw new IllegalArgumentException("Spill capacity must not be negative.");
+        } else if (backpressurePolicy == null) {
+            throw new IllegalArgumentException("Backpressure policy must not be null.");
+        }
+
+        //Store parameters
+        this.observer = observer;
+        this.backpressurePolicy = backpressurePolicy;
+        this.spillCapacity = spillCapacity;
+
+        //Initialize data structures
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.spillBuffer = new ArrayDeque<>();
+
+        //Create and start the delivery thread
+        this.deliveryThread = new Thread(this::deliverValueLogs, "value-log-delivery-" + observer.getClass().getSimpleName());
+        this.deliveryThread.setDaemon(true);
+        this.deliveryThread.start();
+    }
+
+    /**
+     * Enqueues a given value log for delivery to the observer. In case the queue is full, the
+     * {@link BackpressurePolicy} of this queue is applied.
+     *
+     * @param valueLog The value log to enqueue
+     */
+    public void enqueue(ValueLog valueLog) {
+        //Sanity check
+        if (valueLog == null) {
+            throw new IllegalArgumentException("Value log must not be null.");
+        }
+
+        //Ignore value logs after shutdown
+        if (!running) {
+            droppedCount.incrementAndGet();
+            return;
+        }
+
+        //Check backpressure policy
+        switch (backpressurePolicy) {
+            case BLOCK:
+                try {
+                    //Wait for free space
+                    queue.put(valueLog);
+                } catch (InterruptedException e) {
+                    droppedCount.incrementAndGet();
+                    Thread.currentThread().interrupt();
+                }
+                break;
+            case DROP_OLDEST:
+                //Discard the oldest value logs until the new one fits in
+                while (!queue.offer(valueLog)) {
+                    if (queue.poll() != null) {
+                        droppedCount.incrementAndGet();
+                    }
+                }
+                break;
+            case SPILL:
+                synchronized (spillBuffer) {
+                    //Bypass the queue as long as spilled value logs are pending in order to preserve the ordering
+                    if (spillBuffer.isEmpty() && queue.offer(valueLog)) {
+                        return;
+                    }
+
+                    //Drop the new value log if the overflow buffer is full as well
+                    if (spillBuffer.size() >= spillCapacity) {
+                        droppedCount.incrementAndGet();
+                        if (spillOverflowCount.getAndIncrement() == 0) {
+                            LOGGER.log(Level.WARNING, "Overflow buffer of {0} is full, dropping value logs",
+                                    observer.getClass().getSimpleName());
+                        }
+                        return;
+                    }
+                    spillBuffer.add(valueLog);
+                }
+                break;
+        }
+    }
+
+    /**
+     * Stops the delivery queue. Value logs that are still pending are delivered to the observer before this
+     * method returns, unless this takes longer than the shutdown timeout.
+     */
+    public void shutdown() {
+        //Stop accepting new value logs
+        running = false;
+
+        //Wait for the delivery thread to deliver the remaining value logs
+        try {
+            deliveryThread.join(SHUTDOWN_TIMEOUT);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Returns the number of value logs that are currently pending for delivery.
+     *
+     * @return The number of pending value logs
+     */
+    public int getPendingCount() {
+        synchronized (spillBuffer) {
+            return queue.size() + spillBuffer.size();
+        }
+    }
+
+    /**
+     * Returns the number of value logs that were successfully delivered to the observer.
+     *
+     * @return The number of delivered value logs
+     */
+    public long getDeliveredCount() {
+        return deliveredCount.get();
+    }
+
+    /**
+     * Returns the number of value logs that were dropped due to backpressure or shutdown.
+     *
+     * @return The number of dropped value logs
+     */
+    public long getDroppedCount() {
+        return droppedCount.get();
+    }
+
+    /**
+     * Returns the number of value logs that were dropped because the overflow buffer of the spill policy was full.
+     * These value logs are also included in {@link #getDroppedCount()}.
+     *
+     * @return The number of value logs dropped due to a full overflow buffer
+     */
+    public long getSpillOverflowCount() {
+        return spillOverflowCount.get();
+    }
+
+    /**
+     * Returns the number of value logs for which the observer failed with an exception.
+     *
+     * @return The number of failed deliveries
+     */
+    public long getFailedCount() {
+        return failedCount.get();
+    }
+
+    /**
+     * Returns the observer to which the value logs of this queue are delivered.
+     *
+     * @return The observer
+     */
+    public ValueLogObserver getObserver() {
+        return observer;
+    }
+
+    /**
+     * Returns the backpressure policy that is applied by this queue.
+     *
+     * @return The backpressure policy
+     */
+    public BackpressurePolicy getBackpressurePolicy() {
+        return backpressurePolicy;
+    }
+
+    /**
+     * Delivers the enqueued value logs to the observer until the queue is shut down and all pending value logs
+     * have been delivered. Executed by the delivery thread.
+     */
+    private void deliverValueLogs() {
+        while (running || (getPendingCount() > 0)) {
+            //Move spilled value logs back into the queue as far as possible
+            refillFromSpillBuffer();
+
+            //Retrieve the next value log
+            ValueLog valueLog;
+            try {
+                valueLog = queue.poll(POLL_TIMEOUT, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+
+            //Check if a value log is available
+            if (valueLog == null) {
+                continue;
+            }
+
+            //Catch errors of the observer to keep the delivery thread alive
+            try {
+                observer.onValueReceived(valueLog);
+                deliveredCount.incrementAndGet();
+            } catch (Exception e) {
+                failedCount.incrementAndGet();
+                LOGGER.log(Level.WARNING, "Value log delivery to " + observer.getClass().getSimpleName() + " failed", e);
+            }
+        }
+    }
+
+    /**
+     * Moves as many spilled value logs as possible from the overflow buffer back into the bounded queue,
+     * preserving their order.
+     */
+    private void refillFromSpillBuffer() {
+        synchronized (spillBuffer) {
+            while ((!spillBuffer.isEmpty()) && queue.offer(spillBuffer.peek())) {
+                spillBuffer.poll();
+            }
+        }
+    }
+}
@@ -0,0 +1,330 @@
+package de.ipvs.as.mbp.service.receiver.pipeline;
+
+import de.ipvs.as.mbp.domain.valueLog.ValueLog;
+import de.ipvs.as.mbp.service.receiver.ValueLogObserver;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Staged pipeline for the ingestion of value log messages. Incoming raw messages are placed into a bounded
+ * buffer, from which they are taken by a pool of parse workers that transform them into {@link ValueLog}s.
+ * The resulting value logs are then handed over to one {@link ValueLogDeliveryQueue} per registered
+ * {@link ValueLogObserver}, which delivers them asynchronously to the observer.<br>
+ * The buffer is partitioned by message topic and each partition is processed by exactly one parse worker.
+ * Since each component publishes its values under its own topic, the order of the value logs of a component
+ * is preserved throughout the whole pipeline.
+ */
+public class ValueLogIngestionPipeline {
+    private static final Logger LOGGER = Logger.getLogger(ValueLogIngestionPipeline.class.getName());
+
+    //Timeout in milliseconds for polling the partitions, so that the workers can check for termination
+    private static final long POLL_TIMEOUT = 500;
+
+    //Timeout in milliseconds to wait for the parse workers on shutdown
+    private static final long SHUTDOWN_TIMEOUT = 10 * 1000;
+
+    //Parser for transforming and validating the raw messages (returns null if invalid)
+    private final MessageParser messageParser;
+
+    //Partitions of the bounded buffer for raw messages
+    private final List<BlockingQueue<RawMessage>> partitions;
+
+    //Thread pool of the parse workers (one per partition)
+    private final ExecutorService parseWorkers;
+
+    //Capacity, default backpressure policy and overflow buffer capacity of the delivery queues
+    private final int deliveryQueueCapacity;
+    private final BackpressurePolicy defaultBackpressurePolicy;
+    private final int spillCapacity;
+
+    //Map (observer --> delivery queue) of the registered observers
+    private final Map<ValueLogObserver, ValueLogDeliveryQueue> deliveryQueues;
+
+    //Statistics
+    private final AtomicLong receivedCount = new AtomicLong(0);
+    private final AtomicLong rejectedCount = new AtomicLong(0);
+
+    //Indicates whether the pipeline is running
+    private volatile boolean running = true;
+
+    /**
+     * Creates and starts a new ingestion pipeline.
+     *
+     * @param messageParser             Parser for transforming raw messages to value logs; supposed to return
+     *                                  null for invalid messages
+     * @param bufferCapacity            The total capacity of the buffer for raw messages
+     * @param parseWorkerCount          The number of parse workers
+     * @param deliveryQueueCapacity     The capacity of the delivery queue of each observer
+     * @param defaultBackpressurePolicy The backpressure policy to use for observers that do not request one
+     * @param spillCapacity             The capacity of the overflow buffer of each observer that uses the
+     *                                  {@link BackpressurePolicy#SPILL} policy
+     */
+    public ValueLogIngestionPipeline(MessageParser messageParser, int bufferCapacity,
+                                     int parseWorkerCount, int deliveryQueueCapacity,
+                                     BackpressurePolicy defaultBackpressurePolicy, int spillCapacity) {
+        //Sanity checks
+        if (messageParser == null) {
+            throw new IllegalArgumentException("Message parser must not be null.");
+        } else if (parseWorkerCount <= 0) {
+            throw new IllegalArgumentException("Number of parse workers must be positive.");
+        } else if (bufferCapacity < parseWorkerCount) {
+            throw new IllegalArgumentException("Buffer capacity must not be smaller than the number of parse workers.");
+        } else if (defaultBackpressurePolicy == null) {
+            throw new IllegalArgumentException("Backpressure policy must not be null.");
+        }
+
+        //Store parameters
+        this.messageParser = messageParser;
+        this.deliveryQueueCapacity = deliveryQueueCapacity;
+        this.defaultBackpressurePolicy = defaultBackpressurePolicy;
+        this.spillCapacity = spillCapacity;
+        this.deliveryQueues = new ConcurrentHashMap<>();
+
+        //Create the partitions of the buffer
+        this.partitions = new ArrayList<>(parseWorkerCount);
+        for (int i = 0; i < parseWorkerCount; i++) {
+            this.partitions.add(new ArrayBlockingQueue<>(bufferCapacity / parseWorkerCount));
+        }
+
+        //Start one parse worker per partition
+        this.parseWorkers = Executors.newFixedThreadPool(parseWorkerCount);
+        for (BlockingQueue<RawMessage> partition : this.partitions) {
+            this.parseWorkers.execute(() -> processPartition(partition));
+        }
+    }
+
+    /**
+     * Submits a raw message for ingestion. The time of receipt is recorded on submission, such that it does not
+     * include the time the message spends in the buffer. In case the partition of the message is full, the calling
+     * thread is blocked until free space becomes available, such that the backpressure is propagated to the
+     * messaging client.
+     *
+     * @param topic   The topic under which the message was received
+     * @param message The raw message
+     */
+    public void submit(String topic, String message) {
+        //Sanity check
+        if ((topic == null) || (message == null)) {
+            return;
+        }
+
+        //Reject messages after shutdown
+        if (!running) {
+            rejectedCount.incrementAndGet();
+            return;
+        }
+
+        //Determine the partition from the topic in order to preserve the ordering per component
+        BlockingQueue<RawMessage> partition = partitions.get(Math.floorMod(topic.hashCode(), partitions.size()));
+
+        try {
+            //Wait for free space in the partition
+            partition.put(new RawMessage(topic, message, Instant.now()));
+            receivedCount.incrementAndGet();
+        } catch (InterruptedException e) {
+            rejectedCount.incrementAndGet();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Passes a given, already parsed value log directly to the delivery queues of all registered observers.
+     *
+     * @param valueLog The value log to deliver
+     */
+    public void deliver(ValueLog valueLog) {
+        //Sanity check
+        if (valueLog == null) {
+            throw new IllegalArgumentException("Value log must not be null.");
+        }
+
+        //Enqueue value log at all delivery queues
+        deliveryQueues.values().forEach(q -> q.enqueue(valueLog));
+    }
+
+    /**
+     * Registers an observer at the pipeline by creating a delivery queue for it. If the observer does not
+     * request a specific {@link BackpressurePolicy}, the default policy of the pipeline is used.
+     *
+     * @param observer The observer to register
+     */
+    public void addObserver(ValueLogObserver observer) {
+        //Sanity check
+        if (observer == null) {
+            throw new IllegalArgumentException("Observer must not be null.");
+        }
+
+        //Determine backpressure policy
+        BackpressurePolicy policy = observer.getBackpressurePolicy();
+        if (policy == null) {
+            policy = defaultBackpressurePolicy;
+        }
+
+        //Create delivery queue if not already registered
+        BackpressurePolicy finalPolicy = policy;
+        deliveryQueues.computeIfAbsent(observer, o -> new ValueLogDeliveryQueue(o, deliveryQueueCapacity, finalPolicy, spillCapacity));
+    }
+
+    /**
+     * Unregisters an observer from the pipeline. Value logs that are still pending in the delivery queue
+     * of the observer are delivered before this method returns.
+     *
+     * @param observer The observer to unregister
+     */
+    public void removeObserver(ValueLogObserver observer) {
+        //Sanity check
+        if (observer == null) {
+            throw new IllegalArgumentException("Observer must not be null.");
+        }
+
+        //Remove delivery queue and shut it down
+        ValueLogDeliveryQueue deliveryQueue = deliveryQueues.remove(observer);
+        if (deliveryQueue != null) {
+            deliveryQueue.shutdown();
+        }
+    }
+
+    /**
+     * Unregisters all observers from the pipeline.
+     */
+    public void clearObservers() {
+        new ArrayList<>(deliveryQueues.keySet()).forEach(this::removeObserver);
+    }
+
+    /**
+     * Stops the pipeline. Messages that are still pending are processed and delivered before this method returns,
+     * unless this takes longer than the shutdown timeouts.
+     */
+    public void shutdown() {
+        //Stop accepting new messages
+        running = false;
+
+        //Wait for the parse workers to drain their partitions
+        parseWorkers.shutdown();
+        try {
+            parseWorkers.awaitTermination(SHUTDOWN_TIMEOUT, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        //Shut down the delivery queues
+        clearObservers();
+    }
+
+    /**
+     * Returns the number of raw messages that were accepted by the pipeline.
+     *
+     * @return The number of received messages
+     */
+    public long getReceivedCount() {
+        return receivedCount.get();
+    }
+
+    /**
+     * Returns the number of raw messages that were rejected by the pipeline.
+     *
+     * @return The number of rejected messages
+     */
+    public long getRejectedCount() {
+        return rejectedCount.get();
+    }
+
+    /**
+     * Returns the number of raw messages that are currently waiting for being parsed.
+     *
+     * @return The number of buffered messages
+     */
+    public int getBufferedCount() {
+        return partitions.stream().mapToInt(BlockingQueue::size).sum();
+    }
+
+    /**
+     * Returns an unmodifiable view on the delivery queues of the registered observers.
+     *
+     * @return The delivery queues
+     */
+    public Map<ValueLogObserver, ValueLogDeliveryQueue> getDeliveryQueues() {
+        return Collections.unmodifiableMap(deliveryQueues);
+    }
+
+    /**
+     * Parses the raw messages of a given partition and delivers the resulting value logs until the pipeline
+     * is shut down and the partition is drained. Executed by the parse workers.
+     *
+     * @param partition The partition to process
+     */
+    private void processPartition(BlockingQueue<RawMessage> partition) {
+        while (running || (!partition.isEmpty())) {
+            //Retrieve next raw message
+            RawMessage rawMessage;
+            try {
+                rawMessage = partition.poll(POLL_TIMEOUT, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+
+            //Check if a message is available
+            if (rawMessage == null) {
+                continue;
+            }
+
+            //Catch errors during message processing to keep the worker alive
+            try {
+                //Parse and validate the message
+                ValueLog valueLog = messageParser.parse(rawMessage.topic, rawMessage.message, rawMessage.receiveTime);
+
+                //Deliver the value log if valid
+                if (valueLog != null) {
+                    deliver(valueLog);
+                }
+            } catch (Exception e) {
+                LOGGER.log(Level.WARNING, "Value log processing failed for topic " + rawMessage.topic, e);
+            }
+        }
+    }
+
+    /**
+     * Parser for transforming raw messages into value logs, as used by the parse workers of the pipeline.
+     */
+    @FunctionalInterface
+    public interface MessageParser {
+        /**
+         * Parses and validates a raw message.
+         *
+         * @param topic       The topic under which the message was received
+         * @param message     The raw message
+         * @param receiveTime The time at which the message was received
+         * @return The resulting value log or null, if the message is invalid
+         */
+        ValueLog parse(String topic, String message, Instant receiveTime);
+    }
+
+    /**
+     * Raw message, consisting of topic, message and time of receipt, as it is held in the buffer of the pipeline.
+     */
+    private static class RawMessage {
+        private final String topic;
+        private final String message;
+        private final Instant receiveTime;
+
+        private RawMessage(String topic, String message, Instant receiveTime) {
+            this.topic = topic;
+            this.message = message;
+            this.receiveTime = receiveTime;
+        }
+    }
+}
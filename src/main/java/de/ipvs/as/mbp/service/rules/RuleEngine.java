@@ -5,13 +5,16 @@ import de.ipvs.as.mbp.domain.rules.RuleTrigger;
 import de.ipvs.as.mbp.domain.testing.Testing;
 import de.ipvs.as.mbp.domain.valueLog.ValueLog;
 import de.ipvs.as.mbp.repository.RuleRepository;
-import de.ipvs.as.mbp.repository.TestRepository;
 import de.ipvs.as.mbp.repository.ValueLogRepository;
 import de.ipvs.as.mbp.service.cep.engine.core.output.CEPOutput;
 import de.ipvs.as.mbp.service.cep.engine.core.queries.CEPQueryValidation;
 import de.ipvs.as.mbp.service.cep.trigger.CEPTriggerService;
 import de.ipvs.as.mbp.service.cep.trigger.CEPValueLogCache;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
 import org.springframework.stereotype.Component;
 
 import java.time.Instant;
@@ -32,7 +35,7 @@ public class RuleEngine {
 
     private final Map<RuleTrigger, Set<Rule>> triggerMap;
 
-    private final TestRepository testRepo;
+    private final RuleExecutionRecorder ruleExecutionRecorder;
 
     @Autowired
     private CEPValueLogCache cepValueLogCache;
@@ -40,19 +43,23 @@ public class RuleEngine {
     @Autowired
     private ValueLogRepository valueLogRepository;
 
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
     /**
      * Initializes the rule engine component and activates all already enabled rules.
      *
-     * @param ruleRepository The repository in which the rules are stored (autowired)
-     * @param triggerService The CEP trigger service to use (autowired)
-     * @param ruleExecutor   The rule executor to use (autowired)
+     * @param ruleRepository        The repository in which the rules are stored (autowired)
+     * @param triggerService        The CEP trigger service to use (autowired)
+     * @param ruleExecutor          The rule executor to use (autowired)
+     * @param ruleExecutionRecorder The recorder for the traces of rule executions (autowired)
      */
     @Autowired
-    private RuleEngine(RuleRepository ruleRepository, CEPTriggerService triggerService, RuleExecutor ruleExecutor, TestRepository testRepo) {
+    private RuleEngine(RuleRepository ruleRepository, CEPTriggerService triggerService, RuleExecutor ruleExecutor, RuleExecutionRecorder ruleExecutionRecorder) {
         this.ruleRepository = ruleRepository;
         this.triggerService = triggerService;
         this.ruleExecutor = ruleExecutor;
-        this.testRepo = testRepo;
+        this.ruleExecutionRecorder = ruleExecutionRecorder;
 
         //Initialize trigger map
         triggerMap = new HashMap<>();
@@ -82,8 +89,7 @@ public class RuleEngine {
 
         if (!validationResult.isValid()) {
             //Trigger is not valid, mark it as disabled
-            rule.setEnabled(false);
-            ruleRepository.save(rule);
+            updateEnabled(rule, false);
 
             return false;
         }
@@ -103,8 +109,7 @@ public class RuleEngine {
         }
 
         //Enable rule and save it
-        rule.setEnabled(true);
-        ruleRepository.save(rule);
+        updateEnabled(rule, true);
 
         //Everything successful
         return true;
@@ -143,13 +148,26 @@ public class RuleEngine {
             triggerMap.remove(trigger);
         }
 
-        rule.setEnabled(false);
-        ruleRepository.save(rule);
+        updateEnabled(rule, false);
+    }
+
+    /**
+     * Sets the enabled state of a given rule and writes only this field to the repository, such that the
+     * execution statistics that are written concurrently by the {@link RuleExecutionRecorder} are not
+     * overwritten with the possibly outdated values of the rule object.
+     *
+     * @param rule    The rule to update
+     * @param enabled True, if the rule is enabled; false otherwise
+     */
+    private void updateEnabled(Rule rule, boolean enabled) {
+        rule.setEnabled(enabled);
+        mongoTemplate.updateFirst(Query.query(Criteria.where("id").is(rule.getId())), Update.update("enabled", enabled), Rule.class);
     }
 
     /**
      * Induces the execution of rules that have a certain rule trigger. In addition,
-     * output of a CEP engine that triggered the trigger is passed.
+     * output of a CEP engine that triggered the trigger is passed. Traces of the executions are
+     * recorded if required by the {@link RuleExecutionRecorder}.
      *
      * @param ruleTrigger The rule trigger
      * @param output      The CEP output to pass
@@ -162,39 +180,88 @@ public class RuleEngine {
 
         //Get all rules from the map that use the given trigger
         Set<Rule> ruleSet = triggerMap.get(ruleTrigger);
-        Set<String> ruleNames = new HashSet<>();
+
+        //Check whether the traces of the executions need to be recorded
+        boolean traceRequired = ruleExecutionRecorder.isTraceRequired(ruleTrigger);
+
+        //Retrieve the value logs of the events that caused the trigger once for all rules
+        Map<String, ValueLog> valueLogEventNameMap = traceRequired ? retrieveEventValueLogs(ruleTrigger, output) : null;
 
         //Iterate over all rules and execute them
         for (Rule rule : ruleSet) {
+            //Skip recording the trace if not required
+            if (!traceRequired) {
+                ruleExecutor.executeRule(rule, output);
+                continue;
+            }
 
-            ruleNames.add(rule.getName());
+            //Each trace belongs to the execution of a single rule
             Testing testing = new Testing();
             testing.setTrigger(ruleTrigger);
             testing.setOutput(output);
-            testing.setRule(ruleNames);
-            Map<String, String> eventTypeComponentIDMap = ruleTrigger.getEventNameToComponentMapping();
-            Map<String, ValueLog> valueLogEventNameMap = new HashMap<>();
-
-            // Get the ValueLogs of the respective event and save them to Testing
-            for (Map.Entry<String, String> e : eventTypeComponentIDMap.entrySet()) {
-                Instant time = Instant.ofEpochMilli((Long) ((Map<Object, Object>) output.getOutputMap().get(e.getKey())).get("time"));
-                ValueLog valueLogToRetrieve = cepValueLogCache.getValueLog(e.getValue(), time);
-
-                if (valueLogToRetrieve == null) {
-                    // If the cache does not contain the entry it should be alraedy in the database --> get it from there
-                    valueLogToRetrieve = valueLogRepository.findByIdRefAndTimeStamp(e.getValue(), time);
-                }
-                valueLogEventNameMap.put(e.getKey(), valueLogToRetrieve);
-            }
-            testing.setValueLogEventNameMap(valueLogEventNameMap);
+            testing.setRule(new HashSet<>(Collections.singleton(rule.getName())));
+            testing.setValueLogEventNameMap(new HashMap<>(valueLogEventNameMap));
 
-            testRepo.insert(testing);
+            ruleExecutionRecorder.recordTrace(testing);
             ruleExecutor.executeRule(rule, output);
         }
 
 
     }
 
+    /**
+     * Retrieves the value logs of the events that caused a certain rule trigger to fire. The value logs are taken
+     * from the {@link CEPValueLogCache}, if available; the remaining ones are retrieved from the database within
+     * a single query.
+     *
+     * @param ruleTrigger The rule trigger
+     * @param output      The CEP output that was produced by the trigger
+     * @return Map (event name -> value log) of the value logs
+     */
+    private Map<String, ValueLog> retrieveEventValueLogs(RuleTrigger ruleTrigger, CEPOutput output) {
+        Map<String, String> eventTypeComponentIDMap = ruleTrigger.getEventNameToComponentMapping();
+        Map<String, ValueLog> valueLogEventNameMap = new HashMap<>();
+
+        // Map (event name -> time) of the events that are not contained in the cache
+        Map<String, Instant> missingEventTimes = new HashMap<>();
+
+        // Get the ValueLogs of the respective event from the cache
+        for (Map.Entry<String, String> e : eventTypeComponentIDMap.entrySet()) {
+            Instant time = Instant.ofEpochMilli((Long) ((Map<Object, Object>) output.getOutputMap().get(e.getKey())).get("time"));
+            ValueLog valueLogToRetrieve = cepValueLogCache.getValueLog(e.getValue(), time);
+
+            if (valueLogToRetrieve == null) {
+                missingEventTimes.put(e.getKey(), time);
+            }
+            valueLogEventNameMap.put(e.getKey(), valueLogToRetrieve);
+        }
+
+        // Check if all value logs were found in the cache
+        if (missingEventTimes.isEmpty()) {
+            return valueLogEventNameMap;
+        }
+
+        // If the cache does not contain the entries they should be already in the database --> get them from there
+        Map<String, Set<Instant>> missingTimestamps = new HashMap<>();
+        for (Map.Entry<String, Instant> e : missingEventTimes.entrySet()) {
+            missingTimestamps.computeIfAbsent(eventTypeComponentIDMap.get(e.getKey()), k -> new HashSet<>()).add(e.getValue());
+        }
+        List<ValueLog> foundValueLogs = valueLogRepository.findAllByIdRefAndTimeStamps(missingTimestamps);
+
+        // Assign the found value logs to the events
+        for (Map.Entry<String, Instant> e : missingEventTimes.entrySet()) {
+            String componentId = eventTypeComponentIDMap.get(e.getKey());
+            for (ValueLog valueLog : foundValueLogs) {
+                if (componentId.equals(valueLog.getIdref()) && e.getValue().equals(valueLog.getTime())) {
+                    valueLogEventNameMap.put(e.getKey(), valueLog);
+                    break;
+                }
+            }
+        }
+
+        return valueLogEventNameMap;
+    }
+
     /**
      * Ensures that enabled rules will be active and working after the startup of the application.
      */
@@ -0,0 +1,364 @@
+package de.ipvs.as.mbp.service.rules;
+
+import de.ipvs.as.mbp.domain.rules.Rule;
+import de.ipvs.as.mbp.domain.rules.RuleExecutionResult;
+import de.ipvs.as.mbp.domain.rules.RuleTrigger;
+import de.ipvs.as.mbp.domain.testing.Testing;
+import de.ipvs.as.mbp.domain.valueLog.ValueLog;
+import de.ipvs.as.mbp.repository.TestRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.EnableScheduling;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Records the executions of rules without writing to the database for each single execution. The number of
+ * executions, the date of the last execution and the last execution result of each rule are accumulated in memory
+ * and periodically written to the database within a single bulk update, using $inc for the number of executions
+ * and $set for the other fields. In addition, the traces of the rule executions (see {@link Testing}) are buffered
+ * and inserted in batches. Recording traces is optional and sampled; however, traces of rules whose triggers involve
+ * components that are currently under test are always recorded, since they are evaluated by the testing tool. Such
+ * traces are assigned to the test runs whose components caused the trigger to fire. They are not subject to the
+ * capacity of the trace buffer and are kept until they were written successfully.
+ */
+@Service
+@EnableScheduling
+public class RuleExecutionRecorder {
+
+    //Map (rule ID -> pending statistics) of the statistics that have not been written yet
+    private final Map<String, PendingStatistics> pendingStatistics = new ConcurrentHashMap<>();
+
+    //Buffer of the sampled traces that have not been written yet
+    private final BlockingQueue<Testing> pendingTraces;
+
+    //Unbounded buffer of the traces of test runs that have not been written yet
+    private final Queue<Testing> pendingTestTraces = new ConcurrentLinkedQueue<>();
+
+    //Map (component ID -> test run ID) of the components whose traces are always recorded
+    private volatile Map<String, String> tracedComponents = Collections.emptyMap();
+
+    //Number of traces that were dropped due to a full buffer
+    private final AtomicLong droppedTraces = new AtomicLong(0);
+
+    //Auto-wired components
+    private final MongoTemplate mongoTemplate;
+    private final TestRepository testRepository;
+
+    //Settings
+    private final boolean traceEnabled;
+    private final double traceSampleRate;
+    private final int batchSize;
+
+    /**
+     * Creates the recorder by passing references to the required components and the settings (auto-wired).
+     *
+     * @param mongoTemplate        The {@link MongoTemplate} to use for the bulk updates
+     * @param testRepository       The {@link TestRepository} to write the traces to
+     * @param traceEnabled         True, if traces of rule executions are supposed to be recorded; false otherwise
+     * @param traceSampleRate      The fraction of rule executions (between 0 and 1) for which traces are recorded
+     * @param traceBufferCapacity  The maximum number of buffered traces
+     * @param batchSize            The maximum number of traces to insert per batch
+     */
+    @Autowired
+    public RuleExecutionRecorder(MongoTemplate mongoTemplate, TestRepository testRepository,
+                                 @Value("${rules.trace.enabled:true}") boolean traceEnabled,
+                                 @Value("${rules.trace.sample_rate:1.0}") double traceSampleRate,
+                                 @Value("${rules.trace.buffer_capacity:10000}") int traceBufferCapacity,
+                                 @Value("${rules.trace.batch_size:500}") int batchSize) {
+        //Sanity checks
+        if ((traceSampleRate < 0) || (traceSampleRate > 1)) {
+            throw new IllegalArgumentException("Sample rate must be between 0 and 1.");
+        } else if ((traceBufferCapacity <= 0) || (batchSize <= 0)) {
+            throw new IllegalArgumentException("Buffer capacity and batch size must be positive.");
+        }
+
+        this.mongoTemplate = mongoTemplate;
+        this.testRepository = testRepository;
+        this.traceEnabled = traceEnabled;
+        this.traceSampleRate = traceSampleRate;
+        this.batchSize = batchSize;
+        this.pendingTraces = new ArrayBlockingQueue<>(traceBufferCapacity);
+    }
+
+    /**
+     * Records the start of an execution of a given rule.
+     *
+     * @param rule The rule that is executed
+     */
+    public void recordExecution(Rule rule) {
+        //Sanity check
+        if (rule == null) {
+            throw new IllegalArgumentException("Rule object most not be null.");
+        }
+
+        PendingStatistics statistics = pendingStatistics.computeIfAbsent(rule.getId(), k -> new PendingStatistics());
+        statistics.executions.incrementAndGet();
+        statistics.lastExecution.set(new Date());
+    }
+
+    /**
+     * Records the result of an execution of a given rule.
+     *
+     * @param rule    The rule that was executed
+     * @param success True, if the rule execution was successful; false otherwise
+     */
+    public void recordResult(Rule rule, boolean success) {
+        //Sanity check
+        if (rule == null) {
+            throw new IllegalArgumentException("Rule object most not be null.");
+        }
+
+        PendingStatistics statistics = pendingStatistics.computeIfAbsent(rule.getId(), k -> new PendingStatistics());
+        statistics.lastExecutionResult.set(success ? RuleExecutionResult.SUCCESS : RuleExecutionResult.FAILURE);
+    }
+
+    /**
+     * Returns whether the trace of an execution that was caused by a given trigger is supposed to be recorded.
+     *
+     * @param trigger The trigger that caused the execution
+     * @return True, if the trace is supposed to be recorded; false otherwise
+     */
+    public boolean isTraceRequired(RuleTrigger trigger) {
+        //Always record traces of triggers that involve components under test
+        Map<String, String> components = this.tracedComponents;
+        if ((!components.isEmpty()) && (trigger != null) && (trigger.getEventNameToComponentMapping() != null)) {
+            for (String componentId : trigger.getEventNameToComponentMapping().values()) {
+                if (components.containsKey(componentId)) {
+                    return true;
+                }
+            }
+        }
+
+        //Sample the remaining traces
+        return traceEnabled && ((traceSampleRate >= 1) || (ThreadLocalRandom.current().nextDouble() < traceSampleRate));
+    }
+
+    /**
+     * Records the trace of a rule execution, which is written to the database with the next batch. If value logs
+     * of components under test caused the execution, the trace is assigned to the corresponding test runs.
+     *
+     * @param trace The trace to record
+     */
+    public void recordTrace(Testing trace) {
+        //Sanity check
+        if (trace == null) {
+            throw new IllegalArgumentException("Trace must not be null.");
+        }
+
+        //Assign the trace to the test runs of the components that caused it
+        Map<String, String> components = this.tracedComponents;
+        if ((!components.isEmpty()) && (trace.getValueLogEventNameMap() != null)) {
+            Set<String> testRunIds = new HashSet<>();
+            for (ValueLog valueLog : trace.getValueLogEventNameMap().values()) {
+                String testRunId = (valueLog == null) ? null : components.get(valueLog.getIdref());
+                if (testRunId != null) {
+                    testRunIds.add(testRunId);
+                }
+            }
+            if (!testRunIds.isEmpty()) {
+                //Traces of test runs are never dropped
+                trace.setTestRunIds(testRunIds);
+                pendingTestTraces.offer(trace);
+                return;
+            }
+        }
+
+        //Drop sampled trace if the buffer is full
+        if (!pendingTraces.offer(trace)) {
+            droppedTraces.incrementAndGet();
+        }
+    }
+
+    /**
+     * Sets the components whose traces are always recorded, regardless of the sampling, together with the IDs
+     * of the test runs the traces are assigned to.
+     *
+     * @param componentRunIds Map (component ID -> test run ID) of the components
+     */
+    public void setTracedComponents(Map<String, String> componentRunIds) {
+        this.tracedComponents = (componentRunIds == null) ? Collections.emptyMap() :
+                Collections.unmodifiableMap(new HashMap<>(componentRunIds));
+    }
+
+    /**
+     * Returns the number of sampled traces that were dropped so far because the buffer was full.
+     *
+     * @return The number of dropped traces
+     */
+    public long getDroppedTraces() {
+        return droppedTraces.get();
+    }
+
+    /**
+     * Runs periodically and writes all pending statistics and traces to the database.
+     */
+    @Scheduled(initialDelayString = "${rules.metadata.flush_interval:2000}", fixedDelayString = "${rules.metadata.flush_interval:2000}")
+    @PreDestroy
+    public synchronized void flush() {
+        flushStatistics();
+        flushTraces();
+    }
+
+    /**
+     * Writes all pending statistics of the rules within a single bulk update to the database. If the update
+     * fails for some of the rules, their statistics are restored, such that they are written with the next flush.
+     */
+    private void flushStatistics() {
+        BulkOperations bulkOperations = null;
+
+        //Statistics that were taken for the bulk update, in the order of the updates
+        List<TakenStatistics> takenStatistics = new ArrayList<>();
+
+        //Iterate over all rules with pending statistics
+        for (Map.Entry<String, PendingStatistics> entry : pendingStatistics.entrySet()) {
+            //Take the pending values, such that values that are recorded concurrently remain for the next flush
+            PendingStatistics statistics = entry.getValue();
+            int executions = statistics.executions.getAndSet(0);
+            Date lastExecution = statistics.lastExecution.getAndSet(null);
+            RuleExecutionResult lastExecutionResult = statistics.lastExecutionResult.getAndSet(null);
+
+            //Build update of the rule
+            Update update = new Update();
+            if (executions > 0) {
+                update.inc("executions", executions);
+            }
+            if (lastExecution != null) {
+                update.set("lastExecution", lastExecution);
+            }
+            if (lastExecutionResult != null) {
+                update.set("lastExecutionResult", lastExecutionResult);
+            }
+            if (update.getUpdateObject().isEmpty()) {
+                continue;
+            }
+
+            //Add update to the bulk operations
+            if (bulkOperations == null) {
+                bulkOperations = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Rule.class);
+            }
+            bulkOperations.updateOne(Query.query(Criteria.where("id").is(entry.getKey())), update);
+            takenStatistics.add(new TakenStatistics(statistics, executions, lastExecution, lastExecutionResult));
+        }
+
+        //Execute bulk update
+        if (bulkOperations == null) {
+            return;
+        }
+        try {
+            bulkOperations.execute();
+        } catch (BulkOperationException e) {
+            //Restore the statistics of the failed updates only
+            System.err.println("Failed to write rule execution statistics of " + e.getErrors().size() + " rules: " + e.getMessage());
+            e.getErrors().forEach(error -> takenStatistics.get(error.getIndex()).restore());
+        } catch (Exception e) {
+            System.err.println("Failed to write rule execution statistics: " + e.getMessage());
+            takenStatistics.forEach(TakenStatistics::restore);
+        }
+    }
+
+    /**
+     * Inserts all pending traces in batches into the database. Traces of test runs are inserted first; if this
+     * fails, they are queued again and the flush is aborted, such that they are retried with the next flush.
+     * Sampled traces that could not be inserted are discarded.
+     */
+    private void flushTraces() {
+        List<Testing> batch = new ArrayList<>(batchSize);
+
+        //Insert traces of test runs
+        while (!pendingTestTraces.isEmpty()) {
+            Testing trace;
+            while ((batch.size() < batchSize) && ((trace = pendingTestTraces.poll()) != null)) {
+                batch.add(trace);
+            }
+            if (!insertTraces(batch)) {
+                pendingTestTraces.addAll(batch);
+                return;
+            }
+            batch.clear();
+        }
+
+        //Insert sampled traces
+        while (pendingTraces.drainTo(batch, batchSize) > 0) {
+            insertTraces(batch);
+            batch.clear();
+        }
+    }
+
+    /**
+     * Inserts a batch of traces into the database.
+     *
+     * @param batch The traces to insert
+     * @return True, if the traces were inserted successfully; false otherwise
+     */
+    private boolean insertTraces(List<Testing> batch) {
+        try {
+            testRepository.insert(batch);
+            return true;
+        } catch (Exception e) {
+            System.err.println("Failed to write " + batch.size() + " rule execution traces: " + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Holds the statistics of a rule that have not been written to the database yet.
+     */
+    private static class PendingStatistics {
+        private final AtomicInteger executions = new AtomicInteger(0);
+        private final AtomicReference<Date> lastExecution = new AtomicReference<>();
+        private final AtomicReference<RuleExecutionResult> lastExecutionResult = new AtomicReference<>();
+    }
+
+    /**
+     * Holds the values that were taken from the pending statistics of a rule for writing them to the database.
+     */
+    private static class TakenStatistics {
+        private final PendingStatistics statistics;
+        private final int executions;
+        private final Date lastExecution;
+        private final RuleExecutionResult lastExecutionResult;
+
+        private TakenStatistics(PendingStatistics statistics, int executions, Date lastExecution,
+                                RuleExecutionResult lastExecutionResult) {
+            this.statistics = statistics;
+            this.executions = executions;
+            this.lastExecution = lastExecution;
+            this.lastExecutionResult = lastExecutionResult;
+        }
+
+        /**
+         * Adds the taken values back to the pending statistics, unless newer values were recorded in the meantime.
+         */
+        private void restore() {
+            statistics.executions.addAndGet(executions);
+            statistics.lastExecution.compareAndSet(null, lastExecution);
+            statistics.lastExecutionResult.compareAndSet(null, lastExecutionResult);
+        }
+    }
+}
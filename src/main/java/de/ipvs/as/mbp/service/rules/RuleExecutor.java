@@ -2,14 +2,16 @@ package de.ipvs.as.mbp.service.rules;
 
 import de.ipvs.as.mbp.domain.rules.Rule;
 import de.ipvs.as.mbp.domain.rules.RuleAction;
-import de.ipvs.as.mbp.domain.rules.RuleExecutionResult;
-import de.ipvs.as.mbp.repository.RuleRepository;
 import de.ipvs.as.mbp.service.cep.engine.core.output.CEPOutput;
+import de.ipvs.as.mbp.service.rules.execution.RuleActionDispatcher;
 import de.ipvs.as.mbp.service.rules.execution.RuleActionExecutor;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Component which takes care about executing the actions of given rules on demand.
@@ -18,7 +20,10 @@ import java.util.Collections;
 public class RuleExecutor {
 
     @Autowired
-    private RuleRepository ruleRepository;
+    private RuleExecutionRecorder ruleExecutionRecorder;
+
+    @Autowired
+    private RuleActionDispatcher ruleActionDispatcher;
 
     /**
      * Tests the execution of a given rule action and returns whether the execution was successful.
@@ -48,6 +53,8 @@ public class RuleExecutor {
 
     /**
      * Executes all actions of a given rule. In addition, output of a CEP engine that triggered the rule execution is passed.
+     * The actions are executed asynchronously by the {@link RuleActionDispatcher}, such that this method does not
+     * block the calling thread; the execution result of the rule is updated as soon as all actions finished.
      *
      * @param rule   The rule to execute
      * @param output The output to pass
@@ -61,24 +68,23 @@ public class RuleExecutor {
         //Update meta data
         updateRuleMetaData(rule);
 
-        //Remembers if all actions have been executed successfully
-        boolean success = true;
-
-        //Iterate over all rule actions of the rule
+        //Dispatch the executions of all rule actions of the rule
+        List<CompletableFuture<Boolean>> results = new ArrayList<>();
         for (RuleAction ruleAction : rule.getActions()) {
-            //Get responsible rule action executor
-            RuleActionExecutor executor = ruleAction.getType().getExecutor();
-
-            //Execute rule using the executor
-            success &= executor.execute(ruleAction, rule, output);
+            results.add(ruleActionDispatcher.dispatch(ruleAction, rule, output));
         }
 
-        //Update aftermath fields
-        updateAftermath(rule, success);
+        //Update aftermath fields as soon as all actions finished
+        CompletableFuture.allOf(results.toArray(new CompletableFuture<?>[0])).thenRun(() -> {
+            //Check if all actions have been executed successfully
+            boolean success = results.stream().allMatch(CompletableFuture::join);
+            updateAftermath(rule, success);
+        });
     }
 
     /**
      * Updates the meta data of a rule, such as the number of executions and the date of the last execution.
+     * The meta data is written to the repository asynchronously by the {@link RuleExecutionRecorder}.
      *
      * @param rule The rule to update
      */
@@ -88,14 +94,8 @@ public class RuleExecutor {
             throw new IllegalArgumentException("Rule object most not be null.");
         }
 
-        //Increase number of executions
-        rule.increaseExecutions();
-
-        //Update date of last execution
-        rule.setLastExecutionToNow();
-
-        //Write modified rule to repository
-        ruleRepository.save(rule);
+        //Increase number of executions and update date of last execution
+        ruleExecutionRecorder.recordExecution(rule);
     }
 
     /**
@@ -111,9 +111,6 @@ public class RuleExecutor {
         }
 
         //Update execution result
-        rule.setLastExecutionResult(success ? RuleExecutionResult.SUCCESS : RuleExecutionResult.FAILURE);
-
-        //Write modified rule to repository
-        ruleRepository.save(rule);
+        ruleExecutionRecorder.recordResult(rule, success);
     }
 }
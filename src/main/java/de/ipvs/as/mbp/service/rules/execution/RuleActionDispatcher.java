@@ -0,0 +1,515 @@
+package de.ipvs.as.mbp.service.rules.execution;
+
+import de.ipvs.as.mbp.domain.rules.Rule;
+import de.ipvs.as.mbp.domain.rules.RuleAction;
+import de.ipvs.as.mbp.domain.rules.RuleActionType;
+import de.ipvs.as.mbp.service.cep.engine.core.output.CEPOutput;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Dispatches the execution of rule actions asynchronously, such that the threads of the CEP engine that trigger
+ * the rules are never blocked by the I/O of the actions. Each rule action type has its own bounded pool of worker
+ * threads and a bounded number of pending executions, so that slow actions of one type (e.g. webhooks) do not delay
+ * actions of other types. Executions that affect the same target (e.g. the same actuator, as determined by
+ * {@link RuleActionExecutor#getOrderingKey(RuleAction, Rule)}) are performed sequentially in the order in which
+ * they were dispatched.<br>
+ * Each attempt of executing an action is limited by a timeout. Since the executors may not respond to interrupts,
+ * a timed out attempt may still be running; the next execution of the same target and a retry are only started
+ * after the attempt actually ended. Failed attempts are only retried with exponential backoff if the executor
+ * declares its executions as idempotent ({@link RuleActionExecutor#isRetryable()}). Actions that could not be
+ * executed successfully or that were rejected due to too many pending executions are written to the dead letter log.
+ */
+@Component
+public class RuleActionDispatcher {
+    //Logger for dead letters
+    private static final Logger LOGGER = Logger.getLogger(RuleActionDispatcher.class.getName());
+
+    //Map (rule action type -> worker pool) of the worker pools
+    private final Map<RuleActionType, ThreadPoolExecutor> workerPools = new EnumMap<>(RuleActionType.class);
+
+    //Map (rule action type -> number of pending executions) of the pending executions per type
+    private final Map<RuleActionType, AtomicInteger> pendingCounts = new EnumMap<>(RuleActionType.class);
+
+    //Map (ordering key -> executions) of the pending executions per target, with the running one at the head (guarded by itself)
+    private final Map<String, Deque<ActionExecution>> lanes = new HashMap<>();
+
+    //Function for retrieving the executor of a rule action type
+    private final Function<RuleActionType, RuleActionExecutor> executorProvider;
+
+    //Scheduler for timeouts and retries
+    private final ScheduledExecutorService scheduler;
+
+    //Bounded log of the most recent dead letters
+    private final LinkedList<DeadLetter> deadLetters = new LinkedList<>();
+
+    //Settings
+    private final int queueCapacity;
+    private final long timeout;
+    private final int maxAttempts;
+    private final long retryBackoff;
+    private final int deadLetterCapacity;
+
+    /**
+     * Creates the dispatcher by passing the settings (auto-wired).
+     *
+     * @param poolSize           The number of worker threads per rule action type
+     * @param queueCapacity      The maximum number of pending executions per rule action type
+     * @param timeout            The time in milliseconds after which an attempt of executing an action is aborted
+     * @param maxAttempts        The maximum number of attempts for executing an action of a retryable type
+     * @param retryBackoff       The time in milliseconds to wait before the first retry, doubled for each further one
+     * @param deadLetterCapacity The maximum number of dead letters to keep
+     */
+    @Autowired
+    public RuleActionDispatcher(@Value("${rules.actions.pool_size:4}") int poolSize,
+                                @Value("${rules.actions.queue_capacity:1000}") int queueCapacity,
+                                @Value("${rules.actions.timeout:10000}") long timeout,
+                                @Value("${rules.actions.max_attempts:3}") int maxAttempts,
+                                @Value("${rules.actions.retry_backoff:1000}") long retryBackoff,
+                                @Value("${rules.actions.dead_letter_capacity:1000}") int deadLetterCapacity) {
+        this(RuleActionType::getExecutor, poolSize, queueCapacity, timeout, maxAttempts, retryBackoff, deadLetterCapacity);
+    }
+
+    /**
+     * Creates the dispatcher by passing a function for retrieving the executors of the rule action types and
+     * the settings.
+     *
+     * @param executorProvider   The function for retrieving the executor of a rule action type
+     * @param poolSize           The number of worker threads per rule action type
+     * @param queueCapacity      The maximum number of pending executions per rule action type
+     * @param timeout            The time in milliseconds after which an attempt of executing an action is aborted
+     * @param maxAttempts        The maximum number of attempts for executing an action of a retryable type
+     * @param retryBackoff       The time in milliseconds to wait before the first retry, doubled for each further one
+     * @param deadLetterCapacity The maximum number of dead letters to keep
+     */
+    RuleActionDispatcher(Function<RuleActionType, RuleActionExecutor> executorProvider, int poolSize,
+                         int queueCapacity, long timeout, int maxAttempts, long retryBackoff, int deadLetterCapacity) {
+        //Sanity checks
+        if ((poolSize <= 0) || (queueCapacity <= 0)) {
+            throw new IllegalArgumentException("Pool size and queue capacity must be positive.");
+        } else if ((timeout <= 0) || (maxAttempts <= 0)) {
+            throw new IllegalArgumentException("Timeout and maximum number of attempts must be positive.");
+        }
+
+        this.executorProvider = executorProvider;
+        this.queueCapacity = queueCapacity;
+        this.timeout = timeout;
+        this.maxAttempts = maxAttempts;
+        this.retryBackoff = Math.max(0, retryBackoff);
+        this.deadLetterCapacity = Math.max(0, deadLetterCapacity);
+
+        //Create one bounded pool of daemon worker threads per rule action type
+        for (RuleActionType actionType : RuleActionType.values()) {
+            String threadPrefix = "rule-action-" + actionType.name().toLowerCase().replace('_', '-') + "-";
+            AtomicInteger threadCounter = new AtomicInteger(0);
+            ThreadPoolExecutor executor = new ThreadPoolExecutor(poolSize, poolSize, 60, TimeUnit.SECONDS,
+                    new LinkedBlockingQueue<>(), runnable -> {
+                Thread thread = new Thread(runnable, threadPrefix + threadCounter.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+            executor.allowCoreThreadTimeOut(true);
+            workerPools.put(actionType, executor);
+            pendingCounts.put(actionType, new AtomicInteger(0));
+        }
+
+        //Create scheduler for timeouts and retries
+        ScheduledThreadPoolExecutor scheduledExecutor = new ScheduledThreadPoolExecutor(1, runnable -> {
+            Thread thread = new Thread(runnable, "rule-action-scheduler");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduledExecutor.setRemoveOnCancelPolicy(true);
+        this.scheduler = scheduledExecutor;
+    }
+
+    /**
+     * Dispatches the execution of a given action of a given rule. In addition, the output of a CEP engine that
+     * triggered the execution may be passed. The method returns immediately; the returned future completes as soon
+     * as the action was executed successfully or finally failed. The action is executed after all previously
+     * dispatched actions that affect the same target.
+     *
+     * @param action The rule action to execute
+     * @param rule   The rule that holds the action that is supposed to be executed
+     * @param output The output of a CEP engine that triggered the execution of this rule action (may be null)
+     * @return A future that completes with true, if the execution of the rule action was successful; false otherwise
+     */
+    public CompletableFuture<Boolean> dispatch(RuleAction action, Rule rule, CEPOutput output) {
+        //Sanity checks
+        if (action == null) {
+            throw new IllegalArgumentException("Rule action must not be null.");
+        } else if (action.getType() == null) {
+            throw new IllegalArgumentException("Type of the rule action must not be null.");
+        }
+
+        //Create execution for the executor of the rule action type
+        RuleActionExecutor executor = executorProvider.apply(action.getType());
+        ActionExecution execution = new ActionExecution(action, rule, output, executor, getLaneKey(action, rule, executor));
+
+        //Reject the execution if too many executions of the rule action type are pending
+        AtomicInteger pendingCount = pendingCounts.get(action.getType());
+        if (pendingCount.incrementAndGet() > queueCapacity) {
+            pendingCount.decrementAndGet();
+            addDeadLetter(execution, "The queue of the rule action type is full.");
+            return execution.result;
+        }
+
+        //Enqueue the execution in the lane of its target and start it if no other execution is running
+        if (execution.laneKey == null) {
+            attempt(execution);
+            return execution.result;
+        }
+        synchronized (lanes) {
+            Deque<ActionExecution> lane = lanes.computeIfAbsent(execution.laneKey, k -> new ArrayDeque<>());
+            lane.addLast(execution);
+            if (lane.size() > 1) {
+                return execution.result;
+            }
+        }
+        attempt(execution);
+        return execution.result;
+    }
+
+    /**
+     * Returns the most recent dead letters, i.e. the rule actions that could not be executed successfully.
+     *
+     * @return The list of dead letters, with the most recent one at the end
+     */
+    public List<DeadLetter> getDeadLetters() {
+        synchronized (deadLetters) {
+            return new ArrayList<>(deadLetters);
+        }
+    }
+
+    /**
+     * Shuts down the worker pools and the scheduler.
+     */
+    @PreDestroy
+    public void shutdown() {
+        scheduler.shutdownNow();
+        workerPools.values().forEach(ThreadPoolExecutor::shutdownNow);
+    }
+
+    /**
+     * Returns the key of the lane in which a given action of a given rule is executed, such that actions
+     * affecting the same target are executed sequentially.
+     *
+     * @param action   The rule action
+     * @param rule     The rule that holds the action (may be null)
+     * @param executor The executor of the rule action
+     * @return The key of the lane or null, if the execution does not need to be ordered
+     */
+    private String getLaneKey(RuleAction action, Rule rule, RuleActionExecutor executor) {
+        String orderingKey = executor.getOrderingKey(action, rule);
+        return (orderingKey == null) ? null : action.getType().name() + ":" + orderingKey;
+    }
+
+    /**
+     * Performs a new attempt of executing a given action execution by submitting it to the worker pool
+     * of its rule action type.
+     *
+     * @param execution The action execution
+     */
+    private void attempt(ActionExecution execution) {
+        //Start new attempt
+        int attemptNumber = execution.attempts.incrementAndGet();
+        AttemptState attemptState = new AttemptState();
+
+        try {
+            workerPools.get(execution.action.getType()).execute(() -> runAttempt(execution, attemptState, attemptNumber));
+        } catch (RejectedExecutionException e) {
+            //Dispatcher was shut down
+            addDeadLetter(execution, "The dispatcher was shut down.");
+            finish(execution);
+        }
+    }
+
+    /**
+     * Runs an attempt of executing a given action execution on the current worker thread, while interrupting it
+     * if it exceeds the timeout. The result of the attempt is only handled after the attempt ended, even if it
+     * timed out before.
+     *
+     * @param execution     The action execution
+     * @param attemptState  The state of the attempt
+     * @param attemptNumber The number of the attempt
+     */
+    private void runAttempt(ActionExecution execution, AttemptState attemptState, int attemptNumber) {
+        //Interrupt the worker thread if the attempt exceeds the timeout
+        Thread workerThread = Thread.currentThread();
+        ScheduledFuture<?> timeoutFuture = null;
+        try {
+            timeoutFuture = scheduler.schedule(() -> timeOut(execution, attemptState, workerThread, attemptNumber),
+                    timeout, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException ignored) {
+            //Dispatcher was shut down, execute without timeout
+        }
+
+        //Execute the action
+        boolean success;
+        String message = null;
+        try {
+            success = execution.executor.execute(execution.action, execution.rule, execution.output);
+        } catch (Exception e) {
+            success = false;
+            message = "Attempt " + attemptNumber + " failed: " + e.getMessage();
+        }
+
+        //Attempt ended, so the timeout is not needed anymore
+        if (timeoutFuture != null) {
+            timeoutFuture.cancel(false);
+        }
+
+        synchronized (attemptState) {
+            attemptState.ended = true;
+
+            //Check if the attempt timed out before
+            if (attemptState.timedOut) {
+                //Clear interrupt flag of the worker thread before it is reused
+                Thread.interrupted();
+                success = false;
+                message = "Attempt " + attemptNumber + " timed out.";
+            }
+        }
+
+        handleResult(execution, success, (message == null) ? "Attempt " + attemptNumber + " was not successful." : message);
+    }
+
+    /**
+     * Aborts a given attempt of a given action execution that exceeded the timeout by interrupting its worker
+     * thread. If the execution is not going to be retried, it is failed immediately; however, retries and
+     * subsequent executions of the same target wait until the attempt actually ended.
+     *
+     * @param execution     The action execution
+     * @param attemptState  The state of the attempt
+     * @param workerThread  The worker thread that runs the attempt
+     * @param attemptNumber The number of the attempt
+     */
+    private void timeOut(ActionExecution execution, AttemptState attemptState, Thread workerThread, int attemptNumber) {
+        synchronized (attemptState) {
+            if (attemptState.ended) {
+                return;
+            }
+            attemptState.timedOut = true;
+            workerThread.interrupt();
+        }
+
+        //Fail the execution early if it will not be retried
+        if (!isRetryPossible(execution)) {
+            addDeadLetter(execution, "Attempt " + attemptNumber + " timed out.");
+        }
+    }
+
+    /**
+     * Handles the result of an attempt that ended by completing the execution, scheduling a retry or writing
+     * a dead letter.
+     *
+     * @param execution The action execution
+     * @param success   True, if the attempt was successful; false otherwise
+     * @param message   Message describing the failure of the attempt
+     */
+    private void handleResult(ActionExecution execution, boolean success, String message) {
+        //Complete execution on success
+        if (success) {
+            execution.result.complete(true);
+            finish(execution);
+            return;
+        }
+
+        //Check if the execution may be retried
+        if (!isRetryPossible(execution)) {
+            addDeadLetter(execution, message);
+            finish(execution);
+            return;
+        }
+
+        //Schedule retry with exponential backoff
+        long delay = retryBackoff << Math.min(execution.attempts.get() - 1, 20);
+        try {
+            scheduler.schedule(() -> attempt(execution), delay, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            addDeadLetter(execution, message);
+            finish(execution);
+        }
+    }
+
+    /**
+     * Returns whether a given action execution may be retried after the current attempt failed, i.e. whether
+     * its executor allows retries and attempts are left.
+     *
+     * @param execution The action execution
+     * @return True, if the execution may be retried; false otherwise
+     */
+    private boolean isRetryPossible(ActionExecution execution) {
+        return execution.executor.isRetryable() && (execution.attempts.get() < maxAttempts);
+    }
+
+    /**
+     * Removes a given action execution that finally ended from its lane and starts the next execution
+     * of the lane, if available.
+     *
+     * @param execution The action execution
+     */
+    private void finish(ActionExecution execution) {
+        pendingCounts.get(execution.action.getType()).decrementAndGet();
+        if (execution.laneKey == null) {
+            return;
+        }
+
+        //Remove the execution from its lane and retrieve the next one
+        ActionExecution next;
+        synchronized (lanes) {
+            Deque<ActionExecution> lane = lanes.get(execution.laneKey);
+            lane.remove(execution);
+            next = lane.peekFirst();
+            if (next == null) {
+                lanes.remove(execution.laneKey);
+            }
+        }
+
+        //Start the next execution of the lane
+        if (next != null) {
+            attempt(next);
+        }
+    }
+
+    /**
+     * Writes a given action execution that finally failed to the dead letter log and completes it, unless
+     * this happened before.
+     *
+     * @param execution The action execution
+     * @param reason    The reason for the failure
+     */
+    private void addDeadLetter(ActionExecution execution, String reason) {
+        //Check if the execution already failed (e.g. due to a timeout)
+        if (!execution.failed.compareAndSet(false, true)) {
+            return;
+        }
+
+        DeadLetter deadLetter = new DeadLetter(execution, reason);
+
+        LOGGER.log(Level.WARNING, "Execution of action \"{0}\" of rule \"{1}\" failed after {2} attempt(s): {3}",
+                new Object[]{deadLetter.getActionName(), deadLetter.getRuleName(), deadLetter.getAttempts(), reason});
+
+        //Add dead letter and remove the oldest ones if the capacity is exceeded
+        synchronized (deadLetters) {
+            deadLetters.addLast(deadLetter);
+            while (deadLetters.size() > deadLetterCapacity) {
+                deadLetters.removeFirst();
+            }
+        }
+
+        execution.result.complete(false);
+    }
+
+    /**
+     * Holds the state of a pending execution of a rule action.
+     */
+    private static class ActionExecution {
+        private final RuleAction action;
+        private final Rule rule;
+        private final CEPOutput output;
+        private final RuleActionExecutor executor;
+        private final String laneKey;
+        private final AtomicInteger attempts = new AtomicInteger(0);
+        private final AtomicBoolean failed = new AtomicBoolean(false);
+        private final CompletableFuture<Boolean> result = new CompletableFuture<>();
+
+        private ActionExecution(RuleAction action, Rule rule, CEPOutput output, RuleActionExecutor executor, String laneKey) {
+            this.action = action;
+            this.rule = rule;
+            this.output = output;
+            this.executor = executor;
+            this.laneKey = laneKey;
+        }
+    }
+
+    /**
+     * Holds the state of a single attempt, used to decide whether the attempt ended or timed out first.
+     */
+    private static class AttemptState {
+        private boolean ended = false;
+        private boolean timedOut = false;
+    }
+
+    /**
+     * Entry of the dead letter log, describing a rule action that could not be executed successfully.
+     */
+    public static class DeadLetter {
+        private final String ruleId;
+        private final String ruleName;
+        private final String actionId;
+        private final String actionName;
+        private final RuleActionType actionType;
+        private final int attempts;
+        private final String reason;
+        private final Instant timestamp;
+
+        private DeadLetter(ActionExecution execution, String reason) {
+            this.ruleId = (execution.rule == null) ? null : execution.rule.getId();
+            this.ruleName = (execution.rule == null) ? null : execution.rule.getName();
+            this.actionId = execution.action.getId();
+            this.actionName = execution.action.getName();
+            this.actionType = execution.action.getType();
+            this.attempts = execution.attempts.get();
+            this.reason = reason;
+            this.timestamp = Instant.now();
+        }
+
+        public String getRuleId() {
+            return ruleId;
+        }
+
+        public String getRuleName() {
+            return ruleName;
+        }
+
+        public String getActionId() {
+            return actionId;
+        }
+
+        public String getActionName() {
+            return actionName;
+        }
+
+        public RuleActionType getActionType() {
+            return actionType;
+        }
+
+        public int getAttempts() {
+            return attempts;
+        }
+
+        public String getReason() {
+            return reason;
+        }
+
+        public Instant getTimestamp() {
+            return timestamp;
+        }
+    }
+}
@@ -31,4 +31,27 @@ public interface RuleActionExecutor {
      * @return True, if the execution of the rule action was successful; false otherwise
      */
     boolean execute(RuleAction action, Rule rule, CEPOutput output);
+
+    /**
+     * Returns whether failed executions of rule actions of the corresponding type may be retried. This requires
+     * the executions to be idempotent, since a failed or timed out execution may have taken effect partially.
+     *
+     * @return True, if failed executions may be retried; false otherwise
+     */
+    default boolean isRetryable() {
+        return false;
+    }
+
+    /**
+     * Returns the key of the target that is affected by a given action of a given rule. Executions of actions
+     * with the same key are performed sequentially in the order in which they were triggered. By default, the
+     * executions of the actions of the same rule are ordered.
+     *
+     * @param action The rule action
+     * @param rule   The rule that holds the action (may be null)
+     * @return The key of the target or null, if the executions do not need to be ordered by target
+     */
+    default String getOrderingKey(RuleAction action, Rule rule) {
+        return (rule == null) ? null : rule.getId();
+    }
 }
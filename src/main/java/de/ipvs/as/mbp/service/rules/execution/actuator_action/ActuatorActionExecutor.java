@@ -163,6 +163,19 @@ public class ActuatorActionExecutor implements RuleActionExecutor {
         return true;
     }
 
+    /**
+     * Returns the key of the target that is affected by a given action of a given rule. Actions for the same
+     * actuator are executed in the order in which they were triggered.
+     *
+     * @param action The rule action
+     * @param rule   The rule that holds the action (may be null)
+     * @return The key of the target
+     */
+    @Override
+    public String getOrderingKey(RuleAction action, Rule rule) {
+        return action.getParameters().get(PARAM_KEY_ACTUATOR);
+    }
+
     /**
      * Generates a new MQTT topic for notifying a certain actuator to execute an action with a certain name.
      * The topic generation is deterministic for a fixed actuator and action name.
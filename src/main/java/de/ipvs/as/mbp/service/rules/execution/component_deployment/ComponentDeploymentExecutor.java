@@ -189,6 +189,8 @@ public class ComponentDeploymentExecutor implements RuleActionExecutor {
                         //Component is deployed, so just undeploy it
                         deployer.undeployComponent(component);
                     }
+
+                    break;
                 default:
                     return false;
             }
@@ -201,6 +203,30 @@ public class ComponentDeploymentExecutor implements RuleActionExecutor {
         }
     }
 
+    /**
+     * Returns whether failed executions of rule actions of this type may be retried. Deployment actions are
+     * idempotent, since they only transfer the component to the target state if it is not reached yet.
+     *
+     * @return True
+     */
+    @Override
+    public boolean isRetryable() {
+        return true;
+    }
+
+    /**
+     * Returns the key of the target that is affected by a given action of a given rule. Deployment actions for
+     * the same component are executed in the order in which they were triggered.
+     *
+     * @param action The rule action
+     * @param rule   The rule that holds the action (may be null)
+     * @return The key of the target
+     */
+    @Override
+    public String getOrderingKey(RuleAction action, Rule rule) {
+        return action.getParameters().get(PARAM_KEY_COMPONENT);
+    }
+
     /**
      * Returns the component of a component string that consists out of a component type and a component id.
      *
@@ -5,6 +5,7 @@ import de.ipvs.as.mbp.domain.rules.RuleAction;
 import de.ipvs.as.mbp.error.EntityValidationException;
 import de.ipvs.as.mbp.service.cep.engine.core.output.CEPOutput;
 import de.ipvs.as.mbp.service.rules.execution.RuleActionExecutor;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
 import java.io.BufferedReader;
@@ -30,6 +31,12 @@ public class IFTTTWebhookExecutor implements RuleActionExecutor {
     //Regular expression describing permissible event names
     private static final String REGEX_EVENT_NAME = "[A-z0-9_\\-]+";
 
+    //Timeouts in milliseconds for connecting to IFTTT and for reading the response
+    @Value("${rules.actions.ifttt.connect_timeout:5000}")
+    private int connectTimeout;
+    @Value("${rules.actions.ifttt.read_timeout:5000}")
+    private int readTimeout;
+
     /**
      * Validates a parameters map for the corresponding rule action type and will throw an exception
      * if a parameter is invalid.
@@ -101,17 +108,19 @@ public class IFTTTWebhookExecutor implements RuleActionExecutor {
             HttpURLConnection connection = (HttpURLConnection) url.openConnection();
             connection.setRequestMethod("GET");
             connection.setDoOutput(true);
-
-            //Establish reader for the result of the request
-            BufferedReader reader = new BufferedReader(new InputStreamReader(connection.getInputStream()));
+            connection.setConnectTimeout(connectTimeout);
+            connection.setReadTimeout(readTimeout);
 
             //Read response line by line
             StringBuilder result = new StringBuilder();
-            String line;
-            while ((line = reader.readLine()) != null) {
-                result.append(line);
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(connection.getInputStream()))) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    result.append(line);
+                }
+            } finally {
+                connection.disconnect();
             }
-            reader.close();
 
             //Check if request was successful
             return result.toString().startsWith("Congratulations!");
@@ -0,0 +1,681 @@
+package de.ipvs.as.mbp.service.stats;
+
+import com.mongodb.client.MongoCursor;
+import de.ipvs.as.mbp.domain.valueLog.ValueLog;
+import de.ipvs.as.mbp.domain.valueLog.ValueLogRollupResolution;
+import de.ipvs.as.mbp.repository.ValueLogRepository;
+import de.ipvs.as.mbp.repository.ValueLogRollupRepository;
+import de.ipvs.as.mbp.service.UnitConverterService;
+import de.ipvs.as.mbp.service.access_control.ACCompiledEffect;
+import de.ipvs.as.mbp.service.log_writer.ValueLogRollupService;
+import de.ipvs.as.mbp.service.stats.model.ValueLogAggregation;
+import de.ipvs.as.mbp.service.stats.model.ValueLogAggregationMode;
+import de.ipvs.as.mbp.service.stats.model.ValueLogBucket;
+import de.ipvs.as.mbp.service.stats.model.ValueLogDataPoint;
+import de.ipvs.as.mbp.util.DocumentReader;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.measure.converter.UnitConverter;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.DoubleUnaryOperator;
+
+/**
+ * Service that provides means for aggregating and downsampling the numeric values of the value logs of a certain
+ * component, such that long time series can be retrieved and visualized with a small amount of data. Whenever
+ * possible, the aggregation is performed within the database, using the coarsest rollups that fit the query.
+ * Only if an access control effect needs to be applied to the individual values, they are streamed from
+ * the database and aggregated within this service. Effects that transform each numeric value on its own are
+ * applied to the extracted numeric values, such that the complete value logs do not need to be retrieved.
+ */
+@Service
+public class ValueLogAggregationService {
+
+    @Autowired
+    private ValueLogRepository valueLogRepository;
+
+    @Autowired
+    private UnitConverterService unitConverterService;
+
+    @Autowired
+    private ValueLogRollupService valueLogRollupService;
+
+    @Autowired
+    private ValueLogRollupRepository valueLogRollupRepository;
+
+    //Maximum number of buckets or data points to return
+    private final int maxBuckets;
+    private final int maxPoints;
+
+    /**
+     * Creates the service by passing the limits for the size of the aggregation results (auto-wired).
+     *
+     * @param maxBuckets The maximum number of buckets to return
+     * @param maxPoints  The maximum number of data points to return in LTTB mode
+     */
+    @Autowired
+    public ValueLogAggregationService(@Value("${value_logs.aggregation.max_buckets:10000}") int maxBuckets,
+                                      @Value("${value_logs.aggregation.max_points:10000}") int maxPoints) {
+        this.maxBuckets = maxBuckets;
+        this.maxPoints = maxPoints;
+    }
+
+    /**
+     * Aggregates the numeric values at a given path of the value logs of a component within a given time range.
+     * In {@link ValueLogAggregationMode#BUCKETS} mode, the values are grouped into buckets of a given width and
+     * descriptive statistics are calculated per bucket. In {@link ValueLogAggregationMode#LTTB} mode, the values
+     * are downsampled to a given number of data points. Optionally, the resulting values can be converted by
+     * a given unit converter and a given access control effect can be applied to the value logs beforehand.
+     *
+     * @param componentId  The ID of the component whose value logs are supposed to be aggregated
+     * @param mode         The aggregation mode to use
+     * @param startTime    The inclusive start of the time range or null, if not bounded
+     * @param endTime      The exclusive end of the time range or null, if not bounded
+     * @param path         The dot-separated path of the numeric field within the values of the value logs
+     * @param bucketWidth  The width of the buckets in milliseconds (only for bucket mode)
+     * @param targetPoints The desired number of data points (only for LTTB mode)
+     * @param converter    The unit converter to apply to the values or null, if no conversion is required
+     * @param effect       The effect to apply to the value logs or null, if no effect is supposed to be applied
+     * @return The aggregation result
+     */
+    public ValueLogAggregation aggregateValueLogs(String componentId, ValueLogAggregationMode mode, Instant startTime,
+                                                  Instant endTime, String path, long bucketWidth, int targetPoints,
+                                                  UnitConverter converter, ACCompiledEffect effect) {
+        //Sanity checks
+        if ((componentId == null) || componentId.isEmpty()) {
+            throw new IllegalArgumentException("Component ID must not be null or empty.");
+        } else if (mode == null) {
+            throw new IllegalArgumentException("Aggregation mode must not be null.");
+        } else if ((path == null) || path.isEmpty()) {
+            throw new IllegalArgumentException("Path must not be null or empty.");
+        } else if ((mode == ValueLogAggregationMode.BUCKETS) && (bucketWidth <= 0)) {
+            throw new IllegalArgumentException("Bucket width must be positive.");
+        } else if ((mode == ValueLogAggregationMode.LTTB) && (targetPoints < 3)) {
+            throw new IllegalArgumentException("Number of data points must be at least three.");
+        }
+
+        //Create result object
+        ValueLogAggregation aggregation = new ValueLogAggregation(mode, path);
+
+        //Check aggregation mode
+        if (mode == ValueLogAggregationMode.BUCKETS) {
+            aggregation.setBucketWidth(bucketWidth);
+            aggregation.setBuckets(aggregateBuckets(componentId, startTime, endTime, path, bucketWidth, converter, effect));
+        } else {
+            aggregation.setPoints(downsampleDataPoints(componentId, startTime, endTime, path,
+                    Math.min(targetPoints, maxPoints), converter, effect));
+        }
+
+        return aggregation;
+    }
+
+    /**
+     * Parses a given bucket width specification, consisting of a positive number and one of the units
+     * s (seconds), m (minutes), h (hours) or d (days), e.g. "15m" or "1d".
+     *
+     * @param bucketWidth The bucket width specification to parse
+     * @return The bucket width in milliseconds
+     */
+    public static long parseBucketWidth(String bucketWidth) {
+        //Sanity check
+        if ((bucketWidth == null) || (bucketWidth.length() < 2)) {
+            throw new IllegalArgumentException("Bucket width must consist of a number and a unit.");
+        }
+
+        //Split specification into amount and unit
+        String amountString = bucketWidth.substring(0, bucketWidth.length() - 1);
+        char unitChar = bucketWidth.charAt(bucketWidth.length() - 1);
+
+        //Parse amount
+        long amount;
+        try {
+            amount = Long.parseLong(amountString);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid amount of the bucket width.");
+        }
+        if (amount <= 0) {
+            throw new IllegalArgumentException("Bucket width must be positive.");
+        }
+
+        //Parse unit
+        switch (unitChar) {
+            case 's':
+                return TimeUnit.SECONDS.toMillis(amount);
+            case 'm':
+                return TimeUnit.MINUTES.toMillis(amount);
+            case 'h':
+                return TimeUnit.HOURS.toMillis(amount);
+            case 'd':
+                return TimeUnit.DAYS.toMillis(amount);
+            default:
+                throw new IllegalArgumentException("Invalid unit of the bucket width.");
+        }
+    }
+
+    /**
+     * Groups the numeric values at a given path of the value logs of a component into buckets of a given width and
+     * calculates descriptive statistics for each bucket.
+     *
+     * @param componentId The ID of the component whose value logs are supposed to be aggregated
+     * @param startTime   The inclusive start of the time range or null, if not bounded
+     * @param endTime     The exclusive end of the time range or null, if not bounded
+     * @param path        The dot-separated path of the numeric field within the values of the value logs
+     * @param bucketWidth The width of the buckets in milliseconds
+     * @param converter   The unit converter to apply to the values or null, if no conversion is required
+     * @param effect      The effect to apply to the value logs or null, if no effect is supposed to be applied
+     * @return The resulting buckets, sorted ascending by time
+     */
+    private List<ValueLogBucket> aggregateBuckets(String componentId, Instant startTime, Instant endTime, String path,
+                                                  long bucketWidth, UnitConverter converter, ACCompiledEffect effect) {
+        //Create result list
+        List<ValueLogBucket> buckets = new ArrayList<>();
+
+        //Check if the aggregation can be performed completely within the database
+        if (effect == null) {
+            //Check if the buckets can be calculated from the rollups
+            ValueLogRollupResolution resolution = valueLogRollupService.selectResolution(componentId, path, startTime, endTime, bucketWidth);
+            if (resolution != null) {
+                List<Document> documents = valueLogRollupRepository.aggregateByIdRefAndTimeRange(resolution, componentId,
+                        startTime, endTime, path, bucketWidth, maxBuckets);
+
+                //Transform the resulting documents to buckets
+                for (Document document : documents) {
+                    ValueLogBucket bucket = new ValueLogBucket();
+                    bucket.setTime(((Number) document.get("_id")).longValue());
+                    bucket.setCount(((Number) document.get("count")).longValue());
+                    bucket.setMinimum(((Number) document.get("min")).doubleValue());
+                    bucket.setMaximum(((Number) document.get("max")).doubleValue());
+                    bucket.setFirst(getRollupValue(document, "first"));
+                    bucket.setLast(getRollupValue(document, "last"));
+                    completeBucket(bucket, ((Number) document.get("sum")).doubleValue(),
+                            ((Number) document.get("sumSq")).doubleValue(), buckets, converter);
+                }
+                return buckets;
+            }
+
+            //Aggregate the value logs themselves
+            List<Document> documents = valueLogRepository.aggregateByIdRefAndTimeRange(componentId, startTime,
+                    endTime, path, bucketWidth, maxBuckets);
+
+            //Transform the resulting documents to buckets
+            for (Document document : documents) {
+                ValueLogBucket bucket = new ValueLogBucket();
+                bucket.setTime(((Number) document.get("_id")).longValue());
+                bucket.setCount(((Number) document.get("count")).longValue());
+                bucket.setMinimum(((Number) document.get("min")).doubleValue());
+                bucket.setMaximum(((Number) document.get("max")).doubleValue());
+                bucket.setAverage(((Number) document.get("avg")).doubleValue());
+                double standardDeviation = ((Number) document.get("stdDev")).doubleValue();
+                bucket.setVariance(standardDeviation * standardDeviation);
+                bucket.setFirst(((Number) document.get("first")).doubleValue());
+                bucket.setLast(((Number) document.get("last")).doubleValue());
+                buckets.add(convertBucket(bucket, converter));
+            }
+            return buckets;
+        }
+
+        //Stream value logs from the database, apply the effect and aggregate them one after another
+        ValueLogBucket[] currentBucket = new ValueLogBucket[1];
+        double[] sums = new double[2];
+        forEachDataPoint(componentId, startTime, endTime, path, effect, (time, value) -> {
+            //Determine start time of the bucket the value belongs to
+            long bucketStart = time - Math.floorMod(time, bucketWidth);
+
+            //Check if a new bucket is started (value logs are sorted by time)
+            ValueLogBucket bucket = currentBucket[0];
+            if ((bucket == null) || (bucket.getTime() != bucketStart)) {
+                //Complete the previous bucket
+                completeBucket(bucket, sums[0], sums[1], buckets, converter);
+
+                //Stop as soon as the maximum number of buckets is reached
+                if (buckets.size() >= maxBuckets) {
+                    currentBucket[0] = null;
+                    return false;
+                }
+
+                //Create new bucket
+                bucket = new ValueLogBucket();
+                bucket.setTime(bucketStart);
+                bucket.setMinimum(value);
+                bucket.setMaximum(value);
+                bucket.setFirst(value);
+                currentBucket[0] = bucket;
+                sums[0] = 0;
+                sums[1] = 0;
+            }
+
+            //Update the bucket
+            bucket.setCount(bucket.getCount() + 1);
+            bucket.setMinimum(Math.min(bucket.getMinimum(), value));
+            bucket.setMaximum(Math.max(bucket.getMaximum(), value));
+            bucket.setLast(value);
+            sums[0] += value;
+            sums[1] += value * value;
+            return true;
+        });
+
+        //Complete the last bucket
+        completeBucket(currentBucket[0], sums[0], sums[1], buckets, converter);
+
+        return buckets;
+    }
+
+    /**
+     * Downsamples the numeric values at a given path of the value logs of a component to a given number of data
+     * points by using the Largest-Triangle-Three-Buckets (LTTB) algorithm. The first and the last data points are
+     * always retained. In order to bound the required memory for long time ranges, the data points are streamed
+     * through a {@link DataPointSampler}, which preselects the candidates for LTTB.
+     *
+     * @param componentId  The ID of the component whose value logs are supposed to be downsampled
+     * @param startTime    The inclusive start of the time range or null, if not bounded
+     * @param endTime      The exclusive end of the time range or null, if not bounded
+     * @param path         The dot-separated path of the numeric field within the values of the value logs
+     * @param targetPoints The desired number of data points
+     * @param converter    The unit converter to apply to the values or null, if no conversion is required
+     * @param effect       The effect to apply to the value logs or null, if no effect is supposed to be applied
+     * @return The resulting data points, sorted ascending by time
+     */
+    private List<ValueLogDataPoint> downsampleDataPoints(String componentId, Instant startTime, Instant endTime,
+                                                         String path, int targetPoints, UnitConverter converter,
+                                                         ACCompiledEffect effect) {
+        //Create result list
+        List<ValueLogDataPoint> points = new ArrayList<>();
+
+        //Determine the time span of the value logs, which is divided into bins by the sampler
+        Document timeBounds = valueLogRepository.findTimeBoundsByIdRefAndTimeRange(componentId, startTime, endTime);
+        if (timeBounds == null) {
+            return points;
+        }
+        long spanStart = TimeUnit.SECONDS.toMillis(((Number) timeBounds.get("first")).longValue());
+        long spanEnd = TimeUnit.SECONDS.toMillis(((Number) timeBounds.get("last")).longValue() + 1);
+        if (startTime != null) {
+            spanStart = Math.max(spanStart, startTime.toEpochMilli());
+        }
+        if (endTime != null) {
+            spanEnd = Math.min(spanEnd, endTime.toEpochMilli());
+        }
+
+        //Collect the candidate data points
+        DataPointSampler sampler = new DataPointSampler(spanStart, spanEnd, targetPoints);
+        forEachDataPoint(componentId, startTime, endTime, path, effect, (time, value) -> {
+            sampler.add(time, value);
+            return true;
+        });
+        sampler.finish();
+
+        //Determine the indices of the data points to retain
+        int[] selectedIndices = selectLTTB(sampler.times, sampler.values, sampler.size, targetPoints);
+
+        //Create the resulting data points
+        for (int index : selectedIndices) {
+            double value = (converter == null) ? sampler.values[index] : unitConverterService.convertValue(sampler.values[index], converter);
+            points.add(new ValueLogDataPoint(sampler.times[index], value));
+        }
+        return points;
+    }
+
+    /**
+     * Selects the indices of the data points to retain from a given time series by using the
+     * Largest-Triangle-Three-Buckets (LTTB) algorithm. The data points are divided into buckets and from each
+     * bucket the data point is selected that forms the largest triangle with the previously selected data point
+     * and the average of the next bucket.
+     *
+     * @param times        The times of the data points, sorted ascending
+     * @param values       The values of the data points
+     * @param size         The number of data points
+     * @param targetPoints The desired number of data points (at least three)
+     * @return The indices of the selected data points in ascending order
+     */
+    static int[] selectLTTB(long[] times, double[] values, int size, int targetPoints) {
+        //Retain all data points if no downsampling is required
+        if (size <= targetPoints) {
+            int[] indices = new int[size];
+            Arrays.setAll(indices, i -> i);
+            return indices;
+        }
+
+        //Create result array; first and last data points are always retained
+        int[] indices = new int[targetPoints];
+        indices[0] = 0;
+        indices[targetPoints - 1] = size - 1;
+
+        //Width of the buckets (excluding first and last data point)
+        double every = ((double) (size - 2)) / (targetPoints - 2);
+
+        //Times are considered relative to the first data point in order to preserve precision
+        long baseTime = times[0];
+
+        //Index of the previously selected data point
+        int a = 0;
+
+        //Iterate over all buckets
+        for (int i = 0; i < targetPoints - 2; i++) {
+            //Calculate the average of the next bucket
+            int avgRangeStart = (int) Math.floor((i + 1) * every) + 1;
+            int avgRangeEnd = Math.min((int) Math.floor((i + 2) * every) + 1, size);
+            double avgX = 0;
+            double avgY = 0;
+            for (int j = avgRangeStart; j < avgRangeEnd; j++) {
+                avgX += times[j] - baseTime;
+                avgY += values[j];
+            }
+            int avgRangeLength = avgRangeEnd - avgRangeStart;
+            avgX /= avgRangeLength;
+            avgY /= avgRangeLength;
+
+            //Range of the current bucket
+            int rangeStart = (int) Math.floor(i * every) + 1;
+            int rangeEnd = (int) Math.floor((i + 1) * every) + 1;
+
+            //Coordinates of the previously selected data point
+            double pointAX = times[a] - baseTime;
+            double pointAY = values[a];
+
+            //Find the data point that forms the largest triangle
+            double maxArea = -1;
+            int maxAreaIndex = rangeStart;
+            for (int j = rangeStart; j < rangeEnd; j++) {
+                double area = Math.abs((pointAX - avgX) * (values[j] - pointAY)
+                        - (pointAX - (times[j] - baseTime)) * (avgY - pointAY)) * 0.5;
+                if (area > maxArea) {
+                    maxArea = area;
+                    maxAreaIndex = j;
+                }
+            }
+
+            //Select the data point
+            indices[i + 1] = maxAreaIndex;
+            a = maxAreaIndex;
+        }
+
+        return indices;
+    }
+
+    /**
+     * Iterates over the numeric values at a given path of the value logs of a component within a given time range
+     * in ascending order of time and passes them to a given consumer. If no effect needs to be applied or if the
+     * effect can be applied to single numeric values, only the numeric values are retrieved from the database;
+     * otherwise, the complete value logs are retrieved and the effect is applied to each of them before the
+     * numeric value is extracted.
+     *
+     * @param componentId The ID of the component whose value logs are supposed to be iterated
+     * @param startTime   The inclusive start of the time range or null, if not bounded
+     * @param endTime     The exclusive end of the time range or null, if not bounded
+     * @param path        The dot-separated path of the numeric field within the values of the value logs
+     * @param effect      The effect to apply to the value logs or null, if no effect is supposed to be applied
+     * @param consumer    The consumer to pass the data points to
+     */
+    private void forEachDataPoint(String componentId, Instant startTime, Instant endTime, String path,
+                                  ACCompiledEffect effect, DataPointConsumer consumer) {
+        //Check if the effect needs to be applied to the complete value logs
+        DoubleUnaryOperator transformation = (effect == null) ? null : effect.getValueTransformation();
+        if ((effect == null) || (transformation != null)) {
+            //Iterate over the numeric values only
+            try (MongoCursor<Document> cursor = valueLogRepository.findNumericValuesByIdRefAndTimeRangeAsCursor(componentId, startTime, endTime, path)) {
+                while (cursor.hasNext()) {
+                    Document document = cursor.next();
+                    long time = document.getDate("time").getTime();
+                    double value = ((Number) document.get(ValueLogRepository.NUMERIC_VALUE_FIELD_NAME)).doubleValue();
+                    if (transformation != null) {
+                        value = transformation.applyAsDouble(value);
+                    }
+                    if (!consumer.accept(time, value)) {
+                        return;
+                    }
+                }
+            }
+            return;
+        }
+
+        //Iterate over the complete value logs
+        try (MongoCursor<ValueLog> cursor = valueLogRepository.findAllByIdRefAndTimeRangeAsCursor(componentId, startTime, endTime)) {
+            while (cursor.hasNext()) {
+                //Apply effect to the value log
+                ValueLog valueLog = effect.apply(cursor.next());
+
+                //Extract the numeric value and skip value logs without one
+                Double value = DocumentReader.getNumericValueByPath(valueLog.getValue(), path);
+                if (value == null) {
+                    continue;
+                }
+
+                if (!consumer.accept(valueLog.getTime().toEpochMilli(), value)) {
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the value of the first or last value document with a given name of a document that results from
+     * aggregating rollups.
+     *
+     * @param document The document resulting from the aggregation
+     * @param name     The name of the value document
+     * @return The value or null, if not available
+     */
+    private static Double getRollupValue(Document document, String name) {
+        Object valueDocument = document.get(name);
+        if (!(valueDocument instanceof Document)) {
+            return null;
+        }
+        Object value = ((Document) valueDocument).get("v");
+        return (value instanceof Number) ? ((Number) value).doubleValue() : null;
+    }
+
+    /**
+     * Completes a given bucket by calculating its average and variance from the sum and the sum of squares of
+     * its values and adds it to a given list of buckets.
+     *
+     * @param bucket     The bucket to complete or null, if no bucket needs to be completed
+     * @param sum        The sum of all values within the bucket
+     * @param sumSquares The sum of the squares of all values within the bucket
+     * @param buckets    The list to add the bucket to
+     * @param converter  The unit converter to apply to the values or null, if no conversion is required
+     */
+    private void completeBucket(ValueLogBucket bucket, double sum, double sumSquares, List<ValueLogBucket> buckets, UnitConverter converter) {
+        //Null check
+        if ((bucket == null) || (bucket.getCount() <= 0)) {
+            return;
+        }
+
+        //Calculate the average and the variance and add the bucket
+        double average = sum / bucket.getCount();
+        bucket.setAverage(average);
+        bucket.setVariance(Math.max(0, (sumSquares / bucket.getCount()) - (average * average)));
+        buckets.add(convertBucket(bucket, converter));
+    }
+
+    /**
+     * Converts the values of a given bucket by using a given unit converter.
+     *
+     * @param bucket    The bucket to convert
+     * @param converter The unit converter to apply or null, if no conversion is required
+     * @return The converted bucket
+     */
+    private ValueLogBucket convertBucket(ValueLogBucket bucket, UnitConverter converter) {
+        //Check if conversion is required
+        if (converter == null) {
+            return bucket;
+        }
+
+        //Convert all values; since the converters are linear, also the average may be converted directly
+        double minimum = unitConverterService.convertValue(bucket.getMinimum(), converter);
+        double maximum = unitConverterService.convertValue(bucket.getMaximum(), converter);
+        bucket.setMinimum(Math.min(minimum, maximum));
+        bucket.setMaximum(Math.max(minimum, maximum));
+        bucket.setAverage(unitConverterService.convertValue(bucket.getAverage(), converter));
+        if (bucket.getFirst() != null) {
+            bucket.setFirst(unitConverterService.convertValue(bucket.getFirst(), converter));
+        }
+        if (bucket.getLast() != null) {
+            bucket.setLast(unitConverterService.convertValue(bucket.getLast(), converter));
+        }
+
+        //The variance scales with the square of the conversion factor
+        double factor = converter.convert(1) - converter.convert(0);
+        bucket.setVariance(bucket.getVariance() * factor * factor);
+        return bucket;
+    }
+
+    /**
+     * Consumer for numeric data points, consisting of a time in epoch milliseconds and a value.
+     */
+    @FunctionalInterface
+    private interface DataPointConsumer {
+        /**
+         * Consumes a given data point.
+         *
+         * @param time  The time of the data point in epoch milliseconds
+         * @param value The value of the data point
+         * @return True, if further data points are supposed to be passed; false otherwise
+         */
+        boolean accept(long time, double value);
+    }
+
+    /**
+     * Collects the candidate data points of a time series for downsampling with LTTB, using memory that only
+     * depends on the desired number of data points. The time span is divided into {@link #BINS_FACTOR} times the
+     * desired number of bins of equal width. As long as the time series has at most twice as many data points as
+     * there are bins (plus two), all data points are kept, such that LTTB is applied to the complete time series.
+     * For longer time series, only the data points with the minimum and the maximum value of each bin are kept as
+     * candidates, in addition to the first and the last data point of the time series (MinMax preselection).
+     * The data points must be added in ascending order of time.
+     */
+    static class DataPointSampler {
+        //Number of bins, relative to the desired number of data points
+        static final int BINS_FACTOR = 2;
+
+        //Time span that is divided into the bins
+        private final long spanStart;
+        private final double binWidth;
+
+        //Data points with the minimum and maximum value per bin
+        private final long[] minTimes;
+        private final double[] minValues;
+        private final long[] maxTimes;
+        private final double[] maxValues;
+        private final boolean[] binUsed;
+
+        //First and last data point of the time series
+        private long firstTime;
+        private double firstValue;
+        private long lastTime;
+        private double lastValue;
+
+        //Total number of added data points
+        private long count = 0;
+
+        //Candidate data points; hold the raw data points until they exceed the capacity
+        long[] times;
+        double[] values;
+        int size = 0;
+
+        /**
+         * Creates a new sampler for a time series within a given time span.
+         *
+         * @param spanStart    The start of the time span in epoch milliseconds
+         * @param spanEnd      The end of the time span in epoch milliseconds
+         * @param targetPoints The desired number of data points
+         */
+        DataPointSampler(long spanStart, long spanEnd, int targetPoints) {
+            int bins = BINS_FACTOR * targetPoints;
+            this.spanStart = spanStart;
+            this.binWidth = Math.max(1, spanEnd - spanStart) / (double) bins;
+            this.minTimes = new long[bins];
+            this.minValues = new double[bins];
+            this.maxTimes = new long[bins];
+            this.maxValues = new double[bins];
+            this.binUsed = new boolean[bins];
+            this.times = new long[2 * bins + 2];
+            this.values = new double[2 * bins + 2];
+        }
+
+        /**
+         * Adds a data point to the sampler.
+         *
+         * @param time  The time of the data point in epoch milliseconds
+         * @param value The value of the data point
+         */
+        void add(long time, double value) {
+            //Keep the raw data point as long as there is space
+            if (count < times.length) {
+                times[size] = time;
+                values[size] = value;
+                size++;
+            }
+
+            //Remember first and last data point
+            if (count == 0) {
+                firstTime = time;
+                firstValue = value;
+            }
+            lastTime = time;
+            lastValue = value;
+            count++;
+
+            //Update the bin of the data point
+            int bin = (int) Math.min(Math.max(0, (long) ((time - spanStart) / binWidth)), binUsed.length - 1);
+            if (!binUsed[bin]) {
+                binUsed[bin] = true;
+                minTimes[bin] = maxTimes[bin] = time;
+                minValues[bin] = maxValues[bin] = value;
+            } else if (value < minValues[bin]) {
+                minTimes[bin] = time;
+                minValues[bin] = value;
+            } else if (value > maxValues[bin]) {
+                maxTimes[bin] = time;
+                maxValues[bin] = value;
+            }
+        }
+
+        /**
+         * Finishes the sampling. If the raw data points exceeded the capacity, they are replaced by the data points
+         * that were preselected from the bins, in ascending order of time.
+         */
+        void finish() {
+            //Check whether all raw data points were kept
+            if (count <= times.length) {
+                return;
+            }
+
+            //Collect the preselected data points
+            size = 0;
+            appendCandidate(firstTime, firstValue);
+            for (int bin = 0; bin < binUsed.length; bin++) {
+                if (!binUsed[bin]) {
+                    continue;
+                }
+                if (minTimes[bin] <= maxTimes[bin]) {
+                    appendCandidate(minTimes[bin], minValues[bin]);
+                    appendCandidate(maxTimes[bin], maxValues[bin]);
+                } else {
+                    appendCandidate(maxTimes[bin], maxValues[bin]);
+                    appendCandidate(minTimes[bin], minValues[bin]);
+                }
+            }
+            appendCandidate(lastTime, lastValue);
+        }
+
+        /**
+         * Appends a candidate data point, unless it equals the previously appended one.
+         *
+         * @param time  The time of the data point in epoch milliseconds
+         * @param value The value of the data point
+         */
+        private void appendCandidate(long time, double value) {
+            if ((size > 0) && (times[size - 1] == time) && (values[size - 1] == value)) {
+                return;
+            }
+            times[size] = time;
+            values[size] = value;
+            size++;
+        }
+    }
+}
@@ -1,21 +1,38 @@
 package de.ipvs.as.mbp.service.stats;
 
-import de.ipvs.as.mbp.domain.access_control.ACAbstractEffect;
+import com.mongodb.client.MongoCursor;
 import de.ipvs.as.mbp.domain.component.Component;
+import de.ipvs.as.mbp.domain.data_model.treelogic.DataModelTreeNode;
 import de.ipvs.as.mbp.domain.valueLog.ValueLog;
+import de.ipvs.as.mbp.repository.DataModelTreeCache;
 import de.ipvs.as.mbp.repository.ValueLogRepository;
+import de.ipvs.as.mbp.repository.ValueLogRollupRepository;
 import de.ipvs.as.mbp.service.UnitConverterService;
+import de.ipvs.as.mbp.service.access_control.ACCompiledEffect;
+import de.ipvs.as.mbp.service.stats.model.ValueLogFieldStats;
 import de.ipvs.as.mbp.service.stats.model.ValueLogStats;
+import de.ipvs.as.mbp.util.DocumentReader;
+import org.bson.Document;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
 import javax.measure.converter.UnitConverter;
 import javax.measure.unit.Unit;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 /**
  * Service that provides means for calculating descriptive statistical information from a set of value logs
- * of a certain component.
+ * of a certain component. The statistics are calculated per numeric leaf of the data model of the component
+ * in a single pass over the value logs. Whenever possible, the calculation is performed within the database;
+ * otherwise, the value logs are streamed from the database and the statistics are updated incrementally
+ * by using Welford's algorithm, such that the value logs never need to be held in memory.
  */
 @Service
 public class ValueLogStatsService {
@@ -28,6 +45,9 @@ public class ValueLogStatsService {
     @Autowired
     private ValueLogRepository valueLogRepository;
 
+    @Autowired
+    private DataModelTreeCache dataModelTreeCache;
+
     /**
      * Calculates statistical information from the value logs that are stored in the repository
      * for a certain component and returns them all as a ValueLogStats object. Additionally,
@@ -38,119 +58,337 @@ public class ValueLogStatsService {
      * @param effect	The (optional) effect to apply to the value logs before calculating the stats.
      * @return ValueLogStats object that holds the calculated data
      */
-    public ValueLogStats calculateValueLogStats(Component component, Unit<?> unit, ACAbstractEffect effect) {
+    public ValueLogStats calculateValueLogStats(Component component, Unit<?> unit, ACCompiledEffect effect) {
         //Create empty stats object
         ValueLogStats stats = new ValueLogStats();
 
-        //Retrieve a list of value logs from the repository
-        String componentId = component.getId();
-        List<ValueLog> valueLogList = valueLogRepository.findAllByIdRef(componentId);
+        //Determine the numeric leaves of the data model of the component
+        Map<String, DataModelTreeNode> leaves = dataModelTreeCache.getDataModelOfComponent(component.getId()).getNumericLeafNodesByPath();
+
+        //Check if the stats can be calculated within the database (no effect and no leaves within arrays)
+        boolean inDatabase = (effect == null) && leaves.keySet().stream()
+                .allMatch(path -> (!path.contains("[*]")) && ValueLogRollupRepository.isValidPath(path));
+
+        //Calculate the stats
+        Map<String, FieldAccumulator> accumulators = inDatabase ?
+                calculateInDatabase(component.getId(), leaves, stats) :
+                calculateByStreaming(component.getId(), leaves, effect, stats);
 
         //Return object with default values if no logs are available
-        if (valueLogList.isEmpty()) {
+        if (stats.getNumberLogs() <= 0) {
             return stats;
         }
-        
-        // Apply effect (if required, i.e., no admin or owner) to the value logs before calculating the stats 
-        if (effect != null) {
-        	valueLogList.forEach(effect::apply);
-        }
 
         //Get adapter unit object
         Unit<?> adapterUnit = component.getOperator().getUnitObject();
 
-        //Check if value conversion is desired and possible
-        if ((unit != null) && adapterUnit.isCompatible(unit)) {
-            //Get converter
-            UnitConverter converter = adapterUnit.getConverterTo(unit);
+        //Check for which fields value conversion is desired and possible
+        Map<String, UnitConverter> converters = new LinkedHashMap<>();
+        for (Map.Entry<String, DataModelTreeNode> entry : leaves.entrySet()) {
+            Unit<?> sourceUnit = getSourceUnit(entry.getValue(), adapterUnit);
+            if ((unit != null) && (sourceUnit != null) && sourceUnit.isCompatible(unit)) {
+                converters.put(entry.getKey(), sourceUnit.getConverterTo(unit));
+            }
+        }
 
-            //Iterate over all value logs and convert them
-            for (ValueLog valueLog : valueLogList) {
-                //Convert
-                unitConverterService.convertValueLogValue(valueLog, converter);
+        //Create the stats per field
+        for (Map.Entry<String, FieldAccumulator> entry : accumulators.entrySet()) {
+            //Skip fields without values
+            FieldAccumulator accumulator = entry.getValue();
+            if (accumulator.count <= 0) {
+                continue;
             }
+
+            stats.getFieldStats().put(entry.getKey(), accumulator.toFieldStats(converters.get(entry.getKey())));
         }
 
-        /*
-        Extract data that can be directly derived from the value log list
-        */
-        stats.setNumberLogs(valueLogList.size());
-        stats.setFirstLog(valueLogList.get(0));
-        stats.setLastLog(valueLogList.get(valueLogList.size() - 1));
+        //Take over the stats of the first field as overall stats
+        stats.getFieldStats().values().stream().findFirst().ifPresent(fieldStats -> {
+            stats.setMinimumLog(fieldStats.getMinimumLog());
+            stats.setMaximumLog(fieldStats.getMaximumLog());
+            stats.setAverage(fieldStats.getAverage());
+            stats.setVariance(fieldStats.getVariance());
+            stats.setStandardDeviation(fieldStats.getStandardDeviation());
+        });
 
-        /*
-        Find min log, max log and calculate average
-        */
+        //Convert the values of the returned value logs
+        convertValueLogs(stats, converters);
 
-        //Constant for rounding
-        double roundingConst = Math.pow(10, ROUNDING_DECIMAL_PLACES);
+        //Return the final stats object
+        return stats;
+    }
 
-        //Variables that hold the logs with the smallest/biggest known values
-        ValueLog minLog = valueLogList.get(0);
-        ValueLog maxLog = valueLogList.get(0);
+    /**
+     * Calculates the statistics for the numeric leaves of a component within the database by using a single
+     * aggregation. The number of logs as well as the first and the last log are directly written to the given
+     * stats object.
+     *
+     * @param componentId The ID of the component
+     * @param leaves      Map (path --> leaf) of the numeric leaves of the data model of the component
+     * @param stats       The stats object to write the overall stats to
+     * @return Map (path --> accumulator) of the resulting statistics per path
+     */
+    private Map<String, FieldAccumulator> calculateInDatabase(String componentId, Map<String, DataModelTreeNode> leaves, ValueLogStats stats) {
+        //Perform the aggregation
+        List<String> paths = new ArrayList<>(leaves.keySet());
+        Document result = valueLogRepository.aggregateStatisticsByIdRef(componentId, paths);
 
-        //Accumulator for calculating the average
-        double averageAccumulator = 0;
+        //Create result map
+        Map<String, FieldAccumulator> accumulators = new LinkedHashMap<>();
 
-        //Iterate over all value logs in the list
-        for (ValueLog log : valueLogList) {
-            //Get value of the current log
-            // TODO NOT SUPPORTED AT THE MOMENT:
-            //  Use the DocumentReader-Service for reading all double values of a complex log
-            //double logValue = log.getValue();
-            double logValue = 5.0;
+        //Check if value logs are available
+        if (result == null) {
+            return accumulators;
+        }
 
-            //Update min log if necessary
-            // TODO NOT SUPPORTED AT THE MOMENT
-          //  if (logValue < minLog.getValue()) {
-                minLog = log;
-          //  }
+        //Take over the overall stats
+        stats.setNumberLogs(((Number) result.get("count")).intValue());
+        stats.setFirstLog((ValueLog) result.get("firstLog"));
+        stats.setLastLog((ValueLog) result.get("lastLog"));
 
-            //Update max log if necessary
-            // TODO NOT SUPPORTED AT THE MOMENT
-          //  if (logValue > maxLog.getValue()) {
-                maxLog = log;
-          //  }
+        //Take over the stats per field
+        List<?> fields = result.get("fields", List.class);
+        for (int i = 0; i < paths.size(); i++) {
+            Document field = (Document) fields.get(i);
+            FieldAccumulator accumulator = new FieldAccumulator();
+            accumulator.count = ((Number) field.get("count")).longValue();
+            if (accumulator.count > 0) {
+                accumulator.minimum = ((Number) field.get("min")).doubleValue();
+                accumulator.maximum = ((Number) field.get("max")).doubleValue();
+                accumulator.mean = ((Number) field.get("avg")).doubleValue();
+                double standardDeviation = ((Number) field.get("stdDev")).doubleValue();
+                accumulator.squaredDistanceSum = standardDeviation * standardDeviation * accumulator.count;
+                accumulator.minimumLog = (ValueLog) field.get("minLog");
+                accumulator.maximumLog = (ValueLog) field.get("maxLog");
+            }
+            accumulators.put(paths.get(i), accumulator);
+        }
 
-            //Increase accumulator
-            averageAccumulator += logValue;
+        return accumulators;
+    }
+
+    /**
+     * Calculates the statistics for the numeric leaves of a component by streaming all value logs of the component
+     * from the database and updating the statistics incrementally. Optionally, a given effect is applied to each
+     * value log beforehand. The number of logs as well as the first and the last log are directly written to the
+     * given stats object.
+     *
+     * @param componentId The ID of the component
+     * @param leaves      Map (path --> leaf) of the numeric leaves of the data model of the component
+     * @param effect      The effect to apply to the value logs or null, if no effect is supposed to be applied
+     * @param stats       The stats object to write the overall stats to
+     * @return Map (path --> accumulator) of the resulting statistics per path
+     */
+    private Map<String, FieldAccumulator> calculateByStreaming(String componentId, Map<String, DataModelTreeNode> leaves, ACCompiledEffect effect, ValueLogStats stats) {
+        //Create accumulators and readers for leaves within arrays
+        Map<String, FieldAccumulator> accumulators = new LinkedHashMap<>();
+        Map<String, DocumentReader> arrayReaders = new LinkedHashMap<>();
+        for (Map.Entry<String, DataModelTreeNode> entry : leaves.entrySet()) {
+            accumulators.put(entry.getKey(), new FieldAccumulator());
+            if (entry.getKey().contains("[*]")) {
+                //Empty index queue means that all array elements are read
+                arrayReaders.put(entry.getKey(), new DocumentReader(entry.getValue(), new ArrayDeque<>()));
+            }
         }
 
-        //Finally set min and max log
-        stats.setMinimumLog(minLog);
-        stats.setMaximumLog(maxLog);
+        //Iterate over all value logs, sorted by time
+        int numberLogs = 0;
+        try (MongoCursor<ValueLog> cursor = valueLogRepository.findAllByIdRefAndTimeRangeAsCursor(componentId, null, null)) {
+            while (cursor.hasNext()) {
+                ValueLog valueLog = cursor.next();
 
-        //Calculate and set the average
-        double average = averageAccumulator / ((double) valueLogList.size());
-        stats.setAverage(Math.round(average * roundingConst) / roundingConst);
+                //Apply effect (if required, i.e., no admin or owner) to the value log
+                if (effect != null) {
+                    valueLog = effect.apply(valueLog);
+                }
 
-        /*
-         Calculate the variance and standard deviation
-        */
+                //Update overall stats
+                if (numberLogs == 0) {
+                    stats.setFirstLog(valueLog);
+                }
+                stats.setLastLog(valueLog);
+                numberLogs++;
 
-        //Accumulator for calculating the variance
-        double varianceAccumulator = 0;
+                //Update the stats of all fields
+                for (Map.Entry<String, FieldAccumulator> entry : accumulators.entrySet()) {
+                    DocumentReader arrayReader = arrayReaders.get(entry.getKey());
+                    if (arrayReader == null) {
+                        //Read single value
+                        Double value = DocumentReader.getNumericValueByPath(valueLog.getValue(), entry.getKey());
+                        if (value != null) {
+                            entry.getValue().add(value, valueLog);
+                        }
+                    } else {
+                        //Read all values of the arrays; numeric strings are considered as in the database
+                        for (Object object : readArrayValues(arrayReader, valueLog.getValue())) {
+                            Double value = DocumentReader.toNumericValue(object);
+                            if (value != null) {
+                                entry.getValue().add(value, valueLog);
+                            }
+                        }
+                    }
+                }
+            }
+        }
+        stats.setNumberLogs(numberLogs);
 
-        //Iterate over all value logs in the list
-        for (ValueLog log : valueLogList) {
-            //Get current value
-            // TODO NOT SUPPORTED AT THE MOMENT
-            //double logValue = log.getValue();
-            double logValue = 5.0;
+        return accumulators;
+    }
 
-            //Increase accumulator with respect to the value
-            varianceAccumulator += Math.pow(logValue - average, 2);
+    /**
+     * Converts the values of all value logs that are referenced by a given stats object by using the given
+     * unit converters per path. As the same value log may be referenced multiple times (e.g. as first log
+     * and as minimum log of a field), each value log is converted only once.
+     *
+     * @param stats      The stats object whose value logs are supposed to be converted
+     * @param converters Map (path --> converter) of the unit converters to apply
+     */
+    private void convertValueLogs(ValueLogStats stats, Map<String, UnitConverter> converters) {
+        //Check if conversion is required
+        if (converters.isEmpty()) {
+            return;
         }
 
-        //Calculate the variance
-        double variance = varianceAccumulator / ((double) valueLogList.size());
-        stats.setVariance(Math.round(variance * roundingConst) / roundingConst);
+        //Collect the distinct value logs
+        Set<ValueLog> valueLogs = Collections.newSetFromMap(new IdentityHashMap<>());
+        valueLogs.add(stats.getFirstLog());
+        valueLogs.add(stats.getLastLog());
+        valueLogs.add(stats.getMinimumLog());
+        valueLogs.add(stats.getMaximumLog());
+        for (ValueLogFieldStats fieldStats : stats.getFieldStats().values()) {
+            valueLogs.add(fieldStats.getMinimumLog());
+            valueLogs.add(fieldStats.getMaximumLog());
+        }
+        valueLogs.remove(null);
 
-        //Derive the standard deviation from the variance
-        double standardDeviation = Math.sqrt(variance);
-        stats.setStandardDeviation(Math.round(standardDeviation * roundingConst) / roundingConst);
+        //Convert the values at all paths
+        for (ValueLog valueLog : valueLogs) {
+            converters.forEach((path, converter) -> unitConverterService.convertValueLogValue(valueLog, path, converter));
+        }
+    }
 
-        //Return the final stats object
-        return stats;
+    /**
+     * Reads all values that belong to a leaf within arrays from a given value document by using a given
+     * {@link DocumentReader}. Documents that do not match the structure of the data model are ignored.
+     *
+     * @param arrayReader The reader to use
+     * @param value       The value document to read from
+     * @return The list of read values
+     */
+    private List<Object> readArrayValues(DocumentReader arrayReader, Document value) {
+        try {
+            return arrayReader.getValuesByDataModelTreeNode(value);
+        } catch (RuntimeException e) {
+            return new ArrayList<>();
+        }
+    }
+
+    /**
+     * Determines the unit in which the values of a given leaf are provided. If the leaf does not specify a valid
+     * unit, the unit of the adapter is used.
+     *
+     * @param leaf        The leaf to determine the unit for
+     * @param adapterUnit The unit of the adapter
+     * @return The unit of the leaf
+     */
+    private Unit<?> getSourceUnit(DataModelTreeNode leaf, Unit<?> adapterUnit) {
+        //Check if the leaf specifies a unit
+        if ((leaf == null) || (leaf.getUnit() == null) || leaf.getUnit().isEmpty()) {
+            return adapterUnit;
+        }
+
+        //Parse unit of the leaf
+        try {
+            return Unit.valueOf(leaf.getUnit());
+        } catch (Exception e) {
+            return adapterUnit;
+        }
+    }
+
+    /**
+     * Rounds a given value to {@link #ROUNDING_DECIMAL_PLACES} decimal places.
+     *
+     * @param value The value to round
+     * @return The rounded value
+     */
+    private static double round(double value) {
+        double roundingConst = Math.pow(10, ROUNDING_DECIMAL_PLACES);
+        return Math.round(value * roundingConst) / roundingConst;
+    }
+
+    /**
+     * Accumulator for the statistics of a single numeric field, which is updated incrementally by using
+     * Welford's algorithm for the mean and the variance.
+     */
+    private class FieldAccumulator {
+        private long count = 0;
+        private double mean = 0;
+        private double squaredDistanceSum = 0;
+        private double minimum = Double.POSITIVE_INFINITY;
+        private double maximum = Double.NEGATIVE_INFINITY;
+        private ValueLog minimumLog = null;
+        private ValueLog maximumLog = null;
+
+        /**
+         * Adds a given value of a given value log to the statistics.
+         *
+         * @param value    The value to add
+         * @param valueLog The value log the value belongs to
+         */
+        private void add(double value, ValueLog valueLog) {
+            //Update mean and sum of squared distances
+            count++;
+            double delta = value - mean;
+            mean += delta / count;
+            squaredDistanceSum += delta * (value - mean);
+
+            //Update min log if necessary
+            if (value < minimum) {
+                minimum = value;
+                minimumLog = valueLog;
+            }
+
+            //Update max log if necessary
+            if (value > maximum) {
+                maximum = value;
+                maximumLog = valueLog;
+            }
+        }
+
+        /**
+         * Creates a {@link ValueLogFieldStats} object from the accumulated statistics, converting the values
+         * by using a given unit converter.
+         *
+         * @param converter The unit converter to use or null, if no conversion is required
+         * @return The resulting field stats
+         */
+        private ValueLogFieldStats toFieldStats(UnitConverter converter) {
+            //Calculate the variance
+            double variance = squaredDistanceSum / count;
+            double minimum = this.minimum;
+            double maximum = this.maximum;
+            double average = mean;
+
+            //Convert values if required; the variance scales with the square of the conversion factor
+            if (converter != null) {
+                double factor = converter.convert(1) - converter.convert(0);
+                minimum = unitConverterService.convertValue(minimum, converter);
+                maximum = unitConverterService.convertValue(maximum, converter);
+                average = unitConverterService.convertValue(average, converter);
+                variance = variance * factor * factor;
+            }
+
+            //Create field stats
+            ValueLogFieldStats fieldStats = new ValueLogFieldStats();
+            fieldStats.setCount(count);
+            fieldStats.setMinimumLog(minimumLog);
+            fieldStats.setMaximumLog(maximumLog);
+            fieldStats.setMinimum(Math.min(minimum, maximum));
+            fieldStats.setMaximum(Math.max(minimum, maximum));
+            fieldStats.setAverage(round(average));
+            fieldStats.setVariance(round(variance));
+            fieldStats.setStandardDeviation(round(Math.sqrt(variance)));
+            return fieldStats;
+        }
     }
 }
@@ -0,0 +1,127 @@
+package de.ipvs.as.mbp.service.stats.model;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Objects of this class hold the result of an aggregation of the value logs of a certain component. Depending on
+ * the {@link ValueLogAggregationMode}, either the buckets or the downsampled data points are populated.
+ * They can be used as DTOs in order to retrieve the aggregated time series to the client.
+ */
+public class ValueLogAggregation {
+    //Mode that was used for the aggregation
+    private ValueLogAggregationMode mode;
+
+    //Path of the aggregated numeric field within the values
+    private String path;
+
+    //Width of the buckets in milliseconds (only for bucket mode)
+    private long bucketWidth = 0;
+
+    //Resulting buckets (only for bucket mode)
+    private List<ValueLogBucket> buckets = new ArrayList<>();
+
+    //Resulting data points (only for LTTB mode)
+    private List<ValueLogDataPoint> points = new ArrayList<>();
+
+    /**
+     * Creates a new and empty aggregation result for a given mode and path.
+     *
+     * @param mode The mode that was used for the aggregation
+     * @param path The path of the aggregated numeric field
+     */
+    public ValueLogAggregation(ValueLogAggregationMode mode, String path) {
+        this.mode = mode;
+        this.path = path;
+    }
+
+    /**
+     * Returns the mode that was used for the aggregation.
+     *
+     * @return The mode
+     */
+    public ValueLogAggregationMode getMode() {
+        return mode;
+    }
+
+    /**
+     * Sets the mode that was used for the aggregation.
+     *
+     * @param mode The mode
+     */
+    public void setMode(ValueLogAggregationMode mode) {
+        this.mode = mode;
+    }
+
+    /**
+     * Returns the path of the aggregated numeric field within the values of the value logs.
+     *
+     * @return The path
+     */
+    public String getPath() {
+        return path;
+    }
+
+    /**
+     * Sets the path of the aggregated numeric field within the values of the value logs.
+     *
+     * @param path The path
+     */
+    public void setPath(String path) {
+        this.path = path;
+    }
+
+    /**
+     * Returns the width of the buckets in milliseconds.
+     *
+     * @return The bucket width
+     */
+    public long getBucketWidth() {
+        return bucketWidth;
+    }
+
+    /**
+     * Sets the width of the buckets in milliseconds.
+     *
+     * @param bucketWidth The bucket width
+     */
+    public void setBucketWidth(long bucketWidth) {
+        this.bucketWidth = bucketWidth;
+    }
+
+    /**
+     * Returns the resulting buckets, sorted ascending by time.
+     *
+     * @return The buckets
+     */
+    public List<ValueLogBucket> getBuckets() {
+        return buckets;
+    }
+
+    /**
+     * Sets the resulting buckets.
+     *
+     * @param buckets The buckets
+     */
+    public void setBuckets(List<ValueLogBucket> buckets) {
+        this.buckets = buckets;
+    }
+
+    /**
+     * Returns the resulting downsampled data points, sorted ascending by time.
+     *
+     * @return The data points
+     */
+    public List<ValueLogDataPoint> getPoints() {
+        return points;
+    }
+
+    /**
+     * Sets the resulting downsampled data points.
+     *
+     * @param points The data points
+     */
+    public void setPoints(List<ValueLogDataPoint> points) {
+        this.points = points;
+    }
+}
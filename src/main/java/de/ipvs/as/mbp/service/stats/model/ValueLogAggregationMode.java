@@ -0,0 +1,18 @@
+package de.ipvs.as.mbp.service.stats.model;
+
+/**
+ * Enumeration of the modes that may be used for aggregating the value logs of a component.
+ */
+public enum ValueLogAggregationMode {
+    /**
+     * The value logs are grouped into buckets of a fixed width and descriptive statistics are calculated
+     * for each bucket.
+     */
+    BUCKETS,
+
+    /**
+     * The value logs are downsampled to a given number of data points by using the
+     * Largest-Triangle-Three-Buckets algorithm, which preserves the visual shape of the time series.
+     */
+    LTTB
+}
@@ -0,0 +1,174 @@
+package de.ipvs.as.mbp.service.stats.model;
+
+/**
+ * Objects of this class hold descriptive statistical information about the numeric values of those value logs
+ * of a component that lie within a certain time interval (bucket). They can be used as DTOs in order to retrieve
+ * aggregated time series to the client. If the bucket was calculated from rollups that were written before first
+ * and last values were recorded, the first and the last value may be unavailable or only refer to parts of the
+ * bucket.
+ */
+public class ValueLogBucket {
+    //Start time of the bucket in epoch milliseconds
+    private long time = 0;
+
+    //Number of values within the bucket
+    private long count = 0;
+
+    //Descriptive statistics
+    private double minimum = 0;
+    private double maximum = 0;
+    private double average = 0;
+    private double variance = 0;
+    private Double first = null;
+    private Double last = null;
+
+    /**
+     * Creates a new and empty bucket.
+     */
+    public ValueLogBucket() {
+    }
+
+    /**
+     * Returns the start time of the bucket in epoch milliseconds.
+     *
+     * @return The start time
+     */
+    public long getTime() {
+        return time;
+    }
+
+    /**
+     * Sets the start time of the bucket in epoch milliseconds.
+     *
+     * @param time The start time
+     */
+    public void setTime(long time) {
+        this.time = time;
+    }
+
+    /**
+     * Returns the number of values within the bucket.
+     *
+     * @return The number of values
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * Sets the number of values within the bucket.
+     *
+     * @param count The number of values
+     */
+    public void setCount(long count) {
+        this.count = count;
+    }
+
+    /**
+     * Returns the smallest value within the bucket.
+     *
+     * @return The minimum
+     */
+    public double getMinimum() {
+        return minimum;
+    }
+
+    /**
+     * Sets the smallest value within the bucket.
+     *
+     * @param minimum The minimum
+     */
+    public void setMinimum(double minimum) {
+        this.minimum = minimum;
+    }
+
+    /**
+     * Returns the largest value within the bucket.
+     *
+     * @return The maximum
+     */
+    public double getMaximum() {
+        return maximum;
+    }
+
+    /**
+     * Sets the largest value within the bucket.
+     *
+     * @param maximum The maximum
+     */
+    public void setMaximum(double maximum) {
+        this.maximum = maximum;
+    }
+
+    /**
+     * Returns the average of the values within the bucket.
+     *
+     * @return The average
+     */
+    public double getAverage() {
+        return average;
+    }
+
+    /**
+     * Sets the average of the values within the bucket.
+     *
+     * @param average The average
+     */
+    public void setAverage(double average) {
+        this.average = average;
+    }
+
+    /**
+     * Returns the population variance of the values within the bucket.
+     *
+     * @return The variance
+     */
+    public double getVariance() {
+        return variance;
+    }
+
+    /**
+     * Sets the population variance of the values within the bucket.
+     *
+     * @param variance The variance
+     */
+    public void setVariance(double variance) {
+        this.variance = variance;
+    }
+
+    /**
+     * Returns the oldest value within the bucket.
+     *
+     * @return The first value or null, if not available
+     */
+    public Double getFirst() {
+        return first;
+    }
+
+    /**
+     * Sets the oldest value within the bucket.
+     *
+     * @param first The first value
+     */
+    public void setFirst(Double first) {
+        this.first = first;
+    }
+
+    /**
+     * Returns the most recent value within the bucket.
+     *
+     * @return The last value or null, if not available
+     */
+    public Double getLast() {
+        return last;
+    }
+
+    /**
+     * Sets the most recent value within the bucket.
+     *
+     * @param last The last value
+     */
+    public void setLast(Double last) {
+        this.last = last;
+    }
+}
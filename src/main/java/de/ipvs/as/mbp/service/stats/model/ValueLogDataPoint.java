@@ -0,0 +1,60 @@
+package de.ipvs.as.mbp.service.stats.model;
+
+/**
+ * Objects of this class represent single numeric data points of a (downsampled) time series of value logs.
+ * They can be used as DTOs in order to retrieve the data points to the client.
+ */
+public class ValueLogDataPoint {
+    //Time of the data point in epoch milliseconds
+    private long time;
+
+    //Value of the data point
+    private double value;
+
+    /**
+     * Creates a new data point from a given time and a given value.
+     *
+     * @param time  The time of the data point in epoch milliseconds
+     * @param value The value of the data point
+     */
+    public ValueLogDataPoint(long time, double value) {
+        this.time = time;
+        this.value = value;
+    }
+
+    /**
+     * Returns the time of the data point in epoch milliseconds.
+     *
+     * @return The time
+     */
+    public long getTime() {
+        return time;
+    }
+
+    /**
+     * Sets the time of the data point in epoch milliseconds.
+     *
+     * @param time The time
+     */
+    public void setTime(long time) {
+        this.time = time;
+    }
+
+    /**
+     * Returns the value of the data point.
+     *
+     * @return The value
+     */
+    public double getValue() {
+        return value;
+    }
+
+    /**
+     * Sets the value of the data point.
+     *
+     * @param value The value
+     */
+    public void setValue(double value) {
+        this.value = value;
+    }
+}
@@ -0,0 +1,174 @@
+package de.ipvs.as.mbp.service.stats.model;
+
+import de.ipvs.as.mbp.domain.valueLog.ValueLog;
+
+/**
+ * Objects of this class are models that hold basic descriptive statistical information for the values of a single
+ * numeric field (leaf of the data model) within a set of value logs of a certain component. They are part of
+ * {@link ValueLogStats} objects.
+ */
+public class ValueLogFieldStats {
+    //Number of numeric values of the field
+    private long count = 0;
+
+    //Remarkable logs
+    private ValueLog minimumLog = null;
+    private ValueLog maximumLog = null;
+
+    //Descriptive statistics
+    private double minimum = 0;
+    private double maximum = 0;
+    private double average = 0;
+    private double variance = 0;
+    private double standardDeviation = 0;
+
+    /**
+     * Creates a new and empty field stats object.
+     */
+    public ValueLogFieldStats() {
+    }
+
+    /**
+     * Returns the number of numeric values of the field.
+     *
+     * @return The number of values
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * Sets the number of numeric values of the field.
+     *
+     * @param count The number of values
+     */
+    public void setCount(long count) {
+        this.count = count;
+    }
+
+    /**
+     * Returns the log with the smallest value of the field.
+     *
+     * @return The log with the smallest value
+     */
+    public ValueLog getMinimumLog() {
+        return minimumLog;
+    }
+
+    /**
+     * Sets the log with the smallest value of the field.
+     *
+     * @param minimumLog The log with the smallest value
+     */
+    public void setMinimumLog(ValueLog minimumLog) {
+        this.minimumLog = minimumLog;
+    }
+
+    /**
+     * Returns the log with the biggest value of the field.
+     *
+     * @return The log with the biggest value
+     */
+    public ValueLog getMaximumLog() {
+        return maximumLog;
+    }
+
+    /**
+     * Sets the log with the biggest value of the field.
+     *
+     * @param maximumLog The log with the biggest value
+     */
+    public void setMaximumLog(ValueLog maximumLog) {
+        this.maximumLog = maximumLog;
+    }
+
+    /**
+     * Returns the smallest value of the field.
+     *
+     * @return The minimum
+     */
+    public double getMinimum() {
+        return minimum;
+    }
+
+    /**
+     * Sets the smallest value of the field.
+     *
+     * @param minimum The minimum
+     */
+    public void setMinimum(double minimum) {
+        this.minimum = minimum;
+    }
+
+    /**
+     * Returns the biggest value of the field.
+     *
+     * @return The maximum
+     */
+    public double getMaximum() {
+        return maximum;
+    }
+
+    /**
+     * Sets the biggest value of the field.
+     *
+     * @param maximum The maximum
+     */
+    public void setMaximum(double maximum) {
+        this.maximum = maximum;
+    }
+
+    /**
+     * Returns the average value of the field.
+     *
+     * @return The average
+     */
+    public double getAverage() {
+        return average;
+    }
+
+    /**
+     * Sets the average value of the field.
+     *
+     * @param average The average
+     */
+    public void setAverage(double average) {
+        this.average = average;
+    }
+
+    /**
+     * Returns the variance of the values of the field.
+     *
+     * @return The variance
+     */
+    public double getVariance() {
+        return variance;
+    }
+
+    /**
+     * Sets the variance of the values of the field.
+     *
+     * @param variance The variance
+     */
+    public void setVariance(double variance) {
+        this.variance = variance;
+    }
+
+    /**
+     * Returns the standard deviation of the values of the field.
+     *
+     * @return The standard deviation
+     */
+    public double getStandardDeviation() {
+        return standardDeviation;
+    }
+
+    /**
+     * Sets the standard deviation of the values of the field.
+     *
+     * @param standardDeviation The standard deviation
+     */
+    public void setStandardDeviation(double standardDeviation) {
+        this.standardDeviation = standardDeviation;
+    }
+}
@@ -2,9 +2,14 @@ package de.ipvs.as.mbp.service.stats.model;
 
 import de.ipvs.as.mbp.domain.valueLog.ValueLog;
 
+import java.util.LinkedHashMap;
+import java.util.Map;
+
 /**
  * Objects of this class are models that hold basic descriptive statistical information for a set of value logs
- * of a certain component. They can be used as DTOs in order to retrieve the stats to the client.
+ * of a certain component. They can be used as DTOs in order to retrieve the stats to the client. The statistics
+ * are provided per numeric field of the values; the minimum and maximum logs as well as the average, variance and
+ * standard deviation on top level refer to the first numeric field of the data model.
  *
  * @author Jan
  */
@@ -23,6 +28,9 @@ public class ValueLogStats {
     private double variance = 0;
     private double standardDeviation = 0;
 
+    //Map (path --> stats) of the statistics per numeric field
+    private Map<String, ValueLogFieldStats> fieldStats = new LinkedHashMap<>();
+
     /**
      * Creates a new and empty stats object.
      */
@@ -172,4 +180,22 @@ public class ValueLogStats {
     public void setStandardDeviation(double standardDeviation) {
         this.standardDeviation = standardDeviation;
     }
+
+    /**
+     * Returns the statistics of all numeric fields of the logs as map (path --> stats).
+     *
+     * @return The statistics per field
+     */
+    public Map<String, ValueLogFieldStats> getFieldStats() {
+        return fieldStats;
+    }
+
+    /**
+     * Sets the statistics of all numeric fields of the logs as map (path --> stats).
+     *
+     * @param fieldStats The statistics per field
+     */
+    public void setFieldStats(Map<String, ValueLogFieldStats> fieldStats) {
+        this.fieldStats = fieldStats;
+    }
 }
@@ -10,18 +10,59 @@ import de.ipvs.as.mbp.domain.valueLog.ValueLog;
 import de.ipvs.as.mbp.repository.*;
 import de.ipvs.as.mbp.service.receiver.ValueLogObserver;
 import de.ipvs.as.mbp.service.receiver.ValueLogReceiver;
-import de.ipvs.as.mbp.service.testing.executor.TestExecutor;
+import de.ipvs.as.mbp.service.rules.RuleExecutionRecorder;
 import de.ipvs.as.mbp.web.rest.helper.DeploymentWrapper;
 import org.bson.Document;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.context.annotation.Lazy;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
+import javax.annotation.PreDestroy;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 
 @Component
 public class TestAnalyzer implements ValueLogObserver {
+    //Scheduler that triggers the checks whether running tests are finished
+    private final ScheduledExecutorService completionScheduler;
+
+    //Pool of worker threads that perform the (blocking) completion checks
+    private final ThreadPoolExecutor workerPool;
+
+    //Pool of threads that write the captured values, separate from the workers that may wait for these writes
+    private final ThreadPoolExecutor captureWriterPool;
+
+    //Map (sensor ID -> capture) of the value captures of the running tests, by the sensors they capture
+    private final Map<String, TestValueCapture> capturesBySensor = new ConcurrentHashMap<>();
+
+    //Map (run ID -> capture) of the value captures of the running tests
+    private final Map<String, TestValueCapture> capturesByRun = new ConcurrentHashMap<>();
+
+    //Map (sensor ID -> run ID) of the sensors whose rule traces are assigned to test runs
+    private final Map<String, String> tracedSensors = new ConcurrentHashMap<>();
+
+    //Map (component ID -> time in milliseconds) of the last value logs received for the components of active tests
+    private final Map<String, Long> lastValueTimes = new ConcurrentHashMap<>();
+
+    //Bounds of the interval in milliseconds between two checks whether a test is finished
+    private final long minCheckInterval;
+    private final long maxCheckInterval;
+
+    //Maximum number of values that are buffered per test run before they are written to the database
+    private final int captureCapacity;
+
+    //Maximum number of values per test run that could not be written to the database yet before the run fails
+    private final int maxUnwrittenValues;
+
     @Autowired
     private TestDetailsRepository testDetailsRepository;
 
@@ -32,11 +73,10 @@ public class TestAnalyzer implements ValueLogObserver {
     private TestRepository testRepo;
 
     @Autowired
-    private RuleRepository ruleRepository;
+    private RuleExecutionRecorder ruleExecutionRecorder;
 
-    @Lazy //Circular dependency
     @Autowired
-    private TestExecutor testExecutor;
+    private RuleRepository ruleRepository;
 
     @Autowired
     private DeploymentWrapper deploymentWrapper;
@@ -44,39 +84,138 @@ public class TestAnalyzer implements ValueLogObserver {
     @Autowired
     private TestReportRepository testReportRepository;
 
+    @Autowired
+    private TestValueBatchRepository testValueBatchRepository;
+
     /**
      * Registers the TestEngine as an Observer to the ValueLogReceiver which then will be notified about incoming value logs.
+     * In addition, the settings for checking whether tests are finished are passed (auto-wired).
      *
-     * @param valueLogReceiver The value log receiver instance to use
+     * @param valueLogReceiver  The value log receiver instance to use
+     * @param minCheckInterval  The time in milliseconds before the first check whether a test is finished
+     * @param maxCheckInterval  The maximum time in milliseconds between two checks, reached by doubling the interval
+     * @param captureCapacity    The maximum number of values that are buffered per test run in memory
+     * @param maxUnwrittenValues The maximum number of values per test run that are kept in memory while they cannot
+     *                           be written to the database, before the test run fails
+     * @param maxConcurrentRuns  The maximum number of test runs that are executed concurrently
      */
     @Autowired
-    private TestAnalyzer(ValueLogReceiver valueLogReceiver) {
+    private TestAnalyzer(ValueLogReceiver valueLogReceiver,
+                         @Value("${testingTool.completionCheckInterval:500}") long minCheckInterval,
+                         @Value("${testingTool.completionCheckMaxInterval:10000}") long maxCheckInterval,
+                         @Value("${testingTool.captureBufferCapacity:10000}") int captureCapacity,
+                         @Value("${testingTool.captureMaxUnwrittenValues:100000}") int maxUnwrittenValues,
+                         @Value("${testingTool.maxConcurrentTests:4}") int maxConcurrentRuns) {
+        //Sanity checks
+        if (minCheckInterval <= 0) {
+            throw new IllegalArgumentException("Check interval must be positive.");
+        } else if (maxCheckInterval < minCheckInterval) {
+            throw new IllegalArgumentException("Maximum check interval must not be smaller than the check interval.");
+        } else if (captureCapacity <= 0) {
+            throw new IllegalArgumentException("Capture buffer capacity must be positive.");
+        } else if (maxUnwrittenValues < captureCapacity) {
+            throw new IllegalArgumentException("Maximum number of unwritten values must not be smaller than the capture buffer capacity.");
+        } else if (maxConcurrentRuns <= 0) {
+            throw new IllegalArgumentException("Maximum number of concurrent tests must be positive.");
+        }
+
+        this.minCheckInterval = minCheckInterval;
+        this.maxCheckInterval = maxCheckInterval;
+        this.captureCapacity = captureCapacity;
+        this.maxUnwrittenValues = maxUnwrittenValues;
+
+        //Create scheduler for the completion checks
+        ScheduledThreadPoolExecutor scheduledExecutor = new ScheduledThreadPoolExecutor(1, runnable -> {
+            Thread thread = new Thread(runnable, "test-completion-check");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduledExecutor.setRemoveOnCancelPolicy(true);
+        this.completionScheduler = scheduledExecutor;
+
+        //Create pools of workers for the completion checks and the capture writes, allowing one thread per concurrent test run
+        this.workerPool = createPool(maxConcurrentRuns, "test-analyzer-worker-");
+        this.captureWriterPool = createPool(maxConcurrentRuns, "test-capture-writer-");
+
         valueLogReceiver.registerObserver(this);
     }
 
 
-    // List of all active Tests/testValues
-    Map<String, LinkedHashMap<Long, Document>> testValues = new HashMap<>();
+    /**
+     * Starts capturing the incoming values of the sensors of a test run. Each sensor can only be captured by one
+     * test run at a time; the values of different test runs are kept apart from each other. In addition, the traces
+     * of the rules that are triggered by the sensors are recorded and assigned to the test run, until the tracing
+     * is stopped by {@link #stopTracing(String)}.
+     *
+     * @param runId       ID of the test run (i.e. of its test report)
+     * @param testSensors list of sensors of the test run
+     */
+    public synchronized void startCapture(String runId, List<Sensor> testSensors) {
+        //Sanity check
+        if (capturesByRun.containsKey(runId)) {
+            throw new IllegalStateException("Values of test run " + runId + " are already captured.");
+        }
+
+        Set<String> sensorIds = testSensors.stream().map(Sensor::getId).collect(Collectors.toCollection(LinkedHashSet::new));
+        for (String sensorId : sensorIds) {
+            if (capturesBySensor.containsKey(sensorId)) {
+                throw new IllegalStateException("Sensor " + sensorId + " is already used by another test run.");
+            }
+        }
 
+        //Register the capture for the run and all of its sensors
+        TestValueCapture capture = new TestValueCapture(runId, sensorIds, captureCapacity, maxUnwrittenValues,
+                testValueBatchRepository, captureWriterPool);
+        capturesByRun.put(runId, capture);
+        sensorIds.forEach(sensorId -> {
+            capturesBySensor.put(sensorId, capture);
+            tracedSensors.put(sensorId, runId);
+        });
+        updateTracedComponents();
+    }
 
     /**
-     * Returns a list of all incoming values of the sensors of the activated tests.
+     * Stops capturing the values of the sensors of a test run and returns the captured values. The traces of the
+     * rules that are triggered by the sensors are still assigned to the test run, such that the traces of rules
+     * that fire after the last captured values are considered when evaluating the test run.
      *
-     * @return list of test values
+     * @param runId ID of the test run (i.e. of its test report)
+     * @return value-list (sensor ID -> (time -> value)) of the simulated sensors of the test run
      */
-    public Map<String, LinkedHashMap<Long, Document>> getTestValues() {
-        return testValues;
+    public Map<String, LinkedHashMap<Long, Document>> finishCapture(String runId) {
+        TestValueCapture capture;
+        synchronized (this) {
+            capture = capturesByRun.remove(runId);
+            if (capture == null) {
+                return new HashMap<>();
+            }
+            for (String sensorId : capture.getSensorIds()) {
+                capturesBySensor.remove(sensorId, capture);
+                lastValueTimes.remove(sensorId);
+            }
+        }
+        return capture.finish();
     }
 
     /**
-     * Sets a list of all incoming values of the sensors of the activated tests.
+     * Stops assigning the traces of the rules that are triggered by the sensors of a test run to the test run.
+     * This is supposed to be called as soon as the test run was evaluated.
      *
-     * @param testValues list of test values
+     * @param runId ID of the test run (i.e. of its test report)
      */
-    public void setTestValues(Map<String, LinkedHashMap<Long, Document>> testValues) {
-        this.testValues = testValues;
+    public synchronized void stopTracing(String runId) {
+        if (tracedSensors.values().removeIf(runId::equals)) {
+            updateTracedComponents();
+        }
     }
 
+    /**
+     * Passes the traced sensors together with the IDs of their test runs to the {@link RuleExecutionRecorder},
+     * such that the traces of the triggered rules are always recorded.
+     */
+    private void updateTracedComponents() {
+        ruleExecutionRecorder.setTracedComponents(new HashMap<>(tracedSensors));
+    }
 
     /**
      * Stores all Values from the active Tests
@@ -85,17 +224,12 @@ public class TestAnalyzer implements ValueLogObserver {
      */
     @Override
     public void onValueReceived(ValueLog valueLog) {
-        if (!testExecutor.getActiveTests().containsKey(valueLog.getIdref())) {
+        TestValueCapture capture = capturesBySensor.get(valueLog.getIdref());
+        if (capture == null) {
             return;
         }
-        if (!testValues.containsKey(valueLog.getIdref())) {
-            LinkedHashMap<Long, Document> newList = new LinkedHashMap<>();
-            newList.put(valueLog.getTime().getEpochSecond(), valueLog.getValue());
-            testValues.put(valueLog.getIdref(), newList);
-        } else {
-            Map<Long, Document> oldList = testValues.get(valueLog.getIdref());
-            oldList.put(valueLog.getTime().getEpochSecond(), valueLog.getValue());
-        }
+        lastValueTimes.put(valueLog.getIdref(), System.currentTimeMillis());
+        capture.capture(valueLog.getIdref(), valueLog.getTime().getEpochSecond(), valueLog.getValue());
     }
 
     /**
@@ -116,35 +250,142 @@ public class TestAnalyzer implements ValueLogObserver {
     }
 
     /**
-     * Sets the End time of the test, if every Sensor of a test is finished.
+     * Waits asynchronously until every sensor of a test is finished, then sets the end time of the test and
+     * finishes the capture of the values of the test run (see {@link #startCapture(String, List)}).
+     * Instead of querying the deployer continuously, the sensors are checked periodically with an interval
+     * that starts at the configured check interval and doubles after each check up to the maximum interval.
+     * As long as value logs of the sensors keep arriving, the test is considered running without querying
+     * the deployer at all. The checks are performed on a pool of worker threads, which also completes the returned
+     * future, such that its dependent actions do not block the checks of other tests.
      *
-     * @param reportId Id of the the report in which to save the information of the test end time
-     * @return value-list of the simulated Sensor
+     * @param reportId   Id of the the report in which to save the information of the test end time (the run ID)
+     * @param testId     Id of the test whose sensors are checked
+     * @param useNewData information if the sensors of the test (true) or the sensors of the report (false) are checked
+     * @return a future that completes with the value-list of the simulated sensors of the test run as soon as the
+     * test is finished
      */
-    public Map<String, LinkedHashMap<Long, Document>> isFinished(String reportId, String testId, Boolean useNewData) {
-        boolean response = true;
+    public CompletableFuture<Map<String, LinkedHashMap<Long, Document>>> awaitFinished(String reportId, String testId, Boolean useNewData) {
         //Try to find specific test report and test
         Optional<TestReport> testReportOptional = testReportRepository.findById(reportId);
         Optional<TestDetails> testDetailsOptional = testDetailsRepository.findById(testId);
 
-        if (testReportOptional.isPresent() && testDetailsOptional.isPresent()) {
-            TestReport testReport = testReportOptional.get();
-            TestDetails test = testDetailsOptional.get();
+        if (!testReportOptional.isPresent() || !testDetailsOptional.isPresent()) {
+            return CompletableFuture.completedFuture(finishCapture(reportId));
+        }
 
-            while (response) {
-                // testRunning
-                if (useNewData) {
-                    response = areSensorsRunning(test.getSensor());
-                } else {
-                    response = areSensorsRunning(testReport.getSensor());
+        TestReport testReport = testReportOptional.get();
+        List<Sensor> sensors = useNewData ? testDetailsOptional.get().getSensor() : testReport.getSensor();
+
+        //Schedule the first check
+        CompletableFuture<Map<String, LinkedHashMap<Long, Document>>> future = new CompletableFuture<>();
+        scheduleCompletionCheck(future, testReport, sensors, System.currentTimeMillis(), minCheckInterval);
+        return future;
+    }
+
+    /**
+     * Schedules a check whether the sensors of a test are finished after a given delay. The scheduler thread
+     * only hands the check over to the pool of workers.
+     *
+     * @param future     The future to complete as soon as the test is finished
+     * @param testReport The report in which to save the information of the test end time
+     * @param sensors    The sensors of the test
+     * @param lastCheck  The time in milliseconds of the previous check
+     * @param delay      The delay in milliseconds after which the check is performed
+     */
+    private void scheduleCompletionCheck(CompletableFuture<Map<String, LinkedHashMap<Long, Document>>> future,
+                                         TestReport testReport, List<Sensor> sensors, long lastCheck, long delay) {
+        try {
+            completionScheduler.schedule(() -> {
+                try {
+                    workerPool.execute(() -> checkCompletion(future, testReport, sensors, lastCheck, delay));
+                } catch (RejectedExecutionException e) {
+                    //Analyzer was shut down
+                    future.completeExceptionally(e);
                 }
+            }, delay, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            //Analyzer was shut down
+            future.completeExceptionally(e);
+        }
+    }
+
+    /**
+     * Checks whether the sensors of a test are finished. If so, the end time of the test is saved and the given
+     * future is completed; otherwise, the next check is scheduled with a doubled delay.
+     *
+     * @param future     The future to complete as soon as the test is finished
+     * @param testReport The report in which to save the information of the test end time
+     * @param sensors    The sensors of the test
+     * @param lastCheck  The time in milliseconds of the previous check
+     * @param delay      The delay in milliseconds that was used for this check
+     */
+    private void checkCompletion(CompletableFuture<Map<String, LinkedHashMap<Long, Document>>> future,
+                                 TestReport testReport, List<Sensor> sensors, long lastCheck, long delay) {
+        //Stop checking if the future was cancelled
+        if (future.isDone()) {
+            return;
+        }
+
+        try {
+            //Sensors that sent value logs since the last check are still running
+            long now = System.currentTimeMillis();
+            if (receivedValuesSince(sensors, lastCheck) || areSensorsRunning(sensors)) {
+                scheduleCompletionCheck(future, testReport, sensors, now, Math.min(delay * 2, maxCheckInterval));
+                return;
             }
+
             // set and save end time
             testReport.setEndTestTimeNow();
             testReportRepository.save(testReport);
+            future.complete(finishCapture(testReport.getId()));
+        } catch (Exception e) {
+            future.completeExceptionally(e);
         }
+    }
 
-        return this.getTestValues();
+    /**
+     * Checks if value logs of at least one of the given sensors were received since a given time.
+     *
+     * @param sensors list of sensors to check
+     * @param time    the time in milliseconds
+     * @return boolean, if value logs were received since the given time
+     */
+    private boolean receivedValuesSince(List<Sensor> sensors, long time) {
+        for (Sensor sensor : sensors) {
+            Long lastValueTime = lastValueTimes.get(sensor.getId());
+            if ((lastValueTime != null) && (lastValueTime >= time)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Creates a pool with a given number of daemon threads, which time out when idle.
+     *
+     * @param size             The number of threads
+     * @param threadNamePrefix The prefix of the names of the threads
+     * @return The created pool
+     */
+    private static ThreadPoolExecutor createPool(int size, String threadNamePrefix) {
+        AtomicInteger threadCounter = new AtomicInteger(0);
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(size, size, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), runnable -> {
+            Thread thread = new Thread(runnable, threadNamePrefix + threadCounter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        pool.allowCoreThreadTimeOut(true);
+        return pool;
+    }
+
+    /**
+     * Shuts down the scheduler and the workers for the completion checks and the capture writes.
+     */
+    @PreDestroy
+    public void shutdown() {
+        completionScheduler.shutdownNow();
+        workerPool.shutdownNow();
+        captureWriterPool.shutdownNow();
     }
 
 
@@ -275,7 +516,7 @@ public class TestAnalyzer implements ValueLogObserver {
                 triggerID.add(rule.getTrigger().getId());
             }
 
-            testValues = extractTriggerValues(testValues, startTime, endTime, ruleNames, triggerID);
+            testValues = extractTriggerValues(testValues, testReport, startTime, endTime, ruleNames, triggerID);
         }
 
 
@@ -284,22 +525,33 @@ public class TestAnalyzer implements ValueLogObserver {
 
     /**
      * Extract the correct trigger values saved in the database (Testing) for the rules included in a specific test that occurred between the start and end times.
+     * Only the trigger values that were caused by the sensors of the given test run are considered, such that test runs
+     * that are executed concurrently do not affect each other (see {@link #findRunTraces(TestReport, Collection)}).
      *
      * @param testValues list of all
+     * @param testReport report of the test run
      * @param startTime  of the executed test
      * @param endTime    of the executed test
      * @param ruleNames  which should be observed during the test
      * @param triggerID  trigger id's of the rules to be observed
      * @return list of trigger values
      */
-    private Map<String, List<Document>> extractTriggerValues(Map<String, List<Document>> testValues, Integer startTime, long endTime, List<String> ruleNames, List<String> triggerID) {
+    private Map<String, List<Document>> extractTriggerValues(Map<String, List<Document>> testValues, TestReport testReport, Integer startTime, long endTime, List<String> ruleNames, List<String> triggerID) {
+        // Get all trigger values of the test run and group them by trigger
+        Map<String, List<Testing>> runTriggerValues = new HashMap<>();
+        for (Testing testing : findRunTraces(testReport, triggerID)) {
+            if (testing.getTrigger() != null) {
+                runTriggerValues.computeIfAbsent(testing.getTrigger().getId(), k -> new ArrayList<>()).add(testing);
+            }
+        }
+
         // Get all trigger values for  the test rules between start and end time
         for (int i = 0; i < ruleNames.size(); i++) {
             List<Document> values = new ArrayList<>();
             String ruleName = ruleNames.get(i);
-            if (testRepo.findAllByTriggerId(triggerID.get(i)) != null) {
+            if (runTriggerValues.containsKey(triggerID.get(i))) {
                 // Only check the list of trigger values of the triggers included in the test
-                List<Testing> test = testRepo.findAllByTriggerId(triggerID.get(i));
+                List<Testing> test = runTriggerValues.get(triggerID.get(i));
                 for (Testing testing : test) {
                     if (testing.getRule().contains(ruleName)) {
                         long timeTriggerVal = 0;
@@ -333,6 +585,79 @@ public class TestAnalyzer implements ValueLogObserver {
     }
 
 
+    /**
+     * Returns the traces of the rules that were triggered during a test run. These are the traces that were assigned
+     * to the test run when they were recorded. As a fallback, traces of the given triggers that were not assigned to any
+     * test run are considered as well, if they were caused by a sensor of the test run between its start and end time.
+     *
+     * @param testReport report of the test run
+     * @param triggerIds IDs of the triggers whose unassigned traces are considered
+     * @return list of traces of the test run
+     */
+    private List<Testing> findRunTraces(TestReport testReport, Collection<String> triggerIds) {
+        // Write buffered trigger values to the database
+        ruleExecutionRecorder.flush();
+
+        // Get all trigger values that were assigned to the test run within a single query
+        List<Testing> traces = new ArrayList<>(testRepo.findAllByTestRunId(testReport.getId()));
+
+        // Add the unassigned trigger values that were caused by the sensors of the test run during the test
+        Set<String> sensorIds = testReport.getSensor().stream().map(Sensor::getId).collect(Collectors.toSet());
+        long startTime = testReport.getStartTimeUnix();
+        long endTime = testReport.getEndTimeUnix();
+        for (String triggerId : new LinkedHashSet<>(triggerIds)) {
+            for (Testing testing : testRepo.findAllByTriggerIdAndTestRunIdsIsNull(triggerId)) {
+                if (testing.getValueLogEventNameMap() == null) {
+                    continue;
+                }
+                for (ValueLog valueLog : testing.getValueLogEventNameMap().values()) {
+                    if ((valueLog != null) && sensorIds.contains(valueLog.getIdref())
+                            && (valueLog.getTime().getEpochSecond() >= startTime) && (valueLog.getTime().getEpochSecond() <= endTime)) {
+                        traces.add(testing);
+                        break;
+                    }
+                }
+            }
+        }
+
+        return traces;
+    }
+
+    /**
+     * Counts the executions of the rules that correspond to a test run during the test run, based on the traces
+     * of the rules that were triggered during the test run (see {@link #findRunTraces(TestReport, Collection)}).
+     * Executions of the same rules that are caused by other test runs or components are not counted.
+     *
+     * @param reportId ID of the report of the test run
+     * @return map (rule name -> number of executions) of the corresponding rules of the test run
+     */
+    public Map<String, Integer> countRuleExecutions(String reportId) {
+        Map<String, Integer> executions = new HashMap<>();
+
+        //Try to find specific test report
+        Optional<TestReport> testReportOptional = testReportRepository.findById(reportId);
+
+        if (testReportOptional.isPresent()) {
+            TestReport testReport = testReportOptional.get();
+
+            // get all triggerID's and rule names of the corresponding rules to the test
+            List<String> triggerIds = new ArrayList<>();
+            for (Rule rule : getCorrespondingRules(testReport.getRules(), testReport.getSensor())) {
+                executions.put(rule.getName(), 0);
+                triggerIds.add(rule.getTrigger().getId());
+            }
+
+            // Each trace represents one execution of a rule
+            for (Testing testing : findRunTraces(testReport, triggerIds)) {
+                if (testing.getRule() != null) {
+                    testing.getRule().forEach(ruleName -> executions.computeIfPresent(ruleName, (name, count) -> count + 1));
+                }
+            }
+        }
+
+        return executions;
+    }
+
     /**
      * Returns all rules that belong to a sensor that is part of the test and thus also belongs to the tested IoT-application.
      *
@@ -0,0 +1,324 @@
+package de.ipvs.as.mbp.service.testing.analyzer;
+
+import de.ipvs.as.mbp.domain.testing.TestValueBatch;
+import de.ipvs.as.mbp.repository.TestValueBatchRepository;
+import org.bson.Document;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Captures the incoming values of the sensors of a single test run, isolated from the values of other test runs.
+ * The values are buffered in memory up to a given capacity; as soon as the capacity is reached, all buffered
+ * values are moved to batches, which are written to the database within a single insert by a given executor,
+ * such that the capturing threads are not blocked by the database. Batches whose insert failed are kept in memory
+ * and written again with the next batches, up to a given maximum number of unwritten values; if this maximum is
+ * exceeded, the captured values are discarded and the capture fails. When the test run is finished, an insert
+ * that is already in progress is awaited, while an insert that is still queued at the executor is skipped, and the
+ * batches are merged with the remaining buffered values, before the written batches are removed from the database.
+ */
+class TestValueCapture {
+
+    //ID of the test run (i.e. of its test report)
+    private final String runId;
+
+    //IDs of the sensors of the test run
+    private final Set<String> sensorIds;
+
+    //Maximum number of buffered values
+    private final int capacity;
+
+    //Maximum number of values within the batches that have not been written to the database yet
+    private final int maxUnwrittenValues;
+
+    //Repository to write the batches to
+    private final TestValueBatchRepository batchRepository;
+
+    //Executor that writes the batches to the database
+    private final Executor spillExecutor;
+
+    //Map (sensor ID -> buffer) of the buffered values
+    private final Map<String, SensorBuffer> buffers = new HashMap<>();
+
+    //Number of buffered values
+    private int bufferedValues = 0;
+
+    //Sequence number of the next batch
+    private long nextSequence = 0;
+
+    //Map (sequence number -> batch) of the batches that have not been written to the database yet
+    private final Map<Long, TestValueBatch> unwrittenBatches = new TreeMap<>();
+
+    //Number of values within the unwritten batches
+    private int unwrittenValues = 0;
+
+    //True, if batches were written to the database
+    private boolean batchesWritten = false;
+
+    //Completes when the currently running insert of batches is finished; null, if no insert is running
+    private CompletableFuture<Void> runningInsert = null;
+
+    //True, if the running insert is in progress; false, if it is still queued at the executor
+    private boolean insertInProgress = false;
+
+    //True, if the capture was finished
+    private boolean finished = false;
+
+    //True, if the capture failed because the maximum number of unwritten values was exceeded
+    private boolean failed = false;
+
+    /**
+     * Creates a new capture for a given test run.
+     *
+     * @param runId           The ID of the test run
+     * @param sensorIds       The IDs of the sensors of the test run
+     * @param capacity           The maximum number of buffered values
+     * @param maxUnwrittenValues The maximum number of values within batches that could not be written yet
+     * @param batchRepository    The repository to write the batches to
+     * @param spillExecutor      The executor that writes the batches to the database
+     */
+    TestValueCapture(String runId, Set<String> sensorIds, int capacity, int maxUnwrittenValues,
+                     TestValueBatchRepository batchRepository, Executor spillExecutor) {
+        this.runId = runId;
+        this.sensorIds = Collections.unmodifiableSet(sensorIds);
+        this.capacity = capacity;
+        this.maxUnwrittenValues = maxUnwrittenValues;
+        this.batchRepository = batchRepository;
+        this.spillExecutor = spillExecutor;
+    }
+
+    /**
+     * Returns the ID of the test run.
+     *
+     * @return The run ID
+     */
+    String getRunId() {
+        return runId;
+    }
+
+    /**
+     * Returns the IDs of the sensors of the test run.
+     *
+     * @return The unmodifiable set of sensor IDs
+     */
+    Set<String> getSensorIds() {
+        return sensorIds;
+    }
+
+    /**
+     * Captures a value of a sensor of the test run.
+     *
+     * @param sensorId The ID of the sensor
+     * @param time     The time of the value in seconds since epoch
+     * @param value    The value
+     */
+    synchronized void capture(String sensorId, long time, Document value) {
+        //Values of a failed capture are discarded
+        if (failed) {
+            return;
+        }
+
+        buffers.computeIfAbsent(sensorId, k -> new SensorBuffer()).add(time, value);
+
+        //Write the buffered values to the database if the capacity is reached
+        if (++bufferedValues >= capacity) {
+            spill();
+        }
+    }
+
+    /**
+     * Finishes the capture and returns all captured values of the test run, including the ones that were written
+     * to the database in the meantime. Values of a sensor with the same time are replaced by the latest one.
+     * If the capture failed or the batches that were written to the database cannot be read, an exception is thrown.
+     *
+     * @return Map (sensor ID -> (time -> value)) of the captured values, sorted ascending by time of arrival
+     * @throws IllegalStateException If the capture failed, since too many values could not be written
+     */
+    Map<String, LinkedHashMap<Long, Document>> finish() {
+        //Stop writing further batches and wait for an insert that is in progress; a queued insert is skipped
+        CompletableFuture<Void> insert;
+        synchronized (this) {
+            finished = true;
+            insert = insertInProgress ? runningInsert : null;
+        }
+        if (insert != null) {
+            insert.join();
+        }
+
+        synchronized (this) {
+            //Discard the values of a failed capture
+            if (failed) {
+                buffers.clear();
+                bufferedValues = 0;
+                removeWrittenBatches();
+                throw new IllegalStateException("Captured values of test run " + runId + " were discarded, since more than "
+                        + maxUnwrittenValues + " values could not be written to the database.");
+            }
+
+            //Collect the batches by sequence number, since batches may have been written multiple times
+            Map<Long, TestValueBatch> batches = new TreeMap<>();
+            if (batchesWritten) {
+                for (TestValueBatch batch : batchRepository.findAllByRunIdOrderBySequenceAsc(runId)) {
+                    batches.put(batch.getSequence(), batch);
+                }
+            }
+            batches.putAll(unwrittenBatches);
+
+            //Merge the batches
+            Map<String, LinkedHashMap<Long, Document>> values = new HashMap<>();
+            for (TestValueBatch batch : batches.values()) {
+                LinkedHashMap<Long, Document> sensorValues = values.computeIfAbsent(batch.getSensorId(), k -> new LinkedHashMap<>());
+                for (int i = 0; i < batch.getTimes().size(); i++) {
+                    sensorValues.put(batch.getTimes().get(i), batch.getValues().get(i));
+                }
+            }
+
+            //Merge the buffered values
+            for (Map.Entry<String, SensorBuffer> entry : buffers.entrySet()) {
+                LinkedHashMap<Long, Document> sensorValues = values.computeIfAbsent(entry.getKey(), k -> new LinkedHashMap<>());
+                SensorBuffer buffer = entry.getValue();
+                for (int i = 0; i < buffer.times.size(); i++) {
+                    sensorValues.put(buffer.times.get(i), buffer.values.get(i));
+                }
+            }
+            buffers.clear();
+            bufferedValues = 0;
+            unwrittenBatches.clear();
+            unwrittenValues = 0;
+
+            //Remove the written batches from the database
+            removeWrittenBatches();
+
+            return values;
+        }
+    }
+
+    /**
+     * Removes the batches that were written to the database, if any.
+     */
+    private void removeWrittenBatches() {
+        if (!batchesWritten) {
+            return;
+        }
+        try {
+            batchRepository.deleteAllByRunId(runId);
+        } catch (Exception e) {
+            System.err.println("Failed to remove the captured values of test run " + runId + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Moves all buffered values to batches, using one batch per sensor, and clears the buffer. The batches are
+     * written to the database asynchronously, unless an insert is already running. If the maximum number of
+     * unwritten values is exceeded, all unwritten values are discarded and the capture fails.
+     */
+    private void spill() {
+        for (Map.Entry<String, SensorBuffer> entry : buffers.entrySet()) {
+            TestValueBatch batch = new TestValueBatch(runId, entry.getKey(), nextSequence, entry.getValue().times, entry.getValue().values);
+            unwrittenBatches.put(nextSequence++, batch);
+            unwrittenValues += batch.getTimes().size();
+        }
+        buffers.clear();
+        bufferedValues = 0;
+
+        //Fail if the batches cannot be written fast enough
+        if (unwrittenValues > maxUnwrittenValues) {
+            System.err.println("Discarding the captured values of test run " + runId + ", since more than "
+                    + maxUnwrittenValues + " values could not be written to the database.");
+            failed = true;
+            unwrittenBatches.clear();
+            unwrittenValues = 0;
+            return;
+        }
+
+        //Batches that are spilled while an insert is running are written by this insert
+        if ((runningInsert != null) || finished) {
+            return;
+        }
+
+        CompletableFuture<Void> insert = new CompletableFuture<>();
+        runningInsert = insert;
+        try {
+            spillExecutor.execute(() -> writeBatches(insert));
+        } catch (RejectedExecutionException e) {
+            //Keep the batches in memory
+            runningInsert = null;
+            insert.complete(null);
+        }
+    }
+
+    /**
+     * Writes the unwritten batches to the database, until no unwritten batches remain or an insert fails.
+     * Batches whose insert failed are kept in memory, such that they are written again with the next spill
+     * or merged when the capture is finished.
+     *
+     * @param insert The future to complete when the insert is finished
+     */
+    private void writeBatches(CompletableFuture<Void> insert) {
+        try {
+            while (true) {
+                //Take a snapshot of the unwritten batches
+                List<TestValueBatch> batches;
+                synchronized (this) {
+                    if (unwrittenBatches.isEmpty() || finished || failed) {
+                        return;
+                    }
+                    batches = new ArrayList<>(unwrittenBatches.values());
+                    insertInProgress = true;
+                }
+
+                try {
+                    batchRepository.insert(batches);
+                } catch (Exception e) {
+                    System.err.println("Failed to write " + batches.size() + " batches of captured values of test run "
+                            + runId + ", keeping them in memory: " + e.getMessage());
+                    synchronized (this) {
+                        //Batches may have been written partially
+                        batchesWritten = true;
+                        insertInProgress = false;
+                    }
+                    return;
+                }
+
+                //Remove the written batches from memory
+                synchronized (this) {
+                    batchesWritten = true;
+                    insertInProgress = false;
+                    for (TestValueBatch batch : batches) {
+                        if (unwrittenBatches.remove(batch.getSequence()) != null) {
+                            unwrittenValues -= batch.getTimes().size();
+                        }
+                    }
+                }
+            }
+        } finally {
+            synchronized (this) {
+                runningInsert = null;
+                insertInProgress = false;
+            }
+            insert.complete(null);
+        }
+    }
+
+    /**
+     * Buffer for the values of a single sensor.
+     */
+    private static class SensorBuffer {
+        private final List<Long> times = new ArrayList<>();
+        private final List<Document> values = new ArrayList<>();
+
+        private void add(long time, Document value) {
+            times.add(time);
+            values.add(value);
+        }
+    }
+}
@@ -28,6 +28,7 @@ import org.springframework.stereotype.Component;
 
 import java.time.Instant;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 import java.util.stream.Collectors;
 
 /**
@@ -51,14 +52,15 @@ public class TestExecutor {
     @Autowired
     private TestAnalyzer testAnalyzer;
 
+    @Autowired
+    private TestRunScheduler testRunScheduler;
+
     @Autowired
     private DeployerDispatcher deployerDispatcher;
 
     @Autowired
     private SettingsService settingsService;
 
-    // List of all active Tests
-    Map<String, TestDetails> activeTests = new HashMap<>();
     @Value("#{'${testingTool.sensorSimulators}'.split(',')}")
     List<String> SIMULATOR_LIST;
 
@@ -79,70 +81,58 @@ public class TestExecutor {
 
 
     /**
-     * Returns a list of all active tests.
+     * Starts capturing the values of the sensors of a test run, isolated from other test runs that are executed
+     * concurrently. The captured values are returned as soon as the test run is finished.
      *
-     * @return activeTests
+     * @param reportId    ID of the report of the test run
+     * @param testSensors list of sensors of the test run
      */
-    public Map<String, TestDetails> getActiveTests() {
-        return activeTests;
+    public void activateTest(String reportId, List<Sensor> testSensors) {
+        testAnalyzer.startCapture(reportId, testSensors);
     }
 
     /**
-     * Sets a list of all active tests.
+     * Stops capturing the values of the sensors of a test run and discards the captured values.
      *
-     * @param activeTests active/running tests
+     * @param reportId ID of the report of the test run
      */
-    public void setActiveTests(Map<String, TestDetails> activeTests) {
-        this.activeTests = activeTests;
+    public void deactivateTest(String reportId) {
+        testAnalyzer.finishCapture(reportId);
     }
 
-
     /**
-     * Puts the test and the corresponding sensors into a list and resets the list of values that where previously saved in other test executions.
+     * Returns the IDs of a given list of sensors.
+     *
+     * @param sensors list of sensors
+     * @return list of sensor IDs
      */
-    public void activateTest(List<Sensor> testSensors, String testId, Boolean useNewData) {
-        Optional<TestDetails> testDetailsOptional = testDetailsRepository.findById(testId);
-
-        if (testDetailsOptional.isPresent()) {
-            TestDetails test = testDetailsOptional.get();
-            Map<String, TestDetails> activeTests = getActiveTests();
-            Map<String, LinkedHashMap<Long, Document>> list =
-                    testAnalyzer.getTestValues();
-
-
-            for (Sensor sensor : testSensors) {
-                activeTests.put(sensor.getId(), test);
-                list.remove(sensor.getId());
-            }
-
-
-            setActiveTests(activeTests);
-            testAnalyzer.setTestValues(list);
-        }
-
+    private List<String> getSensorIds(List<Sensor> sensors) {
+        return (sensors == null) ? new ArrayList<>() : sensors.stream().map(Sensor::getId).collect(Collectors.toList());
     }
 
     /**
-     * Removes the test and the corresponding sensors from the list of activated sensors/tests.
+     * Submits the rerun of a specific test execution with the same configurations and sensor values to the
+     * {@link TestRunScheduler}. Since reruns switch the platform to the demo mode, they are executed exclusively.
+     * The method returns immediately; the returned future completes when the test is finished and its report was saved.
      *
-     * @param testSensors list of sensors included into de specific test to deactivate
-     * @param useNewData  information if new sensor data should be generated or not
+     * @param test         tests to be repeated
+     * @param testReportId test report with all needed information for the repetition
+     * @return a future that completes when the test execution is finished
      */
-    public void deactivateTest(List<Sensor> testSensors, Boolean useNewData) {
-        Map<String, TestDetails> activeTests = getActiveTests();
-        Map<String, LinkedHashMap<Long, Document>> list = testAnalyzer.getTestValues();
-
-        setActiveTests(activeTests);
-        testAnalyzer.setTestValues(list);
+    public CompletableFuture<Void> rerunTest(TestDetails test, String testReportId) {
+        List<Sensor> sensors = testReportRepository.findById(testReportId).map(TestReport::getSensor).orElse(null);
+        return testRunScheduler.submit(getSensorIds(sensors), true, () -> runRerun(test, testReportId));
     }
 
     /**
-     * Reruns a specific test execution with the same configurations and sensor values.
+     * Reruns a specific test execution with the same configurations and sensor values. The method returns as soon as
+     * the test was started; the returned future completes when the test is finished and its report was saved.
      *
      * @param test         tests to be repeated
      * @param testReportId test report with all needed information for the repetition
+     * @return a future that completes when the test execution is finished
      */
-    public void rerunTest(TestDetails test, String testReportId) {
+    private CompletableFuture<Void> runRerun(TestDetails test, String testReportId) {
         // Get the current (old) status of the demonstration mode
         Settings currSetting = settingsService.getSettings();
 
@@ -161,8 +151,10 @@ public class TestExecutor {
         }
 
         TestReport updatedReport = new TestReport();
+        CompletableFuture<Void> execution;
         try {
             Optional<TestReport> oldReportOptional = testReportRepository.findById(testReportId);
+            execution = CompletableFuture.completedFuture(null);
 
             if (oldReportOptional.isPresent()) {
                 TestReport oldReport = oldReportOptional.get();
@@ -171,7 +163,7 @@ public class TestExecutor {
                 if (testReportRepository.findById(reportId).isPresent()) {
                     updatedReport = testReportRepository.findById(reportId).get();
                     // add test and sensors to the activation list
-                    activateTest(updatedReport.getSensor(), test.getId(), true);
+                    activateTest(reportId, updatedReport.getSensor());
 
                     // Enable rules that belong to the test
                     enableRules(test);
@@ -182,33 +174,76 @@ public class TestExecutor {
                     // start Sensors
                     sensorRerunService(updatedReport, oldReport.getSimulationList());
 
-                    // Get List of all simulated Values
-                    Map<String, LinkedHashMap<Long, Document>> valueList = testAnalyzer.isFinished(reportId, test.getId(), false);
-
-                    List<Rule> rulesBefore = testAnalyzer.getCorrespondingRules(updatedReport.getRules(), updatedReport.getSensor());
-                    saveAmountRulesTriggered(reportId, rulesBefore);
-                    saveValues(test, reportId, valueList);
-
-                    deactivateTest(test.getSensor(), false);
-                    // Check the test for success
-                    testAnalyzer.testSuccess(test.getId(), reportId);
+                    // Get List of all simulated Values as soon as the test is finished
+                    execution = testAnalyzer.awaitFinished(reportId, test.getId(), false)
+                            .thenAccept(valueList -> completeTest(test, reportId, valueList));
                 }
             }
         } catch (Exception e) {
-            updatedReport.setEndTestTimeNow();
-            updatedReport.setSuccessful("ERROR DURING TEST");
-            List<Rule> rulesAfter = testAnalyzer.getCorrespondingRules(test.getRules(), test.getSensor());
-            saveAmountRulesTriggered(updatedReport.getId(), rulesAfter);
-        } finally {
+            execution = CompletableFuture.failedFuture(e);
+        }
+
+        String reportId = updatedReport.getId();
+        boolean resetDemoMode = setDemoModeFalseAfterTest;
+        return execution.exceptionally(e -> {
+            handleTestError(reportId);
+            return null;
+        }).whenComplete((result, e) -> {
             // Set the demo mode again to false if test finsihed or an error occured and it was set to false before the rerun
-            if (setDemoModeFalseAfterTest) {
+            if (resetDemoMode) {
                 currSetting.setDemoMode(false);
                 try {
                     settingsService.updateSettings(currSetting);
-                } catch (MqttException e) {
-                    e.printStackTrace();
+                } catch (MqttException ex) {
+                    ex.printStackTrace();
                 }
             }
+        });
+    }
+
+    /**
+     * Completes a finished test execution by saving the generated values and the executed rules and by
+     * checking the test for success.
+     *
+     * @param test      executed test
+     * @param reportId  of the report in which to save the test execution information
+     * @param valueList generated value list
+     */
+    private void completeTest(TestDetails test, String reportId, Map<String, LinkedHashMap<Long, Document>> valueList) {
+        try {
+            saveAmountRulesTriggered(reportId);
+            saveValues(test, reportId, valueList);
+
+            // Check the test for success
+            testAnalyzer.testSuccess(test.getId(), reportId);
+        } finally {
+            // Traces of the rules are not assigned to the evaluated test run anymore
+            testAnalyzer.stopTracing(reportId);
+        }
+    }
+
+    /**
+     * Marks a test execution that failed with an error in its report.
+     *
+     * @param reportId of the report in which to save the error or null, if no report was created
+     */
+    private void handleTestError(String reportId) {
+        if (reportId == null) {
+            return;
+        }
+
+        try {
+            // Release the sensors of the test run
+            deactivateTest(reportId);
+
+            testReportRepository.findById(reportId).ifPresent(report -> {
+                report.setEndTestTimeNow();
+                report.setSuccessful("ERROR DURING TEST");
+                testReportRepository.save(report);
+            });
+            saveAmountRulesTriggered(reportId);
+        } finally {
+            testAnalyzer.stopTracing(reportId);
         }
     }
 
@@ -337,62 +372,67 @@ public class TestExecutor {
 
 
     /**
-     * Starts the test and saves all values form the sensor.
+     * Submits the execution of a test to the {@link TestRunScheduler}, such that it is executed as soon as none
+     * of its sensors is used by another test run. The method returns immediately; the returned future completes
+     * when the test is finished and its report was saved.
      *
      * @param test test to be executed
+     * @return a future that completes when the test execution is finished
      */
-    public void executeTest(TestDetails test) {
-        TestReport testReport = new TestReport();
+    public CompletableFuture<Void> executeTest(TestDetails test) {
+        return testRunScheduler.submit(getSensorIds(test.getSensor()), false, () -> runTest(test));
+    }
+
+    /**
+     * Starts the test and saves all values form the sensor. The method returns as soon as the test was started;
+     * the returned future completes when the test is finished and its report was saved.
+     *
+     * @param test test to be executed
+     * @return a future that completes when the test execution is finished
+     */
+    private CompletableFuture<Void> runTest(TestDetails test) {
+        String reportId = null;
+        CompletableFuture<Void> execution;
         try {
-            String reportId = setReportInformation(test);
+            reportId = setReportInformation(test);
+            String finalReportId = reportId;
 
             // add test and sensors to the activation list
-            activateTest(test.getSensor(), test.getId(), true);
+            activateTest(reportId, test.getSensor());
 
             // start all components relevant for the test
             startTest(test);
 
-            // Get List of all simulated Values
-            Map<String, LinkedHashMap<Long, Document>> valueList = testAnalyzer.isFinished(reportId, test.getId(), true);
-
-            List<Rule> rulesBefore = testAnalyzer.getCorrespondingRules(test.getRules(), test.getSensor());
-            saveAmountRulesTriggered(reportId, rulesBefore);
-            saveValues(test, reportId, valueList);
-            deactivateTest(test.getSensor(), false);
-            testAnalyzer.testSuccess(test.getId(), reportId);
+            // Get List of all simulated Values as soon as the test is finished
+            execution = testAnalyzer.awaitFinished(reportId, test.getId(), true)
+                    .thenAccept(valueList -> completeTest(test, finalReportId, valueList));
         } catch (Exception e) {
-            testReport.setEndTestTimeNow();
-            testReport.setSuccessful("ERROR DURING TEST");
-            List<Rule> rulesAfter = testAnalyzer.getCorrespondingRules(test.getRules(), test.getSensor());
-            stopTest(test.getId());
-            saveAmountRulesTriggered(testReport.getId(), rulesAfter);
-
+            execution = CompletableFuture.failedFuture(e);
         }
+
+        String failedReportId = reportId;
+        return execution.exceptionally(e -> {
+            stopTest(test.getId());
+            handleTestError(failedReportId);
+            return null;
+        });
     }
 
     /**
      * Calculate and save the amount of rule executions during the test for the corresponding rules of the application.
+     * Only the executions that were caused by the test run are counted, such that test runs that are executed
+     * concurrently do not affect each other (see {@link TestAnalyzer#countRuleExecutions(String)}).
      *
-     * @param reportId    of the report in which to save the test execution information
-     * @param rulesBefore information about the state of the rules before the test execution
+     * @param reportId of the report in which to save the test execution information
      */
-    private void saveAmountRulesTriggered(String reportId, List<Rule> rulesBefore) {
-        Optional<TestReport> reportOptional = testReportRepository.findById(reportId);
-
-        if (reportOptional.isPresent()) {
-            TestReport report = reportOptional.get();
-            List<Rule> rulesAfter = testAnalyzer.getCorrespondingRules(report.getRules(), report.getSensor());
-            Map<String, Integer> amountTriggered = new HashMap<>();
-            for (Rule ruleBefore : rulesBefore) {
-                for (Rule ruleAfter : rulesAfter) {
-                    if (ruleAfter.getName().equals(ruleBefore.getName())) {
-                        amountTriggered.put(ruleAfter.getName(), ruleAfter.getExecutions() - ruleBefore.getExecutions());
-                    }
-                }
-            }
+    private void saveAmountRulesTriggered(String reportId) {
+        Map<String, Integer> amountTriggered = testAnalyzer.countRuleExecutions(reportId);
+
+        // Save the amounts to the current state of the report
+        testReportRepository.findById(reportId).ifPresent(report -> {
             report.setAmountRulesTriggered(amountTriggered);
             testReportRepository.save(report);
-        }
+        });
     }
 
     /**
@@ -0,0 +1,223 @@
+package de.ipvs.as.mbp.service.testing.executor;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Schedules the execution of test runs, such that multiple tests can be executed concurrently while the number of
+ * concurrent test runs is limited. Since the sensors of a test are started and stopped by the test run, test runs
+ * that share sensors are never executed at the same time. Exclusive test runs (e.g. reruns, which switch the
+ * deployer of the whole platform to the demo mode) are only executed while no other test run is executed.
+ * Waiting test runs are started in the order of their submission, as long as they do not conflict with
+ * running ones; however, no test run overtakes a waiting exclusive test run.
+ */
+@Component
+public class TestRunScheduler {
+
+    //Pool of worker threads that start the test runs
+    private final ThreadPoolExecutor workerPool;
+
+    //Test runs that wait for being started, in the order of their submission
+    private final LinkedList<ScheduledRun> waitingRuns = new LinkedList<>();
+
+    //Test runs that are currently executed
+    private final List<ScheduledRun> runningRuns = new ArrayList<>();
+
+    //Maximum number of concurrent test runs
+    private final int maxConcurrentRuns;
+
+    /**
+     * Creates the scheduler by passing the settings (auto-wired).
+     *
+     * @param maxConcurrentRuns The maximum number of test runs that are executed concurrently
+     */
+    @Autowired
+    public TestRunScheduler(@Value("${testingTool.maxConcurrentTests:4}") int maxConcurrentRuns) {
+        //Sanity check
+        if (maxConcurrentRuns <= 0) {
+            throw new IllegalArgumentException("Maximum number of concurrent tests must be positive.");
+        }
+
+        this.maxConcurrentRuns = maxConcurrentRuns;
+
+        //Create pool of daemon worker threads
+        AtomicInteger threadCounter = new AtomicInteger(0);
+        this.workerPool = new ThreadPoolExecutor(maxConcurrentRuns, maxConcurrentRuns, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), runnable -> {
+            Thread thread = new Thread(runnable, "test-run-" + threadCounter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.workerPool.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Submits a test run for execution. The test run is started as soon as it does not conflict with other test
+     * runs anymore by calling the given supplier on a worker thread; the future that is returned by the supplier
+     * is supposed to complete when the test run is finished. The method returns immediately.
+     *
+     * @param sensorIds The IDs of the sensors that are used by the test run
+     * @param exclusive True, if no other test run may be executed at the same time; false otherwise
+     * @param execution Supplier that starts the test run and returns a future of its completion
+     * @return A future that completes when the test run is finished
+     */
+    public CompletableFuture<Void> submit(Collection<String> sensorIds, boolean exclusive, Supplier<CompletableFuture<Void>> execution) {
+        //Sanity check
+        if (execution == null) {
+            throw new IllegalArgumentException("Execution must not be null.");
+        }
+
+        ScheduledRun run = new ScheduledRun((sensorIds == null) ? Collections.emptySet() : new HashSet<>(sensorIds),
+                exclusive, execution);
+        synchronized (this) {
+            waitingRuns.addLast(run);
+        }
+        dispatch();
+        return run.result;
+    }
+
+    /**
+     * Returns the number of test runs that are currently executed.
+     *
+     * @return The number of running test runs
+     */
+    public synchronized int getNumberRunningRuns() {
+        return runningRuns.size();
+    }
+
+    /**
+     * Returns the number of test runs that wait for being started.
+     *
+     * @return The number of waiting test runs
+     */
+    public synchronized int getNumberWaitingRuns() {
+        return waitingRuns.size();
+    }
+
+    /**
+     * Shuts down the worker pool.
+     */
+    @PreDestroy
+    public void shutdown() {
+        workerPool.shutdownNow();
+    }
+
+    /**
+     * Starts all waiting test runs that do not conflict with running ones, as long as the maximum number
+     * of concurrent test runs is not reached.
+     */
+    private void dispatch() {
+        List<ScheduledRun> startedRuns = new ArrayList<>();
+        synchronized (this) {
+            Iterator<ScheduledRun> iterator = waitingRuns.iterator();
+            while (iterator.hasNext() && (runningRuns.size() < maxConcurrentRuns)) {
+                ScheduledRun run = iterator.next();
+                if (isCompatible(run)) {
+                    iterator.remove();
+                    runningRuns.add(run);
+                    startedRuns.add(run);
+                } else if (run.exclusive) {
+                    //Do not let other runs overtake a waiting exclusive run
+                    break;
+                }
+            }
+        }
+        startedRuns.forEach(this::start);
+    }
+
+    /**
+     * Checks whether a given test run may be executed together with the currently running test runs.
+     *
+     * @param run The test run to check
+     * @return True, if the test run does not conflict with running ones; false otherwise
+     */
+    private boolean isCompatible(ScheduledRun run) {
+        if (runningRuns.isEmpty()) {
+            return true;
+        } else if (run.exclusive) {
+            return false;
+        }
+
+        for (ScheduledRun runningRun : runningRuns) {
+            if (runningRun.exclusive || !Collections.disjoint(runningRun.sensorIds, run.sensorIds)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Starts a given test run on a worker thread.
+     *
+     * @param run The test run to start
+     */
+    private void start(ScheduledRun run) {
+        try {
+            workerPool.execute(() -> {
+                CompletableFuture<Void> execution;
+                try {
+                    execution = run.execution.get();
+                } catch (Exception e) {
+                    execution = CompletableFuture.failedFuture(e);
+                }
+                execution.whenComplete((result, e) -> finish(run, e));
+            });
+        } catch (RejectedExecutionException e) {
+            //Scheduler was shut down
+            finish(run, e);
+        }
+    }
+
+    /**
+     * Completes a given test run and starts the next waiting test runs.
+     *
+     * @param run   The finished test run
+     * @param error The error that occurred during the test run or null, if it was successful
+     */
+    private void finish(ScheduledRun run, Throwable error) {
+        synchronized (this) {
+            runningRuns.remove(run);
+        }
+
+        if (error == null) {
+            run.result.complete(null);
+        } else {
+            run.result.completeExceptionally(error);
+        }
+        dispatch();
+    }
+
+    /**
+     * Holds the state of a submitted test run.
+     */
+    private static class ScheduledRun {
+        private final Set<String> sensorIds;
+        private final boolean exclusive;
+        private final Supplier<CompletableFuture<Void>> execution;
+        private final CompletableFuture<Void> result = new CompletableFuture<>();
+
+        private ScheduledRun(Set<String> sensorIds, boolean exclusive, Supplier<CompletableFuture<Void>> execution) {
+            this.sensorIds = sensorIds;
+            this.exclusive = exclusive;
+            this.execution = execution;
+        }
+    }
+}
@@ -6,8 +6,9 @@ import de.ipvs.as.mbp.domain.user.User;
 import de.ipvs.as.mbp.domain.user_entity.MBPEntity;
 import de.ipvs.as.mbp.domain.user_entity.UserEntity;
 import de.ipvs.as.mbp.error.*;
-import de.ipvs.as.mbp.repository.ACPolicyRepository;
 import de.ipvs.as.mbp.repository.UserEntityRepository;
+import de.ipvs.as.mbp.service.access_control.ACCompiledCondition;
+import de.ipvs.as.mbp.service.access_control.ACPolicyCache;
 import de.ipvs.as.mbp.service.access_control.ACPolicyEvaluationService;
 import de.ipvs.as.mbp.service.event_handler.ICreateEventHandler;
 import de.ipvs.as.mbp.service.validation.ICreateValidator;
@@ -15,6 +16,7 @@ import de.ipvs.as.mbp.service.validation.IDeleteValidator;
 import de.ipvs.as.mbp.util.C;
 import de.ipvs.as.mbp.util.Pages;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
 import org.springframework.hateoas.EntityModel;
@@ -24,8 +26,12 @@ import org.springframework.stereotype.Service;
 
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
 import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
@@ -41,10 +47,10 @@ public class UserEntityService {
     private UserService userService;
 
     @Autowired
-    private ACPolicyRepository policyRepository;
+    private ACPolicyEvaluationService policyEvaluationService;
 
     @Autowired
-    private ACPolicyEvaluationService policyEvaluationService;
+    private ACPolicyCache policyCache;
 
 
     /**
@@ -60,13 +66,15 @@ public class UserEntityService {
      * @return the list of (filtered) user entities.
      */
     public <E extends UserEntity> List<E> getAllWithAccessControlCheck(UserEntityRepository<E> repository, ACAccessType accessType, ACAccessRequest accessRequest) {
-        return filterForAdminOwnerAndPolicies(repository.findAll(DEFAULT_SORT), accessType, accessRequest);
+        return getPageWithAccessControlCheck(repository, accessType, accessRequest, Pages.ALL);
     }
 
     /**
      * Retrieves a page of user entities from the database. Note that only those entities are returned,
      * that are either owned by the requesting user or for which a policy grants reading access
-     * to the requesting user.
+     * to the requesting user. The entities without owner or owned by the requesting user come first
+     * and are paged by the database; the page is then filled up with the entities for which a policy
+     * grants access, whose policies are evaluated in bulk.
      *
      * @param <E>           the type of the {@link UserEntity}.
      * @param repository    the repository to retrieve the user entities from.
@@ -77,8 +85,42 @@ public class UserEntityService {
      * @return the page of (filtered) user entities.
      */
     public <E extends UserEntity> List<E> getPageWithAccessControlCheck(UserEntityRepository<E> repository, ACAccessType accessType, ACAccessRequest accessRequest, Pageable pageable) {
-        // Extract requested page from all entities
-        return Pages.page(getAllWithAccessControlCheck(repository, accessType, accessRequest), pageable);
+        // Retrieve the currently logged in user from the database
+        User user = userService.getLoggedInUser();
+        if (user == null) {
+            return Collections.emptyList();
+        }
+
+        //User must be loginable
+        requireLoginable(user);
+
+        // Let the database sort and page the entities
+        if (pageable.isUnpaged()) {
+            pageable = Pages.ALL;
+        }
+        Pageable sortedPageable = PageRequest.of(pageable.getPageNumber(), pageable.getPageSize(), DEFAULT_SORT);
+
+        // Admin users are allowed to access everything
+        if (user.isAdmin()) {
+            return repository.findAll(sortedPageable).getContent();
+        }
+
+        // Add the requested page of entities without owner or owned by the requesting user
+        List<E> entities = new ArrayList<>();
+        long offset = sortedPageable.getOffset();
+        long ownedCount = repository.countByOwnerOrWithoutOwner(user.getId());
+        if (offset < ownedCount) {
+            entities.addAll(repository.findByOwnerOrWithoutOwner(user.getId(), sortedPageable));
+        }
+
+        // Fill up the page with entities with a policy that grants access to the requesting user (not owned by the user)
+        int remaining = pageable.getPageSize() - entities.size();
+        if (remaining > 0) {
+            List<E> candidates = repository.findWithPoliciesAndNotOwnedBy(user.getId(), DEFAULT_SORT);
+            entities.addAll(filterForPolicies(candidates, user, accessType, accessRequest, Math.max(0, offset - ownedCount), remaining));
+        }
+
+        return entities;
     }
 
     /**
@@ -314,29 +356,88 @@ public class UserEntityService {
 
         // Requesting user is a non-admin user
         List<E> filteredEntities = new ArrayList<>();
-        // Add all entities without owner or owned by the requesting user
-        filteredEntities.addAll(entities.stream()
-                .filter(e -> checkOwner(user.getId(), e))
-                .collect(Collectors.toList()));
+        List<E> candidates = new ArrayList<>();
+        for (E entity : entities) {
+            if (checkOwner(user.getId(), entity)) {
+                // Add all entities without owner or owned by the requesting user
+                filteredEntities.add(entity);
+            } else {
+                candidates.add(entity);
+            }
+        }
         // Add all entities with a policy that grants access to the requesting user (not owned by the user)
-        filteredEntities.addAll(entities.stream()
-                .filter(e -> !checkOwner(user.getId(), e))
-                .filter(e -> checkPermission(e, accessType, accessRequest))
-                .collect(Collectors.toList()));
+        filteredEntities.addAll(filterForPolicies(candidates, user, accessType, accessRequest, 0, Long.MAX_VALUE));
 
         return filteredEntities;
     }
 
+    /**
+     * Filters a list of entities for those for which a policy grants access to a given user. The policies
+     * referenced by the entities and their conditions are retrieved in bulk and evaluated in memory.
+     *
+     * @param <E>           the type of the entities.
+     * @param entities      the entities to filter.
+     * @param user          the requesting {@link User}.
+     * @param accessType    the {@link ACAccessType} to check.
+     * @param accessRequest the {@link ACAccessRequest} containing the contextual information
+     *                      of the requesting user required to evaluate the policies.
+     * @param skip          the number of entities granting access to skip.
+     * @param limit         the maximum number of entities to return.
+     * @return the list of entities for which access is granted.
+     */
+    private <E extends IACRequestedEntity> List<E> filterForPolicies(List<E> entities, User user, ACAccessType accessType, ACAccessRequest accessRequest, long skip, long limit) {
+        if (entities.isEmpty() || limit <= 0) {
+            return new ArrayList<>();
+        }
+
+        // Retrieve all policies referenced by the entities and their conditions
+        Set<String> policyIds = new HashSet<>();
+        entities.forEach(e -> policyIds.addAll(getAccessControlPolicyIds(e)));
+        Map<String, ACPolicy> policies = policyCache.getPolicies(policyIds).stream()
+                .collect(Collectors.toMap(ACPolicy::getId, p -> p));
+        Map<String, ACCompiledCondition> conditions = policyCache.getCompiledConditions(policies.values().stream()
+                .map(ACPolicy::getConditionId).collect(Collectors.toSet()));
+
+        // Evaluate the policies of each entity
+        List<E> grantedEntities = new ArrayList<>();
+        long skipped = 0;
+        for (E entity : entities) {
+            List<ACPolicy> entityPolicies = getAccessControlPolicyIds(entity).stream()
+                    .map(policies::get)
+                    .filter(Objects::nonNull)
+                    .collect(Collectors.toList());
+            if (entityPolicies.stream().noneMatch(p -> p.getAccessTypes().contains(accessType))) {
+                continue;
+            }
+
+            ACAccess access = new ACAccess(accessType, user, entity);
+            if (entityPolicies.stream().anyMatch(p -> conditions.getOrDefault(p.getConditionId(), ACPolicyCache.DENY).evaluate(access, accessRequest))) {
+                if (skipped < skip) {
+                    skipped++;
+                } else if (grantedEntities.size() < limit) {
+                    grantedEntities.add(entity);
+                } else {
+                    break;
+                }
+            }
+        }
+
+        return grantedEntities;
+    }
+
+    private List<String> getAccessControlPolicyIds(IACRequestedEntity entity) {
+        return entity.getAccessControlPolicyIds() == null ? Collections.emptyList() : entity.getAccessControlPolicyIds();
+    }
+
     public <E extends IACRequestedEntity> List<ACPolicy> getPoliciesForEntity(E entity) {
-        List<ACPolicy> policies = new ArrayList<>();
-        entity.getAccessControlPolicyIds().forEach(policyId -> policyRepository.findById(policyId).ifPresent(policies::add));
-        return policies;
+        // Retrieve the policies from the cache (the cached policies must not be modified)
+        return policyCache.getPolicies(entity.getAccessControlPolicyIds());
     }
 
     public <E extends IACRequestedEntity> List<ACPolicy> getPoliciesForEntityAndAccessType(E entity, ACAccessType accessType) {
-        List<ACPolicy> policies = new ArrayList<>();
-        entity.getAccessControlPolicyIds().forEach(policyId -> policyRepository.findByIdAndAccessTypeAll(policyId, C.listOf(accessType.toString())).ifPresent(policies::add));
-        return policies;
+        return getPoliciesForEntity(entity).stream()
+                .filter(p -> p.getAccessTypes().contains(accessType))
+                .collect(Collectors.toList());
     }
 
     public void requireAdmin() throws MissingAdminPrivilegesException {
@@ -418,10 +519,10 @@ public class UserEntityService {
     }
 
     public <E extends IACRequestedEntity> boolean checkPermission(E entity, ACAccessType accessType, ACAccessRequest accessRequest) {
-        if (policyRepository.existsByIdAnyAndAccessTypeAll(entity.getAccessControlPolicyIds(), C.listOf(accessType.toString()))) {
-            return getPoliciesForEntity(entity)
-                    .stream()
-                    .anyMatch(p -> policyEvaluationService.evaluate(p, new ACAccess(accessType, userService.getLoggedInUser(), entity), accessRequest));
+        List<ACPolicy> policies = getPoliciesForEntity(entity);
+        if (policies.stream().anyMatch(p -> p.getAccessTypes().contains(accessType))) {
+            ACAccess access = new ACAccess(accessType, userService.getLoggedInUser(), entity);
+            return policies.stream().anyMatch(p -> policyEvaluationService.evaluate(p, access, accessRequest));
         }
         return false;
     }
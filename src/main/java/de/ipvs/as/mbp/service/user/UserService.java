@@ -8,6 +8,7 @@ import de.ipvs.as.mbp.error.MBPException;
 import de.ipvs.as.mbp.error.MissingAdminPrivilegesException;
 import de.ipvs.as.mbp.repository.*;
 import de.ipvs.as.mbp.security.SecurityUtils;
+import de.ipvs.as.mbp.service.access_control.ACPolicyCache;
 import de.ipvs.as.mbp.service.testing.TestEngine;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Lazy;
@@ -46,6 +47,9 @@ public class UserService {
     @Autowired
     private ACEffectRepository effectRepository;
 
+    @Autowired
+    private ACPolicyCache policyCache;
+
     @Autowired
     private TestDetailsRepository testDetailsRepository;
 
@@ -265,12 +269,14 @@ public class UserService {
 
     private void deletePolicies(String userId) {
         policyRepository.deleteByOwnerId(userId);
+        policyCache.invalidateAll();
         effectRepository.findByOwnerId(userId).forEach(entity -> {
             if (policyRepository.countUsingEffect(entity.getId()) > 0) {
                 throw new MBPException(HttpStatus.CONFLICT, "The effect '" + entity.getName() + "' is still used by at least one policy and thus cannot be deleted.");
             }
-            // Actually delete condition in the database
+            // Actually delete effect in the database
             effectRepository.deleteById(entity.getId());
+            policyCache.invalidateEffect(entity.getId());
         });
         conditionRepository.findByOwnerId(userId).forEach(entity -> {
             if (policyRepository.countUsingCondition(entity.getId()) > 0) {
@@ -278,6 +284,7 @@ public class UserService {
             }
             // Actually delete condition in the database
             conditionRepository.deleteById(entity.getId());
+            policyCache.invalidateCondition(entity.getId());
         });
     }
 
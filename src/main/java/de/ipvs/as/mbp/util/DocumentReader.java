@@ -33,8 +33,8 @@ public class DocumentReader {
      * @return Dequeue with all maximum predecessor array indices in the order from root node.
      */
     public static ArrayDeque<Integer> getMaxArrayIndexOfQueueOfNode(DataModelTreeNode node) {
-        // Get all the predecessors of the node and add the node itself to it
-        List<DataModelTreeNode> predecessorsOfNode = node.getPredecessors();
+        // Get all the predecessors of the node and add the node itself to it (copy, as the node must not be modified)
+        List<DataModelTreeNode> predecessorsOfNode = new ArrayList<>(node.getPredecessors());
         predecessorsOfNode.add(node);
 
         // Remove the root if existing in the path
@@ -54,6 +54,48 @@ public class DocumentReader {
         return maxArrayIndexQueue;
     }
 
+    /**
+     * Returns the numeric value at a given dot-separated path of object keys (e.g. "sensors.temperature")
+     * within a given {@link Document}. Numeric strings are parsed as well.
+     *
+     * @param docToRead The Document to read from.
+     * @param path      The dot-separated path of the numeric field.
+     * @return The numeric value as double or null, if no numeric value exists at the path.
+     */
+    public static Double getNumericValueByPath(Document docToRead, String path) {
+        // Walk along the path
+        Object current = docToRead;
+        for (String key : path.split("\\.")) {
+            if (!(current instanceof Document)) {
+                return null;
+            }
+            current = ((Document) current).get(key);
+        }
+
+        // Check the type of the resulting object
+        return toNumericValue(current);
+    }
+
+    /**
+     * Converts a given value that was read from a {@link Document} to a numeric value. Only numbers and strings
+     * that represent numbers can be converted, while all other values (e.g. booleans and dates) are rejected.
+     *
+     * @param value The value to convert
+     * @return The numeric value or null, if the value cannot be converted
+     */
+    public static Double toNumericValue(Object value) {
+        if (value instanceof Number) {
+            return ((Number) value).doubleValue();
+        } else if (value instanceof String) {
+            try {
+                return Double.parseDouble((String) value);
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+        return null;
+    }
+
     /**
      * Creates a new instance to access {@link Document} (read and modify)
      *
@@ -62,8 +104,8 @@ public class DocumentReader {
      *                        indices stored in the queue must be the same as it would occur in a json path.
      */
     public DocumentReader(DataModelTreeNode node, ArrayDeque<Integer> arrayIndexQueue) {
-        // Get all the predecessors of the node and add the node itself to it
-        List<DataModelTreeNode> predecessorsOfNode = node.getPredecessors();
+        // Get all the predecessors of the node and add the node itself to it (copy, as the node must not be modified)
+        List<DataModelTreeNode> predecessorsOfNode = new ArrayList<>(node.getPredecessors());
         predecessorsOfNode.add(node);
 
         // Remove the root if existing in the path
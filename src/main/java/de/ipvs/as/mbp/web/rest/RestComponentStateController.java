@@ -1,5 +1,6 @@
 package de.ipvs.as.mbp.web.rest;
 
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.stream.Collectors;
@@ -18,6 +19,7 @@ import de.ipvs.as.mbp.domain.component.Actuator;
 import de.ipvs.as.mbp.domain.component.Component;
 import de.ipvs.as.mbp.domain.component.Sensor;
 import de.ipvs.as.mbp.service.deployment.ComponentState;
+import de.ipvs.as.mbp.service.deployment.StateMonitoringService;
 import de.ipvs.as.mbp.web.rest.helper.DeploymentWrapper;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.hateoas.EntityModel;
@@ -26,7 +28,9 @@ import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import io.swagger.annotations.Api;
 import io.swagger.annotations.ApiOperation;
@@ -54,14 +58,19 @@ public class RestComponentStateController {
 	@Autowired
 	private SensorRepository sensorRepository;
 
+	@Autowired
+	private StateMonitoringService stateMonitoringService;
+
 	/**
 	 * Retrieves the deployment status for all actuators available for the requesting user. 
 	 */
 	@GetMapping("/actuators/state")
 	@ApiOperation(value = "Retrieves the component state of all actuators for which the user is authorized", produces = "application/hal+json")
 	@ApiResponses({ @ApiResponse(code = 200, message = "Success!") })
-	public ResponseEntity<Map<String, ComponentState>> getStatesAllActuators(@RequestHeader("X-MBP-Access-Request") String accessRequestHeader) {
-		return ResponseEntity.ok(getStatesAllComponents(actuatorRepository, ACAccessRequest.valueOf(accessRequestHeader)));
+	public ResponseEntity<Map<String, ComponentState>> getStatesAllActuators(
+			@RequestHeader("X-MBP-Access-Request") String accessRequestHeader,
+			@RequestParam(value = "refresh", required = false, defaultValue = "false") @ApiParam(value = "Whether the states are supposed to be determined regardless of cached states", example = "false") boolean refresh) {
+		return ResponseEntity.ok(getStatesAllComponents(actuatorRepository, ACAccessRequest.valueOf(accessRequestHeader), refresh));
 	}
 
 	/**
@@ -70,8 +79,30 @@ public class RestComponentStateController {
 	@GetMapping("/sensors/state")
 	@ApiOperation(value = "Retrieves the component state of all sensors for which the user is authorized", produces = "application/hal+json")
 	@ApiResponses({ @ApiResponse(code = 200, message = "Success") })
-	public ResponseEntity<Map<String, ComponentState>> getStatesAllSensors(@RequestHeader("X-MBP-Access-Request") String accessRequestHeader) {
-		return ResponseEntity.ok(getStatesAllComponents(sensorRepository, ACAccessRequest.valueOf(accessRequestHeader)));
+	public ResponseEntity<Map<String, ComponentState>> getStatesAllSensors(
+			@RequestHeader("X-MBP-Access-Request") String accessRequestHeader,
+			@RequestParam(value = "refresh", required = false, defaultValue = "false") @ApiParam(value = "Whether the states are supposed to be determined regardless of cached states", example = "false") boolean refresh) {
+		return ResponseEntity.ok(getStatesAllComponents(sensorRepository, ACAccessRequest.valueOf(accessRequestHeader), refresh));
+	}
+
+	/**
+	 * Subscribes to server-sent events about state changes of all actuators available for the requesting user.
+	 */
+	@GetMapping("/actuators/state/subscribe")
+	@ApiOperation(value = "Subscribes to server-sent events about state changes of all actuators for which the user is authorized", produces = "text/event-stream")
+	@ApiResponses({ @ApiResponse(code = 200, message = "Success!") })
+	public ResponseEntity<SseEmitter> subscribeStatesAllActuators(@RequestHeader("X-MBP-Access-Request") String accessRequestHeader) {
+		return ResponseEntity.ok(stateMonitoringService.subscribe(Collections.emptyList(), getAllComponents(actuatorRepository, ACAccessRequest.valueOf(accessRequestHeader))));
+	}
+
+	/**
+	 * Subscribes to server-sent events about state changes of all sensors available for the requesting user.
+	 */
+	@GetMapping("/sensors/state/subscribe")
+	@ApiOperation(value = "Subscribes to server-sent events about state changes of all sensors for which the user is authorized", produces = "text/event-stream")
+	@ApiResponses({ @ApiResponse(code = 200, message = "Success!") })
+	public ResponseEntity<SseEmitter> subscribeStatesAllSensors(@RequestHeader("X-MBP-Access-Request") String accessRequestHeader) {
+		return ResponseEntity.ok(stateMonitoringService.subscribe(Collections.emptyList(), getAllComponents(sensorRepository, ACAccessRequest.valueOf(accessRequestHeader))));
 	}
 
 	/**
@@ -89,8 +120,9 @@ public class RestComponentStateController {
 			@ApiResponse(code = 404, message = "Actuator not found") })
 	public ResponseEntity<EntityModel<ComponentStateDTO>> getActuatorState(
     		@RequestHeader("X-MBP-Access-Request") String accessRequestHeader,
-			@PathVariable(value = "id") @ApiParam(value = "ID of the actuator", example = "5c97dc2583aeb6078c5ab672", required = true) String actuatorId) throws EntityNotFoundException, MissingPermissionException {
-		ComponentState componentState = getComponentState(actuatorId, actuatorRepository, ACAccessRequest.valueOf(accessRequestHeader)).getContent();
+			@PathVariable(value = "id") @ApiParam(value = "ID of the actuator", example = "5c97dc2583aeb6078c5ab672", required = true) String actuatorId,
+			@RequestParam(value = "refresh", required = false, defaultValue = "false") @ApiParam(value = "Whether the state is supposed to be determined regardless of the cached state", example = "false") boolean refresh) throws EntityNotFoundException, MissingPermissionException {
+		ComponentState componentState = getComponentState(actuatorId, actuatorRepository, ACAccessRequest.valueOf(accessRequestHeader), refresh).getContent();
 		if (componentState == null) {
 			return ResponseEntity.internalServerError().build();
 		}
@@ -112,8 +144,9 @@ public class RestComponentStateController {
 			@ApiResponse(code = 404, message = "Sensor not found") })
 	public ResponseEntity<EntityModel<ComponentStateDTO>> getSensorState(
     		@RequestHeader("X-MBP-Access-Request") String accessRequestHeader,
-			@PathVariable(value = "id") @ApiParam(value = "ID of the sensor", example = "5c97dc2583aeb6078c5ab672", required = true) String sensorId) throws EntityNotFoundException, MissingPermissionException {
-		ComponentState componentState = getComponentState(sensorId, sensorRepository, ACAccessRequest.valueOf(accessRequestHeader)).getContent();
+			@PathVariable(value = "id") @ApiParam(value = "ID of the sensor", example = "5c97dc2583aeb6078c5ab672", required = true) String sensorId,
+			@RequestParam(value = "refresh", required = false, defaultValue = "false") @ApiParam(value = "Whether the state is supposed to be determined regardless of the cached state", example = "false") boolean refresh) throws EntityNotFoundException, MissingPermissionException {
+		ComponentState componentState = getComponentState(sensorId, sensorRepository, ACAccessRequest.valueOf(accessRequestHeader), refresh).getContent();
 		if (componentState == null) {
 			return ResponseEntity.internalServerError().build();
 		}
@@ -121,23 +154,28 @@ public class RestComponentStateController {
 		return ResponseEntity.ok(EntityModel.of(new ComponentStateDTO(componentStateEnumKey)));
 	}
 
-	private <C extends Component> Map<String, ComponentState> getStatesAllComponents(ComponentRepository<C> repository, ACAccessRequest accessRequest) {
+	private <C extends Component> Map<String, ComponentState> getStatesAllComponents(ComponentRepository<C> repository, ACAccessRequest accessRequest, boolean refresh) {
 		// Retrieve all components from the database (according to owner and policies)
-		List<Component> componentList = userEntityService.getAllWithAccessControlCheck(repository, ACAccessType.READ, accessRequest)
+		List<Component> componentList = getAllComponents(repository, accessRequest);
+
+		// Determine the states of each component
+		return deploymentWrapper.getStatesAllComponents(componentList, refresh);
+	}
+
+	private <C extends Component> List<Component> getAllComponents(ComponentRepository<C> repository, ACAccessRequest accessRequest) {
+		// Retrieve all components from the database (according to owner and policies)
+		return userEntityService.getAllWithAccessControlCheck(repository, ACAccessType.READ, accessRequest)
 				.stream()
 				.map(entity -> (Component) entity)
 				.collect(Collectors.toList());
-
-		// Determine the states of each component
-		return deploymentWrapper.getStatesAllComponents(componentList);
 	}
 
-	private <C extends Component> EntityModel<ComponentState> getComponentState(String componentId, ComponentRepository<C> repository, ACAccessRequest accessRequest) throws EntityNotFoundException, MissingPermissionException {
+	private <C extends Component> EntityModel<ComponentState> getComponentState(String componentId, ComponentRepository<C> repository, ACAccessRequest accessRequest, boolean refresh) throws EntityNotFoundException, MissingPermissionException {
 		// Retrieve component from the database
 		Component component = userEntityService.getForIdWithAccessControlCheck(repository, componentId, ACAccessType.READ, accessRequest);
 
 		// Determine component state
 		// TODO: Entity model really required here???
-		return EntityModel.of(deploymentWrapper.getComponentState(component));
+		return EntityModel.of(deploymentWrapper.getComponentState(component, refresh));
 	}
 }
@@ -1,6 +1,8 @@
 package de.ipvs.as.mbp.web.rest;
 
 import de.ipvs.as.mbp.constants.Constants;
+import de.ipvs.as.mbp.domain.deployment.BulkDeploymentJob;
+import de.ipvs.as.mbp.domain.deployment.BulkDeploymentRequestDTO;
 import de.ipvs.as.mbp.domain.operator.parameters.ParameterInstance;
 import de.ipvs.as.mbp.error.DeploymentException;
 import de.ipvs.as.mbp.error.EntityNotFoundException;
@@ -8,7 +10,9 @@ import de.ipvs.as.mbp.error.MissingPermissionException;
 import de.ipvs.as.mbp.repository.ActuatorRepository;
 import de.ipvs.as.mbp.repository.ComponentRepository;
 import de.ipvs.as.mbp.repository.SensorRepository;
+import de.ipvs.as.mbp.service.deployment.BulkDeploymentService;
 import de.ipvs.as.mbp.service.user.UserEntityService;
+import de.ipvs.as.mbp.service.user.UserService;
 import io.swagger.annotations.*;
 import de.ipvs.as.mbp.domain.access_control.ACAccessRequest;
 import de.ipvs.as.mbp.domain.access_control.ACAccessType;
@@ -23,8 +27,11 @@ import org.springframework.web.bind.annotation.*;
 
 import javax.validation.Valid;
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
 import java.util.Date;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Set;
 
 /**
  * REST Controller for deployment related REST requests.
@@ -46,6 +53,12 @@ public class RestDeploymentController implements RepresentationModelProcessor<En
     @Autowired
     private UserEntityService userEntityService;
 
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private BulkDeploymentService bulkDeploymentService;
+
 
     @PostMapping(value = "/start/actuator/{id}")
     @ApiOperation(value = "Starts an actuator with optional deployment parameters", produces = "application/hal+json")
@@ -181,6 +194,54 @@ public class RestDeploymentController implements RepresentationModelProcessor<En
         return ResponseEntity.ok().build();
     }
 
+    @PostMapping("/deploy/bulk")
+    @ApiOperation(value = "Performs a deployment action on multiple sensors and actuators asynchronously", notes = "Components may be given by their IDs or selected by their operator. Devices are processed in parallel, the components of the same device in the given order. The returned job can be used to retrieve the progress.", produces = "application/hal+json")
+    @ApiResponses({@ApiResponse(code = 202, message = "Job accepted!"),
+            @ApiResponse(code = 400, message = "Invalid request!"),
+            @ApiResponse(code = 401, message = "Not authorized to perform the action on one of the components!"),
+            @ApiResponse(code = 404, message = "Component or requesting user not found!")})
+    public ResponseEntity<BulkDeploymentJob> startBulkDeployment(
+            @RequestHeader("X-MBP-Access-Request") String accessRequestHeader,
+            @Valid @RequestBody @ApiParam(value = "Description of the action and the components", required = true) BulkDeploymentRequestDTO requestDto) throws EntityNotFoundException, MissingPermissionException {
+        // Parse the access-request information
+        ACAccessRequest accessRequest = ACAccessRequest.valueOf(accessRequestHeader);
+        ACAccessType accessType = requestDto.getAction().getAccessType();
+
+        // Collect the explicitly given components (with permission check)
+        Set<Component> components = new LinkedHashSet<>();
+        for (String sensorId : requestDto.getSensorIds()) {
+            components.add(getComponentWithPermissionCheck(sensorRepository, sensorId, accessType, accessRequest));
+        }
+        for (String actuatorId : requestDto.getActuatorIds()) {
+            components.add(getComponentWithPermissionCheck(actuatorRepository, actuatorId, accessType, accessRequest));
+        }
+
+        // Add all components of the given operator for which the user is authorized
+        if ((requestDto.getOperatorId() != null) && (!requestDto.getOperatorId().isEmpty())) {
+            addComponentsOfOperator(components, sensorRepository, requestDto.getOperatorId(), accessType, accessRequest);
+            addComponentsOfOperator(components, actuatorRepository, requestDto.getOperatorId(), accessType, accessRequest);
+        }
+
+        // Submit the job
+        BulkDeploymentJob job = bulkDeploymentService.submit(userService.getLoggedInUser().getId(), requestDto.getAction(),
+                new ArrayList<>(components), requestDto.getParameters());
+        return ResponseEntity.status(HttpStatus.ACCEPTED).body(job);
+    }
+
+    @GetMapping("/deploy/bulk/{jobId}")
+    @ApiOperation(value = "Retrieves the progress and results of a bulk deployment job", produces = "application/hal+json")
+    @ApiResponses({@ApiResponse(code = 200, message = "Success!"),
+            @ApiResponse(code = 404, message = "Job not found!")})
+    public ResponseEntity<BulkDeploymentJob> getBulkDeployment(
+            @PathVariable(value = "jobId") @ApiParam(value = "ID of the job", example = "7d4a0f0e-3f5c-4b57-9c53-2b1f1e0c9a4d", required = true) String jobId) {
+        // Retrieve the job and check whether it belongs to the requesting user
+        BulkDeploymentJob job = bulkDeploymentService.getJob(jobId);
+        if ((job == null) || (!userService.getLoggedInUser().getId().equals(job.getOwnerId()))) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok(job);
+    }
+
     @GetMapping("/time")
     @ApiOperation(value = "Returns the current server time", notes = "Format of the returned timestamp: yyyy-MM-dd HH:mm:ss", produces = "application/hal+json")
     @ApiResponses(@ApiResponse(code = 200, message = "Success"))
@@ -202,6 +263,16 @@ public class RestDeploymentController implements RepresentationModelProcessor<En
         return component;
     }
 
+    private <C extends Component> void addComponentsOfOperator(Set<Component> components, ComponentRepository<C> repository, String operatorId, ACAccessType accessType, ACAccessRequest accessRequest) {
+        // Retrieve all components the user may read and keep those of the operator the user is authorized for
+        for (C component : userEntityService.getAllWithAccessControlCheck(repository, ACAccessType.READ, accessRequest)) {
+            if ((component.getOperator() != null) && operatorId.equals(component.getOperator().getId())
+                    && userEntityService.checkPermission(component, accessType, accessRequest)) {
+                components.add(component);
+            }
+        }
+    }
+
 
     @Override
     public EntityModel<?> process(EntityModel<?> model) {
@@ -9,16 +9,16 @@ import de.ipvs.as.mbp.error.EntityNotFoundException;
 import de.ipvs.as.mbp.error.MissingPermissionException;
 import de.ipvs.as.mbp.repository.DeviceRepository;
 import de.ipvs.as.mbp.service.user.UserEntityService;
-import de.ipvs.as.mbp.service.deployment.DeployerDispatcher;
 import de.ipvs.as.mbp.service.deployment.DeviceState;
-import de.ipvs.as.mbp.service.deployment.IDeployer;
+import de.ipvs.as.mbp.service.deployment.StateMonitoringService;
 import io.swagger.annotations.*;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.hateoas.EntityModel;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
-import java.util.HashMap;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 
@@ -37,32 +37,37 @@ public class RestDeviceStateController {
 	private DeviceRepository deviceRepository;
 
 	@Autowired
-	private DeployerDispatcher deployerDispatcher;
+	private StateMonitoringService stateMonitoringService;
 
 
 	@GetMapping("/state")
 	@ApiOperation(value = "Retrieves the availability state for all devices the requesting user is authorized for.", produces = "application/hal+json")
 	@ApiResponses({ @ApiResponse(code = 200, message = "Success!"),
 			@ApiResponse(code = 404, message = "Requesting user not found!") })
-	public ResponseEntity<Map<String, DeviceState>> getStatusAllDevices(@RequestHeader("X-MBP-Access-Request") String accessRequestHeader) {
-		// Create result map (device id -> device state)
-		Map<String, DeviceState> deviceStates = new HashMap<>();
-
+	public ResponseEntity<Map<String, DeviceState>> getStatusAllDevices(
+			@RequestHeader("X-MBP-Access-Request") String accessRequestHeader,
+			@RequestParam(value = "refresh", required = false, defaultValue = "false") @ApiParam(value = "Whether the states are supposed to be determined regardless of cached states", example = "false") boolean refresh) {
 		// Get all devices
 		List<Device> devices = userEntityService.getAllWithAccessControlCheck(deviceRepository, ACAccessType.READ, ACAccessRequest.valueOf(accessRequestHeader));
 
-		//Find suitable deployer component
-		IDeployer deployer = deployerDispatcher.getDeployer();
-
-		// Iterate over all devices and determine the device state
-		for (Device device : devices) {
-			DeviceState state = deployer.retrieveDeviceState(device);
-			deviceStates.put(device.getId(), state);
-		}
+		// Determine the device states concurrently (device id -> device state)
+		Map<String, DeviceState> deviceStates = stateMonitoringService.getDeviceStates(devices, refresh);
 
 		return ResponseEntity.ok(deviceStates);
 	}
 
+	@GetMapping("/state/subscribe")
+	@ApiOperation(value = "Subscribes to server-sent events about state changes of all devices the requesting user is authorized for", produces = "text/event-stream")
+	@ApiResponses({ @ApiResponse(code = 200, message = "Success!"),
+			@ApiResponse(code = 404, message = "Requesting user not found!") })
+	public ResponseEntity<SseEmitter> subscribeStatusAllDevices(@RequestHeader("X-MBP-Access-Request") String accessRequestHeader) {
+		// Get all devices
+		List<Device> devices = userEntityService.getAllWithAccessControlCheck(deviceRepository, ACAccessType.READ, ACAccessRequest.valueOf(accessRequestHeader));
+
+		// Subscribe to the states of the devices and obtain SSE emitter
+		return ResponseEntity.ok(stateMonitoringService.subscribe(devices, Collections.emptyList()));
+	}
+
 	@GetMapping(value = "/{deviceId}/state")
 	@ApiOperation(value = "Retrieves the availability state for a device", produces = "application/hal+json")
 	@ApiResponses({ @ApiResponse(code = 200, message = "Success!"),
@@ -70,15 +75,13 @@ public class RestDeviceStateController {
 			@ApiResponse(code = 404, message = "Device or requesting user not found!") })
 	public ResponseEntity<EntityModel<DeviceStateDTO>> getDeviceStatus(
     		@RequestHeader("X-MBP-Access-Request") String accessRequestHeader,
-			@PathVariable(value = "deviceId") @ApiParam(value = "ID of the device", example = "5c97dc2583aeb6078c5ab672", required = true) String deviceId) throws EntityNotFoundException, MissingPermissionException {
+			@PathVariable(value = "deviceId") @ApiParam(value = "ID of the device", example = "5c97dc2583aeb6078c5ab672", required = true) String deviceId,
+			@RequestParam(value = "refresh", required = false, defaultValue = "false") @ApiParam(value = "Whether the state is supposed to be determined regardless of the cached state", example = "false") boolean refresh) throws EntityNotFoundException, MissingPermissionException {
 		// Retrieve the device from the database
 		Device device = userEntityService.getForIdWithAccessControlCheck(deviceRepository, deviceId, ACAccessType.READ, ACAccessRequest.valueOf(accessRequestHeader));
 
-		//Find suitable deployer component
-		IDeployer deployer = deployerDispatcher.getDeployer();
-
 		// Determine device state
-		DeviceState deviceState = deployer.retrieveDeviceState(device);
+		DeviceState deviceState = stateMonitoringService.getDeviceState(device, refresh);
 
 		return ResponseEntity.ok(EntityModel.of(new DeviceStateDTO(deviceState.name())));
 	}
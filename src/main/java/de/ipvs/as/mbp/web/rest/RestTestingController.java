@@ -24,6 +24,7 @@ import java.util.List;
 
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 
 
 import io.swagger.annotations.ApiOperation;
@@ -39,6 +40,7 @@ import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.async.DeferredResult;
 
 import static org.springframework.hateoas.server.mvc.WebMvcLinkBuilder.linkTo;
 import static org.springframework.hateoas.server.mvc.WebMvcLinkBuilder.methodOn;
@@ -185,16 +187,17 @@ public class RestTestingController {
     @ApiResponses({@ApiResponse(code = 204, message = "Success!"),
             @ApiResponse(code = 401, message = "Not authorized to delete the test!"),
             @ApiResponse(code = 404, message = "Test or requesting user not found!")})
-    public ResponseEntity<Boolean> executeTest(@PathVariable(value = "testId") String testId) {
+    public DeferredResult<ResponseEntity<Boolean>> executeTest(@PathVariable(value = "testId") String testId) {
+        CompletableFuture<Void> execution;
         try {
             Optional<TestDetails> testDetailsOptional = testDetailsRepository.findById(testId);
             // Start the test and get Map of sensor values
-            testDetailsOptional.ifPresent(testDetails -> testExecutor.executeTest(testDetails));
+            execution = testDetailsOptional.map(testDetails -> testExecutor.executeTest(testDetails))
+                    .orElse(CompletableFuture.completedFuture(null));
         } catch (Exception e) {
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(false);
+            execution = CompletableFuture.failedFuture(e);
         }
-        return ResponseEntity.status(HttpStatus.OK).body(true);
-
+        return toDeferredResult(execution);
     }
 
 
@@ -209,18 +212,35 @@ public class RestTestingController {
     @ApiResponses({@ApiResponse(code = 204, message = "Success!"),
             @ApiResponse(code = 401, message = "Not authorized to delete the test!"),
             @ApiResponse(code = 404, message = "Test or requesting user not found!")})
-    public ResponseEntity<Boolean> rerunTest(@PathVariable(value = "testId") String testId,
-                                             @PathVariable(value = "testReportId") String testReportId
+    public DeferredResult<ResponseEntity<Boolean>> rerunTest(@PathVariable(value = "testId") String testId,
+                                                             @PathVariable(value = "testReportId") String testReportId
 
     ) {
+        CompletableFuture<Void> execution;
         try {
             Optional<TestDetails> testDetailsOptional = testDetailsRepository.findById(testId);
-            testDetailsOptional.ifPresent(testDetails -> testExecutor.rerunTest(testDetails, testReportId));
-
+            execution = testDetailsOptional.map(testDetails -> testExecutor.rerunTest(testDetails, testReportId))
+                    .orElse(CompletableFuture.completedFuture(null));
         } catch (Exception e) {
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(false);
+            execution = CompletableFuture.failedFuture(e);
         }
-        return ResponseEntity.status(HttpStatus.OK).body(true);
+        return toDeferredResult(execution);
+    }
+
+    /**
+     * Creates a deferred response that is sent as soon as a given test execution is finished, such that no
+     * request thread is blocked while the test is running. Since tests may run for a long time, the response
+     * does not time out (a timeout of 0 disables the timeout of the asynchronous request).
+     *
+     * @param execution the future of the test execution
+     * @return the deferred response
+     */
+    private DeferredResult<ResponseEntity<Boolean>> toDeferredResult(CompletableFuture<Void> execution) {
+        DeferredResult<ResponseEntity<Boolean>> result = new DeferredResult<>(0L);
+        execution.whenComplete((r, e) -> result.setResult((e == null) ?
+                ResponseEntity.status(HttpStatus.OK).body(true) :
+                ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(false)));
+        return result;
     }
 
 
@@ -1,7 +1,6 @@
 package de.ipvs.as.mbp.web.rest;
 
 import de.ipvs.as.mbp.constants.Constants;
-import de.ipvs.as.mbp.domain.access_control.ACAbstractEffect;
 import de.ipvs.as.mbp.domain.access_control.ACAccessRequest;
 import de.ipvs.as.mbp.domain.access_control.ACAccessType;
 import de.ipvs.as.mbp.domain.access_control.ACPolicy;
@@ -19,27 +18,33 @@ import de.ipvs.as.mbp.repository.SensorRepository;
 import de.ipvs.as.mbp.repository.ValueLogRepository;
 import de.ipvs.as.mbp.repository.discovery.DynamicDeploymentRepository;
 import de.ipvs.as.mbp.service.UnitConverterService;
+import de.ipvs.as.mbp.service.access_control.ACCompiledEffect;
 import de.ipvs.as.mbp.service.access_control.ACEffectService;
 import de.ipvs.as.mbp.service.discovery.deployment.DynamicDeployableComponent;
+import de.ipvs.as.mbp.service.export.ValueLogExportFormat;
+import de.ipvs.as.mbp.service.export.ValueLogExportService;
+import de.ipvs.as.mbp.service.stats.ValueLogAggregationService;
+import de.ipvs.as.mbp.service.stats.model.ValueLogAggregation;
+import de.ipvs.as.mbp.service.stats.model.ValueLogAggregationMode;
 import de.ipvs.as.mbp.service.user.UserEntityService;
 import de.ipvs.as.mbp.util.S;
 import de.ipvs.as.mbp.web.rest.helper.MonitoringHelper;
 import io.swagger.annotations.*;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
-import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.Pageable;
-import org.springframework.data.domain.Sort;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import javax.measure.converter.UnitConverter;
 import javax.measure.quantity.Quantity;
 import javax.measure.unit.Unit;
-import java.util.Collections;
+import java.time.Instant;
 import java.util.List;
-import java.util.stream.Collectors;
 
 /**
  * REST Controller for retrieving value logs for certain components.
@@ -75,6 +80,12 @@ public class RestValueLogController {
     @Autowired
     private MonitoringHelper monitoringHelper;
 
+    @Autowired
+    private ValueLogExportService valueLogExportService;
+
+    @Autowired
+    private ValueLogAggregationService valueLogAggregationService;
+
 
     @GetMapping("/actuators/{id}/valueLogs")
     @ApiOperation(value = "Retrieves a list of recorded actuator value logs in a certain unit which fit onto a given page", produces = "application/hal+json")
@@ -167,6 +178,192 @@ public class RestValueLogController {
         return ResponseEntity.ok(valueLogs);
     }
 
+    @GetMapping("/actuators/{id}/valueLogs/export")
+    @ApiOperation(value = "Exports all recorded actuator value logs within an optional time window in a certain unit as NDJSON or CSV stream")
+    @ApiResponses({@ApiResponse(code = 200, message = "Success!"),
+            @ApiResponse(code = 400, message = "Invalid unit specification!"),
+            @ApiResponse(code = 401, message = "Not authorized to access value logs of this actuator!"),
+            @ApiResponse(code = 404, message = "Actuator or requesting user not found!")})
+    public ResponseEntity<StreamingResponseBody> exportActuatorValueLogs(
+            @RequestHeader("X-MBP-Access-Request") String accessRequestHeader,
+            @PathVariable(value = "id") @ApiParam(value = "ID of the actuator to export value logs for", example = "5c97dc2583aeb6078c5ab672", required = true) String actuatorId,
+            @RequestParam(value = "format", required = false, defaultValue = "NDJSON") @ApiParam(value = "The desired export format", example = "CSV", required = false) ValueLogExportFormat format,
+            @RequestParam(value = "unit", required = false) @ApiParam(value = "The desired unit of the actuator values", example = "°C", required = false) String unit,
+            @RequestParam(value = "startTime", required = false) @ApiParam(value = "The desired start time for filtering in time", example = "1570635657000", required = false) Long startTime,
+            @RequestParam(value = "endTime", required = false) @ApiParam(value = "The desired end time for filtering in time", example = "1570635657000", required = false) Long endTime) throws EntityNotFoundException, MissingPermissionException {
+        // Retrieve actuator from the database (includes access-control)
+        Actuator actuator = userEntityService.getForId(actuatorRepository, actuatorId);
+
+        // Export value logs
+        return exportValueLogs(actuator, format, unit, startTime, endTime, ACAccessRequest.valueOf(accessRequestHeader));
+    }
+
+    @GetMapping("/sensors/{id}/valueLogs/export")
+    @ApiOperation(value = "Exports all recorded sensor value logs within an optional time window in a certain unit as NDJSON or CSV stream")
+    @ApiResponses({@ApiResponse(code = 200, message = "Success!"),
+            @ApiResponse(code = 400, message = "Invalid unit specification!"),
+            @ApiResponse(code = 401, message = "Not authorized to access value logs of this sensor!"),
+            @ApiResponse(code = 404, message = "Sensor or requesting user not found!")})
+    public ResponseEntity<StreamingResponseBody> exportSensorValueLogs(
+            @RequestHeader("X-MBP-Access-Request") String accessRequestHeader,
+            @PathVariable(value = "id") @ApiParam(value = "ID of the sensor to export value logs for", example = "5c97dc2583aeb6078c5ab672", required = true) String sensorId,
+            @RequestParam(value = "format", required = false, defaultValue = "NDJSON") @ApiParam(value = "The desired export format", example = "CSV", required = false) ValueLogExportFormat format,
+            @RequestParam(value = "unit", required = false) @ApiParam(value = "The desired unit of the sensor values", example = "°C", required = false) String unit,
+            @RequestParam(value = "startTime", required = false) @ApiParam(value = "The desired start time for filtering in time", example = "1570635657000", required = false) Long startTime,
+            @RequestParam(value = "endTime", required = false) @ApiParam(value = "The desired end time for filtering in time", example = "1570635657000", required = false) Long endTime) throws EntityNotFoundException, MissingPermissionException {
+        //Retrieve sensor from the database (includes access-control)
+        Sensor sensor = userEntityService.getForId(sensorRepository, sensorId);
+
+        //Export value logs
+        return exportValueLogs(sensor, format, unit, startTime, endTime, ACAccessRequest.valueOf(accessRequestHeader));
+    }
+
+    @GetMapping("/monitoring/{deviceId}/valueLogs/export")
+    @ApiOperation(value = "Exports all recorded monitoring value logs within an optional time window in a certain unit as NDJSON or CSV stream")
+    @ApiResponses({@ApiResponse(code = 200, message = "Success!"),
+            @ApiResponse(code = 400, message = "Invalid unit specification!"),
+            @ApiResponse(code = 401, message = "Not authorized to access value logs of this monitoring component!"),
+            @ApiResponse(code = 404, message = "Device, monitoring operator or requesting user not found!")})
+    public ResponseEntity<StreamingResponseBody> exportMonitoringValueLogs(
+            @RequestHeader("X-MBP-Access-Request") String accessRequestHeader,
+            @PathVariable(value = "deviceId") @ApiParam(value = "ID of the device to export value logs for", example = "5c97dc2583aeb6078c5ab672", required = true) String deviceId,
+            @RequestParam("monitoringOperatorId") @ApiParam(value = "ID of the monitoring operator to export value logs for", example = "5c97dc2583aeb6078c5ab672", required = true) String monitoringOperatorId,
+            @RequestParam(value = "format", required = false, defaultValue = "NDJSON") @ApiParam(value = "The desired export format", example = "CSV", required = false) ValueLogExportFormat format,
+            @RequestParam(value = "unit", required = false) @ApiParam(value = "The desired unit of the monitoring value logs", example = "°C", required = false) String unit,
+            @RequestParam(value = "startTime", required = false) @ApiParam(value = "The desired start time for filtering in time", example = "1570635657000", required = false) Long startTime,
+            @RequestParam(value = "endTime", required = false) @ApiParam(value = "The desired end time for filtering in time", example = "1570635657000", required = false) Long endTime) throws MissingPermissionException, EntityNotFoundException {
+        // Create new monitoring component from parameters
+        MonitoringComponent monitoringComponent = monitoringHelper.createMonitoringComponent(deviceId, monitoringOperatorId);
+
+        // Check permission
+        userEntityService.requirePermission(monitoringComponent, ACAccessType.MONITOR, ACAccessRequest.valueOf(accessRequestHeader));
+
+        // Export value logs
+        return exportValueLogs(monitoringComponent, format, unit, startTime, endTime, ACAccessRequest.valueOf(accessRequestHeader));
+    }
+
+    @GetMapping("/discovery/dynamic-deployments/{dynamicDeploymentId}/valueLogs/export")
+    @ApiOperation(value = "Exports all dynamic deployment value logs within an optional time window in a certain unit as NDJSON or CSV stream")
+    @ApiResponses({@ApiResponse(code = 200, message = "Success!"),
+            @ApiResponse(code = 400, message = "Invalid unit specification!"),
+            @ApiResponse(code = 401, message = "Not authorized to access value logs of this dynamic deployment!"),
+            @ApiResponse(code = 404, message = "Dynamic deployment or requesting user not found!")})
+    public ResponseEntity<StreamingResponseBody> exportDynamicDeploymentValueLogs(
+            @RequestHeader("X-MBP-Access-Request") String accessRequestHeader,
+            @PathVariable(value = "dynamicDeploymentId") @ApiParam(value = "ID of the dynamic deployment to export the value logs for", example = "5c97dc2583aeb6078c5ab672", required = true) String dynamicDeploymentId,
+            @RequestParam(value = "format", required = false, defaultValue = "NDJSON") @ApiParam(value = "The desired export format", example = "CSV", required = false) ValueLogExportFormat format,
+            @RequestParam(value = "unit", required = false) @ApiParam(value = "The desired unit of the dynamic deployment values", example = "°C", required = false) String unit,
+            @RequestParam(value = "startTime", required = false) @ApiParam(value = "The desired start time for filtering in time", example = "1570635657000", required = false) Long startTime,
+            @RequestParam(value = "endTime", required = false) @ApiParam(value = "The desired end time for filtering in time", example = "1570635657000", required = false) Long endTime) throws EntityNotFoundException, MissingPermissionException {
+        //Retrieve dynamic deployment from the database (includes access-control)
+        DynamicDeployment dynamicDeployment = userEntityService.getForId(dynamicDeploymentRepository, dynamicDeploymentId);
+
+        //Create deployable component from dynamic deployment
+        DynamicDeployableComponent component = new DynamicDeployableComponent(dynamicDeployment);
+
+        // Export value logs
+        return exportValueLogs(component, format, unit, startTime, endTime, ACAccessRequest.valueOf(accessRequestHeader));
+    }
+
+    @GetMapping("/actuators/{id}/valueLogs/aggregate")
+    @ApiOperation(value = "Retrieves the actuator value logs within an optional time window aggregated to buckets of a fixed width or downsampled to a number of data points in a certain unit")
+    @ApiResponses({@ApiResponse(code = 200, message = "Success!"),
+            @ApiResponse(code = 400, message = "Invalid aggregation or unit specification!"),
+            @ApiResponse(code = 401, message = "Not authorized to access value logs of this actuator!"),
+            @ApiResponse(code = 404, message = "Actuator or requesting user not found!")})
+    public ResponseEntity<ValueLogAggregation> aggregateActuatorValueLogs(
+            @RequestHeader("X-MBP-Access-Request") String accessRequestHeader,
+            @PathVariable(value = "id") @ApiParam(value = "ID of the actuator to aggregate value logs for", example = "5c97dc2583aeb6078c5ab672", required = true) String actuatorId,
+            @RequestParam(value = "mode", required = false, defaultValue = "BUCKETS") @ApiParam(value = "The desired aggregation mode", example = "LTTB", required = false) ValueLogAggregationMode mode,
+            @RequestParam(value = "path", required = false, defaultValue = "value") @ApiParam(value = "The dot-separated path of the numeric field to aggregate", example = "value", required = false) String path,
+            @RequestParam(value = "bucketWidth", required = false, defaultValue = "1h") @ApiParam(value = "The desired width of the buckets (bucket mode only)", example = "15m", required = false) String bucketWidth,
+            @RequestParam(value = "points", required = false, defaultValue = "1000") @ApiParam(value = "The desired number of data points (LTTB mode only)", example = "500", required = false) int points,
+            @RequestParam(value = "unit", required = false) @ApiParam(value = "The desired unit of the values", example = "°C", required = false) String unit,
+            @RequestParam(value = "startTime", required = false) @ApiParam(value = "The desired start time for filtering in time", example = "1570635657000", required = false) Long startTime,
+            @RequestParam(value = "endTime", required = false) @ApiParam(value = "The desired end time for filtering in time", example = "1570635657000", required = false) Long endTime) throws EntityNotFoundException, MissingPermissionException {
+        // Retrieve actuator from the database (includes access-control)
+        Actuator component = userEntityService.getForId(actuatorRepository, actuatorId);
+
+        // Aggregate value logs
+        return ResponseEntity.ok(aggregateValueLogs(component, mode, path, bucketWidth, points, unit, startTime, endTime, ACAccessRequest.valueOf(accessRequestHeader)));
+    }
+
+    @GetMapping("/sensors/{id}/valueLogs/aggregate")
+    @ApiOperation(value = "Retrieves the sensor value logs within an optional time window aggregated to buckets of a fixed width or downsampled to a number of data points in a certain unit")
+    @ApiResponses({@ApiResponse(code = 200, message = "Success!"),
+            @ApiResponse(code = 400, message = "Invalid aggregation or unit specification!"),
+            @ApiResponse(code = 401, message = "Not authorized to access value logs of this sensor!"),
+            @ApiResponse(code = 404, message = "Sensor or requesting user not found!")})
+    public ResponseEntity<ValueLogAggregation> aggregateSensorValueLogs(
+            @RequestHeader("X-MBP-Access-Request") String accessRequestHeader,
+            @PathVariable(value = "id") @ApiParam(value = "ID of the sensor to aggregate value logs for", example = "5c97dc2583aeb6078c5ab672", required = true) String sensorId,
+            @RequestParam(value = "mode", required = false, defaultValue = "BUCKETS") @ApiParam(value = "The desired aggregation mode", example = "LTTB", required = false) ValueLogAggregationMode mode,
+            @RequestParam(value = "path", required = false, defaultValue = "value") @ApiParam(value = "The dot-separated path of the numeric field to aggregate", example = "value", required = false) String path,
+            @RequestParam(value = "bucketWidth", required = false, defaultValue = "1h") @ApiParam(value = "The desired width of the buckets (bucket mode only)", example = "15m", required = false) String bucketWidth,
+            @RequestParam(value = "points", required = false, defaultValue = "1000") @ApiParam(value = "The desired number of data points (LTTB mode only)", example = "500", required = false) int points,
+            @RequestParam(value = "unit", required = false) @ApiParam(value = "The desired unit of the values", example = "°C", required = false) String unit,
+            @RequestParam(value = "startTime", required = false) @ApiParam(value = "The desired start time for filtering in time", example = "1570635657000", required = false) Long startTime,
+            @RequestParam(value = "endTime", required = false) @ApiParam(value = "The desired end time for filtering in time", example = "1570635657000", required = false) Long endTime) throws EntityNotFoundException, MissingPermissionException {
+        // Retrieve sensor from the database (includes access-control)
+        Sensor component = userEntityService.getForId(sensorRepository, sensorId);
+
+        // Aggregate value logs
+        return ResponseEntity.ok(aggregateValueLogs(component, mode, path, bucketWidth, points, unit, startTime, endTime, ACAccessRequest.valueOf(accessRequestHeader)));
+    }
+
+    @GetMapping("/monitoring/{deviceId}/valueLogs/aggregate")
+    @ApiOperation(value = "Retrieves the monitoring value logs within an optional time window aggregated to buckets of a fixed width or downsampled to a number of data points in a certain unit")
+    @ApiResponses({@ApiResponse(code = 200, message = "Success!"),
+            @ApiResponse(code = 400, message = "Invalid aggregation or unit specification!"),
+            @ApiResponse(code = 401, message = "Not authorized to access value logs of this monitoring component!"),
+            @ApiResponse(code = 404, message = "Monitoring component or requesting user not found!")})
+    public ResponseEntity<ValueLogAggregation> aggregateMonitoringValueLogs(
+            @RequestHeader("X-MBP-Access-Request") String accessRequestHeader,
+            @PathVariable(value = "deviceId") @ApiParam(value = "ID of the device to aggregate value logs for", example = "5c97dc2583aeb6078c5ab672", required = true) String deviceId,
+            @RequestParam("monitoringOperatorId") @ApiParam(value = "ID of the monitoring operator to aggregate value logs for", example = "5c97dc2583aeb6078c5ab672", required = true) String monitoringOperatorId,
+            @RequestParam(value = "mode", required = false, defaultValue = "BUCKETS") @ApiParam(value = "The desired aggregation mode", example = "LTTB", required = false) ValueLogAggregationMode mode,
+            @RequestParam(value = "path", required = false, defaultValue = "value") @ApiParam(value = "The dot-separated path of the numeric field to aggregate", example = "value", required = false) String path,
+            @RequestParam(value = "bucketWidth", required = false, defaultValue = "1h") @ApiParam(value = "The desired width of the buckets (bucket mode only)", example = "15m", required = false) String bucketWidth,
+            @RequestParam(value = "points", required = false, defaultValue = "1000") @ApiParam(value = "The desired number of data points (LTTB mode only)", example = "500", required = false) int points,
+            @RequestParam(value = "unit", required = false) @ApiParam(value = "The desired unit of the values", example = "°C", required = false) String unit,
+            @RequestParam(value = "startTime", required = false) @ApiParam(value = "The desired start time for filtering in time", example = "1570635657000", required = false) Long startTime,
+            @RequestParam(value = "endTime", required = false) @ApiParam(value = "The desired end time for filtering in time", example = "1570635657000", required = false) Long endTime) throws EntityNotFoundException, MissingPermissionException {
+        // Create new monitoring component from parameters
+        MonitoringComponent component = monitoringHelper.createMonitoringComponent(deviceId, monitoringOperatorId);
+
+        // Check permission
+        userEntityService.requirePermission(component, ACAccessType.MONITOR, ACAccessRequest.valueOf(accessRequestHeader));
+
+        // Aggregate value logs
+        return ResponseEntity.ok(aggregateValueLogs(component, mode, path, bucketWidth, points, unit, startTime, endTime, ACAccessRequest.valueOf(accessRequestHeader)));
+    }
+
+    @GetMapping("/discovery/dynamic-deployments/{dynamicDeploymentId}/valueLogs/aggregate")
+    @ApiOperation(value = "Retrieves the dynamic deployment value logs within an optional time window aggregated to buckets of a fixed width or downsampled to a number of data points in a certain unit")
+    @ApiResponses({@ApiResponse(code = 200, message = "Success!"),
+            @ApiResponse(code = 400, message = "Invalid aggregation or unit specification!"),
+            @ApiResponse(code = 401, message = "Not authorized to access value logs of this dynamic deployment!"),
+            @ApiResponse(code = 404, message = "Dynamic deployment or requesting user not found!")})
+    public ResponseEntity<ValueLogAggregation> aggregateDynamicDeploymentValueLogs(
+            @RequestHeader("X-MBP-Access-Request") String accessRequestHeader,
+            @PathVariable(value = "dynamicDeploymentId") @ApiParam(value = "ID of the dynamic deployment to aggregate value logs for", example = "5c97dc2583aeb6078c5ab672", required = true) String dynamicDeploymentId,
+            @RequestParam(value = "mode", required = false, defaultValue = "BUCKETS") @ApiParam(value = "The desired aggregation mode", example = "LTTB", required = false) ValueLogAggregationMode mode,
+            @RequestParam(value = "path", required = false, defaultValue = "value") @ApiParam(value = "The dot-separated path of the numeric field to aggregate", example = "value", required = false) String path,
+            @RequestParam(value = "bucketWidth", required = false, defaultValue = "1h") @ApiParam(value = "The desired width of the buckets (bucket mode only)", example = "15m", required = false) String bucketWidth,
+            @RequestParam(value = "points", required = false, defaultValue = "1000") @ApiParam(value = "The desired number of data points (LTTB mode only)", example = "500", required = false) int points,
+            @RequestParam(value = "unit", required = false) @ApiParam(value = "The desired unit of the values", example = "°C", required = false) String unit,
+            @RequestParam(value = "startTime", required = false) @ApiParam(value = "The desired start time for filtering in time", example = "1570635657000", required = false) Long startTime,
+            @RequestParam(value = "endTime", required = false) @ApiParam(value = "The desired end time for filtering in time", example = "1570635657000", required = false) Long endTime) throws EntityNotFoundException, MissingPermissionException {
+        // Retrieve dynamic deployment from the database (includes access-control)
+        DynamicDeployment dynamicDeployment = userEntityService.getForId(dynamicDeploymentRepository, dynamicDeploymentId);
+
+        // Create deployable component from dynamic deployment
+        DynamicDeployableComponent component = new DynamicDeployableComponent(dynamicDeployment);
+
+        // Aggregate value logs
+        return ResponseEntity.ok(aggregateValueLogs(component, mode, path, bucketWidth, points, unit, startTime, endTime, ACAccessRequest.valueOf(accessRequestHeader)));
+    }
+
     @DeleteMapping("/actuators/{id}/valueLogs")
     @ApiResponses({@ApiResponse(code = 204, message = "Success!"),
             @ApiResponse(code = 401, message = "Not authorized to delete value logs of this actuator!"),
@@ -246,70 +443,153 @@ public class RestValueLogController {
      * @throws EntityNotFoundException    In case that the entity could not be found
      */
     private <C extends Component> Page<ValueLog> getValueLogs(C component, String unit, Long startTime, Long endTime, Pageable pageable, ACAccessRequest accessRequest) throws MissingPermissionException, EntityNotFoundException {
-        ACPolicy policy = null;
-        if (!userEntityService.checkAdmin() && !userEntityService.checkOwner(component)) {
-            // Check permission (if access is granted, the policy that grants access is returned)
-            policy = userEntityService.getFirstPolicyGrantingAccess(component, ACAccessType.READ_VALUE_LOGS, accessRequest)
-                    .orElseThrow(() -> new MissingPermissionException("Component", component.getId(), ACAccessType.READ_VALUE_LOGS));
-        }
+        // Check permission and retrieve the effect to apply (if any)
+        ACCompiledEffect effect = getEffectForReadAccess(component, accessRequest);
 
-        //Retrieve all value logs from database
-        List<ValueLog> valueLogsList = valueLogRepository.findAllByIdRef(component.getId());
-
-        //Filter value logs for start time if provided
-        if ((startTime != null) && (startTime > 0)) {
-            valueLogsList = valueLogsList.stream().filter(valueLog -> valueLog.getTime().toEpochMilli() >= startTime).collect(Collectors.toList());
-        }
-
-        //Filter value logs for end time if provided
-        if ((endTime != null) && (endTime > 0)) {
-            valueLogsList = valueLogsList.stream().filter(valueLog -> valueLog.getTime().toEpochMilli() < endTime).collect(Collectors.toList());
-        }
+        //Retrieve the requested page of value logs within the time range from database
+        Page<ValueLog> valueLogsPage = valueLogRepository.findAllByIdRefAndTimeRange(component.getId(),
+                toInstant(startTime), toInstant(endTime), pageable);
+        List<ValueLog> valueLogsList = valueLogsPage.getContent();
 
         // Convert value logs to target unit if required
-        if (S.notEmpty(unit)) {
-            // Parse unit
-            Unit<? extends Quantity> targetUnit;
-            try {
-                targetUnit = Unit.valueOf(unit);
-            } catch (Exception e) {
-                throw new MBPException(HttpStatus.BAD_REQUEST, "Invalid unit!");
-            }
-
-            // Get source unit
-            Unit<? extends Quantity> sourceUnit = component.getOperator().getUnitObject();
-
-            // Convert value logs using corresponding converter
-            UnitConverter converter = sourceUnit.getConverterTo(targetUnit);
+        UnitConverter converter = getUnitConverter(component, unit);
+        if (converter != null) {
             for (ValueLog valueLog : valueLogsList) {
                 unitConverterService.convertValueLogValue(valueLog, converter);
             }
         }
         // Apply effect (constraints)
-        if (policy != null && policy.getEffectId() != null) {
-            ACAbstractEffect effect = effectService.getForId(policy.getEffectId());
-            valueLogsList.forEach(effect::apply);
+        if (effect != null) {
+            effect.applyAll(valueLogsList);
         }
 
-        // Iterate over all specified sort parameters
-        for (Sort.Order order : pageable.getSort()) {
-            // Only sorting for time property is supported, thus ignore the other ones
-            if (!order.getProperty().equals("time")) {
-                continue;
-            }
+        return valueLogsPage;
+    }
 
-            // Check sort direction and adjust document if necessary
-            if (order.isDescending()) {
-                Collections.reverse(valueLogsList);
-            }
+    /**
+     * Exports the value logs for a given component and an optional time window in a given format and converts
+     * them to a given unit. The value logs are streamed directly from the database to the response.
+     *
+     * @param component The {@link Component} the value logs should be exported for.
+     * @param format    The export format to use.
+     * @param unit      The target unit as {@code String}.
+     * @param startTime The start time for filtering in time
+     * @param endTime   The end time for filtering in time
+     * @return the response entity with the {@link StreamingResponseBody} that writes the value logs.
+     * @throws MissingPermissionException In case of missing permissions
+     * @throws EntityNotFoundException    In case that the entity could not be found
+     */
+    private <C extends Component> ResponseEntity<StreamingResponseBody> exportValueLogs(C component, ValueLogExportFormat format, String unit, Long startTime, Long endTime, ACAccessRequest accessRequest) throws MissingPermissionException, EntityNotFoundException {
+        // Check permission and retrieve the effect to apply (if any)
+        ACCompiledEffect effect = getEffectForReadAccess(component, accessRequest);
+
+        // Create streaming response body for the export
+        StreamingResponseBody body = valueLogExportService.exportValueLogs(component.getId(), format,
+                toInstant(startTime), toInstant(endTime), getUnitConverter(component, unit), effect);
+
+        // Name of the file to export
+        String fileName = "valueLogs_" + component.getId() + "." + format.getFileExtension();
+
+        return ResponseEntity.ok()
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + fileName + "\"")
+                .contentType(MediaType.parseMediaType(format.getMediaType()))
+                .body(body);
+    }
+
+    /**
+     * Aggregates the value logs for a given component and an optional time window by using a given mode and
+     * converts the aggregated values to a given unit.
+     *
+     * @param component   The {@link Component} the value logs should be aggregated for.
+     * @param mode        The aggregation mode to use.
+     * @param path        The dot-separated path of the numeric field to aggregate.
+     * @param bucketWidth The width of the buckets as {@code String}, e.g. "1h" (bucket mode only).
+     * @param points      The desired number of data points (LTTB mode only).
+     * @param unit        The target unit as {@code String}.
+     * @param startTime   The start time for filtering in time
+     * @param endTime     The end time for filtering in time
+     * @return the aggregation result.
+     * @throws MissingPermissionException In case of missing permissions
+     * @throws EntityNotFoundException    In case that the entity could not be found
+     */
+    private <C extends Component> ValueLogAggregation aggregateValueLogs(C component, ValueLogAggregationMode mode, String path, String bucketWidth, int points, String unit, Long startTime, Long endTime, ACAccessRequest accessRequest) throws MissingPermissionException, EntityNotFoundException {
+        // Check permission and retrieve the effect to apply (if any)
+        ACCompiledEffect effect = getEffectForReadAccess(component, accessRequest);
+
+        // Create unit converter if required
+        UnitConverter converter = getUnitConverter(component, unit);
+
+        try {
+            // Parse bucket width if required
+            long bucketWidthMillis = (mode == ValueLogAggregationMode.BUCKETS) ? ValueLogAggregationService.parseBucketWidth(bucketWidth) : 0;
+
+            // Perform aggregation
+            return valueLogAggregationService.aggregateValueLogs(component.getId(), mode, toInstant(startTime),
+                    toInstant(endTime), path, bucketWidthMillis, points, converter, effect);
+        } catch (IllegalArgumentException e) {
+            throw new MBPException(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
+    }
+
+    /**
+     * Checks whether the current user is allowed to read the value logs of a given component and returns the
+     * access control effect that needs to be applied to the value logs.
+     *
+     * @param component     The {@link Component} whose value logs are supposed to be read.
+     * @param accessRequest The access request of the user.
+     * @return The effect to apply or null, if no effect needs to be applied.
+     * @throws MissingPermissionException In case of missing permissions
+     * @throws EntityNotFoundException    In case that the effect could not be found
+     */
+    private <C extends Component> ACCompiledEffect getEffectForReadAccess(C component, ACAccessRequest accessRequest) throws MissingPermissionException, EntityNotFoundException {
+        // Admins and owners may read the value logs without constraints
+        if (userEntityService.checkAdmin() || userEntityService.checkOwner(component)) {
+            return null;
+        }
+
+        // Check permission (if access is granted, the policy that grants access is returned)
+        ACPolicy policy = userEntityService.getFirstPolicyGrantingAccess(component, ACAccessType.READ_VALUE_LOGS, accessRequest)
+                .orElseThrow(() -> new MissingPermissionException("Component", component.getId(), ACAccessType.READ_VALUE_LOGS));
+
+        // Retrieve compiled effect of the policy (if any)
+        return effectService.getCompiledForId(policy.getEffectId());
+    }
 
-            // Only ordering for time is supported, so no need to consider other properties
-            break;
+    /**
+     * Creates a converter that converts values of a given component to a given target unit.
+     *
+     * @param component The {@link Component} whose values are supposed to be converted.
+     * @param unit      The target unit as {@code String}.
+     * @return The unit converter or null, if no target unit was provided.
+     */
+    private UnitConverter getUnitConverter(Component component, String unit) {
+        // Check if conversion is required
+        if (!S.notEmpty(unit)) {
+            return null;
         }
 
-        //Create Page from results
-        final int start = (int) pageable.getOffset();
-        final int end = Math.min((start + pageable.getPageSize()), valueLogsList.size());
-        return new PageImpl<>(valueLogsList.subList(start, end), pageable, valueLogsList.size());
+        // Parse unit
+        Unit<? extends Quantity> targetUnit;
+        try {
+            targetUnit = Unit.valueOf(unit);
+        } catch (Exception e) {
+            throw new MBPException(HttpStatus.BAD_REQUEST, "Invalid unit!");
+        }
+
+        // Get source unit
+        Unit<? extends Quantity> sourceUnit = component.getOperator().getUnitObject();
+
+        // Create corresponding converter
+        return sourceUnit.getConverterTo(targetUnit);
+    }
+
+    /**
+     * Converts a given epoch time in milliseconds to an {@link Instant}.
+     *
+     * @param epochMillis The epoch time in milliseconds
+     * @return The resulting instant or null, if no positive epoch time was provided
+     */
+    private Instant toInstant(Long epochMillis) {
+        return ((epochMillis != null) && (epochMillis > 0)) ? Instant.ofEpochMilli(epochMillis) : null;
     }
 }
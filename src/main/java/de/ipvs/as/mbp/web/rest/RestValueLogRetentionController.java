@@ -0,0 +1,195 @@
+package de.ipvs.as.mbp.web.rest;
+
+import de.ipvs.as.mbp.constants.Constants;
+import de.ipvs.as.mbp.domain.access_control.ACAccessRequest;
+import de.ipvs.as.mbp.domain.access_control.ACAccessType;
+import de.ipvs.as.mbp.domain.monitoring.MonitoringComponent;
+import de.ipvs.as.mbp.domain.valueLog.ValueLogRetentionPolicy;
+import de.ipvs.as.mbp.error.EntityNotFoundException;
+import de.ipvs.as.mbp.error.MissingPermissionException;
+import de.ipvs.as.mbp.repository.ActuatorRepository;
+import de.ipvs.as.mbp.repository.SensorRepository;
+import de.ipvs.as.mbp.repository.discovery.DynamicDeploymentRepository;
+import de.ipvs.as.mbp.service.log_writer.ValueLogRetentionService;
+import de.ipvs.as.mbp.service.user.UserEntityService;
+import de.ipvs.as.mbp.web.rest.helper.MonitoringHelper;
+import io.swagger.annotations.*;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+/**
+ * REST Controller for retrieving and updating the retention policies of the value logs of certain components.
+ * Retention times that are omitted when updating a policy are inherited from the defaults for the component type.
+ */
+@RestController
+@RequestMapping(Constants.BASE_PATH)
+@Api(tags = {"Value log retention"})
+public class RestValueLogRetentionController {
+
+    @Autowired
+    private ActuatorRepository actuatorRepository;
+
+    @Autowired
+    private SensorRepository sensorRepository;
+
+    @Autowired
+    private DynamicDeploymentRepository dynamicDeploymentRepository;
+
+    @Autowired
+    private UserEntityService userEntityService;
+
+    @Autowired
+    private MonitoringHelper monitoringHelper;
+
+    @Autowired
+    private ValueLogRetentionService valueLogRetentionService;
+
+    @GetMapping("/actuators/{id}/valueLogs/retention")
+    @ApiOperation(value = "Retrieves the effective retention policy of the value logs of an actuator", produces = "application/hal+json")
+    @ApiResponses({@ApiResponse(code = 200, message = "Success!"),
+            @ApiResponse(code = 401, message = "Not authorized to access value logs of this actuator!"),
+            @ApiResponse(code = 404, message = "Actuator or requesting user not found!")})
+    public ResponseEntity<ValueLogRetentionPolicy> getActuatorRetentionPolicy(
+            @RequestHeader("X-MBP-Access-Request") String accessRequestHeader,
+            @PathVariable(value = "id") @ApiParam(value = "ID of the actuator", example = "5c97dc2583aeb6078c5ab672", required = true) String actuatorId) throws EntityNotFoundException, MissingPermissionException {
+        // Check permission
+        userEntityService.requirePermission(actuatorRepository, actuatorId, ACAccessType.READ_VALUE_LOGS, ACAccessRequest.valueOf(accessRequestHeader));
+
+        // Retrieve effective policy
+        return ResponseEntity.ok(valueLogRetentionService.getEffectivePolicy(actuatorId, ValueLogRetentionService.TYPE_ACTUATOR));
+    }
+
+    @PutMapping("/actuators/{id}/valueLogs/retention")
+    @ApiOperation(value = "Updates the retention policy of the value logs of an actuator", produces = "application/hal+json")
+    @ApiResponses({@ApiResponse(code = 200, message = "Success!"),
+            @ApiResponse(code = 401, message = "Not authorized to delete value logs of this actuator!"),
+            @ApiResponse(code = 404, message = "Actuator or requesting user not found!")})
+    public ResponseEntity<ValueLogRetentionPolicy> updateActuatorRetentionPolicy(
+            @RequestHeader("X-MBP-Access-Request") String accessRequestHeader,
+            @PathVariable(value = "id") @ApiParam(value = "ID of the actuator", example = "5c97dc2583aeb6078c5ab672", required = true) String actuatorId,
+            @RequestBody @ApiParam(value = "The retention policy to set", required = true) ValueLogRetentionPolicy policy) throws EntityNotFoundException, MissingPermissionException {
+        // Check permission
+        userEntityService.requirePermission(actuatorRepository, actuatorId, ACAccessType.DELETE_VALUE_LOGS, ACAccessRequest.valueOf(accessRequestHeader));
+
+        // Update policy
+        return ResponseEntity.ok(updateRetentionPolicy(actuatorId, ValueLogRetentionService.TYPE_ACTUATOR, policy));
+    }
+
+    @GetMapping("/sensors/{id}/valueLogs/retention")
+    @ApiOperation(value = "Retrieves the effective retention policy of the value logs of a sensor", produces = "application/hal+json")
+    @ApiResponses({@ApiResponse(code = 200, message = "Success!"),
+            @ApiResponse(code = 401, message = "Not authorized to access value logs of this sensor!"),
+            @ApiResponse(code = 404, message = "Sensor or requesting user not found!")})
+    public ResponseEntity<ValueLogRetentionPolicy> getSensorRetentionPolicy(
+            @RequestHeader("X-MBP-Access-Request") String accessRequestHeader,
+            @PathVariable(value = "id") @ApiParam(value = "ID of the sensor", example = "5c97dc2583aeb6078c5ab672", required = true) String sensorId) throws EntityNotFoundException, MissingPermissionException {
+        // Check permission
+        userEntityService.requirePermission(sensorRepository, sensorId, ACAccessType.READ_VALUE_LOGS, ACAccessRequest.valueOf(accessRequestHeader));
+
+        // Retrieve effective policy
+        return ResponseEntity.ok(valueLogRetentionService.getEffectivePolicy(sensorId, ValueLogRetentionService.TYPE_SENSOR));
+    }
+
+    @PutMapping("/sensors/{id}/valueLogs/retention")
+    @ApiOperation(value = "Updates the retention policy of the value logs of a sensor", produces = "application/hal+json")
+    @ApiResponses({@ApiResponse(code = 200, message = "Success!"),
+            @ApiResponse(code = 401, message = "Not authorized to delete value logs of this sensor!"),
+            @ApiResponse(code = 404, message = "Sensor or requesting user not found!")})
+    public ResponseEntity<ValueLogRetentionPolicy> updateSensorRetentionPolicy(
+            @RequestHeader("X-MBP-Access-Request") String accessRequestHeader,
+            @PathVariable(value = "id") @ApiParam(value = "ID of the sensor", example = "5c97dc2583aeb6078c5ab672", required = true) String sensorId,
+            @RequestBody @ApiParam(value = "The retention policy to set", required = true) ValueLogRetentionPolicy policy) throws EntityNotFoundException, MissingPermissionException {
+        // Check permission
+        userEntityService.requirePermission(sensorRepository, sensorId, ACAccessType.DELETE_VALUE_LOGS, ACAccessRequest.valueOf(accessRequestHeader));
+
+        // Update policy
+        return ResponseEntity.ok(updateRetentionPolicy(sensorId, ValueLogRetentionService.TYPE_SENSOR, policy));
+    }
+
+    @GetMapping("/monitoring/{deviceId}/valueLogs/retention")
+    @ApiOperation(value = "Retrieves the effective retention policy of the value logs of a monitoring component", produces = "application/hal+json")
+    @ApiResponses({@ApiResponse(code = 200, message = "Success!"),
+            @ApiResponse(code = 401, message = "Not authorized to access value logs of this monitoring component!"),
+            @ApiResponse(code = 404, message = "Device, monitoring operator or requesting user not found!")})
+    public ResponseEntity<ValueLogRetentionPolicy> getMonitoringRetentionPolicy(
+            @RequestHeader("X-MBP-Access-Request") String accessRequestHeader,
+            @PathVariable(value = "deviceId") @ApiParam(value = "ID of the device", example = "5c97dc2583aeb6078c5ab672", required = true) String deviceId,
+            @RequestParam("monitoringOperatorId") @ApiParam(value = "ID of the monitoring operator", example = "5c97dc2583aeb6078c5ab672", required = true) String monitoringOperatorId) throws EntityNotFoundException, MissingPermissionException {
+        // Create new monitoring component from parameters
+        MonitoringComponent monitoringComponent = monitoringHelper.createMonitoringComponent(deviceId, monitoringOperatorId);
+
+        // Check permission
+        userEntityService.requirePermission(monitoringComponent, ACAccessType.MONITOR, ACAccessRequest.valueOf(accessRequestHeader));
+
+        // Retrieve effective policy
+        return ResponseEntity.ok(valueLogRetentionService.getEffectivePolicy(monitoringComponent.getId(), ValueLogRetentionService.TYPE_MONITORING));
+    }
+
+    @PutMapping("/monitoring/{deviceId}/valueLogs/retention")
+    @ApiOperation(value = "Updates the retention policy of the value logs of a monitoring component", produces = "application/hal+json")
+    @ApiResponses({@ApiResponse(code = 200, message = "Success!"),
+            @ApiResponse(code = 401, message = "Not authorized to delete value logs of this monitoring component!"),
+            @ApiResponse(code = 404, message = "Device, monitoring operator or requesting user not found!")})
+    public ResponseEntity<ValueLogRetentionPolicy> updateMonitoringRetentionPolicy(
+            @RequestHeader("X-MBP-Access-Request") String accessRequestHeader,
+            @PathVariable(value = "deviceId") @ApiParam(value = "ID of the device", example = "5c97dc2583aeb6078c5ab672", required = true) String deviceId,
+            @RequestParam("monitoringOperatorId") @ApiParam(value = "ID of the monitoring operator", example = "5c97dc2583aeb6078c5ab672", required = true) String monitoringOperatorId,
+            @RequestBody @ApiParam(value = "The retention policy to set", required = true) ValueLogRetentionPolicy policy) throws EntityNotFoundException, MissingPermissionException {
+        // Create new monitoring component from parameters
+        MonitoringComponent monitoringComponent = monitoringHelper.createMonitoringComponent(deviceId, monitoringOperatorId);
+
+        // Check permission
+        userEntityService.requirePermission(monitoringComponent.getDevice(), ACAccessType.DELETE_VALUE_LOGS, ACAccessRequest.valueOf(accessRequestHeader));
+
+        // Update policy
+        return ResponseEntity.ok(updateRetentionPolicy(monitoringComponent.getId(), ValueLogRetentionService.TYPE_MONITORING, policy));
+    }
+
+    @GetMapping("/discovery/dynamic-deployments/{dynamicDeploymentId}/valueLogs/retention")
+    @ApiOperation(value = "Retrieves the effective retention policy of the value logs of a dynamic deployment", produces = "application/hal+json")
+    @ApiResponses({@ApiResponse(code = 200, message = "Success!"),
+            @ApiResponse(code = 401, message = "Not authorized to access value logs of this dynamic deployment!"),
+            @ApiResponse(code = 404, message = "Dynamic deployment or requesting user not found!")})
+    public ResponseEntity<ValueLogRetentionPolicy> getDynamicDeploymentRetentionPolicy(
+            @RequestHeader("X-MBP-Access-Request") String accessRequestHeader,
+            @PathVariable(value = "dynamicDeploymentId") @ApiParam(value = "ID of the dynamic deployment", example = "5c97dc2583aeb6078c5ab672", required = true) String dynamicDeploymentId) throws EntityNotFoundException, MissingPermissionException {
+        // Check permission
+        userEntityService.requirePermission(dynamicDeploymentRepository, dynamicDeploymentId, ACAccessType.READ_VALUE_LOGS, ACAccessRequest.valueOf(accessRequestHeader));
+
+        // Retrieve effective policy
+        return ResponseEntity.ok(valueLogRetentionService.getEffectivePolicy(dynamicDeploymentId, ValueLogRetentionService.TYPE_DYNAMIC_DEPLOYMENT));
+    }
+
+    @PutMapping("/discovery/dynamic-deployments/{dynamicDeploymentId}/valueLogs/retention")
+    @ApiOperation(value = "Updates the retention policy of the value logs of a dynamic deployment", produces = "application/hal+json")
+    @ApiResponses({@ApiResponse(code = 200, message = "Success!"),
+            @ApiResponse(code = 401, message = "Not authorized to delete value logs of this dynamic deployment!"),
+            @ApiResponse(code = 404, message = "Dynamic deployment or requesting user not found!")})
+    public ResponseEntity<ValueLogRetentionPolicy> updateDynamicDeploymentRetentionPolicy(
+            @RequestHeader("X-MBP-Access-Request") String accessRequestHeader,
+            @PathVariable(value = "dynamicDeploymentId") @ApiParam(value = "ID of the dynamic deployment", example = "5c97dc2583aeb6078c5ab672", required = true) String dynamicDeploymentId,
+            @RequestBody @ApiParam(value = "The retention policy to set", required = true) ValueLogRetentionPolicy policy) throws EntityNotFoundException, MissingPermissionException {
+        // Check permission
+        userEntityService.requirePermission(dynamicDeploymentRepository, dynamicDeploymentId, ACAccessType.DELETE_VALUE_LOGS, ACAccessRequest.valueOf(accessRequestHeader));
+
+        // Update policy
+        return ResponseEntity.ok(updateRetentionPolicy(dynamicDeploymentId, ValueLogRetentionService.TYPE_DYNAMIC_DEPLOYMENT, policy));
+    }
+
+    /**
+     * Stores a given retention policy for a given component and returns the resulting effective policy.
+     *
+     * @param componentId   The ID of the component
+     * @param componentType The type name of the component
+     * @param policy        The policy to store
+     * @return The resulting effective policy
+     */
+    private ValueLogRetentionPolicy updateRetentionPolicy(String componentId, String componentType, ValueLogRetentionPolicy policy) {
+        // Store policy for the given component, regardless of the ID within the request body
+        valueLogRetentionService.savePolicy(policy.setComponentId(componentId));
+
+        // Return the effective policy
+        return valueLogRetentionService.getEffectivePolicy(componentId, componentType);
+    }
+}
@@ -1,7 +1,6 @@
 package de.ipvs.as.mbp.web.rest;
 
 import de.ipvs.as.mbp.constants.Constants;
-import de.ipvs.as.mbp.domain.access_control.ACAbstractEffect;
 import de.ipvs.as.mbp.domain.access_control.ACAccessRequest;
 import de.ipvs.as.mbp.domain.access_control.ACAccessType;
 import de.ipvs.as.mbp.domain.access_control.ACPolicy;
@@ -16,6 +15,7 @@ import de.ipvs.as.mbp.error.MissingPermissionException;
 import de.ipvs.as.mbp.repository.ActuatorRepository;
 import de.ipvs.as.mbp.repository.SensorRepository;
 import de.ipvs.as.mbp.repository.discovery.DynamicDeploymentRepository;
+import de.ipvs.as.mbp.service.access_control.ACCompiledEffect;
 import de.ipvs.as.mbp.service.access_control.ACEffectService;
 import de.ipvs.as.mbp.service.discovery.deployment.DynamicDeployableComponent;
 import de.ipvs.as.mbp.service.stats.ValueLogStatsService;
@@ -191,12 +191,12 @@ public class RestValueLogStatsController {
      * @throws EntityNotFoundException    In case an entity could not be found
      */
     private <C extends Component> ValueLogStats calculateValueLogStats(C component, String unitString, ACAccessRequest accessRequest) throws MissingPermissionException, EntityNotFoundException {
-        ACAbstractEffect effect = null;
+        ACCompiledEffect effect = null;
         if (!userEntityService.checkAdmin() && !userEntityService.checkOwner(component)) {
             // Check permission (if access is granted, the policy that grants access is returned)
             ACPolicy policy = userEntityService.getFirstPolicyGrantingAccess(component, ACAccessType.READ_VALUE_LOG_STATS, accessRequest)
                     .orElseThrow(() -> new MissingPermissionException("Component", component.getId(), ACAccessType.READ_VALUE_LOGS));
-            effect = effectService.getForId(policy.getEffectId());
+            effect = effectService.getCompiledForId(policy.getEffectId());
         }
 
         // Parse unit
@@ -8,9 +8,9 @@ import de.ipvs.as.mbp.error.DeploymentException;
 import de.ipvs.as.mbp.service.deployment.ComponentState;
 import de.ipvs.as.mbp.service.deployment.DeployerDispatcher;
 import de.ipvs.as.mbp.service.deployment.IDeployer;
+import de.ipvs.as.mbp.service.deployment.StateMonitoringService;
 import org.springframework.beans.factory.annotation.Autowired;
 
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -26,6 +26,9 @@ public class DeploymentWrapper {
     @Autowired
     private DeployerDispatcher deployerDispatcher;
 
+    @Autowired
+    private StateMonitoringService stateMonitoringService;
+
     /**
      * Checks if a component is currently running.
      *
@@ -76,6 +79,9 @@ public class DeploymentWrapper {
 
         // Start component
         deployer.startComponent(component, parameterInstances);
+
+        // Update cached component state
+        stateMonitoringService.refreshComponentState(component);
     }
 
     /**
@@ -89,6 +95,9 @@ public class DeploymentWrapper {
 
         // Undeploy component
         deployer.stopComponent(component);
+
+        // Update cached component state
+        stateMonitoringService.refreshComponentState(component);
     }
 
     /**
@@ -102,6 +111,9 @@ public class DeploymentWrapper {
 
         // Deploy component
         deployer.deployComponent(component);
+
+        // Update cached component state
+        stateMonitoringService.refreshComponentState(component);
     }
 
     /**
@@ -115,41 +127,50 @@ public class DeploymentWrapper {
 
         // Undeploy component
         deployer.undeployComponent(component);
+
+        // Update cached component state
+        stateMonitoringService.refreshComponentState(component);
     }
 
     /**
-     * Retrieve the status for each given component.
+     * Retrieve the status for each given component, using cached states where available.
      *
      * @param componentList the list of {@link Component}s.
      * @return a map holding the {@link ComponentState} for each component identified by its id.
      */
     public Map<String, ComponentState> getStatesAllComponents(List<Component> componentList) {
-        //Find suitable deployer component
-        IDeployer deployer = deployerDispatcher.getDeployer();
-
-        // Create result map (component id -> component state)
-        Map<String, ComponentState> resultMap = new HashMap<>();
-
-        // Iterate over all components and determine their state
-        for (Component component : componentList) {
-            ComponentState state = deployer.retrieveComponentState(component);
-            resultMap.put(component.getId(), state);
-        }
+        return getStatesAllComponents(componentList, false);
+    }
 
-        return resultMap;
+    /**
+     * Retrieve the status for each given component. The states are determined concurrently.
+     *
+     * @param componentList the list of {@link Component}s.
+     * @param refresh       {@code true} if the states are supposed to be determined regardless of cached states.
+     * @return a map holding the {@link ComponentState} for each component identified by its id.
+     */
+    public Map<String, ComponentState> getStatesAllComponents(List<Component> componentList, boolean refresh) {
+        return stateMonitoringService.getComponentStates(componentList, refresh);
     }
 
     /**
-     * Retrieve the status for a given component.
+     * Retrieve the status for a given component, using the cached state if available.
      *
      * @param component the {@link Component}.
      * @return the {@link ComponentState}.
      */
     public ComponentState getComponentState(Component component) {
-        //Find suitable deployer component
-        IDeployer deployer = deployerDispatcher.getDeployer();
+        return getComponentState(component, false);
+    }
 
-        // Determine component state
-        return deployer.retrieveComponentState(component);
+    /**
+     * Retrieve the status for a given component.
+     *
+     * @param component the {@link Component}.
+     * @param refresh   {@code true} if the state is supposed to be determined regardless of the cached state.
+     * @return the {@link ComponentState}.
+     */
+    public ComponentState getComponentState(Component component, boolean refresh) {
+        return stateMonitoringService.getComponentState(component, refresh);
     }
 }
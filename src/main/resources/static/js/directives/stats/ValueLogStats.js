@@ -158,6 +158,11 @@ app.directive('valueLogStats', ['$interval', function ($interval) {
             '<td>{{getTimeString(statisticsData.lastLog.time)}}<json-formatter json="statisticsData.lastLog.value" open="1"></json-formatter></td>' +
             '<span>&nbsp;{{(unit)}}</span></td>' +
             '</tr>' +
+            '<tr ng-repeat="(path, field) in statisticsData.fieldStats">' +
+            '<th>{{path}}:</th>' +
+            '<td>min: {{field.minimum}}, max: {{field.maximum}}, avg: {{field.average}}, ' +
+            'std. deviation: {{field.standardDeviation}} ({{field.count}} values)</td>' +
+            '</tr>' +
             '</tbody>' +
             '</table>'
         ,
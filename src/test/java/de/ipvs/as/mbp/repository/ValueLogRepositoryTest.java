@@ -0,0 +1,136 @@
+package de.ipvs.as.mbp.repository;
+
+import de.ipvs.as.mbp.domain.valueLog.ValueLog;
+import org.bson.Document;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ValueLogRepositoryTest {
+
+    private static final int VALUES_PER_DOCUMENT = 80;
+
+    //Simulated documents of a single idref, holding the epoch seconds of their value logs
+    private final List<List<Long>> buckets = new ArrayList<>();
+
+    @Test
+    void splitIntoChunks_appendsToNewestBucketOnly() {
+        //Late batch creates a partial bucket that precedes the newest one
+        write(times(1000, 10));
+        write(times(0, 10));
+        write(times(2000, 5));
+
+        assertThat(buckets).hasSize(2);
+        assertThat(bucketOf(0)).containsExactlyElementsOf(times(0, 10));
+        assertThat(bucketOf(2000)).hasSize(15).containsAll(times(1000, 10));
+
+        //Value logs exceeding the room of the newest bucket are written into a new one
+        write(times(3000, 70));
+        assertThat(buckets).hasSize(3);
+        assertThat(bucketOf(2000)).hasSize(80).contains(3064L);
+        assertThat(bucketOf(3069)).containsExactlyElementsOf(times(3065, 5));
+        assertDisjoint();
+    }
+
+    @Test
+    void splitIntoChunks_keepsBucketsDisjointForSparseBatches() {
+        for (int i = 0; i < 50; i++) {
+            write(times(i * 1000L, 7));
+        }
+
+        assertThat(buckets.stream().mapToInt(List::size).sum()).isEqualTo(350);
+        assertThat(buckets).allSatisfy(bucket -> assertThat(bucket).hasSizeLessThanOrEqualTo(VALUES_PER_DOCUMENT));
+        assertThat(buckets).hasSize(5);
+        assertDisjoint();
+    }
+
+    @Test
+    void splitIntoChunks_keepsBucketsDisjointForOutOfOrderBatches() {
+        //Batches arrive in reverse order
+        for (int i = 20; i >= 0; i--) {
+            write(times(i * 100L, 30));
+        }
+
+        //Late batch between existing buckets and batch after the newest bucket
+        write(times(1050, 20));
+        write(times(5000, 200));
+
+        assertThat(buckets.stream().mapToInt(List::size).sum()).isEqualTo(21 * 30 + 20 + 200);
+        assertDisjoint();
+    }
+
+    @Test
+    void splitIntoChunks_keepsBucketsDisjointForShuffledBatches() {
+        Random random = new Random(42);
+        for (int i = 0; i < 10; i++) {
+            List<Long> batch = times(i * 1000L, 10 + random.nextInt(150));
+            Collections.shuffle(batch, random);
+            write(batch);
+        }
+
+        assertDisjoint();
+    }
+
+    /**
+     * Writes value logs with the given epoch seconds into the simulated documents, as the repository would do.
+     */
+    private void write(List<Long> epochSeconds) {
+        List<ValueLog> valueLogs = new ArrayList<>();
+        for (long seconds : epochSeconds) {
+            valueLogs.add(new ValueLog().setIdref("sensor").setTime(Instant.ofEpochSecond(seconds))
+                    .setValue(new Document("value", seconds)));
+        }
+        valueLogs.sort(Comparator.comparing(ValueLog::getTime));
+
+        //Newest bucket is the one with the latest first and last timestamp
+        List<Long> newest = buckets.stream().max(Comparator.<List<Long>>comparingLong(ValueLogRepositoryTest::first)
+                .thenComparingLong(ValueLogRepositoryTest::last)).orElse(null);
+        long newestFirst = (newest == null) ? Long.MAX_VALUE : first(newest);
+        long newestRoom = (newest == null) ? 0 : VALUES_PER_DOCUMENT - newest.size();
+
+        for (ValueLogRepository.BucketChunk chunk : ValueLogRepository.splitIntoChunks(valueLogs, newestFirst, newestRoom)) {
+            assertThat(chunk.getValueLogs()).hasSizeLessThanOrEqualTo(VALUES_PER_DOCUMENT);
+            List<Long> bucket = chunk.isAppendToNewest() ? newest : new ArrayList<>();
+            chunk.getValueLogs().forEach(valueLog -> bucket.add(valueLog.getTime().getEpochSecond()));
+            if (!chunk.isAppendToNewest()) {
+                buckets.add(bucket);
+            }
+            assertThat(bucket).hasSizeLessThanOrEqualTo(VALUES_PER_DOCUMENT);
+        }
+    }
+
+    private void assertDisjoint() {
+        List<List<Long>> sorted = new ArrayList<>(buckets);
+        sorted.sort(Comparator.comparingLong(ValueLogRepositoryTest::first));
+        for (int i = 1; i < sorted.size(); i++) {
+            assertThat(last(sorted.get(i - 1))).as("End of bucket %d", i - 1).isLessThan(first(sorted.get(i)));
+        }
+    }
+
+    private List<Long> bucketOf(long epochSeconds) {
+        return buckets.stream().filter(bucket -> bucket.contains(epochSeconds)).findFirst().orElse(null);
+    }
+
+    private static List<Long> times(long start, int count) {
+        List<Long> times = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            times.add(start + i);
+        }
+        return times;
+    }
+
+    private static long first(List<Long> bucket) {
+        return Collections.min(bucket);
+    }
+
+    private static long last(List<Long> bucket) {
+        return Collections.max(bucket);
+    }
+}
@@ -0,0 +1,52 @@
+package de.ipvs.as.mbp.service;
+
+import de.ipvs.as.mbp.domain.valueLog.ValueLog;
+import org.bson.Document;
+import org.junit.jupiter.api.Test;
+
+import javax.measure.converter.UnitConverter;
+import javax.measure.unit.Unit;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class UnitConverterServiceTest {
+
+    private final UnitConverterService unitConverterService = new UnitConverterService();
+    private final UnitConverter converter = Unit.valueOf("m").getConverterTo(Unit.valueOf("cm"));
+
+    @Test
+    void convertValueLogValue_convertsValuesAtPathOnly() {
+        Document value = new Document("sensor", new Document("distance", 1.5).append("name", "front"))
+                .append("distance", 2.0);
+
+        unitConverterService.convertValueLogValue(new ValueLog().setValue(value), "sensor.distance", converter);
+
+        assertThat(value).isEqualTo(new Document("sensor", new Document("distance", 150.0).append("name", "front"))
+                .append("distance", 2.0));
+    }
+
+    @Test
+    void convertValueLogValue_convertsValuesWithinArrays() {
+        Document value = new Document("samples", new ArrayList<>(Arrays.asList(
+                new Document("distances", new ArrayList<>(Arrays.asList(1, "0.5", "far"))),
+                new Document("distances", true))));
+
+        unitConverterService.convertValueLogValue(new ValueLog().setValue(value), "samples[*].distances[*]", converter);
+
+        assertThat(value).isEqualTo(new Document("samples", Arrays.asList(
+                new Document("distances", Arrays.asList(100.0, 50.0, "far")),
+                new Document("distances", true))));
+    }
+
+    @Test
+    void convertValueLogValue_ignoresMissingPaths() {
+        Document value = new Document("distance", 2.0);
+
+        unitConverterService.convertValueLogValue(new ValueLog().setValue(value), "sensor.distance", converter);
+        unitConverterService.convertValueLogValue(new ValueLog(), "distance", converter);
+
+        assertThat(value).isEqualTo(new Document("distance", 2.0));
+    }
+}
@@ -0,0 +1,149 @@
+package de.ipvs.as.mbp.service.access_control;
+
+import de.ipvs.as.mbp.domain.access_control.ACAbstractCondition;
+import de.ipvs.as.mbp.domain.access_control.ACAccess;
+import de.ipvs.as.mbp.domain.access_control.ACAccessRequest;
+import de.ipvs.as.mbp.domain.access_control.ACAccessType;
+import de.ipvs.as.mbp.domain.access_control.ACArgumentFunction;
+import de.ipvs.as.mbp.domain.access_control.ACAttribute;
+import de.ipvs.as.mbp.domain.access_control.ACAttributeKey;
+import de.ipvs.as.mbp.domain.access_control.ACCompositeCondition;
+import de.ipvs.as.mbp.domain.access_control.ACConditionSimpleValueArgument;
+import de.ipvs.as.mbp.domain.access_control.ACEntityType;
+import de.ipvs.as.mbp.domain.access_control.ACLogicalOperator;
+import de.ipvs.as.mbp.domain.access_control.ACSimpleCondition;
+import de.ipvs.as.mbp.domain.access_control.IACRequestedEntity;
+import de.ipvs.as.mbp.domain.access_control.IACRequestingEntity;
+import de.ipvs.as.mbp.domain.user.User;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class ACCompiledConditionTest {
+
+    private static final ACAccessRequest EMPTY_REQUEST = new ACAccessRequest(Collections.emptyList());
+
+    @Test
+    void compile_comparesValueArguments() throws Exception {
+        assertThat(valueCondition(ACArgumentFunction.LESS_THAN, 3, 5).compile()
+                .evaluate(access(new User()), EMPTY_REQUEST)).isTrue();
+        assertThat(valueCondition(ACArgumentFunction.GREATER_THAN, 3, 5).compile()
+                .evaluate(access(new User()), EMPTY_REQUEST)).isFalse();
+        assertThat(valueCondition(ACArgumentFunction.NOT_EQUALS, "alice", "bob").compile()
+                .evaluate(access(new User()), EMPTY_REQUEST)).isTrue();
+    }
+
+    @Test
+    void compile_resolvesAttributesOfEachAccess() throws Exception {
+        ACCompiledCondition condition = usernameCondition("alice").compile();
+
+        //Compiled condition is reused for accesses of different users
+        assertThat(condition.evaluate(access(new User().setUsername("alice")), EMPTY_REQUEST)).isTrue();
+        assertThat(condition.evaluate(access(new User().setUsername("bob")), EMPTY_REQUEST)).isFalse();
+        assertThat(condition.evaluate(access(new User().setUsername("alice")), EMPTY_REQUEST)).isTrue();
+    }
+
+    @Test
+    void compile_resolvesAttributesFromRequestContext() throws Exception {
+        ACCompiledCondition condition = usernameCondition("alice").compile();
+
+        //Requesting entity without attribute values
+        ACAccess access = access(mock(IACRequestingEntity.class));
+
+        assertThat(condition.evaluate(access, request("alice"))).isTrue();
+        assertThat(condition.evaluate(access, request("bob"))).isFalse();
+    }
+
+    @Test
+    void compile_isFalseForMissingOrConflictingAttributes() throws Exception {
+        ACCompiledCondition condition = usernameCondition("alice").compile();
+
+        assertThat(condition.evaluate(access(mock(IACRequestingEntity.class)), EMPTY_REQUEST)).isFalse();
+        assertThat(condition.evaluate(access(new User()), request("alice"))).isFalse();
+        assertThat(condition.evaluate(access(new User().setUsername("alice")), request("bob"))).isFalse();
+        assertThat(valueCondition(ACArgumentFunction.EQUALS, null, "alice").compile()
+                .evaluate(access(new User()), EMPTY_REQUEST)).isFalse();
+    }
+
+    @Test
+    void compile_shortCircuitsConjunctions() throws Exception {
+        AtomicInteger evaluations = new AtomicInteger(0);
+        ACCompiledCondition condition = compositeCondition(ACLogicalOperator.AND,
+                countingCondition(false, evaluations), countingCondition(true, evaluations)).compile();
+
+        assertThat(condition.evaluate(access(new User()), EMPTY_REQUEST)).isFalse();
+        assertThat(evaluations).hasValue(1);
+
+        evaluations.set(0);
+        condition = compositeCondition(ACLogicalOperator.AND,
+                countingCondition(true, evaluations), countingCondition(true, evaluations)).compile();
+        assertThat(condition.evaluate(access(new User()), EMPTY_REQUEST)).isTrue();
+        assertThat(evaluations).hasValue(2);
+    }
+
+    @Test
+    void compile_shortCircuitsDisjunctions() throws Exception {
+        AtomicInteger evaluations = new AtomicInteger(0);
+        ACCompiledCondition condition = compositeCondition(ACLogicalOperator.OR,
+                countingCondition(true, evaluations), countingCondition(false, evaluations)).compile();
+
+        assertThat(condition.evaluate(access(new User()), EMPTY_REQUEST)).isTrue();
+        assertThat(evaluations).hasValue(1);
+
+        evaluations.set(0);
+        condition = compositeCondition(ACLogicalOperator.OR,
+                countingCondition(false, evaluations), countingCondition(false, evaluations)).compile();
+        assertThat(condition.evaluate(access(new User()), EMPTY_REQUEST)).isFalse();
+        assertThat(evaluations).hasValue(2);
+    }
+
+    @Test
+    void compile_combinesNestedConditions() throws Exception {
+        //(username = alice OR username = bob) AND 3 < 5
+        ACCompiledCondition condition = compositeCondition(ACLogicalOperator.AND,
+                compositeCondition(ACLogicalOperator.OR, usernameCondition("alice"), usernameCondition("bob")),
+                valueCondition(ACArgumentFunction.LESS_THAN, 3, 5)).compile();
+
+        assertThat(condition.evaluate(access(new User().setUsername("alice")), EMPTY_REQUEST)).isTrue();
+        assertThat(condition.evaluate(access(new User().setUsername("bob")), EMPTY_REQUEST)).isTrue();
+        assertThat(condition.evaluate(access(new User().setUsername("carol")), EMPTY_REQUEST)).isFalse();
+    }
+
+    private static <T extends Comparable<T>> ACSimpleCondition<T> valueCondition(ACArgumentFunction function, T left, T right) {
+        return new ACSimpleCondition<>("condition", "", function, new ACConditionSimpleValueArgument<>(left),
+                new ACConditionSimpleValueArgument<>(right), "owner");
+    }
+
+    private static ACSimpleCondition<String> usernameCondition(String username) {
+        return ACSimpleCondition.create("condition", "", ACArgumentFunction.EQUALS, ACEntityType.REQUESTING_ENTITY,
+                ACAttributeKey.REQUESTING_ENTITY_USERNAME, username, "owner");
+    }
+
+    private static ACCompositeCondition compositeCondition(ACLogicalOperator operator, ACAbstractCondition... conditions) {
+        return new ACCompositeCondition("composite", "", operator, Arrays.asList(conditions), "owner");
+    }
+
+    private static ACAbstractCondition countingCondition(boolean result, AtomicInteger evaluations) throws Exception {
+        ACAbstractCondition condition = mock(ACAbstractCondition.class);
+        when(condition.compile()).thenReturn((access, request) -> {
+            evaluations.incrementAndGet();
+            return result;
+        });
+        return condition;
+    }
+
+    private static ACAccess access(IACRequestingEntity requestingEntity) {
+        return new ACAccess(ACAccessType.READ, requestingEntity, mock(IACRequestedEntity.class));
+    }
+
+    private static ACAccessRequest request(String username) {
+        return new ACAccessRequest(Collections.singletonList(
+                new ACAttribute(ACAttributeKey.REQUESTING_ENTITY_USERNAME, username)));
+    }
+}
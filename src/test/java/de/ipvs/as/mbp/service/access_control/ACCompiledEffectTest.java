@@ -0,0 +1,137 @@
+package de.ipvs.as.mbp.service.access_control;
+
+import de.ipvs.as.mbp.domain.access_control.ACAbstractEffect;
+import de.ipvs.as.mbp.domain.access_control.ACDoubleAccuracyEffect;
+import de.ipvs.as.mbp.domain.valueLog.ValueLog;
+import de.ipvs.as.mbp.repository.ACConditionRepository;
+import de.ipvs.as.mbp.repository.ACEffectRepository;
+import de.ipvs.as.mbp.repository.ACPolicyRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.bson.Document;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.DoubleUnaryOperator;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.offset;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class ACCompiledEffectTest {
+
+    @Test
+    void compile_roundsNumericValuesOfValueLogs() {
+        ACCompiledEffect effect = accuracyEffect("0.1", "1").compile();
+        List<Object> list = new ArrayList<>(Arrays.asList(1.26, "text", 4));
+        Document value = new Document("value", 12.345)
+                .append("nested", new Document("value", 1.26))
+                .append("list", list)
+                .append("text", "1.26");
+
+        ValueLog valueLog = effect.apply(new ValueLog().setValue(value));
+
+        assertThat(valueLog.getValue().get("value")).isEqualTo(12.3);
+        assertThat(((Document) valueLog.getValue().get("nested")).get("value")).isEqualTo(1.3);
+        assertThat(list).containsExactly(1.3, "text", 4.0);
+        assertThat(valueLog.getValue().get("text")).isEqualTo("1.26");
+    }
+
+    @Test
+    void compile_roundsToAccuracyAndPrecision() {
+        DoubleUnaryOperator transformation = accuracyEffect("10", "0").compile().getValueTransformation();
+        assertThat(transformation.applyAsDouble(123)).isEqualTo(120);
+        assertThat(transformation.applyAsDouble(-126)).isEqualTo(-130);
+
+        transformation = accuracyEffect("0.5", "1").compile().getValueTransformation();
+        assertThat(transformation.applyAsDouble(2.26)).isEqualTo(2.5);
+        assertThat(transformation.applyAsDouble(2.24)).isEqualTo(2.0);
+
+        //Precision exceeding the precision of doubles is not applied
+        transformation = accuracyEffect("0.001", "20").compile().getValueTransformation();
+        assertThat(transformation.applyAsDouble(1.2344)).isCloseTo(1.234, offset(1e-12));
+
+        //Non-finite values are kept
+        assertThat(transformation.applyAsDouble(Double.NaN)).isNaN();
+        assertThat(transformation.applyAsDouble(Double.POSITIVE_INFINITY)).isInfinite();
+    }
+
+    @Test
+    void compile_isReusableForMultipleValueLogs() {
+        ACCompiledEffect effect = accuracyEffect("1", "0").compile();
+        List<ValueLog> valueLogs = Arrays.asList(new ValueLog().setValue(new Document("value", 1.4)),
+                new ValueLog().setValue(new Document("value", 2.6)), new ValueLog());
+
+        effect.applyAll(valueLogs);
+
+        assertThat(valueLogs.get(0).getValue().get("value")).isEqualTo(1.0);
+        assertThat(valueLogs.get(1).getValue().get("value")).isEqualTo(3.0);
+        assertThat(valueLogs.get(2).getValue()).isNull();
+    }
+
+    @Test
+    void compile_rejectsInvalidParameters() {
+        assertThrows(IllegalArgumentException.class, () -> accuracyEffect(null, "1").compile());
+        assertThrows(IllegalArgumentException.class, () -> accuracyEffect("abc", "1").compile());
+        assertThrows(IllegalArgumentException.class, () -> accuracyEffect("0", "1").compile());
+        assertThrows(IllegalArgumentException.class, () -> accuracyEffect("-1", "1").compile());
+        assertThrows(IllegalArgumentException.class, () -> accuracyEffect("1", "-1").compile());
+        assertThrows(IllegalArgumentException.class, () -> accuracyEffect("1", "1.5").compile());
+    }
+
+    @Test
+    void getCompiledEffect_compilesEffectsOnce() {
+        ACEffectRepository effectRepository = mock(ACEffectRepository.class);
+        ACAbstractEffect effect = spy(accuracyEffect("1", "0"));
+        when(effectRepository.findById("effect")).thenReturn(Optional.of(effect));
+        ACPolicyCache policyCache = createPolicyCache(effectRepository);
+
+        Optional<ACCompiledEffect> first = policyCache.getCompiledEffect("effect");
+        Optional<ACCompiledEffect> second = policyCache.getCompiledEffect("effect");
+
+        assertThat(first).isPresent();
+        assertThat(second.get()).isSameAs(first.get());
+        verify(effect, times(1)).compile();
+        verify(effectRepository, times(1)).findById("effect");
+
+        //Invalidated effects are compiled again
+        policyCache.invalidateEffect("effect");
+        policyCache.getCompiledEffect("effect");
+        verify(effect, times(2)).compile();
+    }
+
+    @Test
+    void getCompiledEffect_withholdsValuesForInvalidEffects() {
+        ACEffectRepository effectRepository = mock(ACEffectRepository.class);
+        when(effectRepository.findById("invalid")).thenReturn(Optional.of(accuracyEffect("abc", "1")));
+        ACPolicyCache policyCache = createPolicyCache(effectRepository);
+
+        Optional<ACCompiledEffect> effect = policyCache.getCompiledEffect("invalid");
+
+        assertThat(effect).containsSame(ACPolicyCache.WITHHOLD);
+        assertThat(effect.get().apply(new ValueLog().setValue(new Document("value", 1.0))).getValue()).isEmpty();
+        assertThat(policyCache.getCompiledEffect("missing")).isEmpty();
+        assertThat(policyCache.getCompiledEffect(null)).isEmpty();
+    }
+
+    private static ACDoubleAccuracyEffect accuracyEffect(String accuracy, String precision) {
+        Map<String, String> parameters = new HashMap<>();
+        parameters.put(ACDoubleAccuracyEffect.PARAM_KEY_ACCURACY, accuracy);
+        parameters.put(ACDoubleAccuracyEffect.PARAM_KEY_PRECISION, precision);
+        return (ACDoubleAccuracyEffect) new ACDoubleAccuracyEffect().setParameters(parameters);
+    }
+
+    private static ACPolicyCache createPolicyCache(ACEffectRepository effectRepository) {
+        return new ACPolicyCache(mock(ACPolicyRepository.class), mock(ACConditionRepository.class), effectRepository,
+                new SimpleMeterRegistry(), 100, 60000);
+    }
+}
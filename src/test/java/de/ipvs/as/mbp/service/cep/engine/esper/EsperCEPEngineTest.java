@@ -0,0 +1,59 @@
+package de.ipvs.as.mbp.service.cep.engine.esper;
+
+import de.ipvs.as.mbp.service.cep.engine.core.events.CEPEvent;
+import de.ipvs.as.mbp.service.cep.engine.core.events.CEPEventType;
+import de.ipvs.as.mbp.service.cep.engine.core.events.CEPPrimitiveDataTypes;
+import de.ipvs.as.mbp.service.cep.engine.core.output.CEPOutput;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class EsperCEPEngineTest {
+
+    private static final long TIMEOUT = 5000;
+
+    @ParameterizedTest
+    @ValueSource(booleans = {false, true})
+    void sendEvent_passesPatternTagsAsPropertiesMaps(boolean objectArrayEvents) throws Exception {
+        EsperCEPEngine engine = new EsperCEPEngine(objectArrayEvents);
+
+        CEPEventType eventType = new CEPEventType("sensor");
+        eventType.addField("value", CEPPrimitiveDataTypes.DOUBLE);
+        eventType.addField("time", CEPPrimitiveDataTypes.LONG);
+        engine.registerEventType(eventType);
+
+        CompletableFuture<CEPOutput> output = new CompletableFuture<>();
+        engine.createQuery("query", "SELECT * FROM pattern [every(a = sensor -> b = sensor(value > a.value))]")
+                .setSubscriber(output::complete);
+
+        engine.sendEvent(createEvent(1.0, 1000L));
+        engine.sendEvent(createEvent(2.0, 2000L));
+
+        Map<Object, Object> outputMap = output.get(TIMEOUT, TimeUnit.MILLISECONDS).getOutputMap();
+        assertThat(getTaggedEvent(outputMap, "a")).containsEntry("value", 1.0).containsEntry("time", 1000L);
+        assertThat(getTaggedEvent(outputMap, "b")).containsEntry("value", 2.0).containsEntry("time", 2000L);
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<String, Object> getTaggedEvent(Map<Object, Object> outputMap, String tag) {
+        assertThat(outputMap.get(tag)).isInstanceOf(Map.class);
+        return (Map<String, Object>) outputMap.get(tag);
+    }
+
+    private CEPEvent createEvent(double value, long time) {
+        CEPEvent event = new CEPEvent() {
+            @Override
+            public String getEventTypeName() {
+                return "sensor";
+            }
+        };
+        event.addValue("value", value);
+        event.addValue("time", time);
+        return event;
+    }
+}
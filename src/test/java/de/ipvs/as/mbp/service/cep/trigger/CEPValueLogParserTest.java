@@ -0,0 +1,166 @@
+package de.ipvs.as.mbp.service.cep.trigger;
+
+import com.jayway.jsonpath.JsonPath;
+import de.ipvs.as.mbp.domain.data_model.DataModelDataType;
+import de.ipvs.as.mbp.domain.valueLog.ValueLog;
+import org.bson.Document;
+import org.bson.types.Binary;
+import org.bson.types.Decimal128;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.entry;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class CEPValueLogParserTest {
+
+    private static final String EVENT_TYPE = "sensor";
+
+    private final CEPValueLogParser parser = new CEPValueLogParser();
+
+    @Test
+    void parseValueLog_readsNestedAndArrayPaths() {
+        Document value = new Document("room", new Document("temperature", 21.5)
+                .append("windows", Arrays.asList(new Document("open", true), new Document("open", false))))
+                .append("matrix", Arrays.asList(Arrays.asList(1, 2), Arrays.asList(3, 4)));
+        register(instruction("$['room']['temperature']", DataModelDataType.DOUBLE),
+                instruction("$['room']['windows'][1]['open']", DataModelDataType.BOOLEAN),
+                instruction("$['matrix'][1][0]", DataModelDataType.INT),
+                instruction("$['matrix'][2][0]", DataModelDataType.INT),
+                instruction("$['room']['humidity']", DataModelDataType.DOUBLE));
+
+        Map<String, Object> result = parse(value);
+
+        //Fields that are not contained in the value are omitted
+        assertThat(result).containsOnly(entry("$['room']['temperature']", 21.5),
+                entry("$['room']['windows'][1]['open']", false), entry("$['matrix'][1][0]", 3));
+    }
+
+    @Test
+    void parseValueLog_readsFieldNamesWithQuotes() {
+        CEPValueLogParseInstruction instruction = instruction("$['it\\'s']['val\\\\ue']", DataModelDataType.STRING);
+        register(instruction);
+
+        Map<String, Object> result = parse(new Document("it's", new Document("val\\ue", "text")));
+
+        assertThat(instruction.getPathSegments()).containsExactly("it's", "val\\ue");
+        assertThat(result).containsOnly(entry(instruction.getFieldName(), "text"));
+    }
+
+    @Test
+    void parseValueLog_convertsBsonTypesAndStrings() {
+        byte[] bytes = "binary".getBytes(StandardCharsets.UTF_8);
+        String base64 = Base64.getEncoder().encodeToString(bytes);
+        long dateMillis = 1577934245000L;
+        register(instruction("$['long']", DataModelDataType.LONG),
+                instruction("$['longString']", DataModelDataType.LONG),
+                instruction("$['decimal']", DataModelDataType.DECIMAL128),
+                instruction("$['decimalString']", DataModelDataType.DECIMAL128),
+                instruction("$['date']", DataModelDataType.DATE),
+                instruction("$['dateNumber']", DataModelDataType.DATE),
+                instruction("$['dateString']", DataModelDataType.DATE),
+                instruction("$['binary']", DataModelDataType.BINARY),
+                instruction("$['binaryString']", DataModelDataType.BINARY));
+        Document value = new Document("long", 5000000000L).append("longString", "5000000000")
+                .append("decimal", new Decimal128(new BigDecimal("1.25"))).append("decimalString", "1.25")
+                .append("date", new Date(dateMillis)).append("dateNumber", dateMillis)
+                .append("dateString", "2020-01-02 03:04:05+00:00")
+                .append("binary", new Binary(bytes)).append("binaryString", base64);
+
+        Map<String, Object> result = parse(value);
+
+        assertThat(result).containsOnly(entry("$['long']", 5000000000L), entry("$['longString']", 5000000000L),
+                entry("$['decimal']", new BigDecimal("1.25")), entry("$['decimalString']", new BigDecimal("1.25")),
+                entry("$['date']", dateMillis), entry("$['dateNumber']", dateMillis),
+                entry("$['dateString']", dateMillis),
+                entry("$['binary']", base64), entry("$['binaryString']", base64));
+    }
+
+    @Test
+    void parseValueLog_skipsValuesThatCannotBeConverted() {
+        register(instruction("$['long']", DataModelDataType.LONG),
+                instruction("$['date']", DataModelDataType.DATE),
+                instruction("$['value']", DataModelDataType.DOUBLE));
+
+        Map<String, Object> result = parse(new Document("long", "abc").append("date", "yesterday").append("value", 1));
+
+        assertThat(result).containsOnly(entry("$['value']", 1.0));
+    }
+
+    @Test
+    void parseValueLog_fallsBackToJsonPathForWildcards() {
+        CEPValueLogParseInstruction wildcard = instruction("$['samples'][*]['value']", DataModelDataType.DOUBLE);
+        register(wildcard, instruction("$['samples'][0]['value']", DataModelDataType.DOUBLE),
+                instruction("$['missing'][*]", DataModelDataType.DOUBLE));
+        Document value = new Document("samples", Arrays.asList(new Document("value", 1.5), new Document("value", 2.5)));
+
+        Map<String, Object> result = parse(value);
+
+        assertThat(wildcard.getPathSegments()).isNull();
+        assertThat(result.get("$['samples'][*]['value']")).isEqualTo(Arrays.asList(1.5, 2.5));
+        assertThat(result).containsEntry("$['samples'][0]['value']", 1.5);
+        assertThat(result.get("$['missing'][*]")).isIn(null, Collections.emptyList());
+    }
+
+    @Test
+    void parseValueLog_matchesJsonPathOnSerializedValue() {
+        Document value = new Document("room", new Document("temperature", 21.5).append("name", "kitchen")
+                .append("occupied", true).append("sensors", Arrays.asList(new Document("id", 7), new Document("id", 8))))
+                .append("values", Arrays.asList(1.5, 2.5, 3.5));
+        List<CEPValueLogParseInstruction> instructions = Arrays.asList(
+                instruction("$['room']['temperature']", DataModelDataType.DOUBLE),
+                instruction("$['room']['name']", DataModelDataType.STRING),
+                instruction("$['room']['occupied']", DataModelDataType.BOOLEAN),
+                instruction("$['room']['sensors'][1]['id']", DataModelDataType.INT),
+                instruction("$['values'][2]", DataModelDataType.DOUBLE));
+        register(instructions.toArray(new CEPValueLogParseInstruction[0]));
+
+        Map<String, Object> result = parse(value);
+
+        //Results equal the ones of the former parser, which serialized the value and evaluated the JsonPaths
+        String json = value.toJson();
+        for (CEPValueLogParseInstruction instruction : instructions) {
+            Object expected = JsonPath.parse(json).read(instruction.getFieldPath());
+            assertThat(result.get(instruction.getFieldName())).as(instruction.getFieldName()).isEqualTo(expected);
+        }
+    }
+
+    @Test
+    void parseValueLog_rejectsUnknownEventTypes() {
+        ValueLog valueLog = new ValueLog().setComponent("SENSOR").setValue(new Document("value", 1.0));
+
+        assertThrows(IllegalArgumentException.class, () -> parser.parseValueLog(valueLog, "unknown"));
+        assertThrows(IllegalArgumentException.class, () -> parser.parseValueLog(null, EVENT_TYPE));
+    }
+
+    @Test
+    void parseValueLog_usesInstructionsForMonitoringComponents() {
+        ValueLog valueLog = new ValueLog().setComponent("MONITORING").setValue(new Document("value", 3));
+
+        assertThat(parser.parseValueLog(valueLog, "unknown")).containsOnly(entry("value", 3.0));
+    }
+
+    private void register(CEPValueLogParseInstruction... instructions) {
+        Set<CEPValueLogParseInstruction> instructionSet = new HashSet<>(Arrays.asList(instructions));
+        parser.addInstructionsForEventType(EVENT_TYPE, instructionSet);
+    }
+
+    private Map<String, Object> parse(Document value) {
+        return parser.parseValueLog(new ValueLog().setComponent("SENSOR").setValue(value), EVENT_TYPE);
+    }
+
+    private static CEPValueLogParseInstruction instruction(String path, DataModelDataType type) {
+        return new CEPValueLogParseInstruction(path, JsonPath.compile(path), type);
+    }
+}
@@ -0,0 +1,108 @@
+package de.ipvs.as.mbp.service.deployment;
+
+import de.ipvs.as.mbp.domain.component.Component;
+import de.ipvs.as.mbp.domain.component.Sensor;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class StateMonitoringServiceTest {
+
+    private static final long TIMEOUT = 5000;
+
+    //Results of the pending probes, in the order in which the probes were started
+    private final BlockingQueue<CompletableFuture<ComponentState>> probeResults = new LinkedBlockingQueue<>();
+
+    private final AtomicInteger probeCount = new AtomicInteger(0);
+
+    private StateMonitoringService stateMonitoringService;
+
+    private Component component;
+
+    @BeforeEach
+    void setUp() {
+        IDeployer deployer = mock(IDeployer.class);
+        when(deployer.retrieveComponentState(any())).thenAnswer(invocation -> {
+            CompletableFuture<ComponentState> result = new CompletableFuture<>();
+            probeCount.incrementAndGet();
+            probeResults.add(result);
+            return result.get(TIMEOUT, TimeUnit.MILLISECONDS);
+        });
+        DeployerDispatcher deployerDispatcher = mock(DeployerDispatcher.class);
+        when(deployerDispatcher.getDeployer(any())).thenReturn(deployer);
+
+        stateMonitoringService = new StateMonitoringService(deployerDispatcher, 4, 60000, TIMEOUT, 600000);
+
+        component = new Sensor();
+        component.setId("sensor");
+    }
+
+    @AfterEach
+    void tearDown() {
+        stateMonitoringService.shutdown();
+    }
+
+    @Test
+    void getComponentStates_concurrentRequestsShareProbe() throws Exception {
+        CompletableFuture<ComponentState> first = CompletableFuture.supplyAsync(
+                () -> stateMonitoringService.getComponentState(component, true));
+        CompletableFuture<ComponentState> probe = probeResults.poll(TIMEOUT, TimeUnit.MILLISECONDS);
+        CompletableFuture<ComponentState> second = CompletableFuture.supplyAsync(
+                () -> stateMonitoringService.getComponentState(component, true));
+
+        Thread.sleep(100);
+        probe.complete(ComponentState.RUNNING);
+
+        assertThat(first.get(TIMEOUT, TimeUnit.MILLISECONDS)).isEqualTo(ComponentState.RUNNING);
+        assertThat(second.get(TIMEOUT, TimeUnit.MILLISECONDS)).isEqualTo(ComponentState.RUNNING);
+        assertThat(probeCount).hasValue(1);
+    }
+
+    @Test
+    void refreshComponentState_supersedesPendingProbe() throws Exception {
+        //Start a probe before the mutation
+        CompletableFuture<ComponentState> request = CompletableFuture.supplyAsync(
+                () -> stateMonitoringService.getComponentState(component, true));
+        CompletableFuture<ComponentState> staleProbe = probeResults.poll(TIMEOUT, TimeUnit.MILLISECONDS);
+
+        //Refresh after the mutation must start a new probe
+        stateMonitoringService.refreshComponentState(component);
+        CompletableFuture<ComponentState> freshProbe = probeResults.poll(TIMEOUT, TimeUnit.MILLISECONDS);
+        assertThat(freshProbe).isNotNull();
+        assertThat(probeCount).hasValue(2);
+
+        //Fresh probe completes first, stale probe completes afterwards
+        freshProbe.complete(ComponentState.RUNNING);
+        staleProbe.complete(ComponentState.DEPLOYED);
+        request.get(TIMEOUT, TimeUnit.MILLISECONDS);
+
+        //Result of the stale probe must not replace the fresh state
+        assertThat(stateMonitoringService.getComponentState(component, false)).isEqualTo(ComponentState.RUNNING);
+        assertThat(probeCount).hasValue(2);
+    }
+
+    @Test
+    void refreshComponentState_isJoinedByLaterRequests() throws Exception {
+        stateMonitoringService.refreshComponentState(component);
+        CompletableFuture<ComponentState> probe = probeResults.poll(TIMEOUT, TimeUnit.MILLISECONDS);
+
+        CompletableFuture<ComponentState> request = CompletableFuture.supplyAsync(
+                () -> stateMonitoringService.getComponentState(component, true));
+        Thread.sleep(100);
+        probe.complete(ComponentState.READY);
+
+        assertThat(request.get(TIMEOUT, TimeUnit.MILLISECONDS)).isEqualTo(ComponentState.READY);
+        assertThat(probeCount).hasValue(1);
+    }
+}
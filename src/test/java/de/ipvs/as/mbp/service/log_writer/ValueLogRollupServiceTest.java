@@ -0,0 +1,206 @@
+package de.ipvs.as.mbp.service.log_writer;
+
+import de.ipvs.as.mbp.domain.data_model.treelogic.DataModelTree;
+import de.ipvs.as.mbp.domain.data_model.treelogic.DataModelTreeNode;
+import de.ipvs.as.mbp.domain.valueLog.ValueLog;
+import de.ipvs.as.mbp.domain.valueLog.ValueLogRollup;
+import de.ipvs.as.mbp.domain.valueLog.ValueLogRollupResolution;
+import de.ipvs.as.mbp.repository.DataModelTreeCache;
+import de.ipvs.as.mbp.repository.ValueLogRepository;
+import de.ipvs.as.mbp.repository.ValueLogRollupRepository;
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.reset;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class ValueLogRollupServiceTest {
+
+    private static final long HOUR = 3600 * 1000L;
+
+    private static final long DAY = 24 * HOUR;
+
+    private ValueLogRollupRepository valueLogRollupRepository;
+
+    private ValueLogRollupService valueLogRollupService;
+
+    @BeforeEach
+    void setUp() {
+        valueLogRollupRepository = mock(ValueLogRollupRepository.class);
+        DataModelTreeCache dataModelTreeCache = mock(DataModelTreeCache.class);
+        DataModelTree dataModelTree = mock(DataModelTree.class);
+
+        Map<String, DataModelTreeNode> leaves = new LinkedHashMap<>();
+        leaves.put("value", mock(DataModelTreeNode.class));
+        leaves.put("list[*]", mock(DataModelTreeNode.class));
+        when(dataModelTree.getNumericLeafNodesByPath()).thenReturn(leaves);
+        when(dataModelTreeCache.getDataModelOfComponent("sensor")).thenReturn(dataModelTree);
+
+        when(valueLogRollupRepository.findCoverageStartByIdRef("sensor")).thenReturn(Instant.EPOCH);
+        when(valueLogRollupRepository.isCoverageKnown("sensor")).thenReturn(true);
+
+        valueLogRollupService = new ValueLogRollupService(valueLogRollupRepository, mock(ValueLogRepository.class),
+                dataModelTreeCache, true);
+    }
+
+    @Test
+    void selectResolution_selectsCoarsestAlignedResolution() {
+        ValueLogRollupResolution[] resolutions = ValueLogRollupResolution.values();
+        ValueLogRollupResolution coarsest = resolutions[resolutions.length - 1];
+        ValueLogRollupResolution finest = resolutions[0];
+        long width = coarsest.getWidth();
+
+        assertThat(valueLogRollupService.selectResolution("sensor", "value", Instant.ofEpochMilli(width),
+                Instant.ofEpochMilli(3 * width), width)).isEqualTo(coarsest);
+        assertThat(valueLogRollupService.selectResolution("sensor", "value", Instant.ofEpochMilli(finest.getWidth()),
+                null, finest.getWidth())).isEqualTo(finest);
+    }
+
+    @Test
+    void selectResolution_fallsBackForUnalignedTimeRanges() {
+        long finestWidth = ValueLogRollupResolution.values()[0].getWidth();
+
+        assertThat(valueLogRollupService.selectResolution("sensor", "value", Instant.ofEpochMilli(1),
+                null, DAY)).isNull();
+        assertThat(valueLogRollupService.selectResolution("sensor", "value", null, null,
+                finestWidth + 1)).isNull();
+    }
+
+    @Test
+    void selectResolution_fallsBackForPathsWithoutRollups() {
+        for (String path : Arrays.asList("other", "list[*]", "list", "")) {
+            assertThat(valueLogRollupService.selectResolution("sensor", path, null, null, DAY))
+                    .as("Path: " + path).isNull();
+        }
+        assertThat(valueLogRollupService.selectResolution("sensor", "value", null, null, DAY)).isNotNull();
+    }
+
+    @Test
+    void selectResolution_respectsCoverageStart() {
+        when(valueLogRollupRepository.findCoverageStartByIdRef("sensor")).thenReturn(Instant.ofEpochMilli(10 * DAY + 1));
+
+        assertThat(valueLogRollupService.selectResolution("sensor", "value", null, null, DAY)).isNull();
+        assertThat(valueLogRollupService.selectResolution("sensor", "value", Instant.ofEpochMilli(10 * DAY),
+                null, DAY)).isNull();
+        assertThat(valueLogRollupService.selectResolution("sensor", "value", Instant.ofEpochMilli(11 * DAY),
+                null, DAY)).isNotNull();
+
+        when(valueLogRollupRepository.findCoverageStartByIdRef("sensor")).thenReturn(null);
+        assertThat(valueLogRollupService.selectResolution("sensor", "value", Instant.ofEpochMilli(11 * DAY),
+                null, DAY)).isNull();
+    }
+
+    @Test
+    void selectResolution_fallsBackForTimeRangesWithGaps() {
+        Instant start = Instant.ofEpochMilli(DAY);
+        Instant end = Instant.ofEpochMilli(2 * DAY);
+        when(valueLogRollupRepository.existsGapByIdRefWithin("sensor", start, end)).thenReturn(true);
+
+        assertThat(valueLogRollupService.selectResolution("sensor", "value", start, end, DAY)).isNull();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void addValueLogs_addsNumericLeavesWithFirstAndLastValues() {
+        List<ValueLog> valueLogs = Arrays.asList(createValueLog(2 * HOUR + 2000, 5),
+                createValueLog(2 * HOUR + 1000, 3), createValueLog(2 * HOUR + 3000, 7));
+
+        valueLogRollupService.addValueLogs(valueLogs, true);
+
+        for (ValueLogRollupResolution resolution : ValueLogRollupResolution.values()) {
+            verify(valueLogRollupRepository).incrementAll(eq(resolution), anyList(), eq(true));
+        }
+
+        ArgumentCaptor<List<ValueLogRollup>> captor = ArgumentCaptor.forClass(List.class);
+        verify(valueLogRollupRepository).incrementAll(eq(ValueLogRollupResolution.DAY), captor.capture(), eq(true));
+        assertThat(captor.getValue()).hasSize(1);
+        ValueLogRollup rollup = captor.getValue().get(0);
+        assertThat(rollup.getTime()).isZero();
+        assertThat(rollup.getStatistics()).containsOnlyKeys("value");
+
+        ValueLogRollup.FieldStatistics statistics = rollup.getStatistics().get("value");
+        assertThat(statistics.getCount()).isEqualTo(3);
+        assertThat(statistics.getSum()).isEqualTo(15);
+        assertThat(statistics.getMinimum()).isEqualTo(3);
+        assertThat(statistics.getMaximum()).isEqualTo(7);
+        assertThat(statistics.getFirstTime()).isEqualTo(2 * HOUR + 1000);
+        assertThat(statistics.getFirstValue()).isEqualTo(3);
+        assertThat(statistics.getLastTime()).isEqualTo(2 * HOUR + 3000);
+        assertThat(statistics.getLastValue()).isEqualTo(7);
+    }
+
+    @Test
+    void addValueLogs_recordsGapIfRollupUpdateFails() {
+        doThrow(new RuntimeException("Database unavailable")).when(valueLogRollupRepository)
+                .incrementAll(any(), anyList(), anyBoolean());
+
+        assertThrows(RuntimeException.class, () -> valueLogRollupService.addValueLogs(Arrays.asList(
+                createValueLog(5 * HOUR, 1), createValueLog(4 * HOUR, 2)), true));
+
+        verify(valueLogRollupRepository).insertGap("sensor", Instant.ofEpochMilli(4 * HOUR), Instant.ofEpochMilli(5 * HOUR));
+    }
+
+    @Test
+    void addValueLogs_keepsGapInMemoryIfRecordingFails() {
+        doThrow(new RuntimeException("Database unavailable")).when(valueLogRollupRepository)
+                .incrementAll(any(), anyList(), anyBoolean());
+        doThrow(new RuntimeException("Database unavailable")).when(valueLogRollupRepository)
+                .insertGap(any(), any(), any());
+
+        assertThrows(RuntimeException.class, () -> valueLogRollupService.addValueLogs(
+                Collections.singletonList(createValueLog(DAY + HOUR, 1)), true));
+
+        //Gap is considered although it is not stored in the repository
+        assertThat(valueLogRollupService.selectResolution("sensor", "value", Instant.ofEpochMilli(DAY),
+                Instant.ofEpochMilli(2 * DAY), DAY)).isNull();
+        assertThat(valueLogRollupService.selectResolution("sensor", "value", Instant.ofEpochMilli(2 * DAY),
+                Instant.ofEpochMilli(3 * DAY), DAY)).isNotNull();
+
+        //Gap is stored with the next value logs
+        reset(valueLogRollupRepository);
+        when(valueLogRollupRepository.findCoverageStartByIdRef("sensor")).thenReturn(Instant.EPOCH);
+        when(valueLogRollupRepository.isCoverageKnown("sensor")).thenReturn(true);
+        valueLogRollupService.addValueLogs(Collections.singletonList(createValueLog(3 * DAY, 1)), true);
+
+        verify(valueLogRollupRepository, times(1)).insertGap("sensor", Instant.ofEpochMilli(DAY + HOUR),
+                Instant.ofEpochMilli(DAY + HOUR));
+        assertThat(valueLogRollupService.selectResolution("sensor", "value", Instant.ofEpochMilli(DAY),
+                Instant.ofEpochMilli(2 * DAY), DAY)).isNotNull();
+    }
+
+    @Test
+    void addValueLogs_doesNothingIfDisabled() {
+        ValueLogRollupService disabledService = new ValueLogRollupService(valueLogRollupRepository,
+                mock(ValueLogRepository.class), mock(DataModelTreeCache.class), false);
+
+        disabledService.addValueLogs(Collections.singletonList(createValueLog(0, 1)), true);
+
+        verify(valueLogRollupRepository, never()).incrementAll(any(), anyList(), anyBoolean());
+        assertThat(disabledService.selectResolution("sensor", "value", null, null, DAY)).isNull();
+    }
+
+    private ValueLog createValueLog(long time, double value) {
+        return new ValueLog().setIdref("sensor").setTime(Instant.ofEpochMilli(time))
+                .setValue(new Document("value", value));
+    }
+}
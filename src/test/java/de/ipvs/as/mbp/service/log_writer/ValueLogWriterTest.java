@@ -0,0 +1,210 @@
+package de.ipvs.as.mbp.service.log_writer;
+
+import de.ipvs.as.mbp.domain.valueLog.ValueLog;
+import de.ipvs.as.mbp.repository.ValueLogRepository;
+import de.ipvs.as.mbp.service.receiver.ValueLogReceiver;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.bson.Document;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.reset;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class ValueLogWriterTest {
+
+    private static final long TIMEOUT = 5000;
+
+    private ValueLogRepository valueLogRepository;
+
+    private ValueLogRollupService valueLogRollupService;
+
+    private SimpleMeterRegistry meterRegistry;
+
+    private ValueLogWriter valueLogWriter;
+
+    @BeforeEach
+    void setUp() {
+        valueLogRepository = mock(ValueLogRepository.class);
+        valueLogRollupService = mock(ValueLogRollupService.class);
+        meterRegistry = new SimpleMeterRegistry();
+    }
+
+    @AfterEach
+    void tearDown() {
+        reset(valueLogRepository);
+        if (valueLogWriter != null) {
+            valueLogWriter.shutdown();
+        }
+    }
+
+    @Test
+    void flush_writesPendingValueLogsAsOneBatch() {
+        createWriter(10, 100);
+        List<ValueLog> valueLogs = receive(3);
+
+        valueLogWriter.flush();
+
+        assertThat(captureWrittenBatches(1).get(0)).containsExactlyElementsOf(valueLogs);
+        verify(valueLogRollupService).addValueLogs(valueLogs, true);
+        assertThat(valueLogWriter.getPendingCount()).isZero();
+    }
+
+    @Test
+    void onValueReceived_flushesWhenBatchIsComplete() {
+        createWriter(2, 100);
+
+        receive(1);
+        verify(valueLogRepository, never()).writeAll(anyCollection(), anyBoolean());
+
+        //Batch is written by the flush thread
+        receive(1);
+        verify(valueLogRepository, timeout(TIMEOUT)).writeAll(anyCollection(), anyBoolean());
+        assertThat(valueLogWriter.getPendingCount()).isZero();
+    }
+
+    @Test
+    void onValueReceived_backsOffAfterFailedFlush() throws Exception {
+        createWriter(1, 100);
+        when(valueLogRepository.writeAll(anyCollection(), anyBoolean()))
+                .thenThrow(new RuntimeException("Database unavailable"));
+
+        //Complete batches neither block nor fail the caller
+        receive(5);
+        verify(valueLogRepository, timeout(TIMEOUT)).writeAll(anyCollection(), anyBoolean());
+        awaitPending(5, 0);
+
+        //No further attempts while backing off
+        verify(valueLogRepository, times(1)).writeAll(anyCollection(), anyBoolean());
+    }
+
+    @Test
+    void flush_requeuesOnlyRejectedValueLogs() {
+        createWriter(10, 100);
+        List<ValueLog> valueLogs = receive(3);
+        when(valueLogRepository.writeAll(anyCollection(), anyBoolean()))
+                .thenReturn(Collections.singletonList(valueLogs.get(1)))
+                .thenReturn(Collections.emptyList());
+
+        valueLogWriter.flush();
+
+        verify(valueLogRollupService).addValueLogs(Arrays.asList(valueLogs.get(0), valueLogs.get(2)), true);
+        assertThat(valueLogWriter.getPendingCount()).isEqualTo(1);
+
+        valueLogWriter.flush();
+
+        assertThat(captureWrittenBatches(2).get(1)).containsExactly(valueLogs.get(1));
+        assertThat(valueLogWriter.getPendingCount()).isZero();
+    }
+
+    @Test
+    void flush_requeuesWholeBatchInOrderIfWriteFails() {
+        createWriter(10, 100);
+        List<ValueLog> valueLogs = receive(3);
+        when(valueLogRepository.writeAll(anyCollection(), anyBoolean()))
+                .thenThrow(new RuntimeException("Database unavailable"))
+                .thenReturn(Collections.emptyList());
+
+        assertThrows(RuntimeException.class, () -> valueLogWriter.flush());
+        verify(valueLogRollupService, never()).addValueLogs(anyCollection(), anyBoolean());
+        assertThat(valueLogWriter.getPendingCount()).isEqualTo(3);
+
+        List<ValueLog> laterValueLogs = receive(1);
+        valueLogWriter.flush();
+
+        List<ValueLog> expected = new ArrayList<>(valueLogs);
+        expected.addAll(laterValueLogs);
+        assertThat(captureWrittenBatches(2).get(1)).containsExactlyElementsOf(expected);
+    }
+
+    @Test
+    void flush_dropsValueLogsAfterMaximumNumberOfRejections() {
+        createWriter(10, 100);
+        List<ValueLog> valueLogs = receive(2);
+        when(valueLogRepository.writeAll(anyCollection(), anyBoolean()))
+                .thenReturn(Collections.singletonList(valueLogs.get(0)));
+
+        valueLogWriter.flush();
+        valueLogWriter.flush();
+        assertThat(valueLogWriter.getPendingCount()).isEqualTo(1);
+
+        valueLogWriter.flush();
+        assertThat(valueLogWriter.getPendingCount()).isZero();
+        assertThat(getDroppedCount()).isEqualTo(1);
+    }
+
+    @Test
+    void onValueReceived_dropsOldestValueLogsBeyondMaximumPending() throws Exception {
+        createWriter(2, 3);
+        when(valueLogRepository.writeAll(anyCollection(), anyBoolean()))
+                .thenThrow(new RuntimeException("Database unavailable"));
+
+        List<ValueLog> valueLogs = receive(5);
+        verify(valueLogRepository, timeout(TIMEOUT)).writeAll(anyCollection(), anyBoolean());
+        awaitPending(3, 2);
+
+        reset(valueLogRepository);
+        valueLogWriter.flush();
+        assertThat(captureWrittenBatches(1).get(0)).containsExactlyElementsOf(valueLogs.subList(2, 5));
+    }
+
+    /**
+     * Waits until the given numbers of pending and dropped value logs are reached.
+     */
+    private void awaitPending(int pendingCount, int droppedCount) throws Exception {
+        long deadline = System.currentTimeMillis() + TIMEOUT;
+        while ((valueLogWriter.getPendingCount() != pendingCount) || (getDroppedCount() != droppedCount)) {
+            assertThat(System.currentTimeMillis()).as("Pending value logs").isLessThan(deadline);
+            Thread.sleep(10);
+        }
+    }
+
+    private void createWriter(int batchSize, int maxPending) {
+        valueLogWriter = new ValueLogWriter(mock(ValueLogReceiver.class), valueLogRepository, valueLogRollupService,
+                meterRegistry, true, batchSize, 3600 * 1000, ValueLogWriteDurability.ACKNOWLEDGED, maxPending);
+    }
+
+    private List<ValueLog> receive(int count) {
+        List<ValueLog> valueLogs = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            ValueLog valueLog = createValueLog(i);
+            valueLogs.add(valueLog);
+            valueLogWriter.onValueReceived(valueLog);
+        }
+        return valueLogs;
+    }
+
+    private ValueLog createValueLog(int index) {
+        return new ValueLog().setIdref("sensor").setTime(Instant.ofEpochSecond(1000 + index))
+                .setValue(new Document("value", (double) index));
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<Collection<ValueLog>> captureWrittenBatches(int expectedCount) {
+        ArgumentCaptor<Collection<ValueLog>> captor = ArgumentCaptor.forClass(Collection.class);
+        verify(valueLogRepository, times(expectedCount)).writeAll(captor.capture(), anyBoolean());
+        return captor.getAllValues();
+    }
+
+    private double getDroppedCount() {
+        return meterRegistry.get("value_logs.writer.dropped").counter().count();
+    }
+}
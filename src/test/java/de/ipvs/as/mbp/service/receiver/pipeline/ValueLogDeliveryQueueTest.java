@@ -0,0 +1,65 @@
+package de.ipvs.as.mbp.service.receiver.pipeline;
+
+import de.ipvs.as.mbp.domain.valueLog.ValueLog;
+import de.ipvs.as.mbp.service.receiver.ValueLogObserver;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class ValueLogDeliveryQueueTest {
+
+    private static final long TIMEOUT = 5000;
+
+    @Test
+    void enqueue_dropsValueLogsBeyondSpillCapacity() throws Exception {
+        //Observer blocks on the first value log until released
+        CountDownLatch deliveryStarted = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        List<String> delivered = Collections.synchronizedList(new ArrayList<>());
+        ValueLogObserver observer = valueLog -> {
+            deliveryStarted.countDown();
+            try {
+                release.await(TIMEOUT, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            delivered.add(valueLog.getIdref());
+        };
+        ValueLogDeliveryQueue deliveryQueue = new ValueLogDeliveryQueue(observer, 1, BackpressurePolicy.SPILL, 2);
+
+        deliveryQueue.enqueue(valueLog("0"));
+        assertThat(deliveryStarted.await(TIMEOUT, TimeUnit.MILLISECONDS)).isTrue();
+
+        //One value log fits into the queue, two into the overflow buffer, the remaining ones are dropped
+        for (int i = 1; i <= 5; i++) {
+            deliveryQueue.enqueue(valueLog(String.valueOf(i)));
+        }
+        assertThat(deliveryQueue.getPendingCount()).isEqualTo(3);
+        assertThat(deliveryQueue.getDroppedCount()).isEqualTo(2);
+        assertThat(deliveryQueue.getSpillOverflowCount()).isEqualTo(2);
+
+        //Pending value logs are delivered in order
+        release.countDown();
+        deliveryQueue.shutdown();
+        assertThat(delivered).containsExactly("0", "1", "2", "3");
+        assertThat(deliveryQueue.getDeliveredCount()).isEqualTo(4);
+    }
+
+    @Test
+    void constructor_rejectsNegativeSpillCapacity() {
+        assertThrows(IllegalArgumentException.class,
+                () -> new ValueLogDeliveryQueue(valueLog -> {
+                }, 1, BackpressurePolicy.SPILL, -1));
+    }
+
+    private static ValueLog valueLog(String idref) {
+        return new ValueLog().setIdref(idref);
+    }
+}
@@ -0,0 +1,190 @@
+package de.ipvs.as.mbp.service.rules;
+
+import com.mongodb.bulk.BulkWriteError;
+import de.ipvs.as.mbp.domain.rules.Rule;
+import de.ipvs.as.mbp.domain.testing.Testing;
+import de.ipvs.as.mbp.domain.valueLog.ValueLog;
+import de.ipvs.as.mbp.repository.TestRepository;
+import org.bson.BsonDocument;
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class RuleExecutionRecorderTest {
+
+    private MongoTemplate mongoTemplate;
+
+    private TestRepository testRepository;
+
+    //Traces that were inserted successfully
+    private final List<Testing> insertedTraces = new ArrayList<>();
+
+    //Rule IDs of the updates of the current bulk operations, in the order in which they were added
+    private final List<String> updatedRuleIds = new ArrayList<>();
+
+    //Map (rule ID -> incremented executions) of the updates of the current bulk operations
+    private final Map<String, Integer> increments = new LinkedHashMap<>();
+
+    private BulkOperations bulkOperations;
+
+    private RuleExecutionRecorder recorder;
+
+    @BeforeEach
+    void setUp() {
+        mongoTemplate = mock(MongoTemplate.class);
+        when(mongoTemplate.bulkOps(eq(BulkOperations.BulkMode.UNORDERED), eq(Rule.class))).thenAnswer(invocation -> {
+            updatedRuleIds.clear();
+            increments.clear();
+            return bulkOperations;
+        });
+        bulkOperations = mock(BulkOperations.class);
+        when(bulkOperations.updateOne(any(Query.class), any(Update.class))).thenAnswer(invocation -> {
+            String ruleId = invocation.getArgument(0, Query.class).getQueryObject().get("id").toString();
+            Document inc = (Document) invocation.getArgument(1, Update.class).getUpdateObject().get("$inc");
+            updatedRuleIds.add(ruleId);
+            increments.put(ruleId, ((Number) inc.get("executions")).intValue());
+            return bulkOperations;
+        });
+
+        testRepository = mock(TestRepository.class);
+        when(testRepository.insert(anyList())).thenAnswer(invocation -> {
+            List<Testing> batch = invocation.getArgument(0);
+            insertedTraces.addAll(batch);
+            return batch;
+        });
+
+        recorder = new RuleExecutionRecorder(mongoTemplate, testRepository, false, 1.0, 100, 10);
+    }
+
+    @Test
+    void flush_incrementsExecutionsOfRules() {
+        recordExecutions("rule1", 3);
+        recordExecutions("rule2", 1);
+
+        recorder.flush();
+
+        assertThat(increments).containsOnly(Map.entry("rule1", 3), Map.entry("rule2", 1));
+        verify(bulkOperations).execute();
+    }
+
+    @Test
+    void flush_writesNothingWithoutPendingStatistics() {
+        recorder.flush();
+
+        verify(mongoTemplate, never()).bulkOps(any(BulkOperations.BulkMode.class), eq(Rule.class));
+    }
+
+    @Test
+    void flush_restoresStatisticsIfWriteFails() {
+        recordExecutions("rule1", 3);
+        when(bulkOperations.execute()).thenThrow(new RuntimeException("Database unavailable")).thenReturn(null);
+
+        recorder.flush();
+
+        //Executions recorded in the meantime are added to the restored ones
+        recordExecutions("rule1", 2);
+        recorder.flush();
+
+        assertThat(increments).containsOnly(Map.entry("rule1", 5));
+    }
+
+    @Test
+    void flush_restoresOnlyStatisticsOfFailedUpdates() {
+        recordExecutions("rule1", 3);
+        recordExecutions("rule2", 4);
+
+        //Let only the update of rule2 fail
+        when(bulkOperations.execute()).thenAnswer(invocation -> {
+            BulkOperationException exception = mock(BulkOperationException.class);
+            when(exception.getErrors()).thenReturn(Collections.singletonList(
+                    new BulkWriteError(1, "Write failed", new BsonDocument(), updatedRuleIds.indexOf("rule2"))));
+            throw exception;
+        }).thenReturn(null);
+
+        recorder.flush();
+        recorder.flush();
+
+        assertThat(increments).containsOnly(Map.entry("rule2", 4));
+    }
+
+    @Test
+    void recordTrace_keepsTracesOfTestRunsBeyondCapacity() {
+        recorder = new RuleExecutionRecorder(mongoTemplate, testRepository, true, 1.0, 1, 10);
+        recorder.setTracedComponents(Map.of("sensor", "run"));
+
+        //Only one sampled trace fits into the buffer, whereas all traces of the test run are kept
+        Testing sampled = trace("other");
+        recorder.recordTrace(sampled);
+        recorder.recordTrace(trace("other"));
+        List<Testing> testTraces = new ArrayList<>();
+        for (int i = 0; i < 25; i++) {
+            Testing testTrace = trace("sensor");
+            recorder.recordTrace(testTrace);
+            testTraces.add(testTrace);
+        }
+
+        recorder.flush();
+
+        assertThat(recorder.getDroppedTraces()).isEqualTo(1);
+        assertThat(insertedTraces).hasSize(26).containsAll(testTraces).contains(sampled);
+        assertThat(testTraces).allSatisfy(trace -> assertThat(trace.getTestRunIds()).containsExactly("run"));
+    }
+
+    @Test
+    void flush_requeuesTracesOfTestRunsIfInsertFails() {
+        recorder.setTracedComponents(Map.of("sensor", "run"));
+        Testing testTrace = trace("sensor");
+        recorder.recordTrace(testTrace);
+        recorder.recordTrace(trace("other"));
+        when(testRepository.insert(anyList())).thenThrow(new RuntimeException("Database unavailable"))
+                .thenAnswer(invocation -> {
+                    List<Testing> batch = invocation.getArgument(0);
+                    insertedTraces.addAll(batch);
+                    return batch;
+                });
+
+        recorder.flush();
+
+        //Flush is aborted after the failed insert
+        verify(testRepository, times(1)).insert(anyList());
+        assertThat(insertedTraces).isEmpty();
+
+        recorder.flush();
+
+        assertThat(insertedTraces).hasSize(2).startsWith(testTrace);
+    }
+
+    private void recordExecutions(String ruleId, int count) {
+        Rule rule = new Rule().setId(ruleId);
+        for (int i = 0; i < count; i++) {
+            recorder.recordExecution(rule);
+        }
+    }
+
+    private static Testing trace(String componentId) {
+        Testing trace = new Testing();
+        trace.setValueLogEventNameMap(Map.of("event", new ValueLog().setIdref(componentId)));
+        return trace;
+    }
+}
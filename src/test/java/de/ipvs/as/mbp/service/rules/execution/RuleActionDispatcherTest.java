@@ -0,0 +1,249 @@
+package de.ipvs.as.mbp.service.rules.execution;
+
+import de.ipvs.as.mbp.domain.rules.Rule;
+import de.ipvs.as.mbp.domain.rules.RuleAction;
+import de.ipvs.as.mbp.domain.rules.RuleActionType;
+import de.ipvs.as.mbp.service.cep.engine.core.output.CEPOutput;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class RuleActionDispatcherTest {
+
+    private static final long TIMEOUT = 5000;
+
+    private RuleActionDispatcher dispatcher;
+
+    @AfterEach
+    void tearDown() {
+        if (dispatcher != null) {
+            dispatcher.shutdown();
+        }
+    }
+
+    @Test
+    void dispatch_completesWithTrueOnSuccess() throws Exception {
+        TestExecutor executor = new TestExecutor(false, action -> true);
+        createDispatcher(executor, 1000, 3);
+
+        assertThat(dispatch("a").get(TIMEOUT, TimeUnit.MILLISECONDS)).isTrue();
+        assertThat(executor.calls).hasValue(1);
+        assertThat(dispatcher.getDeadLetters()).isEmpty();
+    }
+
+    @Test
+    void dispatch_doesNotRetryNonRetryableExecutors() throws Exception {
+        TestExecutor executor = new TestExecutor(false, action -> {
+            throw new IllegalStateException("Broker unavailable");
+        });
+        createDispatcher(executor, 1000, 3);
+
+        assertThat(dispatch("a").get(TIMEOUT, TimeUnit.MILLISECONDS)).isFalse();
+        assertThat(executor.calls).hasValue(1);
+        assertThat(dispatcher.getDeadLetters()).hasSize(1);
+        assertThat(dispatcher.getDeadLetters().get(0).getAttempts()).isEqualTo(1);
+        assertThat(dispatcher.getDeadLetters().get(0).getReason()).contains("Broker unavailable");
+    }
+
+    @Test
+    void dispatch_retriesRetryableExecutorsUpToMaximumAttempts() throws Exception {
+        TestExecutor executor = new TestExecutor(true, action -> false);
+        createDispatcher(executor, 1000, 3);
+
+        assertThat(dispatch("a").get(TIMEOUT, TimeUnit.MILLISECONDS)).isFalse();
+        assertThat(executor.calls).hasValue(3);
+        assertThat(dispatcher.getDeadLetters()).hasSize(1);
+        assertThat(dispatcher.getDeadLetters().get(0).getAttempts()).isEqualTo(3);
+    }
+
+    @Test
+    void dispatch_completesAfterSuccessfulRetry() throws Exception {
+        AtomicInteger failures = new AtomicInteger(1);
+        TestExecutor executor = new TestExecutor(true, action -> failures.getAndDecrement() <= 0);
+        createDispatcher(executor, 1000, 3);
+
+        assertThat(dispatch("a").get(TIMEOUT, TimeUnit.MILLISECONDS)).isTrue();
+        assertThat(executor.calls).hasValue(2);
+        assertThat(dispatcher.getDeadLetters()).isEmpty();
+    }
+
+    @Test
+    void dispatch_failsTimedOutAttemptButWaitsForItsEnd() throws Exception {
+        //Attempt ignores interrupts and only ends when released
+        CountDownLatch release = new CountDownLatch(1);
+        TestExecutor executor = new TestExecutor(false, action -> {
+            if ("slow".equals(action.getName())) {
+                awaitUninterruptibly(release);
+            }
+            return true;
+        });
+        createDispatcher(executor, 100, 3);
+
+        CompletableFuture<Boolean> slow = dispatch("a", "slow");
+        CompletableFuture<Boolean> next = dispatch("a", "fast");
+
+        //Timed out execution fails without waiting for the attempt to end
+        assertThat(slow.get(TIMEOUT, TimeUnit.MILLISECONDS)).isFalse();
+        assertThat(dispatcher.getDeadLetters().get(0).getReason()).contains("timed out");
+
+        //Next execution for the same target waits until the attempt ended
+        Thread.sleep(200);
+        assertThat(next).isNotDone();
+        release.countDown();
+        assertThat(next.get(TIMEOUT, TimeUnit.MILLISECONDS)).isTrue();
+        assertThat(executor.maxConcurrentCalls).hasValue(1);
+    }
+
+    @Test
+    void dispatch_retriesTimedOutAttemptOnlyAfterItEnded() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        TestExecutor executor = new TestExecutor(true, action -> {
+            awaitUninterruptibly(release);
+            return false;
+        });
+        createDispatcher(executor, 100, 2);
+
+        CompletableFuture<Boolean> result = dispatch("a");
+        Thread.sleep(500);
+
+        //No retry while the timed out attempt is still running
+        assertThat(executor.calls).hasValue(1);
+        assertThat(result).isNotDone();
+
+        release.countDown();
+        assertThat(result.get(TIMEOUT, TimeUnit.MILLISECONDS)).isFalse();
+        assertThat(executor.calls).hasValue(2);
+        assertThat(executor.maxConcurrentCalls).hasValue(1);
+    }
+
+    @Test
+    void dispatch_executesActionsForSameTargetInOrder() throws Exception {
+        List<String> order = Collections.synchronizedList(new ArrayList<>());
+        TestExecutor executor = new TestExecutor(false, action -> {
+            sleep(10);
+            order.add(action.getName());
+            return true;
+        });
+        createDispatcher(executor, 1000, 3);
+
+        List<CompletableFuture<Boolean>> results = new ArrayList<>();
+        List<String> expected = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            results.add(dispatch("a", "action" + i));
+            expected.add("action" + i);
+        }
+        CompletableFuture.allOf(results.toArray(new CompletableFuture<?>[0])).get(TIMEOUT, TimeUnit.MILLISECONDS);
+
+        assertThat(order).containsExactlyElementsOf(expected);
+        assertThat(executor.maxConcurrentCalls).hasValue(1);
+    }
+
+    @Test
+    void dispatch_executesActionsForDifferentTargetsConcurrently() throws Exception {
+        CountDownLatch started = new CountDownLatch(2);
+        TestExecutor executor = new TestExecutor(false, action -> {
+            started.countDown();
+            try {
+                return started.await(TIMEOUT, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                return false;
+            }
+        });
+        createDispatcher(executor, TIMEOUT, 3);
+
+        CompletableFuture<Boolean> first = dispatch("a");
+        CompletableFuture<Boolean> second = dispatch("b");
+
+        assertThat(first.get(TIMEOUT, TimeUnit.MILLISECONDS)).isTrue();
+        assertThat(second.get(TIMEOUT, TimeUnit.MILLISECONDS)).isTrue();
+    }
+
+    private void createDispatcher(RuleActionExecutor executor, long timeout, int maxAttempts) {
+        Function<RuleActionType, RuleActionExecutor> executorProvider = type -> executor;
+        dispatcher = new RuleActionDispatcher(executorProvider, 4, 100, timeout, maxAttempts, 10, 100);
+    }
+
+    private CompletableFuture<Boolean> dispatch(String target) {
+        return dispatch(target, "action");
+    }
+
+    private CompletableFuture<Boolean> dispatch(String target, String name) {
+        RuleAction action = new RuleAction();
+        action.setId(name);
+        action.setName(name);
+        action.setType(RuleActionType.ACTUATOR_ACTION);
+        action.setParameters(Collections.singletonMap("target", target));
+        return dispatcher.dispatch(action, new Rule().setId("rule").setName("rule"), null);
+    }
+
+    private static void awaitUninterruptibly(CountDownLatch latch) {
+        while (true) {
+            try {
+                latch.await();
+                return;
+            } catch (InterruptedException ignored) {
+                //Simulates an executor that does not respond to interrupts
+            }
+        }
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Executor stub that orders the executions by the "target" parameter and tracks its invocations.
+     */
+    private static class TestExecutor implements RuleActionExecutor {
+        private final boolean retryable;
+        private final Function<RuleAction, Boolean> behaviour;
+        private final AtomicInteger calls = new AtomicInteger(0);
+        private final AtomicInteger concurrentCalls = new AtomicInteger(0);
+        private final AtomicInteger maxConcurrentCalls = new AtomicInteger(0);
+
+        private TestExecutor(boolean retryable, Function<RuleAction, Boolean> behaviour) {
+            this.retryable = retryable;
+            this.behaviour = behaviour;
+        }
+
+        @Override
+        public void validateParameters(Map<String, String> parameters) {
+        }
+
+        @Override
+        public boolean execute(RuleAction action, Rule rule, CEPOutput output) {
+            calls.incrementAndGet();
+            maxConcurrentCalls.accumulateAndGet(concurrentCalls.incrementAndGet(), Math::max);
+            try {
+                return behaviour.apply(action);
+            } finally {
+                concurrentCalls.decrementAndGet();
+            }
+        }
+
+        @Override
+        public boolean isRetryable() {
+            return retryable;
+        }
+
+        @Override
+        public String getOrderingKey(RuleAction action, Rule rule) {
+            return action.getParameters().get("target");
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package de.ipvs.as.mbp.service.stats;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class ValueLogAggregationServiceTest {
+
+    @Test
+    void parseBucketWidth_parsesAllUnits() {
+        assertThat(ValueLogAggregationService.parseBucketWidth("30s")).isEqualTo(30 * 1000L);
+        assertThat(ValueLogAggregationService.parseBucketWidth("15m")).isEqualTo(15 * 60 * 1000L);
+        assertThat(ValueLogAggregationService.parseBucketWidth("2h")).isEqualTo(2 * 3600 * 1000L);
+        assertThat(ValueLogAggregationService.parseBucketWidth("1d")).isEqualTo(24 * 3600 * 1000L);
+    }
+
+    @Test
+    void parseBucketWidth_rejectsInvalidSpecifications() {
+        for (String bucketWidth : Arrays.asList(null, "", "5", "m", "0m", "-1h", "1.5h", "abcm", "5w")) {
+            assertThrows(IllegalArgumentException.class, () -> ValueLogAggregationService.parseBucketWidth(bucketWidth),
+                    "Bucket width: " + bucketWidth);
+        }
+    }
+
+    @Test
+    void selectLTTB_retainsAllDataPointsIfNotMoreThanTarget() {
+        long[] times = {0, 1, 2, 3, 4};
+        double[] values = {5, 3, 8, 1, 2};
+
+        assertThat(ValueLogAggregationService.selectLTTB(times, values, 5, 5)).containsExactly(0, 1, 2, 3, 4);
+        assertThat(ValueLogAggregationService.selectLTTB(times, values, 5, 10)).containsExactly(0, 1, 2, 3, 4);
+    }
+
+    @Test
+    void selectLTTB_retainsFirstLastAndOutstandingDataPoints() {
+        int size = 100;
+        long[] times = new long[size];
+        double[] values = new double[size];
+        for (int i = 0; i < size; i++) {
+            times[i] = i * 1000L;
+        }
+        values[37] = 100;
+        values[71] = -50;
+
+        int[] indices = ValueLogAggregationService.selectLTTB(times, values, size, 10);
+
+        assertThat(indices).hasSize(10).startsWith(0).endsWith(size - 1).contains(37, 71);
+        for (int i = 1; i < indices.length; i++) {
+            assertThat(indices[i]).isGreaterThan(indices[i - 1]);
+        }
+    }
+
+    @Test
+    void dataPointSampler_keepsAllDataPointsOfShortSeries() {
+        ValueLogAggregationService.DataPointSampler sampler = new ValueLogAggregationService.DataPointSampler(0, 20000, 5);
+        for (int i = 0; i < 20; i++) {
+            sampler.add(i * 1000L, i % 3);
+        }
+        sampler.finish();
+
+        assertThat(sampler.size).isEqualTo(20);
+        for (int i = 0; i < 20; i++) {
+            assertThat(sampler.times[i]).isEqualTo(i * 1000L);
+            assertThat(sampler.values[i]).isEqualTo(i % 3);
+        }
+    }
+
+    @Test
+    void dataPointSampler_preselectsExtremesOfLongSeries() {
+        int targetPoints = 5;
+        int count = 100000;
+        ValueLogAggregationService.DataPointSampler sampler = new ValueLogAggregationService.DataPointSampler(0, count, targetPoints);
+        for (int i = 0; i < count; i++) {
+            double value = Math.sin(i / 1000.0);
+            if (i == 12345) {
+                value = 10;
+            } else if (i == 67890) {
+                value = -10;
+            }
+            sampler.add(i, value);
+        }
+        sampler.finish();
+
+        int maxCandidates = 2 * ValueLogAggregationService.DataPointSampler.BINS_FACTOR * targetPoints + 2;
+        assertThat(sampler.size).isBetween(3, maxCandidates);
+        assertThat(sampler.times[0]).isZero();
+        assertThat(sampler.times[sampler.size - 1]).isEqualTo(count - 1);
+        long[] candidateTimes = Arrays.copyOf(sampler.times, sampler.size);
+        assertThat(candidateTimes).contains(12345L, 67890L).isSorted();
+
+        int[] indices = ValueLogAggregationService.selectLTTB(sampler.times, sampler.values, sampler.size, targetPoints);
+        assertThat(indices).hasSize(targetPoints);
+    }
+}
@@ -0,0 +1,138 @@
+package de.ipvs.as.mbp.service.stats;
+
+import com.mongodb.client.MongoCursor;
+import de.ipvs.as.mbp.domain.component.Sensor;
+import de.ipvs.as.mbp.domain.data_model.treelogic.DataModelTree;
+import de.ipvs.as.mbp.domain.data_model.treelogic.DataModelTreeNode;
+import de.ipvs.as.mbp.domain.operator.Operator;
+import de.ipvs.as.mbp.domain.valueLog.ValueLog;
+import de.ipvs.as.mbp.repository.DataModelTreeCache;
+import de.ipvs.as.mbp.repository.ValueLogRepository;
+import de.ipvs.as.mbp.service.UnitConverterService;
+import de.ipvs.as.mbp.service.stats.model.ValueLogStats;
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import javax.measure.unit.Unit;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class ValueLogStatsServiceTest {
+
+    private static final String COMPONENT_ID = "sensor";
+
+    private final ValueLogRepository valueLogRepository = mock(ValueLogRepository.class);
+    private final ValueLogStatsService statsService = new ValueLogStatsService();
+    private Sensor sensor;
+
+    @BeforeEach
+    void setUp() {
+        //Values of the operator are provided in meters, except for the leaf with its own unit
+        Map<String, DataModelTreeNode> leaves = new LinkedHashMap<>();
+        leaves.put("distance", leaf(null));
+        leaves.put("altitude", leaf("km"));
+        DataModelTree dataModelTree = mock(DataModelTree.class);
+        when(dataModelTree.getNumericLeafNodesByPath()).thenReturn(leaves);
+        DataModelTreeCache dataModelTreeCache = mock(DataModelTreeCache.class);
+        when(dataModelTreeCache.getDataModelOfComponent(COMPONENT_ID)).thenReturn(dataModelTree);
+
+        ReflectionTestUtils.setField(statsService, "unitConverterService", new UnitConverterService());
+        ReflectionTestUtils.setField(statsService, "valueLogRepository", valueLogRepository);
+        ReflectionTestUtils.setField(statsService, "dataModelTreeCache", dataModelTreeCache);
+
+        sensor = new Sensor();
+        sensor.setId(COMPONENT_ID);
+        sensor.setOperator(new Operator().setUnit("m"));
+    }
+
+    @Test
+    void calculateValueLogStats_convertsValueLogsCalculatedInDatabase() {
+        ValueLog first = valueLog(0, 2.0, 0.5);
+        ValueLog last = valueLog(2, 3.0, "1.5");
+        ValueLog minimum = valueLog(1, 1.0, 0.25);
+        ValueLog maximum = valueLog(2, 3.0, "1.5");
+        Document result = new Document("count", 3).append("firstLog", first).append("lastLog", last)
+                .append("fields", Arrays.asList(
+                        fieldResult(3, 1.0, 3.0, 2.0, minimum, maximum),
+                        fieldResult(3, 0.25, 1.5, 0.75, minimum, maximum)));
+        when(valueLogRepository.aggregateStatisticsByIdRef(eq(COMPONENT_ID), anyList())).thenReturn(result);
+
+        ValueLogStats stats = statsService.calculateValueLogStats(sensor, Unit.valueOf("cm"), null);
+
+        //Both the statistics and the returned value logs are provided in centimeters
+        assertThat(stats.getFieldStats().get("distance").getMinimum()).isEqualTo(100.0);
+        assertThat(stats.getFieldStats().get("altitude").getMaximum()).isEqualTo(150000.0);
+        assertThat(stats.getFirstLog().getValue()).isEqualTo(new Document("distance", 200.0).append("altitude", 50000.0));
+        assertThat(stats.getLastLog().getValue()).isEqualTo(new Document("distance", 300.0).append("altitude", 150000.0));
+        assertThat(stats.getMinimumLog().getValue()).isEqualTo(new Document("distance", 100.0).append("altitude", 25000.0));
+        assertThat(stats.getMaximumLog().getValue()).isEqualTo(new Document("distance", 300.0).append("altitude", 150000.0));
+        assertThat(stats.getFieldStats().get("altitude").getMinimumLog()).isSameAs(stats.getMinimumLog());
+    }
+
+    @Test
+    void calculateValueLogStats_convertsSharedValueLogsOnlyOnce() {
+        List<ValueLog> valueLogs = Arrays.asList(valueLog(0, 1.0, 2.0), valueLog(1, 3.0, "0.5"), valueLog(2, 2.0, true));
+        mockCursor(valueLogs);
+
+        //Streaming is enforced by the effect
+        ValueLogStats stats = statsService.calculateValueLogStats(sensor, Unit.valueOf("cm"), valueLog -> valueLog);
+
+        assertThat(stats.getNumberLogs()).isEqualTo(3);
+        assertThat(stats.getFirstLog()).isSameAs(stats.getMinimumLog());
+        assertThat(stats.getFirstLog().getValue()).isEqualTo(new Document("distance", 100.0).append("altitude", 200000.0));
+        assertThat(stats.getMaximumLog().getValue()).isEqualTo(new Document("distance", 300.0).append("altitude", 50000.0));
+        assertThat(stats.getLastLog().getValue()).isEqualTo(new Document("distance", 200.0).append("altitude", true));
+
+        //Numeric strings are considered, booleans are ignored
+        assertThat(stats.getFieldStats().get("altitude").getCount()).isEqualTo(2);
+        assertThat(stats.getFieldStats().get("altitude").getMinimum()).isEqualTo(50000.0);
+    }
+
+    @Test
+    void calculateValueLogStats_keepsValueLogsWithoutRequestedUnit() {
+        mockCursor(Arrays.asList(valueLog(0, 1.0, 2.0), valueLog(1, 3.0, 0.5)));
+
+        ValueLogStats stats = statsService.calculateValueLogStats(sensor, null, valueLog -> valueLog);
+
+        assertThat(stats.getFirstLog().getValue()).isEqualTo(new Document("distance", 1.0).append("altitude", 2.0));
+        assertThat(stats.getFieldStats().get("distance").getMaximum()).isEqualTo(3.0);
+    }
+
+    private void mockCursor(List<ValueLog> valueLogs) {
+        Iterator<ValueLog> iterator = valueLogs.iterator();
+        @SuppressWarnings("unchecked")
+        MongoCursor<ValueLog> cursor = mock(MongoCursor.class);
+        when(cursor.hasNext()).thenAnswer(invocation -> iterator.hasNext());
+        when(cursor.next()).thenAnswer(invocation -> iterator.next());
+        when(valueLogRepository.findAllByIdRefAndTimeRangeAsCursor(eq(COMPONENT_ID), any(), any())).thenReturn(cursor);
+    }
+
+    private static DataModelTreeNode leaf(String unit) {
+        DataModelTreeNode leaf = mock(DataModelTreeNode.class);
+        when(leaf.getUnit()).thenReturn(unit);
+        return leaf;
+    }
+
+    private static ValueLog valueLog(long epochSeconds, Object distance, Object altitude) {
+        return new ValueLog().setIdref(COMPONENT_ID).setTime(Instant.ofEpochSecond(epochSeconds))
+                .setValue(new Document("distance", distance).append("altitude", altitude));
+    }
+
+    private static Document fieldResult(long count, double min, double max, double avg, ValueLog minLog, ValueLog maxLog) {
+        return new Document("count", count).append("min", min).append("max", max).append("avg", avg)
+                .append("stdDev", 0.5).append("minLog", minLog).append("maxLog", maxLog);
+    }
+}
@@ -0,0 +1,232 @@
+package de.ipvs.as.mbp.service.testing.analyzer;
+
+import de.ipvs.as.mbp.domain.testing.TestValueBatch;
+import de.ipvs.as.mbp.repository.TestValueBatchRepository;
+import org.bson.Document;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.entry;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class TestValueCaptureTest {
+
+    private static final long TIMEOUT = 5000;
+
+    //Batches that were written to the repository
+    private final List<TestValueBatch> writtenBatches = Collections.synchronizedList(new ArrayList<>());
+
+    //Sizes of the inserts that were attempted, in the order of their attempts
+    private final List<Integer> insertSizes = Collections.synchronizedList(new ArrayList<>());
+
+    private TestValueBatchRepository batchRepository;
+
+    private ExecutorService spillExecutor;
+
+    @BeforeEach
+    void setUp() {
+        batchRepository = mock(TestValueBatchRepository.class);
+        when(batchRepository.findAllByRunIdOrderBySequenceAsc("run")).thenAnswer(invocation -> {
+            synchronized (writtenBatches) {
+                return writtenBatches.stream().sorted(Comparator.comparingLong(TestValueBatch::getSequence))
+                        .collect(Collectors.toList());
+            }
+        });
+        spillExecutor = Executors.newSingleThreadExecutor();
+    }
+
+    @AfterEach
+    void tearDown() {
+        spillExecutor.shutdownNow();
+    }
+
+    @Test
+    void finish_returnsCapturedValuesWithoutSpill() {
+        TestValueCapture capture = createCapture(10);
+        capture.capture("sensor1", 1, value(1));
+        capture.capture("sensor2", 1, value(2));
+        capture.capture("sensor1", 2, value(3));
+
+        Map<String, LinkedHashMap<Long, Document>> values = capture.finish();
+
+        assertThat(values.get("sensor1")).containsExactly(entry(1L, value(1)), entry(2L, value(3)));
+        assertThat(values.get("sensor2")).containsExactly(entry(1L, value(2)));
+        verify(batchRepository, never()).insert(anyList());
+        verify(batchRepository, never()).deleteAllByRunId("run");
+    }
+
+    @Test
+    void capture_spillsWithoutWaitingForInsert() throws Exception {
+        //Insert blocks until released
+        CountDownLatch insertStarted = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(batchRepository.insert(anyList())).thenAnswer(invocation -> {
+            insertStarted.countDown();
+            assertThat(release.await(TIMEOUT, TimeUnit.MILLISECONDS)).isTrue();
+            return recordInsert(invocation.getArgument(0));
+        });
+        TestValueCapture capture = createCapture(2);
+
+        //Capturing continues while the spilled values are inserted
+        for (long time = 1; time <= 5; time++) {
+            capture.capture("sensor1", time, value(time));
+        }
+        assertThat(insertStarted.await(TIMEOUT, TimeUnit.MILLISECONDS)).isTrue();
+        release.countDown();
+
+        Map<String, LinkedHashMap<Long, Document>> values = capture.finish();
+
+        assertThat(values.get("sensor1")).containsExactly(entry(1L, value(1)), entry(2L, value(2)),
+                entry(3L, value(3)), entry(4L, value(4)), entry(5L, value(5)));
+        assertThat(writtenBatches).isNotEmpty();
+        verify(batchRepository).deleteAllByRunId("run");
+    }
+
+    @Test
+    void capture_keepsBatchesIfInsertFails() throws Exception {
+        //First insert fails, subsequent inserts succeed
+        when(batchRepository.insert(anyList())).thenAnswer(invocation -> {
+            List<TestValueBatch> batches = invocation.getArgument(0);
+            insertSizes.add(batches.size());
+            if (insertSizes.size() == 1) {
+                throw new RuntimeException("Database unavailable");
+            }
+            return recordInsert(batches);
+        });
+        TestValueCapture capture = createCapture(2);
+
+        capture.capture("sensor1", 1, value(1));
+        capture.capture("sensor1", 2, value(2));
+        awaitSpill();
+        capture.capture("sensor1", 3, value(3));
+        capture.capture("sensor1", 4, value(4));
+        awaitSpill();
+
+        //Failed batch is written again together with the next batch
+        assertThat(insertSizes).containsExactly(1, 2);
+
+        Map<String, LinkedHashMap<Long, Document>> values = capture.finish();
+        assertThat(values.get("sensor1")).containsExactly(entry(1L, value(1)), entry(2L, value(2)),
+                entry(3L, value(3)), entry(4L, value(4)));
+    }
+
+    @Test
+    void finish_mergesBatchesThatCouldNotBeWritten() throws Exception {
+        when(batchRepository.insert(anyList())).thenThrow(new RuntimeException("Database unavailable"));
+        TestValueCapture capture = createCapture(2);
+
+        for (long time = 1; time <= 5; time++) {
+            capture.capture("sensor1", time, value(time));
+            awaitSpill();
+        }
+
+        Map<String, LinkedHashMap<Long, Document>> values = capture.finish();
+
+        assertThat(values.get("sensor1")).containsExactly(entry(1L, value(1)), entry(2L, value(2)),
+                entry(3L, value(3)), entry(4L, value(4)), entry(5L, value(5)));
+    }
+
+    @Test
+    void finish_replacesValuesWithSameTimeByLatestOne() throws Exception {
+        when(batchRepository.insert(anyList())).thenAnswer(invocation -> recordInsert(invocation.getArgument(0)));
+        TestValueCapture capture = createCapture(2);
+
+        capture.capture("sensor1", 1, value(1));
+        capture.capture("sensor1", 2, value(2));
+        awaitSpill();
+        capture.capture("sensor1", 1, value(3));
+
+        Map<String, LinkedHashMap<Long, Document>> values = capture.finish();
+
+        assertThat(values.get("sensor1")).containsExactly(entry(1L, value(3)), entry(2L, value(2)));
+    }
+
+    @Test
+    void finish_skipsInsertThatIsStillQueued() throws Exception {
+        when(batchRepository.insert(anyList())).thenAnswer(invocation -> recordInsert(invocation.getArgument(0)));
+        TestValueCapture capture = createCapture(2);
+
+        //Executor is busy, such that the insert of the spill remains queued
+        CountDownLatch release = new CountDownLatch(1);
+        spillExecutor.execute(() -> {
+            try {
+                release.await(TIMEOUT, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        capture.capture("sensor1", 1, value(1));
+        capture.capture("sensor1", 2, value(2));
+        capture.capture("sensor1", 3, value(3));
+
+        //Finishing does not wait for the queued insert
+        Map<String, LinkedHashMap<Long, Document>> values = capture.finish();
+        release.countDown();
+        awaitSpill();
+
+        assertThat(values.get("sensor1")).containsExactly(entry(1L, value(1)), entry(2L, value(2)), entry(3L, value(3)));
+        verify(batchRepository, never()).insert(anyList());
+    }
+
+    @Test
+    void finish_failsIfTooManyValuesCouldNotBeWritten() throws Exception {
+        when(batchRepository.insert(anyList())).thenThrow(new RuntimeException("Database unavailable"));
+        TestValueCapture capture = createCapture(2, 3);
+
+        for (long time = 1; time <= 6; time++) {
+            capture.capture("sensor1", time, value(time));
+            awaitSpill();
+        }
+
+        //Captured values are discarded and possibly written batches are removed
+        assertThrows(IllegalStateException.class, capture::finish);
+        verify(batchRepository).deleteAllByRunId("run");
+        verify(batchRepository).insert(anyList());
+    }
+
+    private TestValueCapture createCapture(int capacity) {
+        return createCapture(capacity, 1000);
+    }
+
+    private TestValueCapture createCapture(int capacity, int maxUnwrittenValues) {
+        return new TestValueCapture("run", new LinkedHashSet<>(List.of("sensor1", "sensor2")), capacity,
+                maxUnwrittenValues, batchRepository, spillExecutor);
+    }
+
+    private List<TestValueBatch> recordInsert(List<TestValueBatch> batches) {
+        writtenBatches.addAll(batches);
+        return batches;
+    }
+
+    /**
+     * Waits until all spills that were submitted to the executor so far are finished.
+     */
+    private void awaitSpill() throws Exception {
+        spillExecutor.submit(() -> {
+        }).get(TIMEOUT, TimeUnit.MILLISECONDS);
+    }
+
+    private static Document value(long value) {
+        return new Document("value", value);
+    }
+}
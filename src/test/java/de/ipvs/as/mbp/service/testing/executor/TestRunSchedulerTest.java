@@ -0,0 +1,136 @@
+package de.ipvs.as.mbp.service.testing.executor;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class TestRunSchedulerTest {
+
+    private static final long TIMEOUT = 5000;
+
+    //Time to wait for asserting that a run was not started
+    private static final long NOT_STARTED_DELAY = 200;
+
+    private TestRunScheduler scheduler;
+
+    @AfterEach
+    void tearDown() {
+        if (scheduler != null) {
+            scheduler.shutdown();
+        }
+    }
+
+    @Test
+    void submit_executesRunsWithDisjointSensorsConcurrently() throws Exception {
+        scheduler = new TestRunScheduler(4);
+        ControlledRun first = submit(false, "sensor1");
+        ControlledRun second = submit(false, "sensor2");
+
+        first.awaitStarted();
+        second.awaitStarted();
+        assertThat(scheduler.getNumberRunningRuns()).isEqualTo(2);
+    }
+
+    @Test
+    void submit_executesRunsWithSharedSensorsSequentially() throws Exception {
+        scheduler = new TestRunScheduler(4);
+        ControlledRun first = submit(false, "sensor1", "sensor2");
+        ControlledRun second = submit(false, "sensor2", "sensor3");
+
+        first.awaitStarted();
+        second.assertNotStarted();
+
+        first.finish();
+        first.result.get(TIMEOUT, TimeUnit.MILLISECONDS);
+        second.awaitStarted();
+    }
+
+    @Test
+    void submit_executesExclusiveRunsAlone() throws Exception {
+        scheduler = new TestRunScheduler(4);
+        ControlledRun running = submit(false, "sensor1");
+        running.awaitStarted();
+
+        //Exclusive run waits for the running run and later runs do not overtake it
+        ControlledRun exclusive = submit(true, "sensor2");
+        ControlledRun later = submit(false, "sensor3");
+        exclusive.assertNotStarted();
+        later.assertNotStarted();
+        assertThat(scheduler.getNumberWaitingRuns()).isEqualTo(2);
+
+        running.finish();
+        exclusive.awaitStarted();
+        later.assertNotStarted();
+
+        exclusive.finish();
+        later.awaitStarted();
+    }
+
+    @Test
+    void submit_limitsNumberOfConcurrentRuns() throws Exception {
+        scheduler = new TestRunScheduler(2);
+        List<ControlledRun> runs = Arrays.asList(submit(false, "sensor1"), submit(false, "sensor2"),
+                submit(false, "sensor3"));
+
+        runs.get(0).awaitStarted();
+        runs.get(1).awaitStarted();
+        runs.get(2).assertNotStarted();
+
+        runs.get(1).finish();
+        runs.get(2).awaitStarted();
+    }
+
+    @Test
+    void submit_startsNextRunAfterFailedRun() throws Exception {
+        scheduler = new TestRunScheduler(4);
+        CompletableFuture<Void> failed = scheduler.submit(Collections.singleton("sensor1"), false, () -> {
+            throw new IllegalStateException("Test could not be started");
+        });
+        ControlledRun next = submit(false, "sensor1");
+
+        ExecutionException exception = assertThrows(ExecutionException.class,
+                () -> failed.get(TIMEOUT, TimeUnit.MILLISECONDS));
+        assertThat(exception.getCause()).isInstanceOf(IllegalStateException.class);
+        next.awaitStarted();
+    }
+
+    private ControlledRun submit(boolean exclusive, String... sensorIds) {
+        ControlledRun run = new ControlledRun();
+        run.result = scheduler.submit(Arrays.asList(sensorIds), exclusive, () -> {
+            run.started.complete(null);
+            return run.completion;
+        });
+        return run;
+    }
+
+    /**
+     * Test run that is finished on demand.
+     */
+    private static class ControlledRun {
+        private final CompletableFuture<Void> started = new CompletableFuture<>();
+        private final CompletableFuture<Void> completion = new CompletableFuture<>();
+        private CompletableFuture<Void> result;
+
+        private void awaitStarted() throws Exception {
+            started.get(TIMEOUT, TimeUnit.MILLISECONDS);
+        }
+
+        private void assertNotStarted() throws InterruptedException {
+            Thread.sleep(NOT_STARTED_DELAY);
+            assertThat(started).isNotDone();
+        }
+
+        private void finish() {
+            completion.complete(null);
+        }
+    }
+}